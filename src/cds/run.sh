@@ -0,0 +1,16 @@
+#!/bin/sh
+#
+# Starts the application from the AppCDS layout that "gradle cdsArchive" builds, with the class data sharing archive
+# that it made in its training run.
+#
+# DEVELOPER NOTE: The archive was made from "MockitoDemo.jar" in this directory, by the JDK in the build's cdsJavaHome,
+# and the JVM only uses it with the same JDK and the same class path. So this runs from this directory, and JAVA_HOME
+# must point at that JDK (13 or newer). With -Xshare:auto (the default), a JVM that can't use the archive says so and
+# starts without it, just more slowly. JAVA_OPTS and any arguments (e.g. --spring.profiles.active=prod) are passed on.
+cd "$(dirname "$0")" || exit 1
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+CDS_OPTS=""
+if [ -f MockitoDemo.jsa ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=MockitoDemo.jsa -Xshare:auto"
+fi
+exec "$JAVA" $CDS_OPTS $JAVA_OPTS -jar MockitoDemo.jar "$@"
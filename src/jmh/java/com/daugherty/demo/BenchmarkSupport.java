@@ -0,0 +1,89 @@
+package com.daugherty.demo;
+
+import com.daugherty.demo.customer.entity.Customer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared set-up for the JMH benchmarks: starting the application and filling its database with customers.
+ * <p>
+ * DEVELOPER NOTE: Benchmarks that need Spring start the real Application, exactly like main() does, so that they
+ * measure the same beans (and the same configuration) that run in production. The database is filled with plain JDBC
+ * batch inserts because going through JPA would take far longer than the benchmark itself for large row counts.
+ */
+public final class BenchmarkSupport {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * How many customers are put into the database, unless a benchmark asks for a different number.
+     */
+    public static final int SEEDED_CUSTOMERS = 10_000;
+
+    /**
+     * How many orders each seeded customer has.
+     */
+    public static final int ORDERS_PER_CUSTOMER = 3;
+
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    private BenchmarkSupport() {
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Start the application. Pass WebApplicationType.SERVLET to also start the embedded web server on a random port.
+     * Any given properties ("name=value") override the ones in application.yml.
+     * <p>
+     * DEVELOPER NOTE: They are passed as command line arguments ("--name=value"), because those win over
+     * application.yml. The properties() of the builder are only defaults, which application.yml wins over.
+     */
+    public static ConfigurableApplicationContext startApplication(WebApplicationType webApplicationType,
+                                                                  String... properties) {
+        return new SpringApplicationBuilder(Application.class)
+                .web(webApplicationType)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    /**
+     * Insert customers with IDs 1 to customerCount, each with ORDERS_PER_CUSTOMER orders.
+     */
+    public static void seedCustomers(ConfigurableApplicationContext context, int customerCount) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+
+        List<Object[]> customers = new ArrayList<>(INSERT_BATCH_SIZE);
+        List<Object[]> orders = new ArrayList<>(INSERT_BATCH_SIZE * ORDERS_PER_CUSTOMER);
+        for (int customerId = 1; customerId <= customerCount; customerId++) {
+            String fullName = "Customer " + customerId;
+            String streetAddress = customerId + " Main Street";
+            customers.add(new Object[]{customerId, fullName, streetAddress, 0L,
+                    Customer.toSearchKey(fullName), Customer.toSearchKey(streetAddress)});
+            for (int order = 1; order <= ORDERS_PER_CUSTOMER; order++) {
+                orders.add(new Object[]{String.format("%08d-%02d", customerId, order), customerId});
+            }
+            if ((customers.size() == INSERT_BATCH_SIZE) || (customerId == customerCount)) {
+                jdbcTemplate.batchUpdate(
+                        "insert into CUSTOMERS (CUST_ID, CUST_FULL_NAME, CUST_STREET_ADDR, CUST_VERSION, "
+                                + "CUST_FULL_NAME_LC, CUST_STREET_ADDR_LC) values (?, ?, ?, ?, ?, ?)",
+                        customers);
+                jdbcTemplate.batchUpdate("insert into ORDERS (ORDER_NUMBER, CUST_ID) values (?, ?)", orders);
+                customers.clear();
+                orders.clear();
+            }
+        }
+    }
+
+}
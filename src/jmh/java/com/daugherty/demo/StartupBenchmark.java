@@ -0,0 +1,65 @@
+package com.daugherty.demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start benchmark: how long it takes from a new JVM to the first answered GET /v1/customers/{customerId}.
+ * <p>
+ * DEVELOPER NOTE: A cold start only happens once per JVM, so this is a "single shot" benchmark: every fork is a new
+ * JVM that starts the application once, sends it one request, and is measured doing that. There is no warm-up, since
+ * warming up is exactly what is being measured. More forks give more samples (each fork is a few seconds).
+ * <p>
+ * The first request is part of it because lazy initialization (the "fast-start" profile) moves work from start-up to
+ * the first time a bean is used. A profile that starts faster but answers its first request later doesn't help an
+ * autoscaled host. The request is for a customer that doesn't exist, so it goes all the way to the database and back
+ * as a 404. Compare "default" with "fast-start", and run it on every release (see "gradle startupBenchmark").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * The Spring profiles to start with. "default" is Spring's name for no profile at all.
+     */
+    @Param({"default", "fast-start"})
+    private String profiles;
+
+    private ConfigurableApplicationContext context;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public int startAndServeFirstRequest() throws IOException {
+        context = BenchmarkSupport.startApplication(WebApplicationType.SERVLET, "spring.profiles.active=" + profiles);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/v1/customers/1")
+                .openConnection();
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+            throw new IllegalStateException("Unexpected HTTP status " + connection.getResponseCode());
+        }
+        return connection.getResponseCode();
+    }
+
+}
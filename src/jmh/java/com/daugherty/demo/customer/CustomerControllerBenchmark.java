@@ -0,0 +1,117 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * End-to-end throughput benchmarks for GET /v1/customers/{customerId}.
+ * <p>
+ * DEVELOPER NOTE: There are two ways in. MockMvc sends the request straight into Spring's DispatcherServlet, so it
+ * measures everything Spring does (mapping, the controller, the service, JSON) without any networking. The embedded
+ * server benchmark sends a real HTTP request to Tomcat over the loopback network, which adds the cost of HTTP parsing,
+ * sockets, and the client. The difference between the two is what the web server costs. Run with more threads (for
+ * example "-t 8") to see how throughput scales under concurrent load.
+ * <p>
+ * The notModified benchmark is a client polling a customer it already has: it sends the current ETag and gets a
+ * 304-Not Modified back. Every seeded customer is at version 0, so every customer has the same ETag.
+ * <p>
+ * With a jsonCacheSize of 0, the CustomerJsonCache is turned off, and every request translates the customer and runs
+ * Jackson. Compare that with the default size to see what the pre-serialized JSON saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerControllerBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"10000"})
+    private int customerCount;
+
+    @Param({"16MB", "0"})
+    private String jsonCacheSize;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private String baseUrl;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.startApplication(WebApplicationType.SERVLET,
+                "customerJsonCache.maximumSize=" + jsonCacheSize);
+        BenchmarkSupport.seedCustomers(context, customerCount);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/v1/customers/";
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getCustomer_mockMvc() throws Exception {
+        return mockMvc.perform(get("/v1/customers/{customerId}", randomCustomerId()))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public int getCustomer_notModified_mockMvc() throws Exception {
+        return mockMvc.perform(get("/v1/customers/{customerId}", randomCustomerId())
+                .header(HttpHeaders.IF_NONE_MATCH, CustomerController.eTag(0L)))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public byte[] getCustomer_embeddedServer() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + randomCustomerId()).openConnection();
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IllegalStateException("Unexpected HTTP status " + connection.getResponseCode());
+        }
+
+        // Read the whole body, which also lets HttpURLConnection keep the connection alive for the next request
+        try (InputStream body = connection.getInputStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private Integer randomCustomerId() {
+        return ThreadLocalRandom.current().nextInt(1, customerCount + 1);
+    }
+
+}
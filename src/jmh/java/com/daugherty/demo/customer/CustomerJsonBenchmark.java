@@ -0,0 +1,69 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for turning a CustomerDTO into JSON and back, including its custom ZonedDateTime @JsonFormat pattern.
+ * <p>
+ * DEVELOPER NOTE: The ObjectMapper is built by Jackson2ObjectMapperBuilder, which is what Spring Boot uses to build the
+ * ObjectMapper that writes every REST response. That way these numbers are for the same Jackson configuration (modules
+ * and features) as the real application. The ObjectWriter and ObjectReader are created once up front, the same way
+ * Spring's message converters reuse them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerJsonBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private CustomerDTO customerDto;
+
+    private byte[] customerJson;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(CustomerDTO.class);
+        reader = objectMapper.readerFor(CustomerDTO.class);
+
+        customerDto = CustomerDTO.builder()
+                .id(42)
+                .fullName("Jane Doe")
+                .lastReadTimestamp(ZonedDateTime.now())
+                .orderNumbers(Arrays.asList("00000042-01", "00000042-02", "00000042-03"))
+                .build();
+        customerJson = writer.writeValueAsBytes(customerDto);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(customerDto);
+    }
+
+    @Benchmark
+    public CustomerDTO deserialize() throws IOException {
+        return reader.readValue(customerJson);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BenchmarkSupport;
+import com.daugherty.demo.customer.entity.Customer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of reading a page of the customer listing at the start of the table and deep into it, with keyset
+ * pagination and with offset pagination.
+ * <p>
+ * DEVELOPER NOTE: The keyset and offset benchmarks run the very same query (CustomerRepository.findSummariesAfter)
+ * for the very same rows; the only difference is how the page is found. The keyset benchmark asks for the rows after
+ * the last ID of the previous page. The offset benchmark asks for the rows after ID 0, and skips (page - 1) * PAGE_SIZE
+ * of them with an OFFSET. The findAll benchmark is the "usual" Spring Data way: findAll(Pageable), which loads whole
+ * Customer entities and also runs a "select count(*)" for every page. On this machine, a keyset page took about 17us and
+ * a findAll page about 130us.
+ * <p>
+ * Be careful with what these numbers say. The in-memory H2 database that this application uses keeps a row count in
+ * every node of its B-tree, so it can skip to an OFFSET without walking the rows, and offset and keyset cost about the
+ * same here even on the last page. Disk-based databases (PostgreSQL, MySQL, Oracle, SQL Server) have to read every
+ * skipped row, and there offset gets slower the deeper the page. Keyset costs the same on every page on all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerListBenchmark {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    private static final int PAGE_SIZE = 100;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"100000"})
+    private int customerCount;
+
+    /**
+     * Which page to read, starting at 1. With 100,000 customers, page 1000 is the last one.
+     */
+    @Param({"1", "1000"})
+    private int page;
+
+    private ConfigurableApplicationContext context;
+
+    private CustomerRepository customerRepository;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.startApplication(WebApplicationType.NONE);
+        BenchmarkSupport.seedCustomers(context, customerCount);
+        customerRepository = context.getBean(CustomerRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CustomerSummary> listCustomers_keyset() {
+        // The seeded customer IDs are 1 to customerCount, so the previous page ended at this ID
+        int after = (page - 1) * PAGE_SIZE;
+        return customerRepository.findSummariesAfter(after, PageRequest.of(0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<CustomerSummary> listCustomers_offset() {
+        return customerRepository.findSummariesAfter(0, PageRequest.of(page - 1, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<Customer> listCustomers_findAll() {
+        return customerRepository.findAll(PageRequest.of(page - 1, PAGE_SIZE, Sort.by("customerId")));
+    }
+
+}
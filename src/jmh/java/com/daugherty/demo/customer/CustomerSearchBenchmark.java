@@ -0,0 +1,80 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a customer search by name takes in a table of a million customers, with and without the search
+ * indexes that the Customer entity declares.
+ * <p>
+ * DEVELOPER NOTE: With indexed=false, the indexes are dropped after the database is filled, and the very same queries
+ * have to read every row of the table to find the few that match. The seeded names are "Customer 1" to "Customer
+ * 1000000", so the exact search finds one customer, and the prefix search ("customer 50000") finds eleven of them
+ * (50000 and 500000 to 500009).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerSearchBenchmark {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    private static final int PAGE_SIZE = 100;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"1000000"})
+    private int customerCount;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private ConfigurableApplicationContext context;
+
+    private CustomerRepository customerRepository;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.startApplication(WebApplicationType.NONE);
+        BenchmarkSupport.seedCustomers(context, customerCount);
+        if (!indexed) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+            jdbcTemplate.execute("drop index IX_CUSTOMERS_FULL_NAME_LC");
+            jdbcTemplate.execute("drop index IX_CUSTOMERS_STREET_ADDR_LC");
+        }
+        customerRepository = context.getBean(CustomerRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CustomerMatch> searchByFullName_exact() {
+        return customerRepository.findMatchesByFullName("customer 500000", Integer.MIN_VALUE,
+                PageRequest.of(0, PAGE_SIZE + 1));
+    }
+
+    @Benchmark
+    public List<CustomerMatch> searchByFullName_prefix() {
+        return customerRepository.findMatchesByFullNameLike("customer 50000%", "", Integer.MIN_VALUE,
+                PageRequest.of(0, PAGE_SIZE + 1));
+    }
+
+}
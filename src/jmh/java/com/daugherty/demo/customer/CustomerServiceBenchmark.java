@@ -0,0 +1,77 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BenchmarkSupport;
+import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.exception.BusinessException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for CustomerService.getCustomer against an H2 database filled with customers.
+ * <p>
+ * DEVELOPER NOTE: getCustomer reads through the customer cache, so there are two very different numbers to know: how
+ * fast a lookup is when the customer is already cached, and how fast it is when the database has to be asked. The
+ * "uncached" benchmark evicts the customer first so that every call goes all the way to the database. Each call picks a
+ * random customer, so the benchmark doesn't just measure one hot row over and over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"10000"})
+    private int customerCount;
+
+    private ConfigurableApplicationContext context;
+
+    private CustomerService customerService;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() throws BusinessException {
+        context = BenchmarkSupport.startApplication(WebApplicationType.NONE);
+        BenchmarkSupport.seedCustomers(context, customerCount);
+        customerService = context.getBean(CustomerService.class);
+
+        // Warm the cache, so that the cached benchmark never has to go to the database
+        for (int customerId = 1; customerId <= customerCount; customerId++) {
+            customerService.getCustomer(customerId);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Customer getCustomer_cached() throws BusinessException {
+        return customerService.getCustomer(randomCustomerId());
+    }
+
+    @Benchmark
+    public Customer getCustomer_uncached() throws BusinessException {
+        Integer customerId = randomCustomerId();
+        customerService.invalidateCustomer(customerId);
+        return customerService.getCustomer(customerId);
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private Integer randomCustomerId() {
+        return ThreadLocalRandom.current().nextInt(1, customerCount + 1);
+    }
+
+}
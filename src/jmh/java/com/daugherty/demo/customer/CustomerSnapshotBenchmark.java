@@ -0,0 +1,62 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BenchmarkSupport;
+import com.daugherty.demo.customer.entity.Customer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for reading a customer and its order numbers from the CustomerSnapshot, at different table sizes.
+ * <p>
+ * DEVELOPER NOTE: The time per read should barely change from 100,000 to 1,000,000 customers (a binary search is only
+ * three steps longer). Run with "-prof gc" to see that each read allocates the same few objects no matter how many
+ * customers there are, and that the snapshot itself doesn't add to the garbage collector's work: compare the
+ * "gc.time" of the two sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerSnapshotBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"100000", "1000000"})
+    private int customerCount;
+
+    private ConfigurableApplicationContext context;
+
+    private CustomerSnapshot customerSnapshot;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.startApplication(WebApplicationType.NONE);
+        BenchmarkSupport.seedCustomers(context, customerCount);
+        customerSnapshot = context.getBean(CustomerSnapshot.class);
+        customerSnapshot.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void getCustomer(Blackhole blackhole) {
+        int customerId = ThreadLocalRandom.current().nextInt(1, customerCount + 1);
+        Customer customer = customerSnapshot.getCustomer(customerId);
+        blackhole.consume(customer);
+        blackhole.consume(customerSnapshot.getOrderNumbers(customerId));
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.entity.Customer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for translating between Customer entities and CustomerDTO contracts.
+ * <p>
+ * DEVELOPER NOTE: A JMH benchmark looks a lot like a unit test. The @State class holds the "GIVEN" (built once, in
+ * the @Setup method, and not measured), and each @Benchmark method is a "WHEN" that JMH calls millions of times.
+ * Always return the result of the measured work. If it's thrown away, the JIT compiler is smart enough to notice that
+ * nothing uses it and will skip the work entirely... and the benchmark will measure nothing at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerTranslatorBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private CustomerTranslator customerTranslator;
+
+    private Customer customer;
+
+    private List<String> orderNumbers;
+
+    private CustomerDTO customerDto;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        customerTranslator = new CustomerTranslator();
+
+        customer = new Customer();
+        customer.setCustomerId(42);
+        customer.setFullName("Jane Doe");
+        customer.setStreetAddress("1 Main Street");
+        customer.setLastReadTimestamp(ZonedDateTime.now());
+        orderNumbers = Arrays.asList("00000042-01", "00000042-02", "00000042-03");
+
+        customerDto = customerTranslator.toContract(customer, orderNumbers);
+    }
+
+    @Benchmark
+    public CustomerDTO toContract() {
+        return customerTranslator.toContract(customer, orderNumbers);
+    }
+
+    @Benchmark
+    public Customer toEntity() {
+        return customerTranslator.toEntity(customerDto);
+    }
+
+}
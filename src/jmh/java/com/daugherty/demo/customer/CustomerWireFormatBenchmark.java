@@ -0,0 +1,122 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerBatchResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.contract.CustomerLookupDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON with the two binary formats that the customer API can also answer in, Smile and CBOR: how long it takes
+ * to encode and decode a response, and how big it is. "single" is the body of GET /v1/customers/{customerId}, and
+ * "batch" is the body of a POST /v1/customers:batchGet for BATCH_SIZE customers that were all found.
+ * <p>
+ * DEVELOPER NOTE: Each ObjectMapper is built by Jackson2ObjectMapperBuilder, which is what BinaryFormatConfiguration and
+ * Spring Boot use for the message converters, so these are the same Jackson settings as the real responses. The size
+ * of each payload isn't a time, so JMH can't report it; it is printed once per trial, in the output of the benchmark
+ * run ("payload size: ..."). Decoding is what the callers of this API pay for, so that is the number to compare first.
+ * <p>
+ * The lastReadTimestamp and the order numbers are strings in the contract, so they are strings in every format, and
+ * the binary formats only save their quotes and escaping. Where Smile pulls ahead on a batch is that it writes each
+ * property name once per document instead of once per customer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerWireFormatBenchmark {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    private static final int BATCH_SIZE = 100;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"single", "batch"})
+    private String payload;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private Object response;
+
+    private byte[] encodedResponse;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = newObjectMapper(format);
+        if ("single".equals(payload)) {
+            response = newCustomerDto(42);
+        } else {
+            List<CustomerLookupDTO> results = new ArrayList<>(BATCH_SIZE);
+            for (int customerId = 1; customerId <= BATCH_SIZE; customerId++) {
+                results.add(CustomerLookupDTO.builder()
+                        .id(customerId)
+                        .status("FOUND")
+                        .customer(newCustomerDto(customerId))
+                        .build());
+            }
+            response = CustomerBatchResponseDTO.builder().results(results).build();
+        }
+        writer = objectMapper.writerFor(response.getClass());
+        reader = objectMapper.readerFor(response.getClass());
+        encodedResponse = writer.writeValueAsBytes(response);
+
+        System.out.printf("%npayload size: %s %s = %,d bytes%n", format, payload, encodedResponse.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return reader.readValue(encodedResponse);
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static ObjectMapper newObjectMapper(String format) {
+        switch (format) {
+            case "smile":
+                return Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.cbor().build();
+            default:
+                return Jackson2ObjectMapperBuilder.json().build();
+        }
+    }
+
+    private static CustomerDTO newCustomerDto(int customerId) {
+        String prefix = String.format("%08d-", customerId);
+        return CustomerDTO.builder()
+                .id(customerId)
+                .fullName("Customer " + customerId)
+                .lastReadTimestamp(ZonedDateTime.now())
+                .orderNumbers(Arrays.asList(prefix + "01", prefix + "02", prefix + "03"))
+                .build();
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.daugherty.demo.customer;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.daugherty.demo.RestExceptionHandler;
+import com.daugherty.demo.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for rejecting an invalid customer ID: from the service throwing a BusinessException to the bytes of the
+ * 400 response body.
+ * <p>
+ * DEVELOPER NOTE: "before" repeats what the code used to do: String.format the message, throw a BusinessException with
+ * a full stack trace, and serialize a java.lang.Error (stack trace and all) as the body. "after" runs the real
+ * CustomerService and RestExceptionHandler. The interesting number is allocation per request, so run this benchmark
+ * with the GC profiler and compare the "gc.alloc.rate.norm" (bytes per operation) lines:
+ * <p>
+ * gradle jmh -PjmhArgs="InvalidCustomerIdBenchmark -prof gc"
+ * <p>
+ * The cost of a stack trace grows with the depth of the stack, and a request thread in a Spring web application is
+ * more than a hundred frames deep by the time it reaches the service. The stackDepth parameter recreates that. The
+ * old WARN log with its stack trace isn't included in "before" (writing to the console would drown out everything else),
+ * so the real difference is even larger than what's measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvalidCustomerIdBenchmark {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Param({"0", "120"})
+    private int stackDepth;
+
+    private Integer customerId;
+
+    private CustomerService customerService;
+
+    private RestExceptionHandler restExceptionHandler;
+
+    private WebRequest webRequest;
+
+    private ObjectMapper objectMapper;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Setup
+    public void setup() {
+        // Only the rate-limited warnings are logged, as in production
+        ((Logger) LoggerFactory.getLogger(RestExceptionHandler.class)).setLevel(Level.INFO);
+
+        customerId = -42;
+        customerService = new CustomerService(null, null, null, null, null, null, null, null, null); // An invalid ID never reaches any of them
+        restExceptionHandler = new RestExceptionHandler();
+        webRequest = new ServletWebRequest(new MockHttpServletRequest());
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public byte[] before() throws JsonProcessingException {
+        return atDepth(stackDepth, () -> {
+            BusinessException ex = new BusinessException(String.format("Invalid customer ID [%s]", customerId));
+            return objectMapper.writeValueAsBytes(new Error(ex.getMessage(), ex));
+        });
+    }
+
+    @Benchmark
+    public byte[] after() throws JsonProcessingException {
+        return atDepth(stackDepth, () -> {
+            try {
+                customerService.getCustomer(customerId);
+                throw new IllegalStateException("Expected a BusinessException");
+            } catch (BusinessException ex) {
+                return objectMapper.writeValueAsBytes(restExceptionHandler.handleBusinessException(ex, webRequest).getBody());
+            }
+        });
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * The work that is measured. DEVELOPER NOTE: Needed because java.util.function.Supplier can't throw exceptions.
+     */
+    private interface Work {
+        byte[] run() throws JsonProcessingException;
+    }
+
+    /**
+     * Run the given work the given number of stack frames deeper than the caller.
+     */
+    private static byte[] atDepth(int depth, Work work) throws JsonProcessingException {
+        return (depth <= 0) ? work.run() : atDepth(depth - 1, work);
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.daugherty.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the AppCDS (Application Class-Data Sharing) archive of the application with a training run, and then measures
+ * how long the application takes to start, and to answer its first request, with and without the archive.
+ * <p>
+ * DEVELOPER NOTE: Most of a cold start is the JVM loading, parsing and verifying the classes of Spring, Hibernate,
+ * Jackson and Tomcat, and doing it again on every start. An AppCDS archive is a file of those classes, already parsed
+ * and verified, that the JVM maps straight into memory. The JVM writes it at exit (-XX:ArchiveClassesAtExit) with
+ * every class that was loaded, so the training run has to load the classes that production will: it starts the
+ * application, seeds customers through the bulk API (the database is H2, in memory, inside the application), and sends
+ * the kinds of request that real clients send. Then it stops the application, which writes the archive.
+ * <p>
+ * The application runs in its own JVM, from the "cds" layout that Gradle builds: a plain jar of the application's
+ * classes (not the Spring Boot jar, whose jars-inside-a-jar can't be archived) with its dependencies in lib/. The
+ * archive only works with exactly that class path and the same JDK, which is why it is shipped in the same zip. The
+ * archive needs JDK 13 or newer to be made and used.
+ * <p>
+ * For the measurements, each run is a new JVM. "Startup" is from launching the JVM until Tomcat accepts a connection,
+ * and "first request" is how long the first GET /v1/customers/{customerId} then takes (lazy work lands there). The
+ * runs with and without the archive take turns, so that anything else going on on the machine hits both alike.
+ * <p>
+ * Options (all optional): --appDir (build/cds), --jar (MockitoDemo.jar), --archive (MockitoDemo.jsa), --javaHome (the
+ * JDK running this), --port (18080), --customers (1000), --runs (5), --profiles (none) and --output
+ * (build/reports/cds/startup.json).
+ */
+public class CdsTrainingRun {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    private static final long START_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final File appDir;
+    private final String jar;
+    private final String java;
+    private final int port;
+    private final String profiles;
+    private final String baseUrl;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    private CdsTrainingRun(Map<String, String> options) {
+        appDir = new File(options.getOrDefault("appDir", "build/cds")).getAbsoluteFile();
+        jar = options.getOrDefault("jar", "MockitoDemo.jar");
+        java = new File(options.getOrDefault("javaHome", System.getProperty("java.home")), "bin/java").getPath();
+        port = Integer.parseInt(options.getOrDefault("port", "18080"));
+        profiles = options.getOrDefault("profiles", "");
+        baseUrl = "http://localhost:" + port + "/v1/customers";
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTestSupport.parseOptions(args);
+        CdsTrainingRun cds = new CdsTrainingRun(options);
+        File archive = new File(cds.appDir, options.getOrDefault("archive", "MockitoDemo.jsa"));
+        int customers = Integer.parseInt(options.getOrDefault("customers", "1000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        File output = new File(options.getOrDefault("output", "build/reports/cds/startup.json"));
+        output.getAbsoluteFile().getParentFile().mkdirs();
+
+        // Training run
+        archive.delete();
+        cds.train(archive, customers);
+        if (!archive.isFile()) {
+            throw new IllegalStateException("The JVM did not write " + archive + " (AppCDS needs JDK 13 or newer)");
+        }
+        System.out.println("Wrote " + archive + " (" + (archive.length() / (1024 * 1024)) + " MB)");
+
+        // Measurements, taking turns
+        Map<String, List<Long>> startupMillis = new LinkedHashMap<>();
+        Map<String, List<Long>> firstRequestMillis = new LinkedHashMap<>();
+        for (String mode : Arrays.asList("withoutCds", "withCds")) {
+            startupMillis.put(mode, new ArrayList<>());
+            firstRequestMillis.put(mode, new ArrayList<>());
+        }
+        for (int run = 0; run < runs; run++) {
+            for (String mode : startupMillis.keySet()) {
+                String jvmOption = mode.equals("withCds") ? "-XX:SharedArchiveFile=" + archive.getPath() : null;
+                long[] times = cds.measure(jvmOption);
+                startupMillis.get(mode).add(times[0]);
+                firstRequestMillis.get(mode).add(times[1]);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("archive", archive.getPath());
+        report.put("archiveBytes", archive.length());
+        report.put("runs", runs);
+        for (String mode : startupMillis.keySet()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("startupMedianMillis", median(startupMillis.get(mode)));
+            result.put("firstRequestMedianMillis", median(firstRequestMillis.get(mode)));
+            result.put("startupMillis", startupMillis.get(mode));
+            result.put("firstRequestMillis", firstRequestMillis.get(mode));
+            report.put(mode, result);
+            System.out.println(mode + ": " + result);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * Start the application with the JVM option that writes the archive at exit, send it a representative mix of
+     * requests, and stop it.
+     */
+    private void train(File archive, int customers) throws IOException, InterruptedException {
+        Process process = launch("-XX:ArchiveClassesAtExit=" + archive.getPath());
+        try {
+            awaitPort(process);
+
+            StringBuilder ndjson = new StringBuilder();
+            for (int customerId = 1; customerId <= customers; customerId++) {
+                ndjson.append("{\"id\":").append(customerId).append(",\"fullName\":\"Customer ").append(customerId)
+                        .append("\"}\n");
+            }
+            expect(HttpURLConnection.HTTP_OK, LoadTestSupport.post(baseUrl + ":bulk",
+                    "application/x-ndjson", ndjson.toString()));
+            for (int customerId = 1; customerId <= Math.min(customers, 100); customerId++) {
+                expect(HttpURLConnection.HTTP_OK, LoadTestSupport.get(baseUrl + "/" + customerId));
+                expect(HttpURLConnection.HTTP_OK, LoadTestSupport.get(baseUrl + "/" + customerId + "/orders"));
+            }
+            expect(HttpURLConnection.HTTP_OK,
+                    LoadTestSupport.get("http://localhost:" + port + "/v1/async/customers/1"));
+            expect(HttpURLConnection.HTTP_NOT_FOUND, LoadTestSupport.get(baseUrl + "/" + (customers + 1)));
+            expect(HttpURLConnection.HTTP_BAD_REQUEST, LoadTestSupport.get(baseUrl + "/0"));
+            expect(HttpURLConnection.HTTP_OK, LoadTestSupport.get(baseUrl + "?limit=50"));
+            expect(HttpURLConnection.HTTP_OK, LoadTestSupport.get(baseUrl + "/search?fullName=customer&limit=10"));
+            expect(HttpURLConnection.HTTP_OK, LoadTestSupport.post(baseUrl + ":batchGet",
+                    "application/json", "{\"ids\":[1,2,3," + (customers + 1) + ",0]}"));
+            expect(HttpURLConnection.HTTP_OK, LoadTestSupport.get(baseUrl + "/export"));
+        } finally {
+            stop(process);
+        }
+    }
+
+    /**
+     * Start the application with the given JVM option (or none), and return how long it took until Tomcat accepted a
+     * connection, and how long the first request then took, in milliseconds.
+     */
+    private long[] measure(String jvmOption) throws IOException, InterruptedException {
+        long launchedAt = System.nanoTime();
+        Process process = launch(jvmOption);
+        try {
+            awaitPort(process);
+            long listeningAt = System.nanoTime();
+            LoadTestSupport.get(baseUrl + "/1");
+            long answeredAt = System.nanoTime();
+            return new long[]{TimeUnit.NANOSECONDS.toMillis(listeningAt - launchedAt),
+                    TimeUnit.NANOSECONDS.toMillis(answeredAt - listeningAt)};
+        } finally {
+            stop(process);
+        }
+    }
+
+    private Process launch(String jvmOption) throws IOException {
+        List<String> command = new ArrayList<>(Collections.singletonList(java));
+        if (jvmOption != null) {
+            command.add(jvmOption);
+        }
+        command.addAll(Arrays.asList("-jar", jar,
+                "--server.port=" + port,
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        if (!profiles.isEmpty()) {
+            command.add("--spring.profiles.active=" + profiles);
+        }
+        return new ProcessBuilder(command).directory(appDir).inheritIO().start();
+    }
+
+    /**
+     * Wait until the application accepts connections on its port, or fail if it exits or takes too long.
+     */
+    private void awaitPort(Process process) throws InterruptedException {
+        long deadline = System.nanoTime() + START_TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with status " + process.exitValue());
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 100);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(5);
+            }
+        }
+        throw new IllegalStateException("The application did not start listening on port " + port);
+    }
+
+    /**
+     * DEVELOPER NOTE: destroy() sends SIGTERM (on Linux and macOS), which lets the JVM exit normally: Spring closes the
+     * context, and the JVM writes the archive, if it was asked to, on its way out.
+     */
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(1, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+        }
+    }
+
+    private static void expect(int expectedStatus, int status) {
+        if (status != expectedStatus) {
+            throw new IllegalStateException("Expected HTTP status " + expectedStatus + ", but got " + status);
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+}
@@ -0,0 +1,354 @@
+package com.daugherty.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Finds the request rate at which GET /v1/customers/{customerId} saturates, by sending requests at a series of fixed
+ * rates and measuring the latency at each one.
+ * <p>
+ * DEVELOPER NOTE: This is an "open model" (constant arrival rate) load test. Requests are *scheduled* at a fixed rate,
+ * whether or not the earlier ones have been answered, the way that independent users arrive at a real service. A
+ * closed model test like VirtualThreadLoadTest waits for each answer before it sends the next request, so when the
+ * application stalls, the test politely stops sending, and the stall hides itself: a handful of slow requests are
+ * measured instead of the thousands that real users would have been stuck in. This is called "coordinated omission".
+ * Here every request's latency is measured from the time it was *scheduled* to be sent, not from when a client thread
+ * got around to sending it, so time spent waiting behind a stall is counted. Both are recorded: "latency" is what a
+ * user would see, "serviceTime" is only the time from sending to the answer.
+ * <p>
+ * Latencies go into HdrHistogram Recorders, which many threads can write to at once without locks, and which keep
+ * every percentile accurate to three significant digits. For each rate, the full percentile distribution is written
+ * next to the JSON results (constant-rate-RATE.hgrm), which can be plotted at
+ * http://hdrhistogram.github.io/HdrHistogram/plotFiles.html.
+ * <p>
+ * Traffic is a mix of hits (existing customers, 200), misses (customers that don't exist, 404) and invalid IDs (zero or
+ * negative, 400), by weight. Any other status counts as an error. The rates are run from lowest to highest, and the run
+ * stops at the first saturated rate: one where the application answered less than 95% of the requested rate, or the
+ * 99th percentile latency was over the target.
+ * <p>
+ * Everything runs on localhost: the application is started in this JVM on a random port, on its in-memory H2 database
+ * with seeded customers. Run it with:
+ * <p>
+ * gradle constantRateLoadTest -PloadTestArgs="--rates=500,1000,2000,4000 --seconds=30"
+ * <p>
+ * Options (all optional): --rates (250,500,1000,2000,4000), --seconds (20), --warmupSeconds (5), --hitWeight (80),
+ * --missWeight (15), --invalidWeight (5), --customers (10000), --ordersPerCustomer (3), --clientThreads (500),
+ * --p99TargetMillis (100), --profiles (perf) and --output (build/reports/loadtest/constant-rate.json).
+ */
+public class ConstantRateLoadTest {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * Latencies are recorded in microseconds, up to this many (one minute).
+     */
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * How long requests may still be answered after the last one was scheduled, before they count as unanswered.
+     */
+    private static final int DRAIN_SECONDS = 30;
+
+    /**
+     * The states of a request: not answered yet, answered (and recorded), or given up on at the drain deadline (and
+     * recorded as unanswered).
+     */
+    private static final int PENDING = 0;
+    private static final int ANSWERED = 1;
+    private static final int GIVEN_UP = 2;
+
+    /**
+     * The least fraction of the requested rate that must be answered for a rate not to count as saturated.
+     */
+    private static final double MINIMUM_THROUGHPUT_FRACTION = 0.95;
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * The kinds of request in the traffic mix, and the status that each one should get.
+     */
+    private enum RequestType {
+        HIT(HttpURLConnection.HTTP_OK),
+        MISS(HttpURLConnection.HTTP_NOT_FOUND),
+        INVALID(HttpURLConnection.HTTP_BAD_REQUEST);
+
+        private final int expectedStatus;
+
+        RequestType(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+    }
+
+    /**
+     * Picks the type of each request at random, in proportion to the weights.
+     */
+    private static class TrafficMix {
+        private final int hitWeight;
+        private final int missWeight;
+        private final int totalWeight;
+
+        TrafficMix(int hitWeight, int missWeight, int invalidWeight) {
+            if ((hitWeight < 0) || (missWeight < 0) || (invalidWeight < 0)
+                    || (hitWeight + missWeight + invalidWeight == 0)) {
+                throw new IllegalArgumentException("Weights must not be negative, and must not all be zero");
+            }
+            this.hitWeight = hitWeight;
+            this.missWeight = missWeight;
+            this.totalWeight = hitWeight + missWeight + invalidWeight;
+        }
+
+        RequestType next() {
+            int value = ThreadLocalRandom.current().nextInt(totalWeight);
+            if (value < hitWeight) {
+                return RequestType.HIT;
+            }
+            return (value < hitWeight + missWeight) ? RequestType.MISS : RequestType.INVALID;
+        }
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTestSupport.parseOptions(args);
+        List<Integer> rates = new ArrayList<>();
+        for (String rate : options.getOrDefault("rates", "250,500,1000,2000,4000").split(",")) {
+            rates.add(Integer.parseInt(rate.trim()));
+        }
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", "5"));
+        TrafficMix mix = new TrafficMix(
+                Integer.parseInt(options.getOrDefault("hitWeight", "80")),
+                Integer.parseInt(options.getOrDefault("missWeight", "15")),
+                Integer.parseInt(options.getOrDefault("invalidWeight", "5")));
+        int customers = Integer.parseInt(options.getOrDefault("customers", "10000"));
+        int ordersPerCustomer = Integer.parseInt(options.getOrDefault("ordersPerCustomer", "3"));
+        int clientThreads = Integer.parseInt(options.getOrDefault("clientThreads", "500"));
+        double p99TargetMillis = Double.parseDouble(options.getOrDefault("p99TargetMillis", "100"));
+        String profiles = options.getOrDefault("profiles", "perf");
+        File output = new File(options.getOrDefault("output", "build/reports/loadtest/constant-rate.json"));
+        output.getAbsoluteFile().getParentFile().mkdirs();
+
+        // DEVELOPER NOTE: HttpURLConnection only keeps 5 idle connections per server by default. Without this, most
+        // requests would open a brand new TCP connection, and the test would mostly measure that.
+        System.setProperty("http.maxConnections", String.valueOf(clientThreads));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        Integer saturationRate = null;
+        ExecutorService clients = Executors.newFixedThreadPool(clientThreads, runnable -> {
+            Thread thread = new Thread(runnable, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ConfigurableApplicationContext context = startApplication(profiles, clientThreads)) {
+            LoadTestSupport.seedCustomers(context, customers, ordersPerCustomer);
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                    + "/v1/customers/";
+
+            for (int rate : rates) {
+                run(clients, baseUrl, customers, mix, rate, warmupSeconds); // Warm up; not counted
+                Map<String, Object> result = run(clients, baseUrl, customers, mix, rate, seconds);
+                writePercentileDistribution((Histogram) result.remove("histogram"),
+                        new File(output.getAbsoluteFile().getParentFile(), "constant-rate-" + rate + ".hgrm"));
+
+                boolean saturated = ((double) result.get("achievedRequestsPerSecond")
+                        < rate * MINIMUM_THROUGHPUT_FRACTION)
+                        || ((double) result.get("latencyP99Millis") > p99TargetMillis);
+                result.put("saturated", saturated);
+                results.add(result);
+                System.out.println(result);
+                if (saturated) {
+                    saturationRate = rate;
+                    break;
+                }
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        System.out.println((saturationRate == null)
+                ? "Not saturated at any of the rates " + rates
+                : "Saturated at " + saturationRate + " requests/second");
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("profiles", profiles);
+        report.put("p99TargetMillis", p99TargetMillis);
+        report.put("saturationRate", saturationRate);
+        report.put("results", results);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Properties are passed as command line arguments, which win over application.yml (the properties()
+     * of the builder are only defaults).
+     */
+    private static ConfigurableApplicationContext startApplication(String profiles, int clientThreads) {
+        return new SpringApplicationBuilder(Application.class)
+                .run("--server.port=0",
+                        "--server.tomcat.accept-count=" + clientThreads,
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--spring.profiles.active=" + profiles);
+    }
+
+    /**
+     * Send requests at the given rate for the given number of seconds, and return what happened.
+     * <p>
+     * DEVELOPER NOTE: One thread (this one) schedules the requests, and hands each one to the client threads with the
+     * time that it *should* have been sent. When every client thread is busy, requests wait in the executor's queue,
+     * and that wait is part of their latency, just as it would be for a real user. The schedule never slows down to
+     * wait for the application.
+     * <p>
+     * Stragglers get DRAIN_SECONDS after the last request was scheduled. A request that still hasn't been answered then
+     * is recorded with the latency that it had reached by then (it would only have been worse), so the slowest
+     * requests at saturation are never left out of the percentiles. Each request has a state, and whichever of the
+     * client thread and the deadline gets to change it first records it, so nothing is recorded twice. A given up
+     * request that is still waiting in the queue is never sent. Before this returns, every request of this run has
+     * finished one way or the other, so none of them are still queued or in flight when the next run starts.
+     */
+    private static Map<String, Object> run(ExecutorService clients, String baseUrl, int customers, TrafficMix mix,
+                                           int rate, int seconds) throws InterruptedException {
+        Recorder latency = new Recorder(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        Recorder serviceTime = new Recorder(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        Map<RequestType, LongAdder> counts = new EnumMap<>(RequestType.class);
+        for (RequestType type : RequestType.values()) {
+            counts.put(type, new LongAdder());
+        }
+        LongAdder completed = new LongAdder();
+        LongAdder finished = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        int requestCount = rate * seconds;
+        AtomicIntegerArray states = new AtomicIntegerArray(requestCount); // All PENDING
+        long start = System.nanoTime();
+        for (int i = 0; i < requestCount; i++) {
+            int request = i;
+            long scheduledAt = start + (i * intervalNanos);
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            RequestType type = mix.next();
+            String url = baseUrl + customerId(type, customers);
+            clients.execute(() -> {
+                try {
+                    if (states.get(request) != PENDING) {
+                        return; // Given up on while it was still in the queue
+                    }
+                    long sentAt = System.nanoTime();
+                    int status = LoadTestSupport.get(url);
+                    long answeredAt = System.nanoTime();
+                    if (!states.compareAndSet(request, PENDING, ANSWERED)) {
+                        return; // Answered after the deadline; already recorded as unanswered
+                    }
+                    latency.recordValue(Math.min(toMicros(answeredAt - scheduledAt), HIGHEST_LATENCY_MICROS));
+                    serviceTime.recordValue(Math.min(toMicros(answeredAt - sentAt), HIGHEST_LATENCY_MICROS));
+                    counts.get(type).increment();
+                    if (status != type.expectedStatus) {
+                        errors.increment();
+                    }
+                    completed.increment();
+                } finally {
+                    finished.increment();
+                }
+            });
+        }
+        // Wait for the stragglers, but not forever
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+        while ((completed.sum() < requestCount) && (System.nanoTime() < drainDeadline)) {
+            Thread.sleep(10);
+        }
+        long givenUpAt = System.nanoTime();
+        long unanswered = 0;
+        for (int i = 0; i < requestCount; i++) {
+            if (states.compareAndSet(i, PENDING, GIVEN_UP)) {
+                long scheduledAt = start + (i * intervalNanos);
+                latency.recordValue(Math.min(toMicros(givenUpAt - scheduledAt), HIGHEST_LATENCY_MICROS));
+                unanswered++;
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        Histogram latencyHistogram = latency.getIntervalHistogram();
+        Histogram serviceTimeHistogram = serviceTime.getIntervalHistogram();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("targetRequestsPerSecond", rate);
+        result.put("achievedRequestsPerSecond", completed.sum() / elapsedSeconds);
+        result.put("requests", requestCount);
+        result.put("unanswered", unanswered);
+        result.put("errors", errors.sum());
+        for (RequestType type : RequestType.values()) {
+            result.put(type.name().toLowerCase() + "Requests", counts.get(type).sum());
+        }
+        result.put("latencyP50Millis", percentileMillis(latencyHistogram, 50));
+        result.put("latencyP90Millis", percentileMillis(latencyHistogram, 90));
+        result.put("latencyP99Millis", percentileMillis(latencyHistogram, 99));
+        result.put("latencyP999Millis", percentileMillis(latencyHistogram, 99.9));
+        result.put("latencyMaxMillis", latencyHistogram.getMaxValue() / 1000.0);
+        result.put("serviceTimeP50Millis", percentileMillis(serviceTimeHistogram, 50));
+        result.put("serviceTimeP99Millis", percentileMillis(serviceTimeHistogram, 99));
+        result.put("histogram", latencyHistogram);
+
+        // Let the requests that are still in flight finish (the queued ones end right away), before the next run
+        while (finished.sum() < requestCount) {
+            Thread.sleep(10);
+        }
+        return result;
+    }
+
+    /**
+     * Return a customer ID that should give the given type of request: an existing customer, one past the last
+     * existing customer, or zero or less.
+     */
+    private static int customerId(RequestType type, int customers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (type) {
+            case HIT:
+                return random.nextInt(1, customers + 1);
+            case MISS:
+                return random.nextInt(customers + 1, Integer.MAX_VALUE);
+            default:
+                return -random.nextInt(0, Integer.MAX_VALUE);
+        }
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static double percentileMillis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static void writePercentileDistribution(Histogram histogram, File file) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, 1000.0); // Microseconds to milliseconds
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.daugherty.demo;
+
+import com.daugherty.demo.customer.entity.Customer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared set-up for the load tests: command line options, filling the database with customers, and sending requests.
+ */
+final class LoadTestSupport {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * The status returned by get() when no response was received at all (refused, timed out, reset...).
+     */
+    static final int NO_RESPONSE = -1;
+
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    private LoadTestSupport() {
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return the "--name=value" command line arguments as a map of name to value. Anything else is ignored.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Insert customers with IDs 1 to customerCount, each with the given number of orders, with plain JDBC batches.
+     */
+    static void seedCustomers(ConfigurableApplicationContext context, int customerCount, int ordersPerCustomer) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+
+        List<Object[]> customers = new ArrayList<>(INSERT_BATCH_SIZE);
+        List<Object[]> orders = new ArrayList<>(INSERT_BATCH_SIZE * ordersPerCustomer);
+        for (int customerId = 1; customerId <= customerCount; customerId++) {
+            String fullName = "Customer " + customerId;
+            String streetAddress = customerId + " Main Street";
+            customers.add(new Object[]{customerId, fullName, streetAddress, 0L,
+                    Customer.toSearchKey(fullName), Customer.toSearchKey(streetAddress)});
+            for (int order = 1; order <= ordersPerCustomer; order++) {
+                orders.add(new Object[]{String.format("%08d-%02d", customerId, order), customerId});
+            }
+            if ((customers.size() == INSERT_BATCH_SIZE) || (customerId == customerCount)) {
+                jdbcTemplate.batchUpdate(
+                        "insert into CUSTOMERS (CUST_ID, CUST_FULL_NAME, CUST_STREET_ADDR, CUST_VERSION, "
+                                + "CUST_FULL_NAME_LC, CUST_STREET_ADDR_LC) values (?, ?, ?, ?, ?, ?)",
+                        customers);
+                if (!orders.isEmpty()) {
+                    jdbcTemplate.batchUpdate("insert into ORDERS (ORDER_NUMBER, CUST_ID) values (?, ?)", orders);
+                }
+                customers.clear();
+                orders.clear();
+            }
+        }
+    }
+
+    /**
+     * Send a GET request and read the whole response. Returns the HTTP status, or NO_RESPONSE.
+     */
+    static int get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            return readResponse(connection);
+        } catch (IOException e) {
+            return NO_RESPONSE;
+        }
+    }
+
+    /**
+     * Send a POST request with the given body and read the whole response. Returns the HTTP status, or NO_RESPONSE.
+     */
+    static int post(String url, String contentType, String body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            return readResponse(connection);
+        } catch (IOException e) {
+            return NO_RESPONSE;
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static int readResponse(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        try (InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[1024];
+            while ((body != null) && (body.read(buffer) != -1)) {
+                // Read to the end so that the connection can be reused
+            }
+        }
+        return status;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.daugherty.demo;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Makes the in-memory H2 database behave like a database across a network, by waiting a fixed time every time a
+ * connection is taken from the pool.
+ * <p>
+ * DEVELOPER NOTE: H2 answers in microseconds, so no thread ever waits on it for long, and no threading model looks
+ * better than another. A real database is a network round trip away. The wait happens *after* the connection has been
+ * taken from the pool, so the connection is held while "the query runs", like it would be for real. A BeanPostProcessor
+ * is called by Spring for every bean it creates; this one wraps the DataSource before JPA ever sees it.
+ */
+class SimulatedDatabaseLatency implements BeanPostProcessor {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final long latencyMillis;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    SimulatedDatabaseLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || (latencyMillis <= 0)) {
+            return bean;
+        }
+        return new DelegatingDataSource((DataSource) bean) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return connection;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.daugherty.demo;
+
+import com.daugherty.demo.config.VirtualThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the throughput of GET /v1/customers/{customerId} with Tomcat on platform threads and on virtual threads,
+ * under a large number of concurrent connections.
+ * <p>
+ * DEVELOPER NOTE: This is a "closed model" load test: every connection sends a request, waits for the answer, and then
+ * sends the next one, as fast as it can. The application is started twice in this JVM, once per mode, with the same
+ * settings otherwise: the customer cache is turned off so that every request reads the database, and the database is
+ * given a simulated network latency (see SimulatedDatabaseLatency). With Tomcat's default of 200 platform threads,
+ * at most 200 requests can be waiting on the database at once, no matter how many connections there are. With virtual
+ * threads, the database connection pool becomes the limit instead, which is why it is as large as the number of
+ * connections by default.
+ * <p>
+ * Run it on JDK 21 or newer (otherwise only the platform mode is measured):
+ * <p>
+ * gradle loadTest -PloadTestJavaHome=/path/to/jdk21 -PloadTestArgs="--connections=2000 --seconds=30"
+ * <p>
+ * Options (all optional): --connections (1000), --seconds (20), --warmupSeconds (5), --dbLatencyMillis (20),
+ * --dbPoolSize (same as connections), --customers (10000) and --output (build/reports/loadtest/virtual-threads.json).
+ */
+public class VirtualThreadLoadTest {
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTestSupport.parseOptions(args);
+        int connections = Integer.parseInt(options.getOrDefault("connections", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmupSeconds", "5"));
+        long dbLatencyMillis = Long.parseLong(options.getOrDefault("dbLatencyMillis", "20"));
+        int dbPoolSize = Integer.parseInt(options.getOrDefault("dbPoolSize", String.valueOf(connections)));
+        int customers = Integer.parseInt(options.getOrDefault("customers", "10000"));
+        File output = new File(options.getOrDefault("output", "build/reports/loadtest/virtual-threads.json"));
+
+        // DEVELOPER NOTE: HttpURLConnection only keeps 5 idle connections per server by default. Without this, most
+        // requests would open a brand new TCP connection, and the test would mostly measure that.
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        List<Boolean> modes = VirtualThreads.isSupported()
+                ? Arrays.asList(false, true)
+                : Collections.singletonList(false);
+        for (boolean virtualThreads : modes) {
+            try (ConfigurableApplicationContext context = startApplication(virtualThreads, dbLatencyMillis, dbPoolSize, connections)) {
+                LoadTestSupport.seedCustomers(context, customers, 0);
+                String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                        + "/v1/customers/";
+
+                run(baseUrl, customers, connections, warmupSeconds); // Warm up; not counted
+                Map<String, Object> result = run(baseUrl, customers, connections, seconds);
+                result.put("mode", virtualThreads ? "virtual" : "platform");
+                result.put("connections", connections);
+                result.put("dbLatencyMillis", dbLatencyMillis);
+                result.put("dbPoolSize", dbPoolSize);
+                results.add(result);
+                System.out.println(result);
+            }
+        }
+        if (!VirtualThreads.isSupported()) {
+            System.out.println("Java " + System.getProperty("java.version") + " has no virtual threads; "
+                    + "only platform threads were measured.");
+        }
+
+        output.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Results written to " + output.getAbsolutePath());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static ConfigurableApplicationContext startApplication(boolean virtualThreads, long dbLatencyMillis,
+                                                                   int dbPoolSize, int connections) {
+        return new SpringApplicationBuilder(Application.class)
+                .initializers(context -> context.getBeanFactory()
+                        .addBeanPostProcessor(new SimulatedDatabaseLatency(dbLatencyMillis)))
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.accept-count=" + connections,
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "customerCache.maximumSize=0",
+                        "spring.datasource.hikari.maximum-pool-size=" + dbPoolSize,
+                        "virtualThreads.enabled=" + virtualThreads)
+                .run();
+    }
+
+    /**
+     * Keep the given number of connections busy for the given number of seconds, and return what happened.
+     */
+    private static Map<String, Object> run(String baseUrl, int customers, int connections, int seconds)
+            throws InterruptedException {
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder latencyNanos = new LongAdder();
+        long deadline = System.nanoTime() + (seconds * 1_000_000_000L);
+        CountDownLatch done = new CountDownLatch(connections);
+
+        for (int i = 0; i < connections; i++) {
+            Thread client = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        int customerId = ThreadLocalRandom.current().nextInt(1, customers + 1);
+                        if (LoadTestSupport.get(baseUrl + customerId) == HttpURLConnection.HTTP_OK) {
+                            requests.increment();
+                            latencyNanos.add(System.nanoTime() - start);
+                        } else {
+                            errors.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + i);
+            client.setDaemon(true);
+            client.start();
+        }
+        done.await();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requestsPerSecond", requests.sum() / (double) seconds);
+        result.put("meanLatencyMillis", (requests.sum() == 0) ? 0 : latencyNanos.sum() / (requests.sum() * 1_000_000.0));
+        result.put("errors", errors.sum());
+        return result;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.daugherty.demo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 /**
  * DEVELOPER NOTE: This is the class that starts it all. It doesn't matter what the name of the class is... it doesn't
@@ -22,6 +23,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @see com.daugherty.demo.customer.CustomerController next!
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan // DEVELOPER NOTE: Finds @ConfigurationProperties classes (AppConfiguration) as beans
 public class Application {
 
     /**
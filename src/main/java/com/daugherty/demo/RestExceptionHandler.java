@@ -1,35 +1,212 @@
 package com.daugherty.demo;
 
+import com.daugherty.demo.contract.ErrorDTO;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.ChangesExpiredException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import com.daugherty.demo.exception.PreconditionRequiredException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * DEVELOPER NOTE: It's good form to always know what HTTP status code your controllers will return and under what
  * conditions. It's bad form to just return 200 for "good" and 500 for "bad". There's a rich collection of choices to
  * return specific HTTP responses depending on the result of the call.
+ * <p>
+ * Like CustomerController, this is part of the web path, so @Lazy(false) keeps it eager under the "fast-start" profile.
  *
  * @see <a href="https://www.restapitutorial.com/httpstatuscodes.html">https://www.restapitutorial.com/httpstatuscodes.html</a>
  */
 @ControllerAdvice
+@Lazy(false)
 @Slf4j
 public class RestExceptionHandler extends ResponseEntityExceptionHandler {
 
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * At most one BusinessException is logged at WARN level per this many milliseconds.
+     */
+    static final long WARNING_INTERVAL_MILLIS = 1_000;
+
+    /**
+     * DEVELOPER NOTE: A client that sends thousands of bad requests a second would otherwise fill the log (and burn the
+     * CPU) with thousands of identical warnings a second. Instead, one warning is logged per interval, and it says how
+     * many were skipped since the last one. Atomics are used (instead of synchronized) because this is called from
+     * many request threads at once, and losing a race here only means one extra or one fewer log line.
+     */
+    private final AtomicLong nextWarningMillis = new AtomicLong();
+    private final AtomicLong suppressedWarnings = new AtomicLong();
+
+    /**
+     * The name of the counter of exceptions that were turned into error responses. It is tagged with the kind of
+     * exception ("business", "precondition", "conflict", "expired", "overloaded", "timeout" or "unexpected") and its
+     * class name, which are both limited by the code, not by the input.
+     */
+    static final String ERRORS_METER = "api.errors";
+
+    static final String CONFLICT_MESSAGE = "It was changed by another request at the same time; read it again";
+
+    static final String DATABASE_BUSY_MESSAGE = "The service is too busy to reach its database; try again shortly";
+
+    static final Counter BUSINESS_ERRORS_COUNTER = Counter.builder(ERRORS_METER)
+            .description("Exceptions that were turned into error responses")
+            .tags("type", "business", "exception", BusinessException.class.getSimpleName())
+            .register(Metrics.globalRegistry);
+
+
     // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
 
     /**
      * Handles any BusinessExceptions that are thrown by controllers and returns a 400 - BAD REQUEST
+     * <p>
+     * DEVELOPER NOTE: A BusinessException means the client sent something wrong, not that this service is broken, so
+     * there is no stack trace worth logging. The warnings are rate limited; every rejection is still logged at DEBUG.
      */
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<Object> handleBusinessException(BusinessException ex, WebRequest webRequest) {
-        log.warn(ex.getMessage(), ex);
-        return handleExceptionInternal(ex, new Error(ex.getMessage(), ex), new HttpHeaders(), HttpStatus.BAD_REQUEST, webRequest);
+        BUSINESS_ERRORS_COUNTER.increment();
+        if (isWarningAllowed()) {
+            long suppressed = suppressedWarnings.getAndSet(0);
+            log.warn("Rejected request: {} ({} similar warnings suppressed)", ex.getMessage(), suppressed);
+        } else {
+            suppressedWarnings.incrementAndGet();
+            log.debug("Rejected request: {}", ex.getMessage());
+        }
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.BAD_REQUEST, ex), new HttpHeaders(), HttpStatus.BAD_REQUEST, webRequest);
+    }
+
+    /**
+     * Handles a change that was based on an old version of what it changes, and returns a 412 - PRECONDITION FAILED
+     * <p>
+     * DEVELOPER NOTE: This is a BusinessException too, but Spring picks the handler for the most specific exception
+     * class, so it comes here rather than to handleBusinessException(). The client's copy is out of date; it should
+     * read it again (for the new ETag) and decide whether its change still makes sense.
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex,
+                                                                    WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "precondition", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Rejected change: {}", ex.getMessage());
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.PRECONDITION_FAILED, ex), new HttpHeaders(),
+                HttpStatus.PRECONDITION_FAILED, webRequest);
+    }
+
+    /**
+     * Handles a change that didn't say which version it was based on, and returns a 428 - PRECONDITION REQUIRED
+     */
+    @ExceptionHandler(PreconditionRequiredException.class)
+    public ResponseEntity<Object> handlePreconditionRequiredException(PreconditionRequiredException ex,
+                                                                      WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "precondition", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Rejected change: {}", ex.getMessage());
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.PRECONDITION_REQUIRED, ex), new HttpHeaders(),
+                HttpStatus.PRECONDITION_REQUIRED, webRequest);
+    }
+
+    /**
+     * Handles a request for changes that are no longer kept, and returns a 410 - GONE
+     */
+    @ExceptionHandler(ChangesExpiredException.class)
+    public ResponseEntity<Object> handleChangesExpiredException(ChangesExpiredException ex, WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "expired", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Rejected request for changes: {}", ex.getMessage());
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.GONE, ex), new HttpHeaders(), HttpStatus.GONE,
+                webRequest);
+    }
+
+    /**
+     * Handles a change that lost a race with another change of the same thing, and returns a 409 - CONFLICT
+     * <p>
+     * DEVELOPER NOTE: Both changes passed the If-Match check, but the other one was written first, so the database
+     * found no row at the version that this one was based on (see CustomerService.updateCustomer()). Nothing was
+     * changed. It's the same situation as a 412, found a moment later, so the client should do the same thing.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex,
+                                                                          WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "conflict", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Conflicting change: {}", ex.getMessage());
+        ErrorDTO error = ErrorDTO.builder()
+                .status(HttpStatus.CONFLICT.value())
+                .error(HttpStatus.CONFLICT.getReasonPhrase())
+                .message(CONFLICT_MESSAGE) // Hibernate's message names our entity classes
+                .build();
+        return handleExceptionInternal(ex, error, new HttpHeaders(), HttpStatus.CONFLICT, webRequest);
+    }
+
+    /**
+     * Handles work that was turned away because a bounded thread pool was full, and returns a 503 - SERVICE UNAVAILABLE
+     * <p>
+     * DEVELOPER NOTE: The Retry-After header tells well-behaved clients (and load balancers) to back off for a moment
+     * instead of retrying right away and making the overload worse.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Object> handleRejectedExecutionException(RejectedExecutionException ex, WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "overloaded", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Rejected request: {}", ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.SERVICE_UNAVAILABLE, ex), headers, HttpStatus.SERVICE_UNAVAILABLE, webRequest);
+    }
+
+    /**
+     * Handles a request that gave up waiting for a free database connection, and returns a 503 - SERVICE UNAVAILABLE
+     * with a Retry-After header, like a full thread pool. Any other failure to reach the database is a 500.
+     * <p>
+     * DEVELOPER NOTE: When every connection in the pool is in use, Hikari makes a request wait up to
+     * spring.datasource.hikari.connection-timeout for one, and then throws a SQLTransientConnectionException. Spring
+     * wraps it in a CannotCreateTransactionException if a transaction was being started, or in a
+     * DataAccessResourceFailureException (JPA) or TransientDataAccessResourceException (JDBC) if it wasn't. So the
+     * cause chain is what tells an overloaded pool apart from a database that is down. The client gets a fixed message,
+     * because Hikari's names the pool and its settings.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class,
+            TransientDataAccessResourceException.class})
+    public ResponseEntity<Object> handleConnectionUnavailableException(NestedRuntimeException ex,
+                                                                       WebRequest webRequest) {
+        if (!ex.contains(SQLTransientConnectionException.class)) {
+            return handleGenericException(ex, webRequest);
+        }
+        Metrics.counter(ERRORS_METER, "type", "overloaded", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("No database connection was free: {}", ex.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        ErrorDTO error = ErrorDTO.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error(HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase())
+                .message(DATABASE_BUSY_MESSAGE)
+                .build();
+        return handleExceptionInternal(ex, error, headers, HttpStatus.SERVICE_UNAVAILABLE, webRequest);
+    }
+
+    /**
+     * Handles work that took too long, and returns a 504 - GATEWAY TIMEOUT
+     */
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<Object> handleTimeoutException(TimeoutException ex, WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "timeout", "exception", ex.getClass().getSimpleName()).increment();
+        log.debug("Timed out request: {}", ex.getMessage());
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.GATEWAY_TIMEOUT, ex), new HttpHeaders(), HttpStatus.GATEWAY_TIMEOUT, webRequest);
     }
 
     /**
@@ -38,8 +215,46 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
      */
     @ExceptionHandler(RuntimeException.class)
     protected ResponseEntity<Object> handleGenericException(RuntimeException ex, WebRequest webRequest) {
+        Metrics.counter(ERRORS_METER, "type", "unexpected", "exception", ex.getClass().getSimpleName()).increment();
         log.error(ex.getMessage(), ex);
-        return handleExceptionInternal(ex, new Error(ex.getMessage(), ex), new HttpHeaders(), HttpStatus.INTERNAL_SERVER_ERROR, webRequest);
+        return handleExceptionInternal(ex, toErrorDto(HttpStatus.INTERNAL_SERVER_ERROR, ex), new HttpHeaders(), HttpStatus.INTERNAL_SERVER_ERROR, webRequest);
+    }
+
+    /**
+     * DEVELOPER NOTE: The parent class handles Spring's own exceptions (for example a customer ID that isn't a number)
+     * and returns them without a body. This makes sure that those responses get the same ErrorDTO body as ours.
+     */
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(Exception ex, Object body, HttpHeaders headers,
+                                                             HttpStatus status, WebRequest webRequest) {
+        return super.handleExceptionInternal(ex, (body == null) ? toErrorDto(status, ex) : body, headers, status, webRequest);
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * Return true if a warning may be logged now, which is at most once per WARNING_INTERVAL_MILLIS.
+     */
+    boolean isWarningAllowed() {
+        long now = currentTimeMillis();
+        long next = nextWarningMillis.get();
+        return (now >= next) && nextWarningMillis.compareAndSet(next, now + WARNING_INTERVAL_MILLIS);
+    }
+
+    /**
+     * The current time. DEVELOPER NOTE: This is its own method only so that tests can control the clock.
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static ErrorDTO toErrorDto(HttpStatus status, Exception ex) {
+        return ErrorDTO.builder()
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(ex.getMessage())
+                .build();
     }
 
-}
\ No newline at end of file
+}
@@ -4,7 +4,9 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,4 +32,300 @@ public class AppConfiguration {
     private String configName;
     private String environment;
     private List<String> servers = new ArrayList<>();
+
+    /**
+     * DEVELOPER NOTE: Properties can be nested. In YAML, the properties of this object are indented underneath a
+     * "customerCache:" key. Spring knows how to convert strings such as "5m" or "30s" into a java.time.Duration.
+     */
+    private CustomerCacheProperties customerCache = new CustomerCacheProperties();
+
+    private CustomerJsonCacheProperties customerJsonCache = new CustomerJsonCacheProperties();
+
+    private CustomerLookupExecutorProperties customerLookupExecutor = new CustomerLookupExecutorProperties();
+
+    private VirtualThreadProperties virtualThreads = new VirtualThreadProperties();
+
+    private CustomerSnapshotProperties customerSnapshot = new CustomerSnapshotProperties();
+
+    private EntityCacheProperties entityCache = new EntityCacheProperties();
+
+    private DatabaseTuningProperties databaseTuning = new DatabaseTuningProperties();
+
+    private StartupReportProperties startupReport = new StartupReportProperties();
+
+    private CustomerChangesProperties customerChanges = new CustomerChangesProperties();
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * Settings for the in-process cache of Customers that sits in front of the database.
+     */
+    @Getter
+    @Setter
+    public static class CustomerCacheProperties {
+
+        /**
+         * The most customers (found or not) that are kept in the cache. Zero effectively turns the cache off.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * How long a found customer stays in the cache after it was loaded.
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        /**
+         * How long a "not found" answer stays in the cache after it was loaded.
+         */
+        private Duration notFoundTimeToLive = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Settings for the cache of finished customer JSON responses.
+     */
+    @Getter
+    @Setter
+    public static class CustomerJsonCacheProperties {
+
+        /**
+         * The most memory that the cached JSON may use. Spring converts strings such as "64MB" into a DataSize. Zero
+         * turns the cache off.
+         */
+        private DataSize maximumSize = DataSize.ofMegabytes(16);
+    }
+
+    /**
+     * Settings for the thread pool that runs the database work of asynchronous customer lookups.
+     */
+    @Getter
+    @Setter
+    public static class CustomerLookupExecutorProperties {
+
+        /**
+         * How many database lookups may run at the same time. This should not be more than the number of database
+         * connections that can be spared for it.
+         */
+        private int threads = 16;
+
+        /**
+         * How many lookups may wait for a free thread. Lookups beyond this are rejected right away (503).
+         */
+        private int queueCapacity = 1_000;
+
+        /**
+         * How long a lookup may take, including time spent waiting in the queue, before it fails (504).
+         */
+        private Duration timeout = Duration.ofSeconds(2);
+    }
+
+    /**
+     * Settings for running blocking work on JDK 21 virtual threads.
+     *
+     * @see com.daugherty.demo.config.VirtualThreadConfiguration
+     */
+    @Getter
+    @Setter
+    public static class VirtualThreadProperties {
+
+        /**
+         * Run Tomcat requests and asynchronous customer lookups on virtual threads. Ignored (with a warning) on JVMs
+         * older than JDK 21.
+         */
+        private boolean enabled = false;
+    }
+
+    /**
+     * Settings for the in-memory snapshot of every customer that read-mostly deployments serve reads from.
+     *
+     * @see com.daugherty.demo.customer.CustomerSnapshot
+     */
+    @Getter
+    @Setter
+    public static class CustomerSnapshotProperties {
+
+        /**
+         * Load every customer into the snapshot when the application starts, and serve customer reads from it.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long to wait after one reload of the snapshot is done before starting the next one.
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Settings for Hibernate's second-level cache of Customer and Order entities.
+     *
+     * @see com.daugherty.demo.config.EntityCacheConfiguration
+     */
+    @Getter
+    @Setter
+    public static class EntityCacheProperties {
+
+        /**
+         * Turn the second-level cache on. It is on unless this is set to false.
+         */
+        private boolean enabled = true;
+
+        private EntityCacheRegionProperties customers = new EntityCacheRegionProperties(10_000);
+
+        private EntityCacheRegionProperties orders = new EntityCacheRegionProperties(50_000);
+
+        /**
+         * The cache of which Orders each Customer has (Customer.orders).
+         */
+        private EntityCacheRegionProperties customerOrders = new EntityCacheRegionProperties(10_000);
+    }
+
+    /**
+     * Settings for one region (one named cache) of the second-level cache.
+     */
+    @Getter
+    @Setter
+    public static class EntityCacheRegionProperties {
+
+        /**
+         * The most entries that are kept in the region.
+         */
+        private long maximumSize;
+
+        /**
+         * How long an entry stays in the region after it was written.
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        public EntityCacheRegionProperties() {
+        }
+
+        EntityCacheRegionProperties(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    /**
+     * Settings for the database connection pool and the H2 database engine.
+     *
+     * @see com.daugherty.demo.config.DatabaseTuningConfiguration
+     */
+    @Getter
+    @Setter
+    public static class DatabaseTuningProperties {
+
+        /**
+         * Apply these settings. When false, the connection pool and H2 run with Spring Boot's defaults (or whatever
+         * spring.datasource.hikari says).
+         */
+        private boolean enabled = false;
+
+        private PoolTuningProperties pool = new PoolTuningProperties();
+
+        private H2TuningProperties h2 = new H2TuningProperties();
+    }
+
+    /**
+     * Settings for the Hikari database connection pool.
+     */
+    @Getter
+    @Setter
+    public static class PoolTuningProperties {
+
+        /**
+         * The most connections that the pool holds. This is the most database work that can run at the same time.
+         */
+        private int maximumSize = 10;
+
+        /**
+         * How many idle connections the pool keeps ready. The same as maximumSize gives a fixed-size pool, which never
+         * makes a request wait while a new connection is opened.
+         */
+        private int minimumIdle = 10;
+
+        /**
+         * How long a request waits for a free connection before it fails.
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Settings for the H2 database engine, added to its JDBC URL.
+     */
+    @Getter
+    @Setter
+    public static class H2TuningProperties {
+
+        /**
+         * Use the MVStore storage engine (H2's default), which lets connections work at the same time. False uses the
+         * older PageStore engine, which runs one statement at a time.
+         */
+        private boolean mvStore = true;
+
+        /**
+         * How much memory H2 may use to cache table and index pages.
+         */
+        private DataSize cacheSize = DataSize.ofMegabytes(16);
+
+        /**
+         * How many parsed statements each connection keeps, so that running the same SQL again skips parsing it.
+         */
+        private int queryCacheSize = 8;
+    }
+
+    /**
+     * Settings for the report of how long the application took to start.
+     *
+     * @see com.daugherty.demo.config.StartupTimingReport
+     */
+    @Getter
+    @Setter
+    public static class StartupReportProperties {
+
+        /**
+         * Time each start-up phase and each bean, and log the report once the application is ready.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How many of the slowest beans are in the report.
+         */
+        private int topBeans = 20;
+
+        /**
+         * A file to also write the report to, as JSON. Not written when empty.
+         */
+        private String output;
+    }
+
+    /**
+     * Settings for publishing the outbox of customer changes.
+     *
+     * @see com.daugherty.demo.customer.CustomerChangePublisher
+     */
+    @Getter
+    @Setter
+    public static class CustomerChangesProperties {
+
+        /**
+         * How long to wait after publishing everything that was pending before looking for new changes again. This is
+         * about how long a change takes to reach the sinks and GET /v1/customers/changes after it was committed.
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * The most changes that are published (and handed to each sink) in one transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * How long published changes are kept for consumers to catch up with. A consumer that falls further behind
+         * than this has to read every customer again.
+         */
+        private Duration retention = Duration.ofDays(7);
+
+        /**
+         * A file to append every published change to, as one JSON object per line. Not written when empty.
+         */
+        private String file;
+    }
 }
@@ -0,0 +1,55 @@
+package com.daugherty.demo.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Lets the REST API read and write the same contracts as Smile and CBOR, two binary encodings of the JSON data model,
+ * for clients that ask for them in their Accept header. JSON stays the default.
+ * <p>
+ * DEVELOPER NOTE: Smile (application/x-jackson-smile) and CBOR (application/cbor) carry exactly what the JSON does,
+ * property names and all, so the DTO classes are the contract for every format and nothing has to be generated from a
+ * schema. What they save is the text: numbers are written as binary numbers instead of digits, and strings are written
+ * with their length up front, so the reader doesn't scan for quotes and escapes. Smile also writes each property name
+ * only once per document, and refers back to it after that, which makes lists of DTOs (a page, or a batch of lookups)
+ * much smaller. Values that the contract defines as strings, such as a customer's lastReadTimestamp, are still
+ * strings in every format.
+ * <p>
+ * Spring Boot hands every HttpMessageConverter bean to Spring MVC, in place of the default converter of the same
+ * class (or ahead of the defaults, if there is none). Spring MVC would add Smile and CBOR converters by itself
+ * (because the Jackson dataformat jars are on the classpath), but those would not get any of the spring.jackson
+ * settings. These are made with the same Jackson2ObjectMapperBuilder as the application's JSON ObjectMapper, so all
+ * three formats agree on modules, features and date handling. The MappingJackson2HttpMessageConverter for JSON still
+ * comes first, so a request without an Accept header (or with Accept: *&#47;*) still gets JSON.
+ *
+ * @see com.daugherty.demo.customer.CustomerController#APPLICATION_SMILE_VALUE
+ */
+@Configuration
+public class BinaryFormatConfiguration {
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Spring Boot's Jackson2ObjectMapperBuilder bean is a prototype, so each of these methods is handed
+     * a new one, and changing its factory doesn't change the builder of the JSON ObjectMapper.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false)
+                .factory(new SmileFactory())
+                .build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false)
+                .factory(new CBORFactory())
+                .build());
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.daugherty.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sizes the Hikari connection pool and tunes the H2 database engine from the databaseTuning properties, when
+ * databaseTuning.enabled is true (the "perf" profile in application.yml turns it on).
+ * <p>
+ * DEVELOPER NOTE: Out of the box, Spring Boot gives the application a Hikari pool of 10 connections that waits up to
+ * 30 seconds for a free one, and an H2 database with a 16 MB page cache. Under concurrent load, requests queue up for a
+ * connection long before the database itself is busy, and then fail after half a minute. Here the pool is sized, and
+ * H2 is given a bigger page cache and a bigger per-connection cache of parsed statements (H2's QUERY_CACHE_SIZE; H2
+ * caches statements itself, so the pool doesn't have to).
+ * <p>
+ * Spring Boot already publishes the pool's metrics: hikaricp.connections.active, .idle and .pending (requests waiting
+ * for a connection), and timers of how long it took to get a connection (.acquire) and how long one was held
+ * (.usage). application.yml turns on histograms for the two timers. This class adds hikaricp.connections.utilization,
+ * the fraction of the pool that is in use. A pool that is always near 1.0 with a growing acquire time is too small;
+ * one that never gets near it is bigger than it needs to be.
+ * <p>
+ * The settings are applied by a BeanPostProcessor, which Spring calls for every bean that it creates. It changes the
+ * HikariDataSource after Spring Boot has bound the spring.datasource.hikari properties to it, and before anything has
+ * asked it for a connection (a Hikari pool can't be changed once it has started).
+ *
+ * @see com.daugherty.demo.config.AppConfiguration.DatabaseTuningProperties
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "databaseTuning.enabled", havingValue = "true")
+public class DatabaseTuningConfiguration {
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: A BeanPostProcessor has to exist before every other bean, so its @Bean method is static, and it
+     * looks up the AppConfiguration only when it is first needed. Asking for it right away would create it before
+     * Spring is ready to bind properties to it.
+     */
+    @Bean
+    public static BeanPostProcessor databaseTuningPostProcessor(ObjectProvider<AppConfiguration> appConfiguration) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    tune((HikariDataSource) bean, appConfiguration.getObject().getDatabaseTuning());
+                }
+                return bean;
+            }
+        };
+    }
+
+
+    // ------------------------------------------------ STATIC METHODS -------------------------------------------------
+
+    /**
+     * Return the given JDBC URL with the H2 settings added to the end of it. URLs of other databases are returned
+     * unchanged.
+     * <p>
+     * DEVELOPER NOTE: H2 takes its settings from the URL, separated by semicolons. CACHE_SIZE is in kilobytes. H2
+     * 1.4.200 removed the MULTI_THREADED setting: the MVStore engine always lets connections run at the same time,
+     * while the older PageStore engine (MV_STORE=FALSE) runs one statement at a time.
+     */
+    static String tuneH2Url(String jdbcUrl, AppConfiguration.H2TuningProperties h2) {
+        if ((jdbcUrl == null) || !jdbcUrl.startsWith("jdbc:h2:")) {
+            return jdbcUrl;
+        }
+        return jdbcUrl
+                + ";MV_STORE=" + (h2.isMvStore() ? "TRUE" : "FALSE")
+                + ";CACHE_SIZE=" + h2.getCacheSize().toKilobytes()
+                + ";QUERY_CACHE_SIZE=" + h2.getQueryCacheSize();
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static void tune(HikariDataSource dataSource, AppConfiguration.DatabaseTuningProperties properties) {
+        AppConfiguration.PoolTuningProperties pool = properties.getPool();
+        dataSource.setMaximumPoolSize(pool.getMaximumSize());
+        dataSource.setMinimumIdle(pool.getMinimumIdle());
+        dataSource.setConnectionTimeout(pool.getConnectionTimeout().toMillis());
+        dataSource.setJdbcUrl(tuneH2Url(dataSource.getJdbcUrl(), properties.getH2()));
+
+        Gauge.builder("hikaricp.connections.utilization", dataSource, DatabaseTuningConfiguration::utilization)
+                .description("Fraction of the connection pool that is in use")
+                .register(Metrics.globalRegistry);
+
+        log.info("Connection pool sized to {} connections, JDBC URL {}", pool.getMaximumSize(),
+                dataSource.getJdbcUrl());
+    }
+
+    /**
+     * DEVELOPER NOTE: The pool's MXBean is null until the pool has started (on the first request for a connection).
+     */
+    private static double utilization(HikariDataSource dataSource) {
+        HikariPoolMXBean poolMXBean = dataSource.getHikariPoolMXBean();
+        if (poolMXBean == null) {
+            return 0.0;
+        }
+        return (double) poolMXBean.getActiveConnections() / dataSource.getMaximumPoolSize();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.daugherty.demo.config;
+
+import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.Order;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Turns on Hibernate's second-level cache for Customers, Orders and the Customer.orders collection, backed by Caffeine
+ * through the standard JCache (JSR-107) API.
+ * <p>
+ * DEVELOPER NOTE: Hibernate always keeps the entities that a persistence context has loaded (the "first-level"
+ * cache), but that is thrown away at the end of every transaction. The "second-level" cache is shared by all of them,
+ * so an entity that was loaded by one request is found by the next without any SQL. It doesn't hold entity objects,
+ * just their column values, and Hibernate builds a new entity from those for each persistence context.
+ * <p>
+ * Hibernate talks to the cache through JCache. Each region (named cache) is created here, with the size and
+ * time-to-live from the entityCache properties in application.yml. The cache manager gets its own unique URI, so that
+ * every Spring context (there are several in a test run) has its own regions, and closing one context never closes
+ * another one's cache. Hibernate statistics are turned on as well: Spring Boot publishes them as metrics, including
+ * hits, misses and puts for each region ("hibernate.second.level.cache.*", tagged with the region name).
+ * <p>
+ * Customer.orders is the "inverse" side of Order.customer, so Hibernate doesn't see a new Order as a change to it.
+ * auto_evict_collection_cache makes Hibernate evict a customer's cached orders collection whenever one of its Orders is
+ * inserted, changed or deleted.
+ * <p>
+ * The settings are handed to Hibernate by a HibernatePropertiesCustomizer, which Spring Boot applies just before it
+ * builds the EntityManagerFactory. Without this class (when entityCache.enabled is false, or in a test that doesn't
+ * import it), Hibernate runs without a second-level cache.
+ *
+ * @see com.daugherty.demo.customer.entity.Customer
+ */
+@Configuration
+@ConditionalOnProperty(name = "entityCache.enabled", havingValue = "true", matchIfMissing = true)
+public class EntityCacheConfiguration {
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(AppConfiguration appConfiguration) {
+        AppConfiguration.EntityCacheProperties properties = appConfiguration.getEntityCache();
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("entity-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, Customer.CACHE_REGION, properties.getCustomers());
+        createRegion(cacheManager, Order.CACHE_REGION, properties.getOrders());
+        createRegion(cacheManager, Customer.ORDERS_CACHE_REGION, properties.getCustomerOrders());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheHibernatePropertiesCustomizer(CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, JCacheRegionFactory.class.getName());
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            hibernateProperties.put(AvailableSettings.AUTO_EVICT_COLLECTION_CACHE, "true");
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, "true");
+        };
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Caffeine stores the values that Hibernate gives it as they are ("store by reference"). The JCache
+     * default is to copy every value in and out ("store by value"), which costs a serialization per read and buys
+     * nothing here: Hibernate never changes a cache entry after handing it over.
+     * <p>
+     * When a region is full, Caffeine only lets a new entry in if it is likely to be used more often than the one that
+     * it would push out. A bulk ingest of thousands of customers that nobody has read yet therefore doesn't flush out
+     * the customers that are being read all the time.
+     */
+    private static void createRegion(CacheManager cacheManager, String region,
+                                     AppConfiguration.EntityCacheRegionProperties properties) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(properties.getMaximumSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(properties.getTimeToLive().toNanos()));
+        configuration.setStoreByValue(false);
+        cacheManager.createCache(region, configuration);
+    }
+
+}
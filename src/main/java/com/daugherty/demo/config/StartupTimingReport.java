@@ -0,0 +1,326 @@
+package com.daugherty.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records how long each phase of starting the application took, and how long each bean took to create, and logs (and
+ * optionally writes) a report of it once the application is ready. Only when startupReport.enabled is true (the
+ * "fast-start" profile in application.yml turns it on).
+ * <p>
+ * DEVELOPER NOTE: Spring Boot 2.4 added ApplicationStartup, which records these "startup steps" itself. This
+ * application is on Spring Boot 2.2, so this class records the same two things with hooks that 2.2 already has:
+ * <ul>
+ * <li>A SpringApplicationRunListener is told about each phase of SpringApplication.run(): starting, environment
+ * prepared (application.yml and the profiles have been read), context loaded, started (every eager bean exists and
+ * Tomcat is listening) and running (ApplicationReadyEvent listeners, such as the CustomerSnapshot's first load, are
+ * done). Spring Boot creates it from META-INF/spring.factories, before anything else happens.</li>
+ * <li>A BeanPostProcessor is told just before each bean is created and just after it is initialized. Beans create
+ * the beans they depend on in between, so each bean has a "total" time (including its dependencies) and a "self" time
+ * (without them). Self time is what points at the slow bean; the entityManagerFactory (Hibernate) is usually on top.
+ * </li>
+ * </ul>
+ * The report only covers start-up. Lazy beans that are created later, by the first request, aren't in it; that is
+ * the point of lazy initialization. Bean times are approximate: Spring sometimes starts creating a bean just to find
+ * out its type, and that time is counted toward the bean that was being created.
+ *
+ * @see com.daugherty.demo.config.AppConfiguration.StartupReportProperties
+ */
+@Slf4j
+public class StartupTimingReport implements SpringApplicationRunListener, Ordered {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: The Binder only takes the canonical (kebab-case) form of a property name, and throws on
+     * "startupReport". The "startupReport:" key in application.yml still binds to it, through relaxed binding.
+     */
+    private static final String PROPERTY_PREFIX = "startup-report";
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * How long each phase took, in the order that they happened.
+     */
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+    private long lastMarkNanos = startNanos;
+
+    private AppConfiguration.StartupReportProperties properties;
+
+    private BeanTimer beanTimer;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Spring Boot calls this constructor (with these exact parameters) for every
+     * SpringApplicationRunListener that is listed in META-INF/spring.factories.
+     */
+    public StartupTimingReport(SpringApplication application, String[] args) {
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Spring Boot's own run listener (order 0) is the one that reads application.yml, so this one runs
+     * after it, and sees the properties of the active profiles.
+     */
+    @Override
+    public int getOrder() {
+        return 10;
+    }
+
+    @Override
+    public void starting() {
+    }
+
+    @Override
+    public void environmentPrepared(ConfigurableEnvironment environment) {
+        properties = Binder.get(environment)
+                .bind(PROPERTY_PREFIX, AppConfiguration.StartupReportProperties.class)
+                .orElseGet(AppConfiguration.StartupReportProperties::new);
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        // The JVM started (and loaded classes) for a while before main() got here
+        long jvmUptimeNanos = TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+        phaseNanos.put("jvm", Math.max(0, jvmUptimeNanos - (System.nanoTime() - startNanos)));
+        mark("environment");
+    }
+
+    @Override
+    public void contextPrepared(ConfigurableApplicationContext context) {
+        if (isEnabled()) {
+            beanTimer = new BeanTimer();
+            context.getBeanFactory().addBeanPostProcessor(beanTimer);
+            context.addApplicationListener(refreshListener(context));
+        }
+    }
+
+    @Override
+    public void contextLoaded(ConfigurableApplicationContext context) {
+        if (isEnabled()) {
+            mark("context");
+        }
+    }
+
+    @Override
+    public void started(ConfigurableApplicationContext context) {
+        if (isEnabled()) {
+            mark("webServer");
+        }
+    }
+
+    @Override
+    public void running(ConfigurableApplicationContext context) {
+        if (isEnabled()) {
+            mark("ready");
+            beanTimer.stop();
+            report();
+        }
+    }
+
+    @Override
+    public void failed(ConfigurableApplicationContext context, Throwable exception) {
+        if (isEnabled() && (beanTimer != null)) {
+            beanTimer.stop();
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private boolean isEnabled() {
+        return (properties != null) && properties.isEnabled();
+    }
+
+    /**
+     * Record that the given phase ended now, and started when the previous one ended.
+     */
+    private void mark(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.put(phase, now - lastMarkNanos);
+        lastMarkNanos = now;
+    }
+
+    /**
+     * DEVELOPER NOTE: The context is refreshed (every eager bean has been created) just before Tomcat starts, so the
+     * time from the context being loaded until this event is the "beans" phase. A management server on its own port
+     * has a child context that is refreshed too; only this context counts.
+     */
+    private ApplicationListener<ApplicationEvent> refreshListener(ConfigurableApplicationContext context) {
+        return event -> {
+            if ((event instanceof ContextRefreshedEvent) && (event.getSource() == context)
+                    && !phaseNanos.containsKey("beans")) {
+                mark("beans");
+            }
+        };
+    }
+
+    private void report() {
+        List<BeanTiming> slowest = beanTimer.getTimings().stream()
+                .sorted(Comparator.comparingLong(BeanTiming::getSelfNanos).reversed())
+                .limit(properties.getTopBeans())
+                .collect(Collectors.toList());
+        long totalNanos = phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+
+        StringBuilder text = new StringBuilder(String.format("Started in %d ms%n", toMillis(totalNanos)));
+        phaseNanos.forEach((phase, nanos) -> text.append(String.format("  %-12s %6d ms%n", phase, toMillis(nanos))));
+        text.append(String.format("%d beans created; the slowest (self / total):%n", beanTimer.getTimings().size()));
+        for (BeanTiming timing : slowest) {
+            text.append(String.format("  %6d ms / %6d ms  %s%n",
+                    toMillis(timing.getSelfNanos()), toMillis(timing.getTotalNanos()), timing.getBeanName()));
+        }
+        log.info("Startup report{}{}", System.lineSeparator(), text);
+
+        if (StringUtils.hasText(properties.getOutput())) {
+            write(new File(properties.getOutput()), totalNanos, slowest);
+        }
+    }
+
+    private void write(File file, long totalNanos, List<BeanTiming> slowest) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("totalMillis", toMillis(totalNanos));
+        json.put("phaseMillis", phaseNanos.entrySet().stream().collect(Collectors.toMap(
+                Map.Entry::getKey, entry -> toMillis(entry.getValue()), (a, b) -> a, LinkedHashMap::new)));
+        json.put("beanCount", beanTimer.getTimings().size());
+        json.put("slowestBeans", slowest.stream().map(timing -> {
+            Map<String, Object> bean = new LinkedHashMap<>();
+            bean.put("name", timing.getBeanName());
+            bean.put("selfMillis", toMillis(timing.getSelfNanos()));
+            bean.put("totalMillis", toMillis(timing.getTotalNanos()));
+            return bean;
+        }).collect(Collectors.toList()));
+        try {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, json);
+        } catch (IOException e) {
+            log.warn("Could not write the startup report to {}", file, e);
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * How long one bean took to create.
+     */
+    @Value
+    static class BeanTiming {
+        String beanName;
+
+        /**
+         * From just before the bean was created until it was initialized, including creating its dependencies.
+         */
+        long totalNanos;
+
+        /**
+         * The total, less the time spent creating its dependencies.
+         */
+        long selfNanos;
+    }
+
+    /**
+     * Times the creation of every bean.
+     * <p>
+     * DEVELOPER NOTE: Creating a bean can create its dependencies first, so each thread keeps a stack of the beans
+     * that it is in the middle of creating. When a bean is done, its total time is added to the "children" time of the
+     * bean under it on the stack. Beans can be created on more than one thread (deferred JPA bootstrap builds Hibernate
+     * in the background), so the stacks are per thread and the finished timings are kept in a concurrent queue.
+     */
+    static class BeanTimer implements InstantiationAwareBeanPostProcessor {
+
+        private final ThreadLocal<Deque<Frame>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+        private final Queue<BeanTiming> timings = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean recording = true;
+
+        @Override
+        public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+            if (recording) {
+                creating.get().push(new Frame(beanName, System.nanoTime()));
+            }
+            return null;
+        }
+
+        /**
+         * DEVELOPER NOTE: A FactoryBean's product comes through here again under the same name, and a bean that was
+         * only started (to find out its type) never comes through here at all. So this looks for the bean by name,
+         * drops anything above it on the stack, and ignores names that aren't on the stack.
+         */
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            Deque<Frame> stack = creating.get();
+            if (stack.stream().noneMatch(frame -> frame.beanName.equals(beanName))) {
+                return bean;
+            }
+            Frame frame = stack.pop();
+            while (!frame.beanName.equals(beanName)) {
+                frame = stack.pop();
+            }
+            long totalNanos = System.nanoTime() - frame.startNanos;
+            timings.add(new BeanTiming(beanName, totalNanos, totalNanos - frame.childNanos));
+            if (!stack.isEmpty()) {
+                stack.peek().childNanos += totalNanos;
+            }
+            return bean;
+        }
+
+        /**
+         * Stop timing beans. Beans that are created after start-up (lazy ones) aren't part of the report.
+         */
+        void stop() {
+            recording = false;
+            creating.remove();
+        }
+
+        Collection<BeanTiming> getTimings() {
+            return timings;
+        }
+
+        private static class Frame {
+            private final String beanName;
+            private final long startNanos;
+            private long childNanos;
+
+            private Frame(String beanName, long startNanos) {
+                this.beanName = beanName;
+                this.startNanos = startNanos;
+            }
+        }
+    }
+
+}
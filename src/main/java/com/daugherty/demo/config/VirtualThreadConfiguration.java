@@ -0,0 +1,71 @@
+package com.daugherty.demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs Tomcat's request handling on virtual threads, when virtualThreads.enabled is true.
+ * <p>
+ * DEVELOPER NOTE: Tomcat normally handles requests on a pool of (by default) 200 OS threads. A request that waits on
+ * the database holds one of those threads the whole time, so 200 slow requests are enough to make every other request
+ * wait in line. Here, Tomcat's pool is replaced with an executor that starts a new virtual thread for every request.
+ * Everything that the request does after that (the controller, CustomerService, CustomerRepository and JDBC) runs on
+ * that virtual thread, without any changes to that code.
+ * <p>
+ * That moves the bottleneck to the database connection pool: with a virtual thread per request, thousands of requests
+ * can ask for a connection at the same time. The "virtual-threads" profile in application.yml turns this on and also
+ * sizes the connection pool for it. If the JVM is older than JDK 21, a warning is logged and Tomcat keeps its normal
+ * thread pool. This also needs a newer Tomcat than Spring Boot 2.2.5 comes with (see tomcat.version in build.gradle).
+ * <p>
+ * The @ConditionalOnProperty annotation means that Spring skips this class entirely unless the property is "true".
+ *
+ * @see com.daugherty.demo.config.VirtualThreads
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "virtualThreads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Tomcat doesn't shut down an executor that it was given, so this class does.
+     */
+    private ExecutorService tomcatExecutor;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Spring Boot applies every TomcatProtocolHandlerCustomizer bean to the embedded Tomcat before it
+     * starts. The "protocol handler" is the part of Tomcat that owns the request thread pool.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (!VirtualThreads.isSupported()) {
+                log.warn("virtualThreads.enabled is true, but Java {} has no virtual threads; using platform threads",
+                        System.getProperty("java.version"));
+                return;
+            }
+            tomcatExecutor = VirtualThreads.newThreadPerTaskExecutor("tomcat-virtual-");
+            protocolHandler.setExecutor(tomcatExecutor);
+            log.info("Tomcat requests are handled on virtual threads");
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (tomcatExecutor != null) {
+            tomcatExecutor.shutdown();
+        }
+    }
+
+}
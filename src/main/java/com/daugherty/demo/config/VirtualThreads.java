@@ -0,0 +1,104 @@
+package com.daugherty.demo.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to JDK 21 virtual threads from code that is compiled for Java 8.
+ * <p>
+ * DEVELOPER NOTE: A virtual thread is a thread that the JVM schedules itself, instead of the operating system. When a
+ * virtual thread blocks (waiting for the database, for example), the JVM parks it and uses its carrier (OS) thread to
+ * run another virtual thread. They are cheap enough to have one per request, even with tens of thousands of requests
+ * in flight... unlike OS threads, which each reserve a megabyte or so of stack.
+ * <p>
+ * This application is built for Java 8, so it can't call Thread.ofVirtual() directly; the compiler has never heard of
+ * it. Instead, the methods are looked up by name (reflection) once, when this class is loaded. On an older JVM they
+ * simply aren't found and isSupported() returns false.
+ *
+ * @see com.daugherty.demo.config.VirtualThreadConfiguration
+ */
+public final class VirtualThreads {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = findMethod(classOrNull("java.lang.Thread$Builder"), "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = findMethod(classOrNull("java.lang.Thread$Builder"), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    private VirtualThreads() {
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return true if the running JVM has virtual threads (JDK 21 or newer).
+     */
+    public static boolean isSupported() {
+        return (OF_VIRTUAL != null) && (BUILDER_NAME != null) && (BUILDER_FACTORY != null)
+                && (NEW_THREAD_PER_TASK_EXECUTOR != null);
+    }
+
+    /**
+     * Return a ThreadFactory that creates virtual threads named prefix0, prefix1, and so on.
+     *
+     * @throws UnsupportedOperationException if the running JVM doesn't have virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or newer, but this is Java "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Return an ExecutorService that runs every task on a new virtual thread named prefix0, prefix1, and so on.
+     * DEVELOPER NOTE: There's no pool and no queue. Creating a virtual thread costs about as much as queueing a task.
+     *
+     * @throws UnsupportedOperationException if the running JVM doesn't have virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static Class<?> classOrNull(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
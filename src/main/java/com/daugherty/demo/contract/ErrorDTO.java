@@ -0,0 +1,34 @@
+package com.daugherty.demo.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * The body of every error response returned by this web service.
+ * <p>
+ * DEVELOPER NOTE: Error responses used to be a java.lang.Error wrapped around the exception. Jackson serializes that
+ * like any other bean, so every 400 and 500 response carried the complete stack trace (one JSON object per frame),
+ * the cause, and so on. That's slow to write, large on the wire, and tells the whole world how the service is built.
+ * An error is part of the contract just as much as a Customer is, so it gets a small DTO of its own.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class ErrorDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    // DEVELOPER NOTE: The HTTP status code, repeated in the body for clients that only log the body.
+    @JsonProperty("status")
+    Integer status;
+
+    // DEVELOPER NOTE: The standard reason phrase of the status code, for example "Bad Request".
+    @JsonProperty("error")
+    String error;
+
+    @JsonProperty("message")
+    String message;
+
+}
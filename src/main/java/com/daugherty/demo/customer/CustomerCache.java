@@ -0,0 +1,203 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An in-process, size-bounded and time-bounded cache of Customers, keyed by customer ID.
+ * <p>
+ * DEVELOPER NOTE: Reads of customers are heavily skewed... a small number of customers get most of the traffic. A
+ * cache in front of the database turns most of those reads into a hash lookup. This cache is built on Caffeine, which
+ * uses an eviction policy called W-TinyLFU. When the cache is full, it keeps the entries that are used *often*, not
+ * just the ones that were used *recently*, so a one-off scan of cold customers can't flush out the hot ones.
+ * <p>
+ * The values are CachedCustomers. A CachedCustomer without a Customer means "we asked the database and the customer
+ * isn't there".
+ * Caching that answer (negative caching) stops repeated lookups of a missing ID from hitting the database every time.
+ * Not-found answers get their own, usually shorter, time-to-live so that a newly created customer shows up quickly.
+ * <p>
+ * Cached Customers are shared between callers and are detached from any database session. They must be treated as
+ * read-only, and their lazy collections (such as orders) must not be touched.
+ * <p>
+ * A reader can load a customer from the database just before a change to it commits, and only put it here after the
+ * change has evicted it. That old copy would then be served until it expired. So every eviction also bumps an
+ * invalidation counter for the customer ID, a reader takes the counter (invalidationStamp()) before it reads the
+ * database, and put() only caches the answer if the counter hasn't moved since. This is the same idea as
+ * CustomerSnapshot's eviction sequence. The counters are striped (many IDs share one), so the memory they take is
+ * fixed; two IDs that share a counter only means that an answer is sometimes not cached when it could have been.
+ *
+ * @see com.daugherty.demo.customer.CustomerService
+ */
+@Component
+class CustomerCache {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * How many invalidation counters there are. A power of two, so that the stripe is a bit mask of the ID.
+     */
+    static final int INVALIDATION_STRIPES = 1024;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final Cache<Integer, CachedCustomer> cache;
+
+    /**
+     * Invalidation counters, one per stripe of customer IDs. See invalidationStamp().
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * A cached answer from the database: either a Customer, or "not found" when the customer is null.
+     */
+    @Value
+    static class CachedCustomer {
+
+        static final CachedCustomer NOT_FOUND = new CachedCustomer(null);
+
+        Customer customer;
+
+        boolean isFound() {
+            return customer != null;
+        }
+    }
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Only the cache that Spring creates publishes its hit/miss/eviction statistics as metrics (named
+     * "cache.*" with the tag cache=customers). The caches that unit tests create don't.
+     */
+    @Autowired
+    CustomerCache(AppConfiguration appConfiguration) {
+        this(appConfiguration.getCustomerCache(), Ticker.systemTicker());
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache, "customers");
+    }
+
+    /**
+     * DEVELOPER NOTE: The Ticker is Caffeine's clock. Unit tests pass in a fake one so that they can move time forward
+     * without having to sleep.
+     */
+    CustomerCache(AppConfiguration.CustomerCacheProperties properties, Ticker ticker) {
+        long foundTtlNanos = properties.getTimeToLive().toNanos();
+        long notFoundTtlNanos = properties.getNotFoundTimeToLive().toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<Integer, CachedCustomer>() {
+                    @Override
+                    public long expireAfterCreate(Integer customerId, CachedCustomer customer, long currentTime) {
+                        return customer.isFound() ? foundTtlNanos : notFoundTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer customerId, CachedCustomer customer, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(customerId, customer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer customerId, CachedCustomer customer, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return the cached answer for the given customer ID, or null if there is no cached answer at all.
+     */
+    CachedCustomer lookup(Integer customerId) {
+        return cache.getIfPresent(customerId);
+    }
+
+    /**
+     * Return the invalidation stamp of the given customer ID. Take it before reading the customer from the database,
+     * and pass it to put() with the answer.
+     */
+    long invalidationStamp(Integer customerId) {
+        return invalidations.get(stripe(customerId));
+    }
+
+    /**
+     * Cache the answer from the database for the given customer ID, unless the customer has been evicted since the
+     * given invalidation stamp was taken (the answer may be older than the change that evicted it). A null customer is
+     * cached as "not found".
+     * <p>
+     * DEVELOPER NOTE: Caffeine runs compute() for one key at a time, and evict() changes the counter inside its own
+     * compute() of the same key. So an eviction either happens before the check here, and the answer is dropped, or
+     * after the answer is cached, and removes it. There is no moment in between.
+     */
+    void put(Integer customerId, Customer customer, long invalidationStamp) {
+        CachedCustomer cachedCustomer = (customer == null) ? CachedCustomer.NOT_FOUND : new CachedCustomer(customer);
+        cache.asMap().compute(customerId, (id, current) ->
+                (invalidations.get(stripe(id)) == invalidationStamp) ? cachedCustomer : current);
+    }
+
+    /**
+     * Invalidation hook: forget whatever is cached for the given customer ID, and any answer for it that is being read
+     * from the database right now. Anything that changes a customer must call this, or readers will see the old
+     * version until it expires.
+     */
+    void evict(Integer customerId) {
+        cache.asMap().compute(customerId, (id, current) -> {
+            invalidations.incrementAndGet(stripe(id));
+            return null;
+        });
+    }
+
+    /**
+     * Forget everything in the cache, and every answer that is being read from the database right now.
+     */
+    void evictAll() {
+        for (int stripe = 0; stripe < INVALIDATION_STRIPES; stripe++) {
+            invalidations.incrementAndGet(stripe);
+        }
+        cache.invalidateAll();
+    }
+
+    /**
+     * Return a snapshot of the hit, miss and eviction counters.
+     */
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Return the (approximate) number of entries in the cache.
+     */
+    long size() {
+        return cache.estimatedSize();
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static int stripe(Integer customerId) {
+        return customerId & (INVALIDATION_STRIPES - 1);
+    }
+
+}
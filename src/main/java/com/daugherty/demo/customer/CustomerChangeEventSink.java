@@ -0,0 +1,37 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends published customer changes to listeners in this application, as a CustomerChangesPublishedEvent per batch.
+ * <p>
+ * DEVELOPER NOTE: This sink is always there. With no listeners for the event, publishing it costs next to nothing.
+ *
+ * @see com.daugherty.demo.customer.CustomerChangesPublishedEvent
+ */
+@Component
+@RequiredArgsConstructor
+class CustomerChangeEventSink implements CustomerChangeSink {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    private final ApplicationEventPublisher eventPublisher;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Listeners get a list that they can't change, so one listener can't change what the next one sees.
+     */
+    @Override
+    public void publish(List<CustomerChangeDTO> changes) {
+        eventPublisher.publishEvent(new CustomerChangesPublishedEvent(Collections.unmodifiableList(changes)));
+    }
+
+}
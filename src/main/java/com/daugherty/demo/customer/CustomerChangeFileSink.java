@@ -0,0 +1,85 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends published customer changes to a local file, as NDJSON (one CustomerChangeDTO per line), when
+ * customerChanges.file is set.
+ * <p>
+ * DEVELOPER NOTE: Each batch is appended in one piece, and forced to disk before publish() returns, so
+ * a batch is never half-published from the publisher's point of view: either it is on disk and its sequence numbers
+ * are committed, or it will be written again. A crash between the two leaves the batch in the file twice, which is
+ * why consumers skip sequences that they have already seen. The file is only ever appended to; rotating or trimming
+ * it is up to whatever reads it. The lines are the same JSON as GET /v1/customers/changes returns, written by Spring's
+ * ObjectMapper.
+ *
+ * @see com.daugherty.demo.customer.CustomerChangeSink
+ */
+@Component
+@ConditionalOnProperty(name = "customerChanges.file")
+class CustomerChangeFileSink implements CustomerChangeSink {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    private final ObjectMapper objectMapper;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final Path file;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    @Autowired
+    CustomerChangeFileSink(ObjectMapper objectMapper, AppConfiguration appConfiguration) {
+        this(objectMapper, Paths.get(appConfiguration.getCustomerChanges().getFile()));
+    }
+
+    /**
+     * DEVELOPER NOTE: Unit tests use this constructor to write to a temporary file.
+     */
+    CustomerChangeFileSink(ObjectMapper objectMapper, Path file) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Override
+    public void publish(List<CustomerChangeDTO> changes) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(changes.size() * 160);
+        for (CustomerChangeDTO change : changes) {
+            lines.write(objectMapper.writeValueAsBytes(change));
+            lines.write('\n');
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.CustomerChange;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of published customer changes, and where the next page starts.
+ * <p>
+ * DEVELOPER NOTE: Unlike the other pages, "next" is never null. The stream of changes has no last page; a consumer
+ * keeps its "next" and asks again later. On an empty page, it is the "since" that was asked for.
+ */
+@Value
+public class CustomerChangePage {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    List<CustomerChange> changes;
+    long next;
+
+}
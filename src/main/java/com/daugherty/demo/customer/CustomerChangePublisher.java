@@ -0,0 +1,233 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the outbox of customer changes: gives each committed change its sequence number, and hands the changes,
+ * in batches, to every CustomerChangeSink. Also deletes published changes once they are older than
+ * customerChanges.retention.
+ * <p>
+ * DEVELOPER NOTE: This is the "poller" half of a transactional outbox. The code that changes a customer only writes a
+ * CustomerChange row in its own transaction (see CustomerService.recordCustomerChange()). A single background thread
+ * here looks for rows without a sequence number every pollInterval, and publishes them, oldest first, until there are
+ * none left. Each batch is one transaction: the rows get the next sequence numbers, every sink is handed the batch,
+ * and only then is the transaction committed. If a sink fails, the transaction is rolled back, nothing is marked as
+ * published, and the same batch is tried again on the next poll. That is "at least once" delivery (see
+ * CustomerChangeSink).
+ * <p>
+ * Sequence numbers must come from one place at a time, or two batches could get the same ones. In this application
+ * the database is H2, in memory, so every instance has its own outbox and its own publisher. If the database is ever
+ * shared, the unique index on CHANGE_SEQ still stops two publishers from committing the same sequence number (the
+ * second one fails, and publishes again later), but only one instance should run the publisher.
+ *
+ * @see com.daugherty.demo.customer.entity.CustomerChange
+ */
+@Slf4j
+@Component
+class CustomerChangePublisher {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    private final CustomerChangeRepository customerChangeRepository;
+
+    private final CustomerTranslator customerTranslator;
+
+    /**
+     * DEVELOPER NOTE: Spring injects every bean that implements CustomerChangeSink.
+     */
+    private final List<CustomerChangeSink> sinks;
+
+    private final TransactionTemplate transactionTemplate;
+
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * How often published changes that are older than the retention are deleted.
+     */
+    static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private static final Timer PUBLISH_TIMER = Timer.builder("customer.changes.publish")
+            .description("Time spent publishing one batch of customer changes to every sink")
+            .register(Metrics.globalRegistry);
+    static final Counter PUBLISHED_COUNTER = Counter.builder("customer.changes.published")
+            .description("Customer changes that were published (a batch that was published again counts again)")
+            .register(Metrics.globalRegistry);
+    static final Counter PUBLISH_FAILED_COUNTER = Counter.builder("customer.changes.publish.failed")
+            .description("Polls that failed to publish customer changes; they are published again on the next poll")
+            .register(Metrics.globalRegistry);
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final AppConfiguration.CustomerChangesProperties properties;
+
+    private ScheduledExecutorService poller;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    @Autowired
+    CustomerChangePublisher(CustomerChangeRepository customerChangeRepository, CustomerTranslator customerTranslator,
+                            List<CustomerChangeSink> sinks, TransactionTemplate transactionTemplate,
+                            AppConfiguration appConfiguration) {
+        this(customerChangeRepository, customerTranslator, sinks, transactionTemplate,
+                appConfiguration.getCustomerChanges());
+    }
+
+    /**
+     * DEVELOPER NOTE: Unit tests use this constructor and call publishPending() themselves. Nothing is published in the
+     * background until start() is called.
+     */
+    CustomerChangePublisher(CustomerChangeRepository customerChangeRepository, CustomerTranslator customerTranslator,
+                            List<CustomerChangeSink> sinks, TransactionTemplate transactionTemplate,
+                            AppConfiguration.CustomerChangesProperties properties) {
+        this.customerChangeRepository = customerChangeRepository;
+        this.customerTranslator = customerTranslator;
+        this.sinks = sinks;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Start publishing changes every pollInterval, and purging old ones every PURGE_INTERVAL, on a background thread.
+     * <p>
+     * DEVELOPER NOTE: Like CustomerSnapshot.start(), this waits for ApplicationReadyEvent, and uses
+     * scheduleWithFixedDelay(), so a slow poll never overlaps the next one. Both jobs share the one thread, so a purge
+     * and a poll never run at the same time either.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-change-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::publishQuietly, 0, properties.getPollInterval().toMillis(),
+                TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::purgeQuietly, PURGE_INTERVAL.toMillis(), PURGE_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Publish every change that hasn't been published yet, a batch at a time, and return how many were published.
+     */
+    int publishPending() {
+        int published = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> publishNextBatch());
+            published += batch;
+        } while (batch == properties.getBatchSize());
+        return published;
+    }
+
+    /**
+     * Delete the published changes that are older than the retention, and return how many were deleted.
+     * <p>
+     * DEVELOPER NOTE: The newest published change is always kept, however old it is. The next sequence number is
+     * always one more than the newest one in the table, so if that one were deleted, the numbering would start over,
+     * and consumers would skip the new changes as ones that they had already seen.
+     */
+    int purge() {
+        Long lastSequence = customerChangeRepository.findLastSequence().orElse(null);
+        if (lastSequence == null) {
+            return 0;
+        }
+        return customerChangeRepository.deletePublishedBefore(lastSequence,
+                Instant.now().minus(properties.getRetention()));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * Give the oldest unpublished changes the next sequence numbers, and hand them to every sink, in the current
+     * transaction. Return how many there were.
+     * <p>
+     * DEVELOPER NOTE: Setting the sequence on a managed CustomerChange is all that it takes. Hibernate sends the
+     * UPDATEs (batched) when the transaction commits, which is after every sink has the batch.
+     */
+    private int publishNextBatch() {
+        List<CustomerChange> changes = customerChangeRepository.findUnpublished(
+                PageRequest.of(0, properties.getBatchSize()));
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        long sequence = customerChangeRepository.findLastSequence().orElse(0L);
+        List<CustomerChangeDTO> changeDtos = new ArrayList<>(changes.size());
+        for (CustomerChange change : changes) {
+            change.setSequence(++sequence);
+            changeDtos.add(customerTranslator.toContract(change));
+        }
+        PUBLISH_TIMER.record(() -> {
+            for (CustomerChangeSink sink : sinks) {
+                try {
+                    sink.publish(changeDtos);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        PUBLISHED_COUNTER.increment(changes.size());
+        return changes.size();
+    }
+
+    /**
+     * DEVELOPER NOTE: A failed poll must not throw: an exception would silently cancel every future run of a scheduled
+     * task. The changes stay unpublished, and the next poll tries them again.
+     */
+    private void publishQuietly() {
+        try {
+            publishPending();
+        } catch (RuntimeException e) {
+            PUBLISH_FAILED_COUNTER.increment();
+            log.error("Could not publish customer changes; they will be published on the next poll", e);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            int purged = purge();
+            if (purged > 0) {
+                log.info("Deleted {} customer changes that were older than {}", purged, properties.getRetention());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not delete old customer changes", e);
+        }
+    }
+
+}
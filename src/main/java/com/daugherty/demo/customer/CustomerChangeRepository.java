@@ -0,0 +1,69 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.CustomerChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This JPA repository interface provides methods to read and write the outbox of customer changes.
+ *
+ * @see com.daugherty.demo.customer.entity.CustomerChange
+ */
+@Repository
+public interface CustomerChangeRepository extends JpaRepository<CustomerChange, Long> {
+
+    /**
+     * Return the oldest changes that haven't been published yet, in the order that they were written. Pass a Pageable
+     * of PageRequest.of(0, limit) to get at most "limit" of them.
+     * <p>
+     * DEVELOPER NOTE: Unpublished rows have a null CHANGE_SEQ, and the unique index on that column has all of them in
+     * one place, so this reads only the unpublished rows however many published ones there are.
+     */
+    @Query("select c from CustomerChange c where c.sequence is null order by c.changeId")
+    List<CustomerChange> findUnpublished(Pageable pageable);
+
+    /**
+     * Return the published changes whose sequence number is greater than the given one, in sequence order. Pass a
+     * Pageable of PageRequest.of(0, limit) to get at most "limit" of them.
+     * <p>
+     * DEVELOPER NOTE: The same "keyset" paging as CustomerRepository.findSummariesAfter(), on the CHANGE_SEQ index.
+     */
+    @Query("select c from CustomerChange c where c.sequence > :since order by c.sequence")
+    List<CustomerChange> findPublishedAfter(@Param("since") long since, Pageable pageable);
+
+    /**
+     * Return the sequence number of the oldest published change that is still kept, or an empty Optional if nothing
+     * has been published yet.
+     */
+    @Query("select min(c.sequence) from CustomerChange c")
+    Optional<Long> findFirstSequence();
+
+    /**
+     * Return the sequence number of the newest published change, or an empty Optional if nothing has been published
+     * yet.
+     */
+    @Query("select max(c.sequence) from CustomerChange c")
+    Optional<Long> findLastSequence();
+
+    /**
+     * Delete the published changes that were made before the given time, except those from the given sequence number
+     * on. Return how many were deleted.
+     * <p>
+     * DEVELOPER NOTE: @Modifying tells Spring Data that this query changes rows instead of returning them. Unlike the
+     * generated methods, a @Query method isn't transactional unless it says so.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from CustomerChange c where c.sequence < :keepFrom and c.changedAt < :before")
+    int deletePublishedBefore(@Param("keepFrom") long keepFrom, @Param("before") Instant before);
+
+}
@@ -0,0 +1,29 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Somewhere that published customer changes are sent to. Every Spring bean that implements this interface is handed
+ * every batch of changes, in sequence order.
+ * <p>
+ * DEVELOPER NOTE: To send changes somewhere new (a message broker, a webhook), add a @Component that implements this;
+ * nothing else has to change. The CustomerChangePublisher calls publish() inside the transaction that gives the changes
+ * their sequence numbers. If publish() throws, that transaction is rolled back and the same changes are published
+ * again on the next poll, to every sink. If the commit fails after publish() returned, that happens too. So a sink
+ * gets every change at least once, and sometimes more than once, always with the same sequence number: consumers must
+ * skip changes at or below the last sequence that they applied. publish() holds up every sink and every other batch
+ * while it runs, so it must not be slow.
+ *
+ * @see com.daugherty.demo.customer.CustomerChangePublisher
+ */
+public interface CustomerChangeSink {
+
+    /**
+     * Send the given batch of changes, in order. Throw to have the batch published again later.
+     */
+    void publish(List<CustomerChangeDTO> changes) throws IOException;
+
+}
@@ -0,0 +1,35 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.CustomerChange;
+import lombok.Value;
+
+/**
+ * Published (through Spring's ApplicationEventPublisher) whenever a customer is created, changed or deleted.
+ * <p>
+ * DEVELOPER NOTE: Whoever changes a customer doesn't need to know what else holds a copy of it. It only publishes
+ * this event, and every listener decides for itself what to do about it. The listeners are @TransactionalEventListener
+ * methods: the caches only hear about changes that were committed, and the outbox of customer changes is written just
+ * before the commit, in the same transaction. So this event must always be published inside the transaction that makes
+ * the change; published outside of one, the change would never reach the outbox.
+ *
+ * @see com.daugherty.demo.customer.CustomerService#onCustomerChanged(CustomerChangedEvent)
+ * @see com.daugherty.demo.customer.CustomerService#recordCustomerChange(CustomerChangedEvent)
+ */
+@Value
+class CustomerChangedEvent {
+
+    Integer customerId;
+
+    CustomerChange.ChangeType changeType;
+
+    /**
+     * The customer's version after the change (for a deletion, the last version it had).
+     */
+    Long version;
+
+    /**
+     * The customer's full name after the change, or null for a deletion.
+     */
+    String fullName;
+
+}
@@ -0,0 +1,27 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published (through Spring's ApplicationEventPublisher) with each batch of customer changes that the
+ * CustomerChangePublisher publishes, for code in this application that wants to react to customer changes.
+ * <p>
+ * DEVELOPER NOTE: A @TransactionalEventListener for this event hears about a batch only after its sequence numbers
+ * were committed, and never hears about a batch that was rolled back. A plain @EventListener runs inside the
+ * publishing transaction instead: it can see a batch that is later published again, and if it throws, the batch is
+ * rolled back and published again (to every sink).
+ *
+ * @see com.daugherty.demo.customer.CustomerChangeEventSink
+ */
+@Value
+public class CustomerChangesPublishedEvent {
+
+    /**
+     * The changes, in sequence order.
+     */
+    List<CustomerChangeDTO> changes;
+
+}
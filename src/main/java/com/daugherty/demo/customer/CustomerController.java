@@ -1,15 +1,43 @@
 package com.daugherty.demo.customer;
 
+import com.daugherty.demo.customer.contract.CustomerBatchRequestDTO;
+import com.daugherty.demo.customer.contract.CustomerBatchResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerBulkResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerChangePageDTO;
 import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.contract.CustomerPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSearchPageDTO;
+import com.daugherty.demo.customer.contract.OrderPageDTO;
 import com.daugherty.demo.customer.entity.Customer;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.http.ResponseEntity.noContent;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -21,10 +49,20 @@ import static org.springframework.http.ResponseEntity.ok;
  * <p>
  * The @RestController annotation tells Spring that this class is a "controller" that can handle incoming HTTP
  * requests.
+ * <p>
+ * The @Lazy(false) annotation makes Spring create this controller (and so everything it depends on, down to the
+ * database) at start-up, even when the "fast-start" profile makes every other bean lazy. The first request after a
+ * cold start shouldn't have to wait for Hibernate.
+ * <p>
+ * The methods that read customers answer in JSON, unless the client's Accept header asks for Smile or CBOR, two
+ * binary encodings of the same contracts that are smaller and cheaper to parse (see BinaryFormatConfiguration). Each
+ * of those methods lists all three formats in "produces", and JSON first, so that JSON is what a client gets when it
+ * doesn't say.
  *
  * @see com.daugherty.demo.customer.CustomerService next!
  */
 @RestController
+@Lazy(false)
 @RequiredArgsConstructor
 public class CustomerController {
 
@@ -52,6 +90,40 @@ public class CustomerController {
      */
     private final CustomerTranslator customerTranslator;
     private final CustomerService customerService;
+    private final CustomerJsonCache customerJsonCache;
+    private final ObjectMapper objectMapper;
+
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * The media type of newline-delimited JSON: one complete JSON document per line.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * The media type of a JSON merge patch: a JSON document with only the properties that should be changed.
+     */
+    public static final String APPLICATION_MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
+    /**
+     * The media type of Smile, Jackson's binary encoding of JSON. (CBOR, the other binary encoding that the API
+     * speaks, already has MediaType.APPLICATION_CBOR_VALUE.)
+     *
+     * @see com.daugherty.demo.config.BinaryFormatConfiguration
+     */
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    /**
+     * What is added to the version in the ETag of a Smile or CBOR response (see eTag()).
+     */
+    private static final String SMILE_ETAG_SUFFIX = "+smile";
+
+    private static final String CBOR_ETAG_SUFFIX = "+cbor";
+
+    public static final String UNREADABLE_BULK_RECORD = "A customer record could not be read: ";
 
 
     // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
@@ -63,12 +135,40 @@ public class CustomerController {
      * fed into this method. Notice that is method returns ResponseEntity<?>. This is so the method can return more than
      * one type of object... in this case either a Customer or an Error.
      * </p>
+     * Every 200-OK carries an ETag header made from the customer's version (and the format). A client that sends that
+     * ETag back in an If-None-Match header gets a 304-Not Modified with no body if the customer hasn't changed. That
+     * check only needs the version (from the cache, or a one-column query), so the Customer isn't loaded, translated
+     * or serialized at all. Spring's WebRequest.checkNotModified() does the header comparison and sets the 304 status.
+     * The 304 says "Vary: Accept" too, just like the 200-OK that it stands in for.
+     * <p>
+     * The body is returned as the finished JSON bytes, which Spring writes to the response as they are. For a customer
+     * whose JSON is already in the CustomerJsonCache, the order numbers aren't read, and neither the translator nor
+     * Jackson runs at all.
+     * <p>
+     * A client that prefers Smile or CBOR in its Accept header gets the CustomerDTO in that format instead, written by
+     * Spring's converter for it. Those responses don't go through the CustomerJsonCache, which only holds JSON. Every
+     * response says "Vary: Accept", so that HTTP caches keep a copy per format, and each format has its own ETag.
      *
      * @see com.daugherty.demo.RestExceptionHandler
+     * @see com.daugherty.demo.customer.CustomerJsonCache
      */
-    @GetMapping(path = "/v1/customers/{customerId}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<CustomerDTO> getCustomer(@PathVariable("customerId") Integer customerId)
-            throws BusinessException {
+    @GetMapping(path = "/v1/customers/{customerId}", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<?> getCustomer(@PathVariable("customerId") Integer customerId,
+                                         ServletWebRequest webRequest)
+            throws BusinessException, JsonProcessingException {
+        MediaType format = preferredFormat(webRequest.getHeader(HttpHeaders.ACCEPT));
+
+        // Does the client already have the current version, in this format?
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Long version = customerService.getCustomerVersion(customerId);
+            if (webRequest.getResponse() != null) {
+                webRequest.getResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT); // The 304 needs it too
+            }
+            if ((version != null) && webRequest.checkNotModified(eTag(version, format))) {
+                return null; // The 304-Not Modified status and the ETag header have already been set
+            }
+        }
 
         // DEVELOPER NOTE: Keep in mind that every line of code might blow up with an Exception. It's good form
         // to let exceptions bubble up to the controller, where it can decide on what HTTP response to return.
@@ -78,11 +178,409 @@ public class CustomerController {
         if (customer == null) {
             return notFound().build();
         }
-        // Translate to contract
-        CustomerDTO customerDto = customerTranslator.toContract(customer);
+        // Smile or CBOR asked for? (Translate to contract, and let Spring's converter for the format write it)
+        if (!MediaType.APPLICATION_JSON.equals(format)) {
+            List<String> orderNumbers = customerService.getOrderNumbers(customerId);
+            return ok().eTag(eTag(customer.getVersion(), format)).varyBy(HttpHeaders.ACCEPT)
+                    .body(customerTranslator.toContract(customer, orderNumbers));
+        }
+        // JSON of this version already made?
+        byte[] customerJson = customerJsonCache.lookup(customer);
+        if (customerJson == null) {
+
+            // Translate to contract (order numbers come from their own query, not from the lazy orders collection)
+            List<String> orderNumbers = customerService.getOrderNumbers(customerId);
+            CustomerDTO customerDto = customerTranslator.toContract(customer, orderNumbers);
+            customerJson = objectMapper.writeValueAsBytes(customerDto);
+            customerJsonCache.put(customer, customerJson);
+        }
 
         // Return 200-OK and the Customer
-        return ok().body(customerDto);
+        return ok().eTag(eTag(customer.getVersion())).varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_JSON)
+                .body(customerJson);
+    }
+
+    /**
+     * Given a customer ID, return a Customer with the given ID, without holding on to a web server thread while the
+     * database is being read.
+     * <p>
+     * DEVELOPER NOTE: When a controller method returns a CompletableFuture, Spring MVC puts the request into "async
+     * mode" and gives the request thread back to Tomcat right away. When the future completes (on a thread of the
+     * CustomerLookupExecutor), Spring picks the request back up and writes the response. If the future fails, its
+     * exception goes through the RestExceptionHandler just as if this method had thrown it.
+     *
+     * @see com.daugherty.demo.customer.CustomerLookupExecutor
+     */
+    @GetMapping(path = "/v1/async/customers/{customerId}", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<CustomerDTO>> getCustomerAsync(@PathVariable("customerId") Integer customerId)
+            throws BusinessException {
+
+        return customerService.getCustomerAsync(customerId).thenApply(customerLookup -> {
+
+            // Customer not found?
+            if (customerLookup.getCustomer() == null) {
+                return notFound().build();
+            }
+
+            // Translate to contract and return 200-OK
+            return ok().body(customerTranslator.toContract(customerLookup.getCustomer(), customerLookup.getOrderNumbers()));
+        });
+    }
+
+    /**
+     * Return one page of customers, in customer ID order. Start without "after" for the first page, then pass the
+     * "next" value of each page as "after" to get the page that follows it. There are no more pages when "next" is
+     * missing.
+     * <p>
+     * DEVELOPER NOTE: There are no page numbers on purpose. "Page 5" of a table that is being changed is a different
+     * set of rows from one minute to the next, and finding it means the database has to skip all the rows before it.
+     * "The customers after ID 4500" is stable, and cheap to find at any depth.
+     */
+    @GetMapping(path = "/v1/customers", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CustomerPageDTO> listCustomers(@RequestParam(value = "after", required = false) Integer after,
+                                                         @RequestParam(value = "limit", required = false) Integer limit)
+            throws BusinessException {
+
+        // Read the page, then translate to contract and return 200-OK
+        return ok().body(customerTranslator.toContract(customerService.listCustomers(after, limit)));
+    }
+
+    /**
+     * Return one page of the given customer's order numbers, in order number order, or 404 if there is no such
+     * customer. Paging works like the customer listing: pass the "next" value of each page as "after".
+     * <p>
+     * DEVELOPER NOTE: GET /v1/customers/{customerId} returns every order number of the customer in one response. This
+     * is for customers with more orders than that is sensible for.
+     */
+    @GetMapping(path = "/v1/customers/{customerId}/orders", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<OrderPageDTO> listOrders(@PathVariable("customerId") Integer customerId,
+                                                   @RequestParam(value = "after", required = false) String after,
+                                                   @RequestParam(value = "limit", required = false) Integer limit)
+            throws BusinessException {
+
+        // Read the page
+        OrderPage orderPage = customerService.listOrders(customerId, after, limit);
+
+        // Customer not found?
+        if (orderPage == null) {
+            return notFound().build();
+        }
+
+        // Translate to contract and return 200-OK
+        return ok().body(customerTranslator.toContract(orderPage));
+    }
+
+    /**
+     * Return a page of the customers whose full name or street address (give exactly one) is the given one, or, with
+     * match=prefix, starts with it. Case and leading or trailing spaces are ignored. The "next" cursor in the response
+     * gets the next page when it is passed back as "after" with the same search parameters.
+     * <p>
+     * DEVELOPER NOTE: Spring maps this before /v1/customers/{customerId}, because a URL pattern without variables is
+     * more specific than one with them.
+     */
+    @GetMapping(path = "/v1/customers/search", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CustomerSearchPageDTO> searchCustomers(
+            @RequestParam(value = "fullName", required = false) String fullName,
+            @RequestParam(value = "streetAddress", required = false) String streetAddress,
+            @RequestParam(value = "match", required = false) String match,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) throws BusinessException {
+
+        // Search, then translate to contract and return 200-OK
+        CustomerSearchPage customerSearchPage = customerService.searchCustomers(fullName, streetAddress, match, after,
+                limit);
+        return ok().body(customerTranslator.toContract(customerSearchPage));
+    }
+
+    /**
+     * Return a page of the changes to customers (created, updated or deleted) that were published after the given
+     * sequence number, in sequence order. Start with since=0, then pass the "next" value of each page as "since". An
+     * empty page means that there is nothing newer yet. 410-Gone means that "since" is so old that the changes after it
+     * are no longer kept: read the customers again, and follow the changes from the newest one.
+     * <p>
+     * DEVELOPER NOTE: This is for consumers that used to poll every customer for changes. They now ask "what changed
+     * since sequence 41?", which is one indexed range read of only the changes, and apply them. A change shows up here
+     * once the CustomerChangePublisher has published it, usually within customerChanges.pollInterval of its commit.
+     */
+    @GetMapping(path = "/v1/customers/changes", produces = {MediaType.APPLICATION_JSON_VALUE,
+            APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CustomerChangePageDTO> getChanges(
+            @RequestParam(value = "since", required = false) Long since,
+            @RequestParam(value = "limit", required = false) Integer limit) throws BusinessException {
+
+        // Read the page, then translate to contract and return 200-OK
+        return ok().body(customerTranslator.toContract(customerService.getChanges(since, limit)));
+    }
+
+    /**
+     * Given a list of customer IDs, return the outcome of looking up each of them.
+     * <p>
+     * DEVELOPER NOTE: This is a POST even though nothing is being changed. A GET with thousands of IDs in the query
+     * string would run into URL length limits in browsers, proxies and load balancers. The ":batchGet" suffix is a
+     * common naming convention for this kind of "custom method" on a collection. Every requested ID gets an entry in the
+     * response (FOUND, NOT_FOUND or INVALID), so the whole call returns 200-OK unless the request itself is bad.
+     */
+    @PostMapping(path = "/v1/customers:batchGet", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<CustomerBatchResponseDTO> getCustomers(@RequestBody CustomerBatchRequestDTO request)
+            throws BusinessException {
+
+        // Look up all of the customers
+        List<CustomerLookup> customerLookups = customerService.getCustomers(request.getIds());
+
+        // Translate to contract and return 200-OK
+        return ok().body(customerTranslator.toContract(customerLookups));
+    }
+
+    /**
+     * Create customers from a (possibly huge) request body of CustomerDTOs, either as newline-delimited JSON or as a
+     * JSON array, and report on every record that could not be created. The order numbers in the records are ignored.
+     * <p>
+     * DEVELOPER NOTE: A @RequestBody List<CustomerDTO> would read the whole body into memory before this method even
+     * starts. Instead, a Jackson MappingIterator reads one CustomerDTO at a time from the request's input stream, and
+     * each one is translated as the service asks for it. The same MappingIterator handles both body formats: it reads a
+     * sequence of JSON values, and if the first one is an array, it steps into the array. Records that aren't even
+     * valid JSON (or don't fit CustomerDTO) end the request with a 400-Bad Request, since there's no reliable way to
+     * find where the next record starts. Chunks of records that were saved before that point stay saved (see
+     * CustomerService.ingestCustomers()), and the records of the unfinished chunk are not created.
+     */
+    @PostMapping(path = "/v1/customers:bulk", consumes = {APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CustomerBulkResponseDTO> ingestCustomers(HttpServletRequest request)
+            throws IOException, BusinessException {
+
+        try (MappingIterator<CustomerDTO> customerDtos = objectMapper.readerFor(CustomerDTO.class)
+                .readValues(request.getInputStream())) {
+            Iterator<Customer> customers = new Iterator<Customer>() {
+                @Override
+                public boolean hasNext() {
+                    return customerDtos.hasNext();
+                }
+
+                @Override
+                public Customer next() {
+                    return customerTranslator.toEntity(customerDtos.next());
+                }
+            };
+
+            // Create the customers, then translate the report to contract and return 200-OK
+            return ok().body(customerTranslator.toContract(customerService.ingestCustomers(customers)));
+
+        } catch (RuntimeException e) {
+            // The iterator can't throw a checked exception, so Jackson wraps its exceptions in unchecked ones
+            if ((e instanceof RuntimeJsonMappingException) || (e.getCause() instanceof JsonProcessingException)) {
+                throw new BusinessException(UNREADABLE_BULK_RECORD + e.getMessage(), false);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replace the customer with the given ID, and return it as it is now. The If-Match header must hold the ETag of the
+     * version that the replacement is based on (from an earlier GET). Only the full name can be changed; the ID may be
+     * left out of the body, and the order numbers are ignored.
+     * <p>
+     * DEVELOPER NOTE: The If-Match header is what stops "lost updates". Two clients read version 3 of a customer, and
+     * both send a change. Without it, the second change silently overwrites the first. With it, the first change makes
+     * the customer version 4, and the second one gets a 412-Precondition Failed and has to read the customer again. A
+     * change without an If-Match header gets a 428-Precondition Required. If both changes arrive at exactly the same
+     * moment, the loser gets a 409-Conflict instead (see CustomerService.updateCustomer()).
+     *
+     * @see com.daugherty.demo.RestExceptionHandler
+     */
+    @PutMapping(path = "/v1/customers/{customerId}", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CustomerDTO> replaceCustomer(@PathVariable("customerId") Integer customerId,
+                                                       @RequestBody CustomerDTO customerDto,
+                                                       WebRequest webRequest) throws BusinessException {
+
+        Customer customer = customerService.replaceCustomer(customerId, ifMatchVersion(webRequest),
+                customerTranslator.toEntity(customerDto));
+        return toUpdatedResponse(customer);
+    }
+
+    /**
+     * Change the customer with the given ID, and return it as it is now. Like replaceCustomer(), but properties that
+     * are left out of the body (or are null) are left as they are. The If-Match header works the same way.
+     */
+    @PatchMapping(path = "/v1/customers/{customerId}", consumes = {APPLICATION_MERGE_PATCH_JSON_VALUE,
+            MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CustomerDTO> patchCustomer(@PathVariable("customerId") Integer customerId,
+                                                     @RequestBody CustomerDTO customerDto,
+                                                     WebRequest webRequest) throws BusinessException {
+
+        Customer customer = customerService.patchCustomer(customerId, ifMatchVersion(webRequest),
+                customerTranslator.toEntity(customerDto));
+        return toUpdatedResponse(customer);
+    }
+
+    /**
+     * Delete the customer with the given ID, and its orders, and return 204-No Content. The If-Match header works the
+     * same way as for replaceCustomer().
+     */
+    @DeleteMapping(path = "/v1/customers/{customerId}")
+    public ResponseEntity<Void> deleteCustomer(@PathVariable("customerId") Integer customerId,
+                                               WebRequest webRequest) throws BusinessException {
+
+        // Customer not found?
+        if (!customerService.deleteCustomer(customerId, ifMatchVersion(webRequest))) {
+            return notFound().build();
+        }
+        return noContent().build();
+    }
+
+    /**
+     * Write every customer in the system to the response as newline-delimited JSON, one CustomerDTO per line.
+     * <p>
+     * DEVELOPER NOTE: Returning a List<CustomerDTO> would mean building the whole export in memory before sending the
+     * first byte. Instead, this method writes each customer straight to the response as the service hands it over, so
+     * the amount of memory used is the same for ten customers or fifty million. One JsonGenerator is used for the whole
+     * response and the "root value separator" puts a newline between customers. The export is written on the request
+     * thread, which keeps the database transaction and the response on the same thread from start to finish.
+     * <p>
+     * An ObjectMapper flushes its output after every value that it writes (FLUSH_AFTER_WRITE_VALUE). Here that would
+     * push every customer to the client as its own small chunk, so the customers are written with an ObjectWriter that
+     * doesn't, and the response is flushed once per STREAM_FETCH_SIZE customers, as each chunk read from the database
+     * is finished. An export of no customers is an empty body.
+     */
+    @GetMapping(path = "/v1/customers/export", produces = APPLICATION_NDJSON_VALUE)
+    public void exportCustomers(HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        ObjectWriter writer = objectMapper.writerFor(CustomerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        AtomicInteger exported = new AtomicInteger();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                customerService.exportCustomers((customer, orderNumbers) -> {
+                    try {
+                        writer.writeValue(generator, customerTranslator.toContract(customer, orderNumbers));
+                        if (exported.incrementAndGet() % CustomerRepository.STREAM_FETCH_SIZE == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        // The consumer can't throw a checked exception, so wrap it and unwrap it below
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (exported.get() > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * Return the ETag for the given customer version, as JSON.
+     */
+    static String eTag(Long version) {
+        return eTag(version, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Return the ETag for the given customer version, in the given format: "5" for JSON, "5+smile" for Smile and
+     * "5+cbor" for CBOR.
+     * <p>
+     * DEVELOPER NOTE: These are "strong" ETags (no W/ in front): each one promises that two responses with it are
+     * byte-for-byte the same. The JSON, Smile and CBOR of one version are different bytes, so each format needs an
+     * ETag of its own, or an HTTP cache could answer a range request or an If-None-Match for one format with the bytes
+     * of another. ifMatchVersion() accepts all three, so a client can change a customer whichever format it read it
+     * in. An ETag is an opaque quoted string, so clients must not read the version out of it.
+     */
+    static String eTag(Long version, MediaType format) {
+        if (APPLICATION_SMILE.equals(format)) {
+            return "\"" + version + SMILE_ETAG_SUFFIX + "\"";
+        }
+        if (MediaType.APPLICATION_CBOR.equals(format)) {
+            return "\"" + version + CBOR_ETAG_SUFFIX + "\"";
+        }
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Return the format that the given Accept header prefers: JSON, Smile or CBOR. Without an Accept header, or with
+     * one that accepts anything, the answer is JSON.
+     * <p>
+     * DEVELOPER NOTE: This is the same choice that Spring makes for the methods that return a DTO: the most specific
+     * and highest quality accepted type that this controller can produce wins, and JSON wins a tie.
+     */
+    static MediaType preferredFormat(String accept) {
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue; // "q=0" means "not this one"
+            }
+            if (acceptedType.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (acceptedType.includes(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+            if (acceptedType.includes(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Return the customer version in the request's If-Match header, or null if there is no If-Match header.
+     * <p>
+     * DEVELOPER NOTE: Only a single ETag that this class made, in any of the formats, can ever match. Anything else (a
+     * weak ETag, a list of ETags, or "*") can't match the current version of a customer, so it fails the precondition.
+     */
+    static Long ifMatchVersion(WebRequest webRequest) throws PreconditionFailedException {
+        String ifMatch = webRequest.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch == null) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if ((eTag.length() > 2) && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            String version = eTag.substring(1, eTag.length() - 1);
+            for (String suffix : new String[]{SMILE_ETAG_SUFFIX, CBOR_ETAG_SUFFIX}) {
+                if (version.endsWith(suffix)) {
+                    version = version.substring(0, version.length() - suffix.length());
+                    break;
+                }
+            }
+            try {
+                return Long.valueOf(version);
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        throw new PreconditionFailedException(CustomerService.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Return 200-OK with the given changed customer and its new ETag, or 404-Not Found if there is no customer.
+     */
+    private ResponseEntity<CustomerDTO> toUpdatedResponse(Customer customer) {
+
+        // Customer not found?
+        if (customer == null) {
+            return notFound().build();
+        }
+
+        // Translate to contract and return 200-OK
+        List<String> orderNumbers = customerService.getOrderNumbers(customer.getCustomerId());
+        return ok().eTag(eTag(customer.getVersion()))
+                .body(customerTranslator.toContract(customer, orderNumbers));
     }
 
 }
@@ -0,0 +1,35 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk customer ingest: how many records were received and created, and what went wrong with the
+ * ones that weren't.
+ * <p>
+ * DEVELOPER NOTE: Only the first CustomerService.MAX_REPORTED_FAILURES failures are listed one by one. A load where
+ * every one of millions of records fails would otherwise build a response as big as the request. The failed count
+ * always covers all of them.
+ */
+@Value
+public class CustomerIngestResult {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    /**
+     * A record that was not created. The index is the record's position in the request, starting at zero.
+     */
+    @Value
+    public static class Failure {
+        long index;
+        Integer customerId;
+        String message;
+    }
+
+    long received;
+    long created;
+    long failed;
+    List<Failure> failures;
+
+}
@@ -0,0 +1,130 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * An in-process cache of the finished JSON response (as UTF-8 bytes) of GET /v1/customers/{customerId}, bounded by
+ * the number of bytes that it holds.
+ * <p>
+ * DEVELOPER NOTE: Once a customer is in the CustomerCache, most of the time that a request takes is spent turning it
+ * into JSON: building a CustomerDTO, and then Jackson walking it and formatting its lastReadTimestamp with a date
+ * pattern. For a customer that hasn't changed, the result is the same bytes every time. This cache keeps those bytes,
+ * and the controller writes them to the response as they are.
+ * <p>
+ * An entry is only used for exactly the Customer that it was made from: the same ID, the same version, and the same
+ * lastReadTimestamp (the one property of the response that doesn't come from the database). Any change to a customer
+ * or its orders gives it a new version (see Customer.version), so a stale entry can never be a hit, and nothing has to
+ * invalidate this cache. The next miss simply replaces it.
+ * <p>
+ * The cache is bounded by weight rather than by count: each entry weighs the length of its JSON plus a rough
+ * per-entry overhead, so a few customers with thousands of orders can't use more memory than was configured.
+ *
+ * @see com.daugherty.demo.customer.CustomerController#getCustomer
+ */
+@Component
+class CustomerJsonCache {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * Roughly what an entry costs on top of its JSON: the entry, its key, the CachedJson and the array header.
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 96;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final Cache<Integer, CachedJson> cache;
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * The JSON of a customer, and the version and lastReadTimestamp of the Customer that it was made from.
+     */
+    @Value
+    static class CachedJson {
+        Long version;
+        ZonedDateTime lastReadTimestamp;
+        byte[] json;
+    }
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    @Autowired
+    CustomerJsonCache(AppConfiguration appConfiguration) {
+        this(appConfiguration.getCustomerJsonCache());
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache, "customerJson");
+    }
+
+    CustomerJsonCache(AppConfiguration.CustomerJsonCacheProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((Integer customerId, CachedJson cachedJson) ->
+                        cachedJson.getJson().length + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return the cached JSON of the given Customer, or null if there is none for this exact version of it. The
+     * returned bytes are shared, and must never be changed.
+     */
+    byte[] lookup(Customer customer) {
+        CachedJson cachedJson = cache.getIfPresent(customer.getCustomerId());
+        if ((cachedJson == null)
+                || !Objects.equals(cachedJson.getVersion(), customer.getVersion())
+                || !Objects.equals(cachedJson.getLastReadTimestamp(), customer.getLastReadTimestamp())) {
+            return null;
+        }
+        return cachedJson.getJson();
+    }
+
+    /**
+     * Cache the JSON of the given Customer. A Customer without a version (one that was never saved) isn't cached,
+     * since there would be no way to tell when it changed.
+     */
+    void put(Customer customer, byte[] json) {
+        if (customer.getVersion() != null) {
+            cache.put(customer.getCustomerId(),
+                    new CachedJson(customer.getVersion(), customer.getLastReadTimestamp(), json));
+        }
+    }
+
+    /**
+     * Return a snapshot of the hit, miss and eviction counters.
+     */
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Return the total weight (roughly, the bytes) of everything in the cache.
+     * <p>
+     * DEVELOPER NOTE: Caffeine evicts in the background, so this can be briefly over the maximum. cleanUp() finishes
+     * any pending evictions first.
+     */
+    long weight() {
+        cache.cleanUp();
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+}
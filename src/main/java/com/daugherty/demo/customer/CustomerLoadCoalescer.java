@@ -0,0 +1,112 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Customer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes concurrent loads of the same customer share a single database read ("single flight").
+ * <p>
+ * DEVELOPER NOTE: When a popular customer isn't in the CustomerCache (it was just evicted, or it just expired), every
+ * request for it misses the cache at the same moment, and every one of them reads the same row from the database. A
+ * few hundred of those at once is a "thundering herd" that can swamp the connection pool. Here the first caller for an
+ * ID puts a CompletableFuture into a map and does the read. Every caller that arrives while that read is in flight
+ * finds the future and waits on it instead, and gets the same Customer (or the same exception).
+ * <p>
+ * There is no lock shared by all customers: ConcurrentHashMap only ever locks the one bin that an ID falls into, and
+ * only for the instant that putIfAbsent() and remove() take. Callers for different customers never wait for each
+ * other. The future is removed as soon as the read is done, so this only ever holds the loads that are in flight;
+ * after that, callers find the answer in the CustomerCache.
+ *
+ * @see com.daugherty.demo.customer.CustomerService#getCustomer(Integer)
+ */
+@Component
+class CustomerLoadCoalescer {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    static final Counter COALESCED_COUNTER = Counter.builder("customer.load.coalesced")
+            .description("Customer loads that waited for another caller's load of the same customer")
+            .register(Metrics.globalRegistry);
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final ConcurrentMap<Integer, CompletableFuture<Customer>> inFlight = new ConcurrentHashMap<>();
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return the Customer that the given loader returns for the given ID. If another thread is already loading the same
+     * ID, wait for its result instead of calling the loader. An exception thrown by the loader is thrown to every
+     * caller that was waiting on it.
+     * <p>
+     * DEVELOPER NOTE: The loader runs on the caller's thread (not on some pool), so a caller that isn't waiting on
+     * anybody behaves exactly as it would without this class, transaction and all.
+     */
+    Customer load(Integer customerId, Supplier<Customer> loader) {
+        CompletableFuture<Customer> load = new CompletableFuture<>();
+        CompletableFuture<Customer> existingLoad = inFlight.putIfAbsent(customerId, load);
+        if (existingLoad != null) {
+            COALESCED_COUNTER.increment();
+            return await(existingLoad);
+        }
+
+        try {
+            Customer customer = loader.get();
+            load.complete(customer);
+            return customer;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(customerId, load);
+        }
+    }
+
+    /**
+     * Invalidation hook: callers that arrive after this don't share a load of the given ID that is already in flight,
+     * since it may have read the customer from before a change. Callers that are already waiting on it still get its
+     * result.
+     */
+    void forget(Integer customerId) {
+        inFlight.remove(customerId);
+    }
+
+    /**
+     * Return the number of loads that are in flight.
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: join() wraps the loader's exception in a CompletionException. Waiting callers get the original
+     * exception, just like the caller that ran the loader.
+     */
+    private static Customer await(CompletableFuture<Customer> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
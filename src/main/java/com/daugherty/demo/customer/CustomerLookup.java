@@ -0,0 +1,47 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Customer;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of looking up a single customer ID as part of a batch lookup.
+ * <p>
+ * DEVELOPER NOTE: A batch lookup can't just return a list of Customers, since the caller needs to know *why* a given ID
+ * has no Customer. Was it never there, or was the ID garbage to begin with? This small immutable value object carries
+ * the requested ID, what happened to it, and the Customer and its order numbers (only when one was found).
+ */
+@Value
+public class CustomerLookup {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    public enum Status {
+        FOUND,
+        NOT_FOUND,
+        INVALID
+    }
+
+    Integer customerId;
+    Status status;
+    Customer customer;
+    List<String> orderNumbers;
+
+
+    // ------------------------------------------------ STATIC METHODS -------------------------------------------------
+
+    static CustomerLookup found(Customer customer, List<String> orderNumbers) {
+        return new CustomerLookup(customer.getCustomerId(), Status.FOUND, customer, orderNumbers);
+    }
+
+    static CustomerLookup notFound(Integer customerId) {
+        return new CustomerLookup(customerId, Status.NOT_FOUND, null, Collections.emptyList());
+    }
+
+    static CustomerLookup invalid(Integer customerId) {
+        return new CustomerLookup(customerId, Status.INVALID, null, Collections.emptyList());
+    }
+
+}
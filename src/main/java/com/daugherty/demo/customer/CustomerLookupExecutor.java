@@ -0,0 +1,133 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.config.VirtualThreads;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, bounded thread pool that runs the blocking (database) part of asynchronous customer lookups.
+ * <p>
+ * DEVELOPER NOTE: A web server has a fixed number of request threads (200 for Tomcat by default). If every one of them
+ * is stuck waiting for the database, the server can't even answer a health check. The asynchronous endpoints hand the
+ * slow work to this pool instead and give the request thread back to Tomcat right away.
+ * <p>
+ * Everything about this pool is bounded on purpose:
+ * <ul>
+ * <li>A fixed number of threads, so the database never sees more than that many lookups at once.</li>
+ * <li>A fixed-size queue. When it is full, new work is rejected right away with a RejectedExecutionException (which
+ * becomes a 503) instead of piling up in memory. Failing fast is kinder to clients than making them wait for an answer
+ * that will be too late anyway.</li>
+ * <li>A timeout. Work that isn't done in time fails with a TimeoutException (which becomes a 504). If it was still
+ * waiting in the queue, it is removed and never runs.</li>
+ * </ul>
+ * This is a plain @Component rather than an Executor @Bean on purpose. Spring Boot treats an Executor bean as "the"
+ * application task executor, and this pool is only meant for customer lookups.
+ *
+ * @see com.daugherty.demo.RestExceptionHandler
+ */
+@Component
+class CustomerLookupExecutor {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final ThreadPoolExecutor executor;
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final long timeoutMillis;
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: When virtual threads are turned on, the pool's threads are virtual threads. The pool is still
+     * needed: it's what limits how many lookups hit the database at once, and how many may wait.
+     */
+    @Autowired
+    CustomerLookupExecutor(AppConfiguration appConfiguration) {
+        this(appConfiguration.getCustomerLookupExecutor(),
+                (appConfiguration.getVirtualThreads().isEnabled() && VirtualThreads.isSupported())
+                        ? VirtualThreads.factory("customer-lookup-virtual-")
+                        : namedDaemonThreads("customer-lookup-"));
+        ExecutorServiceMetrics.monitor(Metrics.globalRegistry, executor, "customerLookup");
+    }
+
+    CustomerLookupExecutor(AppConfiguration.CustomerLookupExecutorProperties properties) {
+        this(properties, namedDaemonThreads("customer-lookup-"));
+    }
+
+    CustomerLookupExecutor(AppConfiguration.CustomerLookupExecutorProperties properties, ThreadFactory threadFactory) {
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = new ScheduledThreadPoolExecutor(1, namedDaemonThreads("customer-lookup-timer-"));
+        this.timer.setRemoveOnCancelPolicy(true); // Don't keep cancelled timeouts around until they would have fired
+        this.timeoutMillis = properties.getTimeout().toMillis();
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Run the given work on the pool, and return a future of its result. The future fails with a TimeoutException if
+     * the work isn't done in time, or with whatever the work threw.
+     *
+     * @throws RejectedExecutionException right away if the queue is full (or the pool is shut down)
+     */
+    <T> CompletableFuture<T> submit(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (result.isDone()) {
+                return; // Timed out while it was still waiting in the queue; nobody wants the answer anymore
+            }
+            try {
+                result.complete(work.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("Customer lookup took longer than " + timeoutMillis + "ms"))) {
+                task.cancel(true);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, throwable) -> timeout.cancel(false));
+
+        return result;
+    }
+
+    /**
+     * Stop accepting work, and let the threads end when Spring shuts down.
+     */
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Named threads make thread dumps readable. Daemon threads don't keep the JVM alive on their own.
+     */
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
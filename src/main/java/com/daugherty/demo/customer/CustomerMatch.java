@@ -0,0 +1,23 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+/**
+ * A Customer found by a search by name or street address: its ID, name and street address.
+ * <p>
+ * DEVELOPER NOTE: This is a class-based projection like CustomerSummary. The street address is included because a
+ * search by address is no use without it, and because a page of results has to remember the last address (or name)
+ * on it to know where the next page starts.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepository#findMatchesByFullName
+ */
+@Value
+public class CustomerMatch {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    Integer customerId;
+    String fullName;
+    String streetAddress;
+
+}
@@ -0,0 +1,19 @@
+package com.daugherty.demo.customer;
+
+/**
+ * A slim, read-only view of a single Order: just the order number and the ID of the Customer that owns it.
+ * <p>
+ * DEVELOPER NOTE: This is a Spring Data "projection". Instead of loading whole Order entities (and, through them, the
+ * Customer they belong to), a repository query can select just the columns it needs and Spring will hand back objects
+ * that implement this interface. The aliases in the query ("as customerId", "as orderNumber") must match the getter
+ * names here.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepository#findOrderNumbersByCustomerIdIn
+ */
+public interface CustomerOrderNumber {
+
+    Integer getCustomerId();
+
+    String getOrderNumber();
+
+}
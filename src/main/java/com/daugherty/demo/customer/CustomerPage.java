@@ -0,0 +1,21 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of a customer listing, and where the next page starts.
+ * <p>
+ * DEVELOPER NOTE: "next" is the customer ID to pass as "after" to get the next page, or null when this is the last
+ * page. It is always the ID of the last customer on this page.
+ */
+@Value
+public class CustomerPage {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    List<CustomerSummary> customers;
+    Integer next;
+
+}
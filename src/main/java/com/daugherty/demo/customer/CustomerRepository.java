@@ -1,9 +1,21 @@
 package com.daugherty.demo.customer;
 
 import com.daugherty.demo.customer.entity.Customer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.*;
+
 /**
  * This JPA (Java Persistence Architecture) repository interface provides methods to return Customer data from the
  * database.
@@ -24,9 +36,162 @@ import org.springframework.stereotype.Repository;
  * @see com.daugherty.demo.customer.entity.Customer
  */
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerRepositoryCustom {
     /*
      * DEVELOPER NOTE: A JpaRepository only needs to know the class that it manages and the type
      * of the ID property of that class. You don't have to code anything. Spring does all the work.
      */
+
+    /**
+     * How many rows the JDBC driver is asked to fetch from the database at a time when streaming.
+     */
+    int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Return all Customers whose ID is in the given collection. IDs without a matching Customer are simply absent from
+     * the result, and the result is in no particular order.
+     * <p>
+     * DEVELOPER NOTE: This is a Spring Data "derived query". Spring parses the method name and generates the JPQL for
+     * you... in this case "select c from Customer c where c.customerId in (:customerIds)". That's ONE database round
+     * trip no matter how many IDs are passed in. Databases do put a limit on how many parameters a single statement
+     * can have, though, so callers should pass the IDs in reasonably sized chunks.
+     */
+    List<Customer> findByCustomerIdIn(Collection<Integer> customerIds);
+
+    /**
+     * Return the version of the Customer with the given ID, or an empty Optional if there is no such Customer.
+     * <p>
+     * DEVELOPER NOTE: Reading just one number, by primary key, is about the cheapest query there is. Hibernate doesn't
+     * create a Customer object for it, so nothing ends up in the persistence context either.
+     */
+    @Query("select c.version from Customer c where c.customerId = :customerId")
+    Optional<Long> findVersionByCustomerId(@Param("customerId") Integer customerId);
+
+    /**
+     * Return the ID and name of the Customers whose ID is greater than the given one, in customer ID order. Pass a
+     * Pageable of PageRequest.of(0, limit) to get at most "limit" of them.
+     * <p>
+     * DEVELOPER NOTE: This is "keyset" (or "seek") pagination. The usual way to page, findAll(PageRequest.of(page,
+     * size)), becomes "... order by CUST_ID offset 1000000 rows fetch first 100 rows only". The database can't jump to
+     * row one million; it has to walk past every one of the rows before it, so every page is slower than the one
+     * before. Here, each page starts where the last one ended ("where CUST_ID > :after"), which the primary key index
+     * finds directly, so page 10,000 costs the same as page 1. A List (rather than a Page) return type also means
+     * Spring Data doesn't run a "select count(*)" over the whole table for every page.
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerSummary(c.customerId, c.fullName) from Customer c "
+            + "where c.customerId > :after order by c.customerId")
+    List<CustomerSummary> findSummariesAfter(@Param("after") Integer after, Pageable pageable);
+
+    /**
+     * Return the snapshot columns of the Customers whose ID is greater than the given one, in customer ID order, a page
+     * at a time like findSummariesAfter().
+     *
+     * @see com.daugherty.demo.customer.CustomerSnapshot
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerSnapshotRow(c.customerId, c.fullName, c.streetAddress, "
+            + "c.version) from Customer c "
+            + "where c.customerId > :after order by c.customerId")
+    List<CustomerSnapshotRow> findSnapshotRowsAfter(@Param("after") Integer after, Pageable pageable);
+
+    /**
+     * Return the Customers whose lower-case name is the given one and whose ID is greater than afterCustomerId, in
+     * customer ID order. Pass a Pageable of PageRequest.of(0, limit) to get at most "limit" of them.
+     * <p>
+     * DEVELOPER NOTE: The IX_CUSTOMERS_FULL_NAME_LC index is sorted by name and then by ID, so the database goes
+     * straight to the first matching entry after afterCustomerId and reads the rest of the page in order, the same
+     * "keyset" paging as findSummariesAfter().
+     *
+     * @see com.daugherty.demo.customer.entity.Customer#toSearchKey(String)
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerMatch(c.customerId, c.fullName, c.streetAddress) "
+            + "from Customer c "
+            + "where c.fullNameLowerCase = :searchKey and c.customerId > :afterCustomerId "
+            + "order by c.customerId")
+    List<CustomerMatch> findMatchesByFullName(@Param("searchKey") String searchKey,
+                                              @Param("afterCustomerId") Integer afterCustomerId,
+                                              Pageable pageable);
+
+    /**
+     * Return the Customers whose lower-case street address is the given one, like findMatchesByFullName().
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerMatch(c.customerId, c.fullName, c.streetAddress) "
+            + "from Customer c "
+            + "where c.streetAddressLowerCase = :searchKey and c.customerId > :afterCustomerId "
+            + "order by c.customerId")
+    List<CustomerMatch> findMatchesByStreetAddress(@Param("searchKey") String searchKey,
+                                                   @Param("afterCustomerId") Integer afterCustomerId,
+                                                   Pageable pageable);
+
+    /**
+     * Return the Customers whose lower-case name matches the given LIKE pattern and comes after (afterSearchKey,
+     * afterCustomerId), in lower-case name and then customer ID order. The pattern must be a prefix followed by "%",
+     * with any "%", "_" and "!" in the prefix escaped with "!". The first page starts after ("", Integer.MIN_VALUE).
+     * <p>
+     * DEVELOPER NOTE: A LIKE with a fixed prefix ("smi%") can use an index, because the matches are all next to each
+     * other in it. Unlike with an exact match, they don't all have the same name, so a page has to remember where it
+     * ended with both the name and the ID. "c.fullNameLowerCase >= :afterSearchKey" is redundant with the line after
+     * it, but it's what lets the database start reading the index at the previous page's last name instead of at the
+     * start of the prefix. An OR doesn't tell it where to start.
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerMatch(c.customerId, c.fullName, c.streetAddress) "
+            + "from Customer c "
+            + "where c.fullNameLowerCase like :pattern escape '!' "
+            + "and c.fullNameLowerCase >= :afterSearchKey "
+            + "and (c.fullNameLowerCase > :afterSearchKey or c.customerId > :afterCustomerId) "
+            + "order by c.fullNameLowerCase, c.customerId")
+    List<CustomerMatch> findMatchesByFullNameLike(@Param("pattern") String pattern,
+                                                  @Param("afterSearchKey") String afterSearchKey,
+                                                  @Param("afterCustomerId") Integer afterCustomerId,
+                                                  Pageable pageable);
+
+    /**
+     * Return the Customers whose lower-case street address matches the given LIKE pattern, like
+     * findMatchesByFullNameLike().
+     */
+    @Query("select new com.daugherty.demo.customer.CustomerMatch(c.customerId, c.fullName, c.streetAddress) "
+            + "from Customer c "
+            + "where c.streetAddressLowerCase like :pattern escape '!' "
+            + "and c.streetAddressLowerCase >= :afterSearchKey "
+            + "and (c.streetAddressLowerCase > :afterSearchKey or c.customerId > :afterCustomerId) "
+            + "order by c.streetAddressLowerCase, c.customerId")
+    List<CustomerMatch> findMatchesByStreetAddressLike(@Param("pattern") String pattern,
+                                                       @Param("afterSearchKey") String afterSearchKey,
+                                                       @Param("afterCustomerId") Integer afterCustomerId,
+                                                       Pageable pageable);
+
+    /**
+     * Return the order numbers of all Orders that belong to the Customers with the given IDs, sorted by order number.
+     * <p>
+     * DEVELOPER NOTE: Walking Customer.getOrders() would work too, but that collection is lazy. Touching it runs one
+     * extra query *per customer* (the "N+1 selects" problem) and loads every column of every Order, plus it only works
+     * while a database session is still open. This @Query selects only the two columns that are needed, for any number
+     * of customers, in a single statement. Because customerId is the ID of the Order's customer, Hibernate reads it
+     * straight from the ORDERS.CUST_ID column without joining to CUSTOMERS.
+     */
+    @Query("select o.customer.customerId as customerId, o.orderNumber as orderNumber from Order o "
+            + "where o.customer.customerId in :customerIds order by o.orderNumber")
+    List<CustomerOrderNumber> findOrderNumbersByCustomerIdIn(@Param("customerIds") Collection<Integer> customerIds);
+
+    /**
+     * Return every Customer in the database, in customer ID order, as a Stream that reads from a forward-only database
+     * cursor. The Stream must be used inside a transaction, and must be closed (try-with-resources) when done.
+     * <p>
+     * DEVELOPER NOTE: findAll() returns a List, which means every row is loaded into memory before the first one can
+     * be used. A Stream is read from the database a few rows at a time (STREAM_FETCH_SIZE) as it is consumed. The
+     * read-only hint tells Hibernate not to keep a copy of each entity for change detection, and the cacheable and
+     * cache mode hints keep a full-table read from flushing the hot entries out of the query cache and the second-level
+     * cache. Note that the persistence context still remembers every entity that the Stream returns, so callers must
+     * clear it now and then.
+     *
+     * @see com.daugherty.demo.customer.CustomerRepositoryCustom#clearPersistenceContext()
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select c from Customer c order by c.customerId")
+    Stream<Customer> streamAll();
+
 }
@@ -0,0 +1,40 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Customer;
+
+import java.util.Collection;
+
+/**
+ * Repository methods that Spring Data can't generate by itself, and so are implemented by hand.
+ * <p>
+ * DEVELOPER NOTE: CustomerRepository extends this interface. When Spring creates the implementation of
+ * CustomerRepository, it looks for a class named CustomerRepositoryImpl and sends calls to these methods to it. Every
+ * other method is still generated by Spring.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepositoryImpl
+ */
+public interface CustomerRepositoryCustom {
+
+    /**
+     * Detach every entity that has been loaded by the current database session.
+     * <p>
+     * DEVELOPER NOTE: JPA remembers every entity it loads for as long as the session is open (the "persistence
+     * context"), so that it can detect changes to them. When reading millions of rows in one session, that memory is
+     * never given back unless the persistence context is cleared now and then.
+     */
+    void clearPersistenceContext();
+
+    /**
+     * Insert the given new Customers in one transaction, then detach them. All of them are inserted, or none are.
+     * <p>
+     * DEVELOPER NOTE: Each persist() only queues an INSERT. The flush at the end sends them all, and because
+     * hibernate.jdbc.batch_size is set (see application.yml), Hibernate sends them in JDBC batches: many rows per round
+     * trip to the database instead of one. The clear afterwards means the persistence context never holds more than one
+     * call's worth of Customers, however many calls are made.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if any Customer breaks a database constraint,
+     *                                                                  for example because its ID is already taken
+     */
+    void insertAll(Collection<Customer> customers);
+
+}
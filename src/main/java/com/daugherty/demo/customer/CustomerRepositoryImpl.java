@@ -0,0 +1,48 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Customer;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+
+/**
+ * Hand-written implementations of the CustomerRepositoryCustom methods.
+ * <p>
+ * DEVELOPER NOTE: The name of this class matters. Spring finds it by taking the name of the repository interface and
+ * adding "Impl". It is a Spring bean like any other, so it can have dependencies injected. @PersistenceContext is the
+ * JPA way of asking for the EntityManager that belongs to the current transaction.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepositoryCustom
+ */
+class CustomerRepositoryImpl implements CustomerRepositoryCustom {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    @Override
+    public void clearPersistenceContext() {
+        entityManager.clear();
+    }
+
+    /**
+     * DEVELOPER NOTE: Spring Data only makes its own methods transactional. A hand-written method needs its own
+     * @Transactional, and since this class is a Spring bean, Spring wraps it in a transactional proxy.
+     */
+    @Override
+    @Transactional
+    public void insertAll(Collection<Customer> customers) {
+        for (Customer customer : customers) {
+            entityManager.persist(customer);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+}
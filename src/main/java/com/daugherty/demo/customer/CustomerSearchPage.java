@@ -0,0 +1,21 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of customer search results, and where the next page starts.
+ * <p>
+ * DEVELOPER NOTE: "next" is the cursor to pass as "after" to get the next page of the same search, or null when this
+ * is the last page.
+ */
+@Value
+public class CustomerSearchPage {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    List<CustomerMatch> customers;
+    String next;
+
+}
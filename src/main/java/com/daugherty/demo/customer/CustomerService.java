@@ -1,9 +1,30 @@
 package com.daugherty.demo.customer;
 
 import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import com.daugherty.demo.exception.ChangesExpiredException;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import com.daugherty.demo.exception.PreconditionRequiredException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * This class provides business functionality for managing Customers.
@@ -39,10 +60,208 @@ class CustomerService {
      */
     private final CustomerRepository customerRepository;
 
+    /**
+     * @see com.daugherty.demo.customer.OrderRepository
+     */
+    private final OrderRepository orderRepository;
+
+    /**
+     * DEVELOPER NOTE: The cache is a dependency just like the repository. The service decides *when* to use it, but
+     * knows nothing about how it evicts or expires entries.
+     *
+     * @see com.daugherty.demo.customer.CustomerCache
+     */
+    private final CustomerCache customerCache;
+
+    /**
+     * @see com.daugherty.demo.customer.CustomerLookupExecutor
+     */
+    private final CustomerLookupExecutor customerLookupExecutor;
+
+    /**
+     * DEVELOPER NOTE: The snapshot is only loaded when customerSnapshot.enabled is true. Otherwise it never has any
+     * customer, and every read goes on to the cache and the database.
+     *
+     * @see com.daugherty.demo.customer.CustomerSnapshot
+     */
+    private final CustomerSnapshot customerSnapshot;
+
+    /**
+     * @see com.daugherty.demo.customer.CustomerLoadCoalescer
+     */
+    private final CustomerLoadCoalescer customerLoadCoalescer;
+
+    /**
+     * DEVELOPER NOTE: Spring itself is the ApplicationEventPublisher. Every change to a customer is published as a
+     * CustomerChangedEvent, and the caches are told about it by onCustomerChanged().
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * @see com.daugherty.demo.customer.CustomerChangeRepository
+     */
+    private final CustomerChangeRepository customerChangeRepository;
+
+    /**
+     * DEVELOPER NOTE: Spring Boot makes a TransactionTemplate for the application's transaction manager. It runs a
+     * piece of code in a transaction, for the places where @Transactional can't be used (see insertCustomers()).
+     */
+    private final TransactionTemplate transactionTemplate;
+
 
     // -------------------------------------------------- VARIABLES ----------------------------------------------------
 
     public static final String INVALID_CUSTOMER_ID = "Invalid customer ID [%s]";
+    public static final String INVALID_BATCH_SIZE = "A batch lookup must contain between 1 and %s customer IDs";
+    public static final String INVALID_PAGE = "'after' must be zero or more, and 'limit' must be between 1 and %s";
+    public static final String INVALID_ORDER_PAGE = "'limit' must be between 1 and %s";
+    public static final String INVALID_SEARCH = "Search by exactly one of 'fullName' or 'streetAddress' (not blank), "
+            + "with a 'match' of 'exact' or 'prefix', and a 'limit' between 1 and %s";
+    public static final String INVALID_SEARCH_CURSOR = "'after' must be a 'next' cursor from an earlier search";
+    public static final String MISSING_FULL_NAME = "A customer must have a full name";
+    public static final String CUSTOMER_NOT_CREATED = "Customer could not be created; its ID may already be taken";
+    public static final String MISMATCHED_CUSTOMER_ID = "The customer ID in the body must match the one in the URL";
+    public static final String PRECONDITION_REQUIRED = "Send the customer's ETag in an If-Match header to change it";
+    public static final String PRECONDITION_FAILED = "The customer has changed since it was read; read it again";
+    public static final String INVALID_CHANGES_PAGE = "'since' must be zero or more, and 'limit' must be between 1 "
+            + "and %s";
+    public static final String CHANGES_EXPIRED = "The changes after %s are no longer kept (the oldest is %s); "
+            + "read the customers again, and then follow the changes from the newest one";
+
+    /**
+     * The most customer IDs that may be looked up in a single batch.
+     */
+    static final int MAX_BATCH_SIZE = 5000;
+
+    /**
+     * The most customer IDs that are sent to the database in a single IN (...) query.
+     */
+    static final int BATCH_CHUNK_SIZE = 500;
+
+    /**
+     * How many customers are listed per page, unless the caller asks for a different number.
+     */
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The most customers that can be listed per page.
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The values of "match" in a customer search. Exact is the default.
+     */
+    static final String MATCH_EXACT = "exact";
+    static final String MATCH_PREFIX = "prefix";
+
+    /**
+     * The most customers that a bulk ingest saves in a single transaction.
+     */
+    static final int INGEST_CHUNK_SIZE = 1000;
+
+    /**
+     * The most failures that a bulk ingest lists one by one. Any more are only counted.
+     */
+    static final int MAX_REPORTED_FAILURES = 1000;
+
+    /**
+     * DEVELOPER NOTE: Metrics are registered with Micrometer's global registry. Spring Boot adds its own registry (the
+     * one that the Prometheus actuator endpoint reads) to the global one when it starts, and every meter registered
+     * here shows up there, even the ones that were registered first. Unit tests don't start Spring, so there the
+     * meters go nowhere and cost almost nothing. The names are the same for every customer: a tag holding a customer
+     * ID would create a new time series for every customer that was ever looked up, and metrics memory would grow
+     * without bound.
+     */
+    private static final Timer GET_CUSTOMER_TIMER = Timer.builder("customer.service")
+            .description("Time spent in CustomerService")
+            .tag("method", "getCustomer")
+            .register(Metrics.globalRegistry);
+    private static final Timer FIND_BY_ID_TIMER = Timer.builder("customer.repository")
+            .description("Time spent reading customers from the database")
+            .tag("method", "findById")
+            .register(Metrics.globalRegistry);
+    static final Counter NOT_FOUND_COUNTER = Counter.builder("customer.not.found")
+            .description("Customer lookups that found no customer")
+            .tag("method", "getCustomer")
+            .register(Metrics.globalRegistry);
+    static final Counter BATCH_NOT_FOUND_COUNTER = Counter.builder("customer.not.found")
+            .description("Customer lookups that found no customer")
+            .tag("method", "getCustomers")
+            .register(Metrics.globalRegistry);
+    static final Counter INGEST_CREATED_COUNTER = Counter.builder("customer.ingest")
+            .description("Customer records received by bulk ingest")
+            .tag("outcome", "created")
+            .register(Metrics.globalRegistry);
+    static final Counter INGEST_FAILED_COUNTER = Counter.builder("customer.ingest")
+            .description("Customer records received by bulk ingest")
+            .tag("outcome", "failed")
+            .register(Metrics.globalRegistry);
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * Running totals of a bulk ingest, turned into a CustomerIngestResult at the end.
+     */
+    private static final class IngestReport {
+
+        private long created;
+        private long failed;
+        private final List<CustomerIngestResult.Failure> failures = new ArrayList<>();
+
+        void created(int count) {
+            created += count;
+            INGEST_CREATED_COUNTER.increment(count);
+        }
+
+        void failed(long index, Integer customerId, String message) {
+            failed++;
+            INGEST_FAILED_COUNTER.increment();
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(new CustomerIngestResult.Failure(index, customerId, message));
+            }
+        }
+
+        CustomerIngestResult toResult(long received) {
+            return new CustomerIngestResult(received, created, failed, failures);
+        }
+    }
+
+    /**
+     * Where a page of search results ended: the search key (lower-case name or street address) and the ID of its last
+     * customer. The next page starts right after it.
+     * <p>
+     * DEVELOPER NOTE: Clients get this as an opaque string: "customerId:searchKey" in URL-safe Base64, so that it can be
+     * passed back in a query string as-is. Nothing in it is secret. It only has to be hard to build by accident.
+     */
+    private static final class SearchCursor {
+
+        static final SearchCursor FIRST = new SearchCursor("", Integer.MIN_VALUE);
+
+        private final String searchKey;
+        private final Integer customerId;
+
+        SearchCursor(String searchKey, Integer customerId) {
+            this.searchKey = searchKey;
+            this.customerId = customerId;
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((customerId + ":" + searchKey).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor) throws BusinessException {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(':');
+                return new SearchCursor(decoded.substring(separator + 1),
+                        Integer.valueOf(decoded.substring(0, separator)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) { // Includes NumberFormatException
+                throw new BusinessException(INVALID_SEARCH_CURSOR, false);
+            }
+        }
+    }
 
 
     // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
@@ -55,15 +274,522 @@ class CustomerService {
      * just a pass-through to the CustomerRepository. There might be a temptation to have the Controller talk directly
      * to the Repository, but this is a bad idea. It's best to respect the 3-layered nature of the application
      * architecture. Inevitably, you'll have to add some real business logic, and you'll need a place to put it.
+     * <p>
+     * (And here it is: this method now reads through the CustomerCache, and only goes to the repository on a miss.
+     * Both "found" and "not found" answers are cached. When the CustomerSnapshot has the customer, neither is used.
+     * Concurrent misses for the same customer share one database read; see CustomerLoadCoalescer.)
      */
     Customer getCustomer(Integer customerId) throws BusinessException {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        try {
+
+            // Business validation
+            if (!isValidCustomerId(customerId)) {
+                throw new BusinessException(invalidCustomerIdMessage(customerId), false);
+            }
+
+            // In the snapshot?
+            Customer snapshotCustomer = customerSnapshot.getCustomer(customerId);
+            if (snapshotCustomer != null) {
+                return snapshotCustomer;
+            }
+
+            // Cache hit?
+            CustomerCache.CachedCustomer cachedCustomer = customerCache.lookup(customerId);
+            if (cachedCustomer != null) {
+                if (!cachedCustomer.isFound()) {
+                    NOT_FOUND_COUNTER.increment();
+                }
+                return cachedCustomer.getCustomer();
+            }
+
+            // Cache miss: read from the database (once, however many callers are asking) and remember the answer,
+            // unless the customer was changed (and evicted) while it was being read
+            Customer customer = customerLoadCoalescer.load(customerId, () -> {
+                long invalidationStamp = customerCache.invalidationStamp(customerId);
+                Customer loaded = FIND_BY_ID_TIMER.record(() -> customerRepository.findById(customerId)).orElse(null);
+                customerCache.put(customerId, loaded, invalidationStamp);
+                return loaded;
+            });
+            if (customer == null) {
+                NOT_FOUND_COUNTER.increment();
+            }
+            return customer;
+        } finally {
+            sample.stop(GET_CUSTOMER_TIMER);
+        }
+    }
+
+    /**
+     * Given the ID of a customer, return the version of that customer, or null if the customer could not be found.
+     * <p>
+     * DEVELOPER NOTE: This is for clients that already have a copy of the customer and only want to know whether it
+     * has changed. A cached customer answers that without the database. Otherwise only the version is read, and the
+     * answer isn't cached, since a version alone is not enough to answer getCustomer() later.
+     */
+    Long getCustomerVersion(Integer customerId) throws BusinessException {
+
+        // Business validation
+        if (!isValidCustomerId(customerId)) {
+            throw new BusinessException(invalidCustomerIdMessage(customerId), false);
+        }
+
+        // In the snapshot?
+        Long snapshotVersion = customerSnapshot.getVersion(customerId);
+        if (snapshotVersion != null) {
+            return snapshotVersion;
+        }
+
+        // Cache hit?
+        CustomerCache.CachedCustomer cachedCustomer = customerCache.lookup(customerId);
+        if (cachedCustomer != null) {
+            return cachedCustomer.isFound() ? cachedCustomer.getCustomer().getVersion() : null;
+        }
+
+        // Cache miss: read only the version
+        return customerRepository.findVersionByCustomerId(customerId).orElse(null);
+    }
+
+    /**
+     * Return a page of at most "limit" customers whose IDs are greater than "after", in customer ID order. Either may
+     * be null: listing starts at the beginning, with DEFAULT_PAGE_SIZE customers per page.
+     * <p>
+     * DEVELOPER NOTE: One more customer than was asked for is read. If it's there, there is a next page, and the
+     * caller is told where it starts. Otherwise this is the last page, and the caller doesn't have to ask for an empty
+     * page to find that out.
+     */
+    CustomerPage listCustomers(Integer after, Integer limit) throws BusinessException {
+        int afterCustomerId = (after == null) ? 0 : after;
+        int pageSize = (limit == null) ? DEFAULT_PAGE_SIZE : limit;
+
+        // Business validation
+        if ((afterCustomerId < 0) || (pageSize < 1) || (pageSize > MAX_PAGE_SIZE)) {
+            throw new BusinessException(String.format(INVALID_PAGE, MAX_PAGE_SIZE), false);
+        }
+
+        List<CustomerSummary> customers = customerRepository.findSummariesAfter(afterCustomerId,
+                PageRequest.of(0, pageSize + 1));
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        List<CustomerSummary> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, page.get(pageSize - 1).getCustomerId());
+    }
+
+    /**
+     * Return a page of at most "limit" order numbers of the given customer's orders that come after the order number
+     * "after", in order number order, or null if there is no such customer. Either may be null: listing starts at the
+     * first order, with DEFAULT_PAGE_SIZE orders per page.
+     * <p>
+     * DEVELOPER NOTE: Like listCustomers(), one more order than was asked for is read to find out whether there is a
+     * next page. Only an empty page needs to find out whether the customer exists at all, and for a customer in the
+     * cache that costs nothing.
+     */
+    OrderPage listOrders(Integer customerId, String after, Integer limit) throws BusinessException {
+        String afterOrderNumber = (after == null) ? "" : after;
+        int pageSize = (limit == null) ? DEFAULT_PAGE_SIZE : limit;
+
+        // Business validation
+        if (!isValidCustomerId(customerId)) {
+            throw new BusinessException(invalidCustomerIdMessage(customerId), false);
+        }
+        if ((pageSize < 1) || (pageSize > MAX_PAGE_SIZE)) {
+            throw new BusinessException(String.format(INVALID_ORDER_PAGE, MAX_PAGE_SIZE), false);
+        }
+
+        List<String> orderNumbers = orderRepository.findOrderNumbersAfter(customerId, afterOrderNumber,
+                PageRequest.of(0, pageSize + 1));
+        if (orderNumbers.isEmpty() && (getCustomerVersion(customerId) == null)) {
+            return null;
+        }
+        if (orderNumbers.size() <= pageSize) {
+            return new OrderPage(orderNumbers, null);
+        }
+        List<String> page = orderNumbers.subList(0, pageSize);
+        return new OrderPage(page, page.get(pageSize - 1));
+    }
+
+    /**
+     * Return a page of at most "limit" customers whose full name or street address (exactly one of the two must be
+     * given) matches the given one, ignoring case and leading or trailing spaces. With a "match" of "prefix", the name
+     * or address only has to start with it. "after" is the "next" cursor of the previous page, or null for the first
+     * page.
+     * <p>
+     * DEVELOPER NOTE: Every search is answered from an index (see the Customer entity), and one page at a time, so a
+     * search for "a" costs no more than a search for "arthur dent". Exact matches come back in customer ID order.
+     * Prefix matches come back in name (or address) order, which is the order that the index has them in, and only
+     * that order lets a page start where the previous one ended without reading everything before it.
+     */
+    CustomerSearchPage searchCustomers(String fullName, String streetAddress, String match, String after,
+                                       Integer limit) throws BusinessException {
+        boolean byFullName = (fullName != null);
+        boolean prefix = MATCH_PREFIX.equals(match);
+        int pageSize = (limit == null) ? DEFAULT_PAGE_SIZE : limit;
+
+        // Business validation
+        if ((byFullName == (streetAddress != null))
+                || Customer.toSearchKey(byFullName ? fullName : streetAddress).isEmpty()
+                || ((match != null) && !prefix && !MATCH_EXACT.equals(match))
+                || (pageSize < 1) || (pageSize > MAX_PAGE_SIZE)) {
+            throw new BusinessException(String.format(INVALID_SEARCH, MAX_PAGE_SIZE), false);
+        }
+        String searchKey = Customer.toSearchKey(byFullName ? fullName : streetAddress);
+        SearchCursor cursor = (after == null) ? SearchCursor.FIRST : SearchCursor.decode(after);
+        String afterSearchKey = cursor.searchKey;
+        Integer afterCustomerId = cursor.customerId;
+
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<CustomerMatch> customers;
+        if (prefix) {
+            String pattern = escapeLikePattern(searchKey) + "%";
+            customers = byFullName
+                    ? customerRepository.findMatchesByFullNameLike(pattern, afterSearchKey, afterCustomerId, pageRequest)
+                    : customerRepository.findMatchesByStreetAddressLike(pattern, afterSearchKey, afterCustomerId,
+                    pageRequest);
+        } else {
+            customers = byFullName
+                    ? customerRepository.findMatchesByFullName(searchKey, afterCustomerId, pageRequest)
+                    : customerRepository.findMatchesByStreetAddress(searchKey, afterCustomerId, pageRequest);
+        }
+
+        // One more than asked for means there's a next page; it starts after the last customer on this one
+        if (customers.size() <= pageSize) {
+            return new CustomerSearchPage(customers, null);
+        }
+        List<CustomerMatch> page = customers.subList(0, pageSize);
+        CustomerMatch last = page.get(pageSize - 1);
+        String lastSearchKey = Customer.toSearchKey(byFullName ? last.getFullName() : last.getStreetAddress());
+        return new CustomerSearchPage(page, new SearchCursor(lastSearchKey, last.getCustomerId()).encode());
+    }
+
+    /**
+     * Given the ID of a customer, return a future of the CustomerLookup (customer and order numbers) for that ID.
+     * <p>
+     * DEVELOPER NOTE: This is getCustomer() and getOrderNumbers() rolled into one, but run on the CustomerLookupExecutor
+     * instead of on the caller's thread. Only the cheap checks happen on the caller's thread: an invalid ID still
+     * throws a BusinessException right away, and an ID that is cached as "not found" is answered without using the pool
+     * at all. If the pool is too busy, a RejectedExecutionException is thrown right away as well.
+     */
+    CompletableFuture<CustomerLookup> getCustomerAsync(Integer customerId) throws BusinessException {
 
         // Business validation
         if (!isValidCustomerId(customerId)) {
-            throw new BusinessException(String.format(INVALID_CUSTOMER_ID, customerId));
+            throw new BusinessException(invalidCustomerIdMessage(customerId), false);
         }
 
-        return customerRepository.findById(customerId).orElse(null);
+        // In the snapshot? Then there's nothing to wait for
+        Customer snapshotCustomer = customerSnapshot.getCustomer(customerId);
+        if (snapshotCustomer != null) {
+            return CompletableFuture.completedFuture(
+                    CustomerLookup.found(snapshotCustomer, customerSnapshot.getOrderNumbers(customerId)));
+        }
+
+        // Known to be missing?
+        CustomerCache.CachedCustomer cachedCustomer = customerCache.lookup(customerId);
+        if ((cachedCustomer != null) && !cachedCustomer.isFound()) {
+            NOT_FOUND_COUNTER.increment();
+            return CompletableFuture.completedFuture(CustomerLookup.notFound(customerId));
+        }
+
+        // Everything else needs the database
+        return customerLookupExecutor.submit(() -> {
+            Customer customer = getCustomer(customerId);
+            return (customer == null)
+                    ? CustomerLookup.notFound(customerId)
+                    : CustomerLookup.found(customer, getOrderNumbers(customerId));
+        });
+    }
+
+    /**
+     * Given the ID of a customer, return the order numbers of that customer's orders, sorted. An empty list is returned
+     * if the customer has no orders (or doesn't exist).
+     */
+    List<String> getOrderNumbers(Integer customerId) {
+        List<String> snapshotOrderNumbers = customerSnapshot.getOrderNumbers(customerId);
+        if (snapshotOrderNumbers != null) {
+            return snapshotOrderNumbers;
+        }
+        List<String> orderNumbers = getOrderNumbers(Collections.singletonList(customerId)).get(customerId);
+        return (orderNumbers == null) ? Collections.emptyList() : orderNumbers;
+    }
+
+    /**
+     * Given a collection of customer IDs, return the sorted order numbers of each customer's orders, keyed by customer
+     * ID. Customers without orders are not in the map.
+     * <p>
+     * DEVELOPER NOTE: Like getCustomers(), this sends the IDs to the database in chunks, so the number of queries
+     * depends on the number of *chunks*, not the number of customers or orders.
+     */
+    Map<Integer, List<String>> getOrderNumbers(Collection<Integer> customerIds) {
+        List<Integer> idsToLoad = new ArrayList<>(customerIds);
+        Map<Integer, List<String>> orderNumbersByCustomerId = new HashMap<>(idsToLoad.size() * 2);
+        for (int from = 0; from < idsToLoad.size(); from += BATCH_CHUNK_SIZE) {
+            List<Integer> chunk = idsToLoad.subList(from, Math.min(from + BATCH_CHUNK_SIZE, idsToLoad.size()));
+            for (CustomerOrderNumber orderNumber : customerRepository.findOrderNumbersByCustomerIdIn(chunk)) {
+                orderNumbersByCustomerId.computeIfAbsent(orderNumber.getCustomerId(), id -> new ArrayList<>())
+                        .add(orderNumber.getOrderNumber());
+            }
+        }
+        return orderNumbersByCustomerId;
+    }
+
+    /**
+     * Hand every customer in the system, along with its sorted order numbers, to the given consumer, in customer ID
+     * order. Memory use stays the same no matter how many customers there are.
+     * <p>
+     * DEVELOPER NOTE: This method is public (unlike the rest of this class) because of @Transactional. Spring starts
+     * and ends the transaction in a proxy that wraps this object, and that proxy only intercepts public methods. The
+     * transaction is needed because the Stream reads from an open database cursor. Customers are handed over in chunks:
+     * after each chunk, the order numbers for the whole chunk are read with one query, and then the persistence context
+     * is cleared so that the customers that were already exported can be garbage collected. The consumer must not hold
+     * on to the Customers it is given.
+     */
+    @Transactional(readOnly = true)
+    public void exportCustomers(BiConsumer<Customer, List<String>> consumer) {
+        List<Customer> chunk = new ArrayList<>(CustomerRepository.STREAM_FETCH_SIZE);
+        try (Stream<Customer> customers = customerRepository.streamAll()) {
+            Iterator<Customer> iterator = customers.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CustomerRepository.STREAM_FETCH_SIZE) {
+                    exportChunk(chunk, consumer);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            exportChunk(chunk, consumer);
+        }
+    }
+
+    /**
+     * Create every given new Customer that can be created, and report on the ones that can't. One bad record never
+     * stops the others.
+     * <p>
+     * DEVELOPER NOTE: The customers are read from the iterator one at a time, and only INGEST_CHUNK_SIZE of them are
+     * held in memory at once, so a load of millions of customers uses no more memory than a load of a thousand. Each
+     * chunk is inserted in its own transaction with JDBC batching (see CustomerRepository.insertAll()), and is
+     * committed before the next one is read. If a chunk fails (usually because an ID is already taken), the database
+     * has rolled back the whole chunk. Its customers are then inserted again one at a time, which is slow but only
+     * happens to chunks that have a problem, and finds exactly which records are bad.
+     * <p>
+     * If reading the iterator fails part way through, the chunks that were already committed stay committed, and the
+     * customers of the unfinished chunk are not created.
+     */
+    CustomerIngestResult ingestCustomers(Iterator<Customer> customers) {
+        IngestReport report = new IngestReport();
+        Map<Long, Customer> chunk = new LinkedHashMap<>(INGEST_CHUNK_SIZE * 2); // Keyed by index in the request
+        long index = 0;
+        while (customers.hasNext()) {
+            Customer customer = customers.next();
+
+            // Business validation
+            if (!isValidCustomerId(customer.getCustomerId())) {
+                report.failed(index, customer.getCustomerId(), invalidCustomerIdMessage(customer.getCustomerId()));
+            } else if (customer.getFullName() == null) {
+                report.failed(index, customer.getCustomerId(), MISSING_FULL_NAME);
+            } else {
+                chunk.put(index, customer);
+                if (chunk.size() == INGEST_CHUNK_SIZE) {
+                    ingestChunk(chunk, report);
+                }
+            }
+            index++;
+        }
+        if (!chunk.isEmpty()) {
+            ingestChunk(chunk, report);
+        }
+        return report.toResult(index);
+    }
+
+    /**
+     * Replace the given customer's full name with the one of the given replacement, if the customer is still at the
+     * expected version, and return the customer as it is now. Null is returned if the customer could not be found.
+     * <p>
+     * DEVELOPER NOTE: This method is public because of @Transactional (see exportCustomers()). The street address
+     * isn't part of the contract, so it is left as it is. Like every change, this is an optimistic one: nothing is
+     * locked while the client decides what to send. The client says which version its change is based on, and the
+     * change is only made if that is still the current version. See updateCustomer() for how a change that races with
+     * another one is caught.
+     */
+    @Transactional(rollbackFor = BusinessException.class)
+    public Customer replaceCustomer(Integer customerId, Long expectedVersion, Customer replacement)
+            throws BusinessException {
+
+        // Business validation
+        if (replacement.getFullName() == null) {
+            throw new BusinessException(MISSING_FULL_NAME, false);
+        }
+        return updateCustomer(customerId, expectedVersion, replacement);
+    }
+
+    /**
+     * Change the given customer's full name to the one of the given changes, if that isn't null, and if the customer
+     * is still at the expected version. Return the customer as it is now, or null if the customer could not be found.
+     */
+    @Transactional(rollbackFor = BusinessException.class)
+    public Customer patchCustomer(Integer customerId, Long expectedVersion, Customer changes) throws BusinessException {
+        return updateCustomer(customerId, expectedVersion, changes);
+    }
+
+    /**
+     * Delete the given customer, and its orders, if the customer is still at the expected version. Return false if
+     * the customer could not be found.
+     */
+    @Transactional(rollbackFor = BusinessException.class)
+    public boolean deleteCustomer(Integer customerId, Long expectedVersion) throws BusinessException {
+        Customer customer = findCustomerToChange(customerId, expectedVersion);
+        if (customer == null) {
+            return false;
+        }
+        customerRepository.delete(customer);
+        customerRepository.flush();
+        eventPublisher.publishEvent(new CustomerChangedEvent(customerId, CustomerChange.ChangeType.DELETED,
+                customer.getVersion(), null));
+        return true;
+    }
+
+    /**
+     * Forget the cached state of a customer that was created, changed or deleted, once the change has been committed.
+     * <p>
+     * DEVELOPER NOTE: A @TransactionalEventListener hears about an event only after the transaction that published it
+     * has committed (and never, if it rolled back). Evicting any earlier would let a reader put the old customer
+     * straight back into the cache from the database, before the new one was committed. Only the one customer is
+     * evicted; nothing else that is cached is touched. With fallbackExecution, an event that is published outside of
+     * any transaction is heard right away. This method is public because Spring calls it through the same proxy as the
+     * @Transactional methods.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        invalidateCustomer(event.getCustomerId());
+    }
+
+    /**
+     * Write the given change to the outbox of customer changes, as part of the transaction that made it.
+     * <p>
+     * DEVELOPER NOTE: BEFORE_COMMIT listeners run inside the transaction, just before it commits, so the row is
+     * committed together with the change, or not at all. If writing it fails, the whole change fails. There is no
+     * fallbackExecution here on purpose: outside of a transaction there would be nothing to be part of. The row gets
+     * its sequence number later, when the CustomerChangePublisher publishes it.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void recordCustomerChange(CustomerChangedEvent event) {
+        CustomerChange change = new CustomerChange();
+        change.setCustomerId(event.getCustomerId());
+        change.setChangeType(event.getChangeType());
+        change.setVersion(event.getVersion());
+        change.setFullName(event.getFullName());
+        change.setChangedAt(Instant.now());
+        customerChangeRepository.save(change);
+    }
+
+    /**
+     * Return a page of at most "limit" published customer changes that come after the given sequence number, in
+     * sequence order. Pass 0 (or null) as "since" to start at the first change that is still kept, and then the "next"
+     * of each page as the "since" of the next call. An empty page means there are no newer changes yet.
+     * <p>
+     * DEVELOPER NOTE: Sequence numbers have no gaps (see CustomerChange), so if the first change on the page isn't
+     * since + 1, the changes in between were purged (see CustomerChangePublisher.purge()). The consumer has then
+     * missed changes it can never get, and is told so, rather than being quietly handed the rest. That check costs an
+     * extra query only when there is a gap.
+     */
+    CustomerChangePage getChanges(Long since, Integer limit) throws BusinessException {
+        long afterSequence = (since == null) ? 0 : since;
+        int pageSize = (limit == null) ? DEFAULT_PAGE_SIZE : limit;
+
+        // Business validation
+        if ((afterSequence < 0) || (pageSize < 1) || (pageSize > MAX_PAGE_SIZE)) {
+            throw new BusinessException(String.format(INVALID_CHANGES_PAGE, MAX_PAGE_SIZE), false);
+        }
+
+        List<CustomerChange> changes = customerChangeRepository.findPublishedAfter(afterSequence,
+                PageRequest.of(0, pageSize));
+        if ((afterSequence > 0) && (changes.isEmpty() || (changes.get(0).getSequence() != afterSequence + 1))) {
+            Long firstSequence = customerChangeRepository.findFirstSequence().orElse(null);
+            if ((firstSequence != null) && (afterSequence < firstSequence - 1)) {
+                throw new ChangesExpiredException(String.format(CHANGES_EXPIRED, afterSequence, firstSequence));
+            }
+        }
+        long next = changes.isEmpty() ? afterSequence : changes.get(changes.size() - 1).getSequence();
+        return new CustomerChangePage(changes, next);
+    }
+
+    /**
+     * Forget any cached state for the given customer ID. Any code that creates, changes or deletes a customer must make
+     * this happen after the change has been committed, by publishing a CustomerChangedEvent.
+     */
+    void invalidateCustomer(Integer customerId) {
+        customerSnapshot.evict(customerId);
+        customerLoadCoalescer.forget(customerId);
+        customerCache.evict(customerId);
+    }
+
+    /**
+     * Given a list of customer IDs, return the outcome of looking up each one. There is exactly one CustomerLookup per
+     * given ID, in the same order, so duplicates in the request show up as duplicates in the result.
+     * <p>
+     * DEVELOPER NOTE: Compare this to calling getCustomer() in a loop. That would be one database round trip per ID.
+     * Here the valid IDs are de-duplicated and sent to the database in chunks of BATCH_CHUNK_SIZE, so a batch of 5000
+     * IDs costs ten queries instead of five thousand. IDs that are already in the CustomerCache aren't sent to the
+     * database at all.
+     */
+    List<CustomerLookup> getCustomers(List<Integer> customerIds) throws BusinessException {
+
+        // Business validation
+        if ((customerIds == null) || customerIds.isEmpty() || (customerIds.size() > MAX_BATCH_SIZE)) {
+            throw new BusinessException(String.format(INVALID_BATCH_SIZE, MAX_BATCH_SIZE), false);
+        }
+
+        // Only valid, uncached IDs go to the database, and only once each
+        Map<Integer, Customer> customersById = new HashMap<>(customerIds.size() * 2);
+        Map<Integer, Long> uncachedCustomerIds = new LinkedHashMap<>(); // With their invalidation stamps
+        for (Integer customerId : customerIds) {
+            if (isValidCustomerId(customerId) && !customersById.containsKey(customerId)) {
+                CustomerCache.CachedCustomer cachedCustomer = customerCache.lookup(customerId);
+                if (cachedCustomer == null) {
+                    uncachedCustomerIds.computeIfAbsent(customerId, customerCache::invalidationStamp);
+                } else {
+                    customersById.put(customerId, cachedCustomer.getCustomer());
+                }
+            }
+        }
+
+        // Load in chunks, and remember the answers (including "not found")
+        List<Integer> idsToLoad = new ArrayList<>(uncachedCustomerIds.keySet());
+        for (int from = 0; from < idsToLoad.size(); from += BATCH_CHUNK_SIZE) {
+            List<Integer> chunk = idsToLoad.subList(from, Math.min(from + BATCH_CHUNK_SIZE, idsToLoad.size()));
+            for (Customer customer : customerRepository.findByCustomerIdIn(chunk)) {
+                customersById.put(customer.getCustomerId(), customer);
+            }
+        }
+        for (Integer customerId : idsToLoad) {
+            customerCache.put(customerId, customersById.get(customerId), uncachedCustomerIds.get(customerId));
+        }
+
+        // Order numbers for everyone that was found, again one query per chunk
+        Set<Integer> foundCustomerIds = new LinkedHashSet<>();
+        for (Map.Entry<Integer, Customer> entry : customersById.entrySet()) {
+            if (entry.getValue() != null) {
+                foundCustomerIds.add(entry.getKey());
+            }
+        }
+        Map<Integer, List<String>> orderNumbersByCustomerId = foundCustomerIds.isEmpty()
+                ? Collections.emptyMap()
+                : getOrderNumbers(foundCustomerIds);
+
+        // One result per requested ID, in request order
+        List<CustomerLookup> lookups = new ArrayList<>(customerIds.size());
+        for (Integer customerId : customerIds) {
+            if (!isValidCustomerId(customerId)) {
+                lookups.add(CustomerLookup.invalid(customerId));
+            } else if (customersById.get(customerId) != null) {
+                lookups.add(CustomerLookup.found(customersById.get(customerId),
+                        orderNumbersByCustomerId.getOrDefault(customerId, Collections.emptyList())));
+            } else {
+                lookups.add(CustomerLookup.notFound(customerId));
+                BATCH_NOT_FOUND_COUNTER.increment();
+            }
+        }
+        return lookups;
     }
 
 
@@ -76,5 +802,147 @@ class CustomerService {
         return (customerId != null) && (customerId > 0);
     }
 
+    /**
+     * Return the message for a BusinessException about the given invalid customer ID.
+     * <p>
+     * DEVELOPER NOTE: String.format parses its format string on every call and creates a Formatter, a StringBuilder
+     * and more along the way. Plain string concatenation compiles to a single StringBuilder. It's a small thing, but
+     * invalid IDs tend to arrive by the thousand (scrapers, broken clients) and every one of them comes through here.
+     * The result is exactly String.format(INVALID_CUSTOMER_ID, customerId).
+     */
+    static String invalidCustomerIdMessage(final Integer customerId) {
+        return "Invalid customer ID [" + customerId + "]";
+    }
+
+    /**
+     * Escape the LIKE wildcards "%" and "_" (and the escape character "!" itself) in the given text, so that it only
+     * matches itself.
+     */
+    static String escapeLikePattern(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '%') || (c == '_') || (c == '!')) {
+                escaped.append('!');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Given a customer that is about to be changed, check the ID and the expected version, and return the customer as
+     * it is in the database (or null if it could not be found), ready to be changed in the current transaction.
+     */
+    private Customer findCustomerToChange(Integer customerId, Long expectedVersion) throws BusinessException {
+
+        // Business validation
+        if (!isValidCustomerId(customerId)) {
+            throw new BusinessException(invalidCustomerIdMessage(customerId), false);
+        }
+        if (expectedVersion == null) {
+            throw new PreconditionRequiredException(PRECONDITION_REQUIRED);
+        }
+
+        // DEVELOPER NOTE: Never from the snapshot or the CustomerCache. Those copies may be older than the database.
+        Customer customer = customerRepository.findById(customerId).orElse(null);
+        if ((customer != null) && !expectedVersion.equals(customer.getVersion())) {
+            throw new PreconditionFailedException(PRECONDITION_FAILED);
+        }
+        return customer;
+    }
+
+    /**
+     * Apply the given changes (the ones that aren't null) to the customer, if it is still at the expected version.
+     * <p>
+     * DEVELOPER NOTE: Checking the version first turns away clients that are plainly out of date (412). But another
+     * request can still change the customer between that check and this one's UPDATE. That race is caught by the
+     * database: because of @Version, Hibernate's UPDATE says "WHERE CUST_ID = ? AND CUST_VERSION = ?" with the version
+     * that was read, and bumps the version. If someone else got there first, no row matches, and Hibernate throws an
+     * optimistic locking exception, which the RestExceptionHandler turns into a 409-Conflict. The flush sends the
+     * UPDATE now, rather than at commit, so that the returned customer already has its new version.
+     */
+    private Customer updateCustomer(Integer customerId, Long expectedVersion, Customer changes)
+            throws BusinessException {
+
+        // Business validation
+        if ((changes.getCustomerId() != null) && !changes.getCustomerId().equals(customerId)) {
+            throw new BusinessException(MISMATCHED_CUSTOMER_ID, false);
+        }
+
+        Customer customer = findCustomerToChange(customerId, expectedVersion);
+        if ((customer == null) || (changes.getFullName() == null)
+                || changes.getFullName().equals(customer.getFullName())) {
+            return customer; // Nothing to change
+        }
+        customer.setFullName(changes.getFullName());
+        customerRepository.flush();
+        eventPublisher.publishEvent(new CustomerChangedEvent(customerId, CustomerChange.ChangeType.UPDATED,
+                customer.getVersion(), customer.getFullName()));
+        return customer;
+    }
+
+    /**
+     * Insert the given chunk of new customers (keyed by their index in the request), then forget them.
+     */
+    private void ingestChunk(Map<Long, Customer> chunk, IngestReport report) {
+        int created = 0;
+        try {
+            insertCustomers(chunk.values());
+            created = chunk.size();
+        } catch (DataIntegrityViolationException e) {
+
+            // Find the bad records by inserting one customer at a time
+            for (Map.Entry<Long, Customer> entry : chunk.entrySet()) {
+                Customer customer = entry.getValue();
+                customer.setVersion(null); // Hibernate set it during the failed insert; it must be new again
+                try {
+                    insertCustomers(Collections.singletonList(customer));
+                    created++;
+                } catch (DataIntegrityViolationException recordFailure) {
+                    report.failed(entry.getKey(), customer.getCustomerId(), CUSTOMER_NOT_CREATED);
+                }
+            }
+        }
+        report.created(created);
+        chunk.clear();
+    }
+
+    /**
+     * Insert the given new customers, and publish that they were created, in one transaction.
+     * <p>
+     * DEVELOPER NOTE: ingestChunk() is private, so it can't be @Transactional (Spring's proxy only sees calls that come
+     * from outside of this class). The TransactionTemplate draws the transaction boundary in code instead.
+     * CustomerRepository.insertAll() joins this transaction rather than starting its own, so the customers and their
+     * rows in the outbox of customer changes are committed (or rolled back) together.
+     */
+    private void insertCustomers(Collection<Customer> customers) {
+        transactionTemplate.execute(status -> {
+            customerRepository.insertAll(customers);
+            for (Customer customer : customers) {
+                eventPublisher.publishEvent(new CustomerChangedEvent(customer.getCustomerId(),
+                        CustomerChange.ChangeType.CREATED, customer.getVersion(), customer.getFullName()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Hand the given chunk of customers and their order numbers to the consumer, then forget them.
+     */
+    private void exportChunk(List<Customer> chunk, BiConsumer<Customer, List<String>> consumer) {
+        List<Integer> customerIds = new ArrayList<>(chunk.size());
+        for (Customer customer : chunk) {
+            customerIds.add(customer.getCustomerId());
+        }
+        Map<Integer, List<String>> orderNumbersByCustomerId = getOrderNumbers(customerIds);
+        for (Customer customer : chunk) {
+            consumer.accept(customer,
+                    orderNumbersByCustomerId.getOrDefault(customer.getCustomerId(), Collections.emptyList()));
+        }
+        chunk.clear();
+        customerRepository.clearPersistenceContext();
+    }
+
 
 }
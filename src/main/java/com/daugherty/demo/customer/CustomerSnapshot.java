@@ -0,0 +1,433 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-only copy of every customer (and its order numbers), kept in memory and reloaded in the background, for
+ * deployments where customers are read all the time and almost never change. Turned on with
+ * customerSnapshot.enabled=true (see the "snapshot" profile in application.yml).
+ * <p>
+ * DEVELOPER NOTE: The CustomerCache holds Customer objects, and every one of them (with its strings, its HashSet of
+ * orders and its map entry) is something that the garbage collector has to look at again and again for as long as it
+ * is cached. Hold a million of them, and every full collection walks millions of objects. This snapshot is laid out so
+ * that the number of objects doesn't grow with the number of customers at all:
+ * <ul>
+ * <li>The customer IDs are a sorted int[], and a customer is found with a binary search. There are no boxed Integer
+ * keys, no hash map entries, and no per-customer objects.</li>
+ * <li>The versions and the position of each customer's record are a long[] and an int[] in the same order. The
+ * garbage collector never looks inside arrays of primitives.</li>
+ * <li>The names, street addresses and order numbers are written as UTF-8 into one "direct" ByteBuffer. A direct buffer
+ * lives outside of the Java heap ("off-heap"), so it isn't part of the heap size, and it isn't copied around by the
+ * garbage collector.</li>
+ * </ul>
+ * A read decodes the customer it needs into a new Customer. That object lives for the length of one request, and young,
+ * short-lived objects are the cheapest kind for the garbage collector. There is no Hibernate session, no entity
+ * hydration and no proxy for the orders collection.
+ * <p>
+ * A reload builds a whole new snapshot next to the old one and then swaps it in, so readers never see a half-loaded
+ * one. Until the first load is done, and for any customer that isn't in the snapshot (for example, one that was created
+ * after the last reload), the answer is "don't know" and the CustomerService reads through the cache and database as
+ * usual. Anything that changes a customer must call evict() (through CustomerService.invalidateCustomer()), or the old
+ * copy is served until the next reload.
+ * <p>
+ * The records of all customers must fit in one ByteBuffer, which holds at most 2 GB. The JVM limits the total size of
+ * direct buffers with -XX:MaxDirectMemorySize (by default, the same as the maximum heap size). A reload briefly needs
+ * room for two snapshots.
+ *
+ * @see com.daugherty.demo.customer.CustomerService
+ */
+@Slf4j
+@Component
+class CustomerSnapshot {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    private final CustomerRepository customerRepository;
+
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * How many customers are read from the database per query while loading. The order numbers of each page are read
+     * with one IN (...) query, so this is kept to CustomerService.BATCH_CHUNK_SIZE.
+     */
+    static final int LOAD_PAGE_SIZE = CustomerService.BATCH_CHUNK_SIZE;
+
+    /**
+     * The length that is written in place of a null string.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    private static final Timer REFRESH_TIMER = Timer.builder("customer.snapshot.refresh")
+            .description("Time spent loading every customer into the snapshot")
+            .register(Metrics.globalRegistry);
+    static final Counter REFRESH_FAILED_COUNTER = Counter.builder("customer.snapshot.refresh.failed")
+            .description("Snapshot loads that failed; the previous snapshot is kept")
+            .register(Metrics.globalRegistry);
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private final AppConfiguration.CustomerSnapshotProperties properties;
+
+    /**
+     * The current snapshot, or null before the first load is done.
+     */
+    private volatile Store store;
+
+    /**
+     * DEVELOPER NOTE: Customers that changed since the snapshot was loaded, each with the sequence number of its
+     * eviction. A reload only forgets the evictions that happened before it started. Writes are rare, so boxed keys are
+     * fine here, and reads only look at this map when it isn't empty.
+     */
+    private final Map<Integer, Long> evictions = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictionSequence = new AtomicLong();
+
+    private ScheduledExecutorService refresher;
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * One complete, immutable snapshot. Entry i is the customer with ID customerIds[i]. Its record starts at offsets[i]
+     * in records and holds its full name, its street address and its order numbers, in that order. A string is written
+     * as its length in bytes (or NULL_LENGTH) followed by its UTF-8 bytes, and the order numbers are preceded by how
+     * many there are.
+     */
+    private static final class Store {
+
+        private final int size;
+        private final int[] customerIds;
+        private final long[] versions;
+        private final int[] offsets;
+        private final ByteBuffer records;
+
+        Store(int size, int[] customerIds, long[] versions, int[] offsets, ByteBuffer records) {
+            this.size = size;
+            this.customerIds = customerIds;
+            this.versions = versions;
+            this.offsets = offsets;
+            this.records = records;
+        }
+
+        /**
+         * Return the index of the given customer, or a negative number if it isn't in this snapshot.
+         */
+        int indexOf(int customerId) {
+            return Arrays.binarySearch(customerIds, 0, size, customerId);
+        }
+
+        /**
+         * DEVELOPER NOTE: A ByteBuffer has a read position, so readers can't share one. duplicate() makes a small view
+         * of the same memory with its own position, without copying anything.
+         */
+        ByteBuffer recordAt(int index) {
+            ByteBuffer record = records.duplicate();
+            record.position(offsets[index]);
+            return record;
+        }
+    }
+
+    /**
+     * Builds a Store from customers that are added in customer ID order. The arrays and the buffer grow by doubling.
+     */
+    private static final class StoreBuilder {
+
+        private int size;
+        private int[] customerIds = new int[LOAD_PAGE_SIZE];
+        private long[] versions = new long[LOAD_PAGE_SIZE];
+        private int[] offsets = new int[LOAD_PAGE_SIZE];
+        private ByteBuffer records = ByteBuffer.allocateDirect(1024 * 1024);
+
+        void add(CustomerSnapshotRow row, List<String> orderNumbers) {
+            if (size == customerIds.length) {
+                customerIds = Arrays.copyOf(customerIds, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            customerIds[size] = row.getCustomerId();
+            versions[size] = (row.getVersion() == null) ? 0L : row.getVersion();
+            offsets[size] = records.position();
+            size++;
+
+            putString(row.getFullName());
+            putString(row.getStreetAddress());
+            ensureCapacity(Integer.BYTES);
+            records.putInt(orderNumbers.size());
+            for (String orderNumber : orderNumbers) {
+                putString(orderNumber);
+            }
+        }
+
+        Store build() {
+            records.flip(); // The limit is now the end of the last record
+            return new Store(size, customerIds, versions, offsets, records.asReadOnlyBuffer());
+        }
+
+        private void putString(String value) {
+            if (value == null) {
+                ensureCapacity(Integer.BYTES);
+                records.putInt(NULL_LENGTH);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(Integer.BYTES + bytes.length);
+            records.putInt(bytes.length);
+            records.put(bytes);
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (records.remaining() < bytes) {
+                long capacity = Math.max(records.capacity() * 2L, (long) records.position() + bytes);
+                if (capacity > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("The customer snapshot can't hold more than 2 GB of records");
+                }
+                ByteBuffer larger = ByteBuffer.allocateDirect((int) capacity);
+                records.flip();
+                larger.put(records);
+                records = larger;
+            }
+        }
+    }
+
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    @Autowired
+    CustomerSnapshot(CustomerRepository customerRepository, AppConfiguration appConfiguration) {
+        this(customerRepository, appConfiguration.getCustomerSnapshot());
+        Gauge.builder("customer.snapshot.size", this, CustomerSnapshot::size)
+                .description("Customers in the snapshot")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("customer.snapshot.bytes", this, CustomerSnapshot::recordBytes)
+                .description("Off-heap bytes used by the records of the snapshot")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * DEVELOPER NOTE: Unit tests use this constructor and call refresh() themselves. Nothing is loaded in the
+     * background until start() is called.
+     */
+    CustomerSnapshot(CustomerRepository customerRepository, AppConfiguration.CustomerSnapshotProperties properties) {
+        this.customerRepository = customerRepository;
+        this.properties = properties;
+    }
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Start loading the snapshot, and reloading it every refreshInterval, on a background thread. Does nothing unless
+     * the snapshot is enabled.
+     * <p>
+     * DEVELOPER NOTE: This waits for ApplicationReadyEvent, which Spring publishes once the application has started,
+     * so loading a large table doesn't hold up startup. Reads go to the database until the first load is done.
+     * scheduleWithFixedDelay() waits for the whole interval *after* each load, so a slow load never overlaps the next.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, properties.getRefreshInterval().toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Load every customer from the database into a new snapshot, and then start serving reads from it.
+     */
+    void refresh() {
+        long startedAfterEviction = evictionSequence.get();
+        StoreBuilder builder = new StoreBuilder();
+        REFRESH_TIMER.record(() -> {
+            int after = 0;
+            List<CustomerSnapshotRow> rows;
+            do {
+                rows = customerRepository.findSnapshotRowsAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                Map<Integer, List<String>> orderNumbersByCustomerId = readOrderNumbers(rows);
+                for (CustomerSnapshotRow row : rows) {
+                    builder.add(row, orderNumbersByCustomerId.getOrDefault(row.getCustomerId(),
+                            Collections.emptyList()));
+                }
+                after = rows.get(rows.size() - 1).getCustomerId();
+            } while (rows.size() == LOAD_PAGE_SIZE);
+        });
+        store = builder.build();
+        evictions.values().removeIf(sequence -> sequence <= startedAfterEviction);
+    }
+
+    /**
+     * Return a new Customer with the snapshot's copy of the given customer, or null if the snapshot doesn't have it.
+     */
+    Customer getCustomer(int customerId) {
+        Store current = store;
+        int index = indexOf(current, customerId);
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer record = current.recordAt(index);
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        customer.setFullName(getString(record));
+        customer.setStreetAddress(getString(record));
+        customer.setVersion(current.versions[index]);
+        return customer;
+    }
+
+    /**
+     * Return the version of the given customer, or null if the snapshot doesn't have it.
+     */
+    Long getVersion(int customerId) {
+        Store current = store;
+        int index = indexOf(current, customerId);
+        return (index < 0) ? null : current.versions[index];
+    }
+
+    /**
+     * Return the sorted order numbers of the given customer, or null if the snapshot doesn't have it.
+     */
+    List<String> getOrderNumbers(int customerId) {
+        Store current = store;
+        int index = indexOf(current, customerId);
+        if (index < 0) {
+            return null;
+        }
+        ByteBuffer record = current.recordAt(index);
+        skipString(record);
+        skipString(record);
+        int count = record.getInt();
+        List<String> orderNumbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orderNumbers.add(getString(record));
+        }
+        return orderNumbers;
+    }
+
+    /**
+     * Stop serving the given customer from the snapshot until the next reload (one that starts after this call) has
+     * read it again. Does nothing unless the snapshot is enabled.
+     * <p>
+     * DEVELOPER NOTE: Only a reload ever forgets an eviction. A snapshot that isn't enabled is never loaded (and so
+     * never serves anything), so remembering its evictions would only grow the map by one entry for every change, for
+     * as long as the application runs, and turn off the fast path of every read.
+     */
+    void evict(Integer customerId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        evictions.put(customerId, evictionSequence.incrementAndGet());
+    }
+
+    /**
+     * Return the number of customers that are evicted until the next reload.
+     */
+    int pendingEvictions() {
+        return evictions.size();
+    }
+
+    /**
+     * Return the number of customers in the snapshot (zero before the first load).
+     */
+    int size() {
+        Store current = store;
+        return (current == null) ? 0 : current.size;
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: A failed reload keeps the previous snapshot, and must not throw: an exception would silently
+     * cancel every future run of a scheduled task.
+     */
+    private void refreshQuietly() {
+        try {
+            refresh();
+            log.info("Loaded {} customers into the snapshot", size());
+        } catch (RuntimeException e) {
+            REFRESH_FAILED_COUNTER.increment();
+            log.error("Could not load the customer snapshot; still serving the previous one", e);
+        }
+    }
+
+    private int indexOf(Store current, int customerId) {
+        if ((current == null) || (!evictions.isEmpty() && evictions.containsKey(customerId))) {
+            return -1;
+        }
+        return current.indexOf(customerId);
+    }
+
+    private Map<Integer, List<String>> readOrderNumbers(List<CustomerSnapshotRow> rows) {
+        List<Integer> customerIds = new ArrayList<>(rows.size());
+        for (CustomerSnapshotRow row : rows) {
+            customerIds.add(row.getCustomerId());
+        }
+        Map<Integer, List<String>> orderNumbersByCustomerId = new HashMap<>(rows.size() * 2);
+        for (CustomerOrderNumber orderNumber : customerRepository.findOrderNumbersByCustomerIdIn(customerIds)) {
+            orderNumbersByCustomerId.computeIfAbsent(orderNumber.getCustomerId(), id -> new ArrayList<>())
+                    .add(orderNumber.getOrderNumber());
+        }
+        return orderNumbersByCustomerId;
+    }
+
+    private long recordBytes() {
+        Store current = store;
+        return (current == null) ? 0 : current.records.limit();
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length != NULL_LENGTH) {
+            record.position(record.position() + length);
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+/**
+ * The columns of a Customer that the CustomerSnapshot keeps: everything that a customer read returns, except the order
+ * numbers, which come from their own query.
+ * <p>
+ * DEVELOPER NOTE: This is a class-based projection like CustomerSummary, so loading a million customers into the
+ * snapshot never creates a million Customer entities (and their lazy orders proxies) along the way.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepository#findSnapshotRowsAfter
+ */
+@Value
+public class CustomerSnapshotRow {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    Integer customerId;
+    String fullName;
+    String streetAddress;
+    Long version;
+
+}
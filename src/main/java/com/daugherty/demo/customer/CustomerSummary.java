@@ -0,0 +1,25 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+/**
+ * A slim, read-only view of a Customer for listings: just the ID and the name.
+ * <p>
+ * DEVELOPER NOTE: This is a "class-based" projection. The query that reads it builds each one with a constructor
+ * expression ("select new ...CustomerSummary(c.customerId, c.fullName)"), so a listing of a hundred customers reads two
+ * columns of a hundred rows and creates a hundred of these small objects. No Customer entities (with their lazy orders
+ * proxies) are created or remembered by the persistence context. CustomerOrderNumber is an "interface" projection
+ * instead, which is less code, but Spring creates a reflective proxy for every row. That cost is noticeable on a
+ * listing that is read all the time.
+ *
+ * @see com.daugherty.demo.customer.CustomerRepository#findSummariesAfter
+ */
+@Value
+public class CustomerSummary {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    Integer customerId;
+    String fullName;
+
+}
@@ -1,9 +1,27 @@
 package com.daugherty.demo.customer;
 
+import com.daugherty.demo.customer.contract.CustomerBatchResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerBulkFailureDTO;
+import com.daugherty.demo.customer.contract.CustomerBulkResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import com.daugherty.demo.customer.contract.CustomerChangePageDTO;
 import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.contract.CustomerLookupDTO;
+import com.daugherty.demo.customer.contract.CustomerMatchDTO;
+import com.daugherty.demo.customer.contract.CustomerPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSearchPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSummaryDTO;
+import com.daugherty.demo.customer.contract.OrderPageDTO;
+import com.daugherty.demo.customer.contract.OrderSummaryDTO;
 import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Translate to and from CustomerDTO web service contracts and Customer business entities.
  * <p>
@@ -16,6 +34,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class CustomerTranslator {
 
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    private static final Timer TO_CONTRACT_TIMER = Timer.builder("customer.translator")
+            .description("Time spent translating Customers to CustomerDTOs")
+            .tag("method", "toContract")
+            .register(Metrics.globalRegistry);
+
+
     // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
 
     /**
@@ -32,13 +58,140 @@ public class CustomerTranslator {
     }
 
     /**
-     * Translate the given Customer to a new CustomerDTO contract.
+     * Translate the given Customer, and the order numbers of its orders, to a new CustomerDTO contract.
+     * <p>
+     * DEVELOPER NOTE: The order numbers are passed in, rather than read from customer.getOrders(). That collection is
+     * lazy, so reading it here would quietly run a database query for every customer that gets translated.
      */
-    public CustomerDTO toContract(Customer customer) {
-        return CustomerDTO.builder()
+    public CustomerDTO toContract(Customer customer, List<String> orderNumbers) {
+        return TO_CONTRACT_TIMER.record(() -> CustomerDTO.builder()
                 .fullName(customer.getFullName())
                 .id(customer.getCustomerId())
                 .lastReadTimestamp(customer.getLastReadTimestamp())
+                .orderNumbers(new ArrayList<>(orderNumbers))
+                .build());
+    }
+
+    /**
+     * Translate the given CustomerLookup to a new CustomerLookupDTO contract.
+     */
+    public CustomerLookupDTO toContract(CustomerLookup customerLookup) {
+        return CustomerLookupDTO.builder()
+                .id(customerLookup.getCustomerId())
+                .status(customerLookup.getStatus().name())
+                .customer((customerLookup.getCustomer() == null)
+                        ? null
+                        : toContract(customerLookup.getCustomer(), customerLookup.getOrderNumbers()))
+                .build();
+    }
+
+    /**
+     * Translate the given list of CustomerLookups to a new CustomerBatchResponseDTO contract.
+     */
+    public CustomerBatchResponseDTO toContract(List<CustomerLookup> customerLookups) {
+        List<CustomerLookupDTO> results = new ArrayList<>(customerLookups.size());
+        for (CustomerLookup customerLookup : customerLookups) {
+            results.add(toContract(customerLookup));
+        }
+        return CustomerBatchResponseDTO.builder().results(results).build();
+    }
+
+    /**
+     * Translate the given CustomerPage to a new CustomerPageDTO contract.
+     */
+    public CustomerPageDTO toContract(CustomerPage customerPage) {
+        List<CustomerSummaryDTO> customers = new ArrayList<>(customerPage.getCustomers().size());
+        for (CustomerSummary customer : customerPage.getCustomers()) {
+            customers.add(CustomerSummaryDTO.builder()
+                    .id(customer.getCustomerId())
+                    .fullName(customer.getFullName())
+                    .build());
+        }
+        return CustomerPageDTO.builder()
+                .customers(customers)
+                .next(customerPage.getNext())
+                .build();
+    }
+
+    /**
+     * Translate the given OrderPage to a new OrderPageDTO contract.
+     */
+    public OrderPageDTO toContract(OrderPage orderPage) {
+        List<OrderSummaryDTO> orders = new ArrayList<>(orderPage.getOrderNumbers().size());
+        for (String orderNumber : orderPage.getOrderNumbers()) {
+            orders.add(OrderSummaryDTO.builder()
+                    .orderNumber(orderNumber)
+                    .build());
+        }
+        return OrderPageDTO.builder()
+                .orders(orders)
+                .next(orderPage.getNext())
+                .build();
+    }
+
+    /**
+     * Translate the given published CustomerChange to a new CustomerChangeDTO contract.
+     */
+    public CustomerChangeDTO toContract(CustomerChange change) {
+        return CustomerChangeDTO.builder()
+                .sequence(change.getSequence())
+                .customerId(change.getCustomerId())
+                .changeType(change.getChangeType().name())
+                .version(change.getVersion())
+                .fullName(change.getFullName())
+                .changedAt(change.getChangedAt())
+                .build();
+    }
+
+    /**
+     * Translate the given CustomerChangePage to a new CustomerChangePageDTO contract.
+     */
+    public CustomerChangePageDTO toContract(CustomerChangePage changePage) {
+        List<CustomerChangeDTO> changes = new ArrayList<>(changePage.getChanges().size());
+        for (CustomerChange change : changePage.getChanges()) {
+            changes.add(toContract(change));
+        }
+        return CustomerChangePageDTO.builder()
+                .changes(changes)
+                .next(changePage.getNext())
+                .build();
+    }
+
+    /**
+     * Translate the given CustomerSearchPage to a new CustomerSearchPageDTO contract.
+     */
+    public CustomerSearchPageDTO toContract(CustomerSearchPage customerSearchPage) {
+        List<CustomerMatchDTO> customers = new ArrayList<>(customerSearchPage.getCustomers().size());
+        for (CustomerMatch customer : customerSearchPage.getCustomers()) {
+            customers.add(CustomerMatchDTO.builder()
+                    .id(customer.getCustomerId())
+                    .fullName(customer.getFullName())
+                    .streetAddress(customer.getStreetAddress())
+                    .build());
+        }
+        return CustomerSearchPageDTO.builder()
+                .customers(customers)
+                .next(customerSearchPage.getNext())
+                .build();
+    }
+
+    /**
+     * Translate the given CustomerIngestResult to a new CustomerBulkResponseDTO contract.
+     */
+    public CustomerBulkResponseDTO toContract(CustomerIngestResult ingestResult) {
+        List<CustomerBulkFailureDTO> failures = new ArrayList<>(ingestResult.getFailures().size());
+        for (CustomerIngestResult.Failure failure : ingestResult.getFailures()) {
+            failures.add(CustomerBulkFailureDTO.builder()
+                    .index(failure.getIndex())
+                    .id(failure.getCustomerId())
+                    .message(failure.getMessage())
+                    .build());
+        }
+        return CustomerBulkResponseDTO.builder()
+                .received(ingestResult.getReceived())
+                .created(ingestResult.getCreated())
+                .failed(ingestResult.getFailed())
+                .failures(failures)
                 .build();
     }
 
@@ -0,0 +1,21 @@
+package com.daugherty.demo.customer;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of a customer's order numbers, and where the next page starts.
+ * <p>
+ * DEVELOPER NOTE: "next" is the order number to pass as "after" to get the next page, or null when this is the last
+ * page. It is always the last order number on this page.
+ */
+@Value
+public class OrderPage {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    List<String> orderNumbers;
+    String next;
+
+}
@@ -0,0 +1,44 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * This JPA repository interface provides methods to read and write Order data.
+ * <p>
+ * DEVELOPER NOTE: Until this repository, the only way to an Order was through Customer.getOrders(). That collection is
+ * all or nothing: touching it loads every Order of the customer into memory, which for a customer with tens of
+ * thousands of orders is a lot of memory for one request. The methods here read one page of orders at a time.
+ * <p>
+ * Orders have an assigned ID (the order number), so the save() methods that Spring Data generates can't tell a new
+ * Order from an existing one. They treat it as existing and "merge" it, which reads the row first. Use insertAll() to
+ * add new Orders.
+ *
+ * @see com.daugherty.demo.customer.entity.Order
+ */
+@Repository
+public interface OrderRepository extends JpaRepository<Order, String>, OrderRepositoryCustom {
+
+    /**
+     * Return the order numbers of the given customer's Orders that come after the given order number, in order number
+     * order. Pass "" as "after" for the first page, and a Pageable of PageRequest.of(0, limit) to get at most "limit"
+     * of them.
+     * <p>
+     * DEVELOPER NOTE: This is the same "keyset" paging as CustomerRepository.findSummariesAfter(). The
+     * IX_ORDERS_CUST_ID index is sorted by customer and then by order number, so the database goes straight to the
+     * first order of the page, and reads the rest of it in order. Only the order number column is selected:
+     * Hibernate creates no Order entities, and because o.customer.customerId is read from the ORDERS.CUST_ID column,
+     * no Customer (or Customer proxy) is involved at all.
+     */
+    @Query("select o.orderNumber from Order o "
+            + "where o.customer.customerId = :customerId and o.orderNumber > :after order by o.orderNumber")
+    List<String> findOrderNumbersAfter(@Param("customerId") Integer customerId, @Param("after") String after,
+                                       Pageable pageable);
+
+}
@@ -0,0 +1,29 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Order;
+
+import java.util.Collection;
+
+/**
+ * Order repository methods that Spring Data can't generate by itself, like CustomerRepositoryCustom.
+ *
+ * @see com.daugherty.demo.customer.OrderRepositoryImpl
+ */
+public interface OrderRepositoryCustom {
+
+    /**
+     * Insert the given new Orders in one transaction, then detach them. All of them are inserted, or none are. Each
+     * Order's customer only needs its customer ID set; it may be a Customer that was never loaded.
+     * <p>
+     * DEVELOPER NOTE: Like CustomerRepository.insertAll(), the INSERTs are sent in JDBC batches. The version of every
+     * Customer that gets an Order is incremented too, since its orders are part of what its version (and ETag) stands
+     * for, and a CustomerChangedEvent (UPDATED) is published for each of them inside the transaction. That records
+     * the change in the outbox and evicts the customer from the caches, so callers don't have to.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if any Order breaks a database constraint, for
+     *                                                                  example because its order number is already
+     *                                                                  taken or its customer doesn't exist
+     */
+    void insertAll(Collection<Order> orders);
+
+}
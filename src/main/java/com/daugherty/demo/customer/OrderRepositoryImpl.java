@@ -0,0 +1,75 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import com.daugherty.demo.customer.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written implementations of the OrderRepositoryCustom methods.
+ *
+ * @see com.daugherty.demo.customer.OrderRepositoryCustom
+ */
+class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * DEVELOPER NOTE: Repository fragments like this one are Spring beans, so they can have dependencies too. See
+     * insertAll() for why a repository publishes events.
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: Each Customer is loaded once, however many of the Orders belong to it, with
+     * PESSIMISTIC_FORCE_INCREMENT. That locks the Customer's row and adds one to its version right away, even though
+     * nothing else about the Customer changed. (OPTIMISTIC_FORCE_INCREMENT would wait until just before the commit, by
+     * which time clear() has detached the Customer, and the increment would be skipped.) The Orders are then pointed
+     * at the loaded Customer. persist() (rather than the generated save()) always means INSERT, so nothing is read
+     * first.
+     * <p>
+     * Each of those Customers has changed (its version did), so a CustomerChangedEvent is published for it here, inside
+     * the transaction, just like CustomerService does for its own changes. That writes the outbox row in the same
+     * transaction, and evicts the Customer from the caches once it has committed, so no caller has to remember to.
+     */
+    @Override
+    @Transactional
+    public void insertAll(Collection<Order> orders) {
+        Map<Integer, Customer> customers = new HashMap<>();
+        for (Order order : orders) {
+            Integer customerId = order.getCustomer().getCustomerId();
+            Customer customer = customers.computeIfAbsent(customerId, id ->
+                    entityManager.find(Customer.class, id, LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+            if (customer == null) {
+                throw new DataIntegrityViolationException("Order " + order.getOrderNumber()
+                        + " belongs to customer " + customerId + ", which doesn't exist");
+            }
+            order.setCustomer(customer);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        for (Customer customer : customers.values()) {
+            eventPublisher.publishEvent(new CustomerChangedEvent(customer.getCustomerId(),
+                    CustomerChange.ChangeType.UPDATED, customer.getVersion(), customer.getFullName()));
+        }
+        entityManager.clear();
+    }
+
+}
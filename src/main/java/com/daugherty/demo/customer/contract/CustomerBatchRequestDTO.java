@@ -0,0 +1,32 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request contract for looking up many customers at once.
+ *
+ * @see com.daugherty.demo.customer.contract.CustomerBatchResponseDTO
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerBatchRequestDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    // DEVELOPER NOTE: Integer (not int) so that a null inside the JSON array survives deserialization and can be
+    // reported back as an invalid ID instead of failing the whole request.
+    @JsonProperty("ids")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<Integer> ids = new ArrayList<>();
+
+}
@@ -0,0 +1,30 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for a batch customer lookup. There is exactly one result per requested ID, in request order.
+ *
+ * @see com.daugherty.demo.customer.contract.CustomerBatchRequestDTO
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerBatchResponseDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("results")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<CustomerLookupDTO> results = new ArrayList<>();
+
+}
@@ -0,0 +1,29 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * A single record of a bulk ingest that was not created, and why.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerBulkFailureDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    // DEVELOPER NOTE: The position of the record in the request, starting at zero. The ID alone isn't enough, since the
+    // ID itself may be what's missing or wrong.
+    @JsonProperty("index")
+    Long index;
+
+    @JsonProperty("id")
+    Integer id;
+
+    @JsonProperty("message")
+    String message;
+
+}
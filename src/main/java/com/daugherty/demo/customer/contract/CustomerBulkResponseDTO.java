@@ -0,0 +1,38 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for a bulk customer ingest. Every record that was received was either created or failed. Only the
+ * first failures are listed; "failed" counts all of them.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerBulkResponseDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("received")
+    Long received;
+
+    @JsonProperty("created")
+    Long created;
+
+    @JsonProperty("failed")
+    Long failed;
+
+    @JsonProperty("failures")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<CustomerBulkFailureDTO> failures = new ArrayList<>();
+
+}
@@ -0,0 +1,46 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * One change to a customer, as it appears in the stream of customer changes: what happened, and the customer's state
+ * after it, so that a consumer can apply the change without reading the customer again.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerChangeDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    // DEVELOPER NOTE: The position of this change in the stream. Consumers remember the sequence of the last change
+    // that they applied, and skip any change at or below it: a change can be delivered more than once.
+    @JsonProperty("sequence")
+    Long sequence;
+
+    @JsonProperty("customerId")
+    Integer customerId;
+
+    // DEVELOPER NOTE: CREATED, UPDATED or DELETED. Consumers should ignore types that they don't know; more may come.
+    @JsonProperty("changeType")
+    String changeType;
+
+    // DEVELOPER NOTE: The customer's version (its ETag) after the change. For DELETED, the last version it had.
+    @JsonProperty("version")
+    Long version;
+
+    // DEVELOPER NOTE: Null for DELETED.
+    @JsonProperty("fullName")
+    String fullName;
+
+    @JsonProperty("changedAt")
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    Instant changedAt;
+
+}
@@ -0,0 +1,34 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for one page of the stream of customer changes, in sequence order.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerChangePageDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("changes")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<CustomerChangeDTO> changes = new ArrayList<>();
+
+    // DEVELOPER NOTE: Pass it back as the "since" query parameter to get the changes after this page. Unlike the
+    // "next" of a listing, it is never null: when there are no newer changes, the page is empty, and "next" is the
+    // "since" that was passed in. Keep it, and ask again later.
+    @JsonProperty("next")
+    Long next;
+
+}
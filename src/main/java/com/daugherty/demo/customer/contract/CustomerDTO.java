@@ -47,8 +47,11 @@ public class CustomerDTO {
     ZonedDateTime lastReadTimestamp;
 
     // DEVELOPER NOTE: @JsonSetter ensures Jackson won't create a null List if the property is 'null' in the JSON.
+    // @Builder.Default is needed because @Value makes this field final, and Lombok leaves initialized final fields out
+    // of the generated constructor (and so out of the builder) unless it is told to keep them.
     @JsonProperty("orderNumbers")
     @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
     List<String> orderNumbers = new ArrayList<>();
 
 }
@@ -0,0 +1,32 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * The result of looking up a single customer ID in a batch. The customer is only present when the status is FOUND.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerLookupDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("id")
+    Integer id;
+
+    // DEVELOPER NOTE: One of FOUND, NOT_FOUND or INVALID. This is a String in the contract (rather than the service
+    // layer's enum) so that adding a new status later doesn't break clients that deserialize into a closed enum.
+    @JsonProperty("status")
+    String status;
+
+    // DEVELOPER NOTE: @JsonInclude(NON_NULL) keeps not-found and invalid entries small on the wire.
+    @JsonProperty("customer")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    CustomerDTO customer;
+
+}
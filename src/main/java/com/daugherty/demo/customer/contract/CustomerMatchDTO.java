@@ -0,0 +1,27 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * A customer as it appears in search results: enough to recognize it and to fetch the whole CustomerDTO by ID.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerMatchDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("id")
+    Integer id;
+
+    @JsonProperty("fullName")
+    String fullName;
+
+    @JsonProperty("streetAddress")
+    String streetAddress;
+
+}
@@ -0,0 +1,33 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for one page of the customer listing, in customer ID order.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerPageDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("customers")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<CustomerSummaryDTO> customers = new ArrayList<>();
+
+    // DEVELOPER NOTE: The continuation token: pass it back as the "after" query parameter to get the next page. It is
+    // null on the last page. Clients should treat it as an opaque value, even though today it is a customer ID.
+    @JsonProperty("next")
+    Integer next;
+
+}
@@ -0,0 +1,33 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for one page of customer search results.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerSearchPageDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("customers")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<CustomerMatchDTO> customers = new ArrayList<>();
+
+    // DEVELOPER NOTE: The continuation cursor: pass it back as the "after" query parameter, along with the same search
+    // parameters, to get the next page. It is null on the last page.
+    @JsonProperty("next")
+    String next;
+
+}
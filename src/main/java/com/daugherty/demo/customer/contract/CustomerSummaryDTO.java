@@ -0,0 +1,24 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * A customer as it appears in a listing: just enough to show it and to fetch the whole CustomerDTO by ID.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class CustomerSummaryDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("id")
+    Integer id;
+
+    @JsonProperty("fullName")
+    String fullName;
+
+}
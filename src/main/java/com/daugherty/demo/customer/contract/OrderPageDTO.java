@@ -0,0 +1,33 @@
+package com.daugherty.demo.customer.contract;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response contract for one page of a customer's orders, in order number order.
+ */
+@With
+@Value
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor(force = true, access = AccessLevel.PRIVATE)
+public class OrderPageDTO {
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    @JsonProperty("orders")
+    @JsonSetter(nulls = Nulls.AS_EMPTY)
+    @Builder.Default
+    List<OrderSummaryDTO> orders = new ArrayList<>();
+
+    // DEVELOPER NOTE: The continuation token, like CustomerPageDTO.next: pass it back as the "after" query parameter to
+    // get the next page. It is null on the last page.
+    @JsonProperty("next")
+    String next;
+
+}
@@ -1,10 +1,15 @@
 package com.daugherty.demo.customer.entity;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.time.ZonedDateTime;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -19,14 +24,37 @@ import java.util.Set;
  * The @Data annotation has nothing to do with databases or JPA. This annotation is a Lombok library annotation that
  * automatically generates property getter and setter methods so that you don't have to. It even makes an equals()
  * method that can compare the properties between two objects to determine if they are "logically" equal.
+ * <p>
+ * The indexes in the @Table annotation are created along with the table. Without them, every search by name or street
+ * address would read every row of the table. Each one starts with the searched column and ends with CUST_ID, so the
+ * index entries for one name are already sorted by customer ID, which is the order that search results are paged in.
+ * <p>
+ * The @Cacheable and @Cache annotations put Customers into Hibernate's second-level cache (see
+ * EntityCacheConfiguration). Loading a Customer by ID a second time then needs no SQL at all, even from a new
+ * persistence context. READ_WRITE means that a change to a Customer locks its cache entry until the transaction has
+ * committed, so other transactions never read a change that might still be rolled back. Queries (JPQL) don't use
+ * this cache; only loads by ID and walks of associations do.
  *
  * @see com.daugherty.demo.customer.contract.CustomerDTO
  */
 @Data
 @Entity
-@Table(name = "CUSTOMERS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Customer.CACHE_REGION)
+@Table(name = "CUSTOMERS", indexes = {
+        @Index(name = "IX_CUSTOMERS_FULL_NAME_LC", columnList = "CUST_FULL_NAME_LC, CUST_ID"),
+        @Index(name = "IX_CUSTOMERS_STREET_ADDR_LC", columnList = "CUST_STREET_ADDR_LC, CUST_ID")
+})
 public class Customer {
 
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * The names of the second-level cache regions of Customers and of their collections of Orders.
+     */
+    public static final String CACHE_REGION = "customers";
+    public static final String ORDERS_CACHE_REGION = "customerOrders";
+
     // -------------------------------------------------- PROPERTIES ---------------------------------------------------
 
     /**
@@ -43,6 +71,38 @@ public class Customer {
     @Column(name = "CUST_FULL_NAME")
     private String fullName;
 
+    /**
+     * DEVELOPER NOTE: Searches ignore upper and lower case, but an index on CUST_FULL_NAME can only find exact matches.
+     * Searching with "where lower(CUST_FULL_NAME) = ?" can't use that index at all, so the database would have to read
+     * and lower-case every row. Instead, a lower-case copy of the name is stored in its own column, with its own index,
+     * and searches compare against that. The copy is only ever set from fullName (see updateSearchColumns()), so there
+     * is no setter for it.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "CUST_FULL_NAME_LC")
+    private String fullNameLowerCase;
+
+    /**
+     * The lower-case copy of streetAddress that searches use.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "CUST_STREET_ADDR_LC")
+    private String streetAddressLowerCase;
+
+    /**
+     * DEVELOPER NOTE: The @Version annotation turns on "optimistic locking". Hibernate adds one to this number every
+     * time it updates the row, and the update only succeeds if the number in the database is still the one that was
+     * read ("where CUST_VERSION = ?"). So two users who both read version 3 can't both save over each other.
+     * <p>
+     * The version also tells clients whether the customer has changed since they last read it (it becomes the ETag of
+     * GET /v1/customers/{customerId}). Everything in that response must be covered by it: code that adds, changes or
+     * removes an Order must bump its Customer's version too, for example by locking the Customer with
+     * LockModeType.OPTIMISTIC_FORCE_INCREMENT.
+     */
+    @Version
+    @Column(name = "CUST_VERSION", nullable = false)
+    private Long version;
+
     /**
      * DEVELOPER NOTE: A Customer has a list of Orders. These Orders are also annotated to be JPA entities. The JPA
      * annotation @OneToMany indicates that one Customer has many Orders. The collection of Orders that this Customer
@@ -52,6 +112,7 @@ public class Customer {
      * deleted, too.
      */
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, fetch = FetchType.LAZY, mappedBy = "customer")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Customer.ORDERS_CACHE_REGION)
     private Set<Order> orders = new HashSet<>(0);
 
     /**
@@ -62,6 +123,32 @@ public class Customer {
     @Transient
     private ZonedDateTime lastReadTimestamp;
 
+
+    // ------------------------------------------------ PUBLIC METHODS -------------------------------------------------
+
+    /**
+     * Return the given name or street address the way that it is stored in the search columns: without leading or
+     * trailing spaces and in lower case. Searches must normalize what they look for the same way.
+     */
+    public static String toSearchKey(String value) {
+        return (value == null) ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: JPA calls @PrePersist methods just before a new entity is inserted, and @PreUpdate methods just
+     * before a changed one is updated. So the search columns always match the name and address that are saved with
+     * them, no matter which code changed those. Rows that are inserted with plain SQL must fill them in themselves.
+     */
+    @PrePersist
+    @PreUpdate
+    private void updateSearchColumns() {
+        fullNameLowerCase = toSearchKey(fullName);
+        streetAddressLowerCase = toSearchKey(streetAddress);
+    }
+
 }
 
 
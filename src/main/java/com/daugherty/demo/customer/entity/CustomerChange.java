@@ -0,0 +1,89 @@
+package com.daugherty.demo.customer.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One committed change to a customer, in the "transactional outbox" of customer changes.
+ * <p>
+ * DEVELOPER NOTE: A change to a customer and its row in this table are written in the same database transaction, so
+ * there is never a change without its row, or a row for a change that was rolled back. Telling other systems about the
+ * change straight from the code that makes it (a message, a webhook) can't promise that: the message can go out and
+ * the transaction roll back, or the transaction commit and the application stop before the message goes out. Here,
+ * the CustomerChangePublisher reads the rows after they were committed and publishes them.
+ * <p>
+ * A row has two numbers. The changeId comes from a database sequence when the row is inserted, but transactions
+ * commit in their own order, so a row with a lower changeId can become visible after one with a higher changeId. A
+ * reader that remembered "everything up to changeId 41" would then never see changeId 40. So the publisher gives each
+ * row a second number, the sequence, when it publishes it. Only the publisher does that, one batch at a time, so
+ * sequences are handed out in the order that changes became visible, without gaps, and a reader that remembers
+ * "everything up to sequence 41" misses nothing. The sequence is null until the row has been published. Its unique
+ * index also finds the unpublished rows, and the page of a catch-up read.
+ * <p>
+ * Rows are not in the second-level cache: each one is written once, updated once, and read by sequence range.
+ *
+ * @see com.daugherty.demo.customer.CustomerChangePublisher
+ */
+@Data
+@Entity
+@Table(name = "CUSTOMER_CHANGES", indexes = {
+        @Index(name = "UX_CUSTOMER_CHANGES_SEQ", columnList = "CHANGE_SEQ", unique = true)
+})
+public class CustomerChange {
+
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * What happened to the customer.
+     */
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+
+
+    // -------------------------------------------------- PROPERTIES ---------------------------------------------------
+
+    /**
+     * DEVELOPER NOTE: allocationSize lets Hibernate take 100 IDs from the database sequence at a time, instead of
+     * asking for each new row's ID with its own query. That keeps the inserts of a bulk ingest batched.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customerChangeId")
+    @SequenceGenerator(name = "customerChangeId", sequenceName = "CUSTOMER_CHANGE_ID_SEQ", allocationSize = 100)
+    @Column(name = "CHANGE_ID")
+    private Long changeId;
+
+    /**
+     * The position of this change in the published stream of changes, or null if it hasn't been published yet.
+     */
+    @Column(name = "CHANGE_SEQ")
+    private Long sequence;
+
+    /**
+     * DEVELOPER NOTE: Not a foreign key to CUSTOMERS. The row of a deleted customer is gone, but its changes are not.
+     */
+    @Column(name = "CUST_ID", nullable = false)
+    private Integer customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "CHANGE_TYPE", nullable = false, length = 10)
+    private ChangeType changeType;
+
+    /**
+     * The customer's version after the change (for a deletion, the last version it had).
+     */
+    @Column(name = "CUST_VERSION")
+    private Long version;
+
+    /**
+     * The customer's full name after the change, or null for a deletion.
+     */
+    @Column(name = "CUST_FULL_NAME")
+    private String fullName;
+
+    @Column(name = "CHANGED_AT", nullable = false)
+    private Instant changedAt;
+
+}
@@ -1,18 +1,42 @@
 package com.daugherty.demo.customer.entity;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.io.Serializable;
 
 /**
  * DEVELOPER NOTE: See the Customer class for more information on JPA first. Then come back here.
+ * <p>
+ * Orders are in the second-level cache too (in their own region), so that walking a cached Customer's orders
+ * collection finds the Orders themselves in the cache as well.
+ * <p>
+ * The index on CUST_ID is what finds a customer's orders, both for Customer.orders and for paging through them with
+ * OrderRepository. Without it, every one of those reads would scan the whole ORDERS table. It also contains
+ * ORDER_NUMBER, so a customer's index entries are already sorted by order number, which is the order that pages are
+ * read in.
  */
 @Data
 @Entity
-@Table(name = "ORDERS")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Order.CACHE_REGION)
+@Table(name = "ORDERS", indexes = {
+        @Index(name = "IX_ORDERS_CUST_ID", columnList = "CUST_ID, ORDER_NUMBER")
+})
 public class Order implements Serializable {
 
+    // -------------------------------------------------- VARIABLES ----------------------------------------------------
+
+    /**
+     * The name of the second-level cache region of Orders.
+     */
+    public static final String CACHE_REGION = "orders";
+
+
     // -------------------------------------------------- PROPERTIES ---------------------------------------------------
 
     @Id
@@ -30,7 +54,14 @@ public class Order implements Serializable {
      * <p>
      * Basically, Java and relational databases associate entities in reverse. JPA navigates this by having
      * bi-directional references in Java.
+     * <p>
+     * The Customer is left out of the equals(), hashCode() and toString() that @Data makes. Otherwise an Order's hash
+     * code would include its Customer's, which includes the hash codes of all of its Orders. When a Customer's orders
+     * collection is built from the second-level cache, adding each Order to it starts that loop again, until the
+     * stack overflows.
      */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "CUST_ID")
     private Customer customer;
@@ -11,4 +11,15 @@ public class BusinessException extends Exception {
         super(message);
     }
 
+    /**
+     * DEVELOPER NOTE: Filling in the stack trace is by far the most expensive part of creating an exception. The JVM
+     * has to walk every frame of the calling thread's stack... and in a Spring web application that stack is well over
+     * a hundred frames deep. A business exception is an expected outcome ("that customer ID is invalid"), not a bug,
+     * so nobody ever needs to know where it came from. Passing writableStackTrace=false skips the stack walk entirely.
+     * Suppression is turned off too, since business exceptions are never used in try-with-resources.
+     */
+    public BusinessException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
 }
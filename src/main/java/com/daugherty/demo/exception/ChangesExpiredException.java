@@ -0,0 +1,17 @@
+package com.daugherty.demo.exception;
+
+/**
+ * Thrown when a client asks for the changes after a point that is older than the oldest change that is still kept.
+ * The changes in between are gone, so the client can't catch up from there; it has to read everything again.
+ *
+ * @see com.daugherty.demo.RestExceptionHandler
+ */
+public class ChangesExpiredException extends BusinessException {
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    public ChangesExpiredException(String message) {
+        super(message, false);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.daugherty.demo.exception;
+
+/**
+ * Thrown when a client asks to change something that has changed since the client last read it (its If-Match header
+ * names a version that is no longer the current one). The client should read it again before it retries.
+ *
+ * @see com.daugherty.demo.RestExceptionHandler
+ */
+public class PreconditionFailedException extends BusinessException {
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    public PreconditionFailedException(String message) {
+        super(message, false);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.daugherty.demo.exception;
+
+/**
+ * Thrown when a client asks to change something without saying which version of it the change is based on (it sent
+ * no If-Match header). Changes that aren't based on a known version could silently overwrite someone else's.
+ *
+ * @see com.daugherty.demo.RestExceptionHandler
+ */
+public class PreconditionRequiredException extends BusinessException {
+
+    // ------------------------------------------------- CONSTRUCTORS --------------------------------------------------
+
+    public PreconditionRequiredException(String message) {
+        super(message, false);
+    }
+
+}
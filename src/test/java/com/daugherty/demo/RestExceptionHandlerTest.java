@@ -1,19 +1,32 @@
 package com.daugherty.demo;
 
+import com.daugherty.demo.contract.ErrorDTO;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.context.request.WebRequest;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
 
 @ExtendWith(MockitoExtension.class)
 class RestExceptionHandlerTest extends BaseTest {
@@ -26,12 +39,20 @@ class RestExceptionHandlerTest extends BaseTest {
     @Spy
     private RestExceptionHandler restExceptionHandlerSpy;
 
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
 
     // ------------------------------------------------- TEST METHODS --------------------------------------------------
 
     @BeforeEach
     public void beforeEach() {
         super.setup();
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        Metrics.removeRegistry(meterRegistry);
     }
 
     /**
@@ -39,7 +60,8 @@ class RestExceptionHandlerTest extends BaseTest {
      * WHEN a BusinessException is thrown
      * THEN a response should be returned
      * AND it should indicate an HTTP status code of 400 - Bad Request
-     * AND it should contain the error message text.
+     * AND it should contain the error message text
+     * AND the business error counter should be incremented.
      */
     @Test
     void handlesBusinessException() {
@@ -48,16 +70,20 @@ class RestExceptionHandlerTest extends BaseTest {
         BusinessException ex = podamFactory.manufacturePojo(BusinessException.class);
         WebRequest webRequestMock = mock(WebRequest.class);
         ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleBusinessException(ex, webRequestMock);
-        Throwable actualException = (Throwable) responseEntity.getBody();
+        ErrorDTO actualError = (ErrorDTO) responseEntity.getBody();
 
         // THEN a response should be returned
-        assertNotNull(actualException);
+        assertNotNull(actualError);
 
-        // AND it should indicate an HTTP status code of 500 - Internal Server Error
+        // AND it should indicate an HTTP status code of 400 - Bad Request
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), actualError.getStatus());
+
+        // AND it should contain the error message text
+        assertEquals(ex.getMessage(), actualError.getMessage());
 
-        // AND it should contain the error message text.
-        assertEquals(ex.getMessage(), actualException.getMessage());
+        // AND the business error counter should be incremented.
+        assertEquals(1, meterRegistry.get(RestExceptionHandler.ERRORS_METER).tag("type", "business").counter().count());
     }
 
     /**
@@ -65,7 +91,8 @@ class RestExceptionHandlerTest extends BaseTest {
      * WHEN a generic RuntimeException is thrown
      * THEN a response should be returned
      * AND it should indicate an HTTP status code of 500 - Internal Server Error
-     * AND it should contain the error message text.
+     * AND it should contain the error message text
+     * AND the unexpected error counter should be incremented for the exception's class.
      */
     @Test
     void handlesGenericException() {
@@ -74,16 +101,159 @@ class RestExceptionHandlerTest extends BaseTest {
         RuntimeException expectedException = podamFactory.manufacturePojo(NullPointerException.class);
         WebRequest webRequestMock = mock(WebRequest.class);
         ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleGenericException(expectedException, webRequestMock);
-        Throwable actualException = (Throwable) responseEntity.getBody();
+        ErrorDTO actualError = (ErrorDTO) responseEntity.getBody();
 
         // THEN a response should be returned
-        assertNotNull(actualException);
+        assertNotNull(actualError);
 
         // AND it should indicate an HTTP status code of 500 - Internal Server Error
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, responseEntity.getStatusCode());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), actualError.getStatus());
+
+        // AND it should contain the error message text
+        assertEquals(expectedException.getMessage(), actualError.getMessage());
+
+        // AND the unexpected error counter should be incremented for the exception's class.
+        assertEquals(1, meterRegistry.get(RestExceptionHandler.ERRORS_METER)
+                .tags("type", "unexpected", "exception", "NullPointerException").counter().count());
+    }
+
+    /**
+     * GIVEN a controller method is called
+     * WHEN a RejectedExecutionException is thrown
+     * THEN a response should be returned with an HTTP status code of 503 - Service Unavailable
+     * AND it should tell the client when to retry.
+     */
+    @Test
+    void handlesRejectedExecutionException() {
+
+        // WHEN a RejectedExecutionException is thrown
+        RejectedExecutionException ex = new RejectedExecutionException("full");
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleRejectedExecutionException(ex, mock(WebRequest.class));
+
+        // THEN a response should be returned with an HTTP status code of 503 - Service Unavailable
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+        assertEquals(ex.getMessage(), ((ErrorDTO) responseEntity.getBody()).getMessage());
+
+        // AND it should tell the client when to retry.
+        assertNotNull(responseEntity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * GIVEN a controller method is called
+     * WHEN no database connection is free in time to start a transaction
+     * THEN a response should be returned with an HTTP status code of 503 - Service Unavailable
+     * AND it should tell the client when to retry.
+     */
+    @Test
+    void handlesConnectionPoolTimeout() {
+
+        // WHEN no database connection is free in time to start a transaction
+        CannotCreateTransactionException ex = new CannotCreateTransactionException("Could not open JPA EntityManager",
+                new SQLTransientConnectionException("HikariPool-1 - Connection is not available"));
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleConnectionUnavailableException(ex,
+                mock(WebRequest.class));
+
+        // THEN a response should be returned with an HTTP status code of 503 - Service Unavailable
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+        assertEquals(RestExceptionHandler.DATABASE_BUSY_MESSAGE, ((ErrorDTO) responseEntity.getBody()).getMessage());
+
+        // AND it should tell the client when to retry.
+        assertNotNull(responseEntity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * GIVEN a controller method is called
+     * WHEN the database can't be reached for any other reason than a busy pool
+     * THEN a response should be returned with an HTTP status code of 500 - Internal Server Error.
+     */
+    @Test
+    void handlesDatabaseUnavailable() {
+        DataAccessResourceFailureException ex = new DataAccessResourceFailureException("Connection refused");
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleConnectionUnavailableException(ex,
+                mock(WebRequest.class));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, responseEntity.getStatusCode());
+        assertNull(responseEntity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * GIVEN a controller method is called
+     * WHEN a TimeoutException is thrown
+     * THEN a response should be returned with an HTTP status code of 504 - Gateway Timeout.
+     */
+    @Test
+    void handlesTimeoutException() {
+
+        // WHEN a TimeoutException is thrown
+        TimeoutException ex = new TimeoutException("slow");
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleTimeoutException(ex, mock(WebRequest.class));
+
+        // THEN a response should be returned with an HTTP status code of 504 - Gateway Timeout.
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, responseEntity.getStatusCode());
+        assertEquals(ex.getMessage(), ((ErrorDTO) responseEntity.getBody()).getMessage());
+    }
+
+    /**
+     * GIVEN a controller method is called to change a customer that has changed since the client read it
+     * WHEN a PreconditionFailedException is thrown
+     * THEN a response should be returned with an HTTP status code of 412 - Precondition Failed.
+     */
+    @Test
+    void handlesPreconditionFailedException() {
+
+        // WHEN a PreconditionFailedException is thrown
+        PreconditionFailedException ex = new PreconditionFailedException("changed");
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handlePreconditionFailedException(ex, mock(WebRequest.class));
+
+        // THEN a response should be returned with an HTTP status code of 412 - Precondition Failed.
+        assertEquals(HttpStatus.PRECONDITION_FAILED, responseEntity.getStatusCode());
+        assertEquals(ex.getMessage(), ((ErrorDTO) responseEntity.getBody()).getMessage());
+    }
+
+    /**
+     * GIVEN a controller method is called to change a customer
+     * WHEN another change of the same customer commits first, and an OptimisticLockingFailureException is thrown
+     * THEN a response should be returned with an HTTP status code of 409 - Conflict
+     * AND it should not contain Hibernate's message.
+     */
+    @Test
+    void handlesOptimisticLockingFailureException() {
+
+        // WHEN another change of the same customer commits first, and an OptimisticLockingFailureException is thrown
+        OptimisticLockingFailureException ex = new OptimisticLockingFailureException("Row was updated or deleted");
+        ResponseEntity<Object> responseEntity = restExceptionHandlerSpy.handleOptimisticLockingFailureException(ex, mock(WebRequest.class));
+
+        // THEN a response should be returned with an HTTP status code of 409 - Conflict
+        assertEquals(HttpStatus.CONFLICT, responseEntity.getStatusCode());
+
+        // AND it should not contain Hibernate's message.
+        assertEquals(RestExceptionHandler.CONFLICT_MESSAGE, ((ErrorDTO) responseEntity.getBody()).getMessage());
+    }
+
+    /**
+     * GIVEN a BusinessException warning was just logged
+     * WHEN more warnings are logged within the warning interval
+     * THEN they should be suppressed
+     * AND a warning should be allowed again once the interval has passed.
+     */
+    @Test
+    void rateLimitsWarnings() {
+
+        // GIVEN a BusinessException warning was just logged
+        long now = 1_000_000L;
+        doReturn(now).when(restExceptionHandlerSpy).currentTimeMillis();
+        assertTrue(restExceptionHandlerSpy.isWarningAllowed());
+
+        // WHEN more warnings are logged within the warning interval
+        doReturn(now + RestExceptionHandler.WARNING_INTERVAL_MILLIS - 1).when(restExceptionHandlerSpy).currentTimeMillis();
+
+        // THEN they should be suppressed
+        assertFalse(restExceptionHandlerSpy.isWarningAllowed());
+        assertFalse(restExceptionHandlerSpy.isWarningAllowed());
 
-        // AND it should contain the error message text.
-        assertEquals(expectedException.getMessage(), actualException.getMessage());
+        // AND a warning should be allowed again once the interval has passed.
+        doReturn(now + RestExceptionHandler.WARNING_INTERVAL_MILLIS).when(restExceptionHandlerSpy).currentTimeMillis();
+        assertTrue(restExceptionHandlerSpy.isWarningAllowed());
     }
 
-}
\ No newline at end of file
+}
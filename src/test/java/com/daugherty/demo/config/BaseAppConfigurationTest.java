@@ -59,6 +59,18 @@ public abstract class BaseAppConfigurationTest extends BaseTest {
         assertEquals(name, appConfiguration.getConfigName());
         assertNotNull(appConfiguration.getEnvironment());
         assertFalse(appConfiguration.getServers().isEmpty());
+        assertTrue(appConfiguration.getCustomerCache().getMaximumSize() > 0);
+        assertNotNull(appConfiguration.getCustomerCache().getTimeToLive());
+        assertNotNull(appConfiguration.getCustomerCache().getNotFoundTimeToLive());
+        assertTrue(appConfiguration.getCustomerLookupExecutor().getThreads() > 0);
+        assertTrue(appConfiguration.getCustomerLookupExecutor().getQueueCapacity() > 0);
+        assertNotNull(appConfiguration.getCustomerLookupExecutor().getTimeout());
+        assertFalse(appConfiguration.getVirtualThreads().isEnabled()); // Only the virtual-threads profile turns it on
+        assertTrue(appConfiguration.getEntityCache().isEnabled());
+        assertTrue(appConfiguration.getEntityCache().getCustomers().getMaximumSize() > 0);
+        assertTrue(appConfiguration.getEntityCache().getOrders().getMaximumSize() > 0);
+        assertTrue(appConfiguration.getEntityCache().getCustomerOrders().getMaximumSize() > 0);
+        assertFalse(appConfiguration.getDatabaseTuning().isEnabled()); // Only the perf profile turns it on
     }
 
 }
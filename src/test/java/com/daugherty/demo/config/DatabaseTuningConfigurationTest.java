@@ -0,0 +1,45 @@
+package com.daugherty.demo.config;
+
+import com.daugherty.demo.BaseTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DatabaseTuningConfigurationTest extends BaseTest {
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN H2 tuning properties
+     * WHEN they are applied to an H2 JDBC URL
+     * THEN the H2 settings should be added to the end of the URL, with the cache size in kilobytes.
+     */
+    @Test
+    void tuneH2Url_h2() {
+
+        // GIVEN H2 tuning properties
+        AppConfiguration.H2TuningProperties h2 = new AppConfiguration.H2TuningProperties();
+        h2.setCacheSize(DataSize.ofMegabytes(128));
+        h2.setQueryCacheSize(64);
+
+        // WHEN they are applied to an H2 JDBC URL
+        String actual = DatabaseTuningConfiguration.tuneH2Url("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1", h2);
+
+        // THEN the H2 settings should be added to the end of the URL, with the cache size in kilobytes.
+        assertEquals("jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;MV_STORE=TRUE;CACHE_SIZE=131072;QUERY_CACHE_SIZE=64",
+                actual);
+    }
+
+    /**
+     * GIVEN H2 tuning properties
+     * WHEN they are applied to the JDBC URL of some other database
+     * THEN the URL should not be changed.
+     */
+    @Test
+    void tuneH2Url_otherDatabase() {
+        String url = "jdbc:postgresql://localhost/demo";
+        assertEquals(url, DatabaseTuningConfiguration.tuneH2Url(url, new AppConfiguration.H2TuningProperties()));
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.daugherty.demo.config;
+
+import com.daugherty.demo.BaseTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StartupTimingReportTest extends BaseTest {
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN a bean that depends on another bean
+     * WHEN both are created, the dependency while the first one is being created
+     * THEN both should be timed, and the first one's self time should be its total time less the dependency's.
+     */
+    @Test
+    void beanTimer_nested() {
+
+        // GIVEN a bean that depends on another bean
+        StartupTimingReport.BeanTimer beanTimer = new StartupTimingReport.BeanTimer();
+
+        // WHEN both are created, the dependency while the first one is being created
+        beanTimer.postProcessBeforeInstantiation(Object.class, "service");
+        beanTimer.postProcessBeforeInstantiation(Object.class, "repository");
+        beanTimer.postProcessAfterInitialization(new Object(), "repository");
+        beanTimer.postProcessAfterInitialization(new Object(), "service");
+
+        // THEN both should be timed, and the first one's self time should be its total time less the dependency's.
+        Map<String, StartupTimingReport.BeanTiming> timings = timingsByName(beanTimer);
+        assertEquals(2, timings.size());
+        StartupTimingReport.BeanTiming service = timings.get("service");
+        StartupTimingReport.BeanTiming repository = timings.get("repository");
+        assertEquals(repository.getTotalNanos(), repository.getSelfNanos());
+        assertEquals(service.getTotalNanos() - repository.getTotalNanos(), service.getSelfNanos());
+    }
+
+    /**
+     * GIVEN a bean that was only started (as Spring does to find out a bean's type), and a FactoryBean
+     * WHEN the FactoryBean's product comes through under the FactoryBean's name again
+     * THEN each bean should be timed once, and the started-only bean should be dropped.
+     */
+    @Test
+    void beanTimer_unmatched() {
+
+        // GIVEN a bean that was only started (as Spring does to find out a bean's type), and a FactoryBean
+        StartupTimingReport.BeanTimer beanTimer = new StartupTimingReport.BeanTimer();
+        beanTimer.postProcessBeforeInstantiation(Object.class, "service");
+        beanTimer.postProcessBeforeInstantiation(Object.class, "typeCheckOnly");
+        beanTimer.postProcessBeforeInstantiation(Object.class, "factory");
+        beanTimer.postProcessAfterInitialization(new Object(), "factory");
+
+        // WHEN the FactoryBean's product comes through under the FactoryBean's name again
+        beanTimer.postProcessAfterInitialization(new Object(), "factory");
+        beanTimer.postProcessAfterInitialization(new Object(), "service");
+
+        // THEN each bean should be timed once, and the started-only bean should be dropped.
+        assertEquals(2, beanTimer.getTimings().size());
+        assertTrue(timingsByName(beanTimer).keySet().containsAll(Arrays.asList("service", "factory")));
+    }
+
+    /**
+     * GIVEN the timer has been stopped
+     * WHEN a (lazy) bean is created
+     * THEN it should not be timed.
+     */
+    @Test
+    void beanTimer_stopped() {
+        StartupTimingReport.BeanTimer beanTimer = new StartupTimingReport.BeanTimer();
+        beanTimer.stop();
+        beanTimer.postProcessBeforeInstantiation(Object.class, "lazyBean");
+        beanTimer.postProcessAfterInitialization(new Object(), "lazyBean");
+        assertTrue(beanTimer.getTimings().isEmpty());
+    }
+
+
+    /**
+     * GIVEN the report is turned on (with the property names used in application.yml), and written to a file
+     * WHEN an application is started, which registers the report from META-INF/spring.factories
+     * THEN it should start
+     * AND the report should be written, with every phase.
+     * <p>
+     * DEVELOPER NOTE: This goes through SpringApplication.run() for real, so it catches anything that stops the report
+     * from binding its properties against a real environment (which every application start would run into).
+     */
+    @Test
+    void report_writtenOnStart(@TempDir Path tempDir) throws IOException {
+
+        // GIVEN the report is turned on (with the property names used in application.yml), and written to a file
+        File output = tempDir.resolve("startup.json").toFile();
+
+        // WHEN an application is started, which registers the report from META-INF/spring.factories
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EmptyConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties("startupReport.enabled=true", "startupReport.output=" + output.getAbsolutePath())
+                .run()) {
+
+            // THEN it should start
+            assertTrue(context.isActive());
+        }
+
+        // AND the report should be written, with every phase.
+        JsonNode report = new ObjectMapper().readTree(output);
+        assertTrue(report.get("totalMillis").isNumber());
+        for (String phase : Arrays.asList("jvm", "environment", "context", "beans", "webServer", "ready")) {
+            assertTrue(report.get("phaseMillis").has(phase), phase);
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static Map<String, StartupTimingReport.BeanTiming> timingsByName(StartupTimingReport.BeanTimer beanTimer) {
+        return beanTimer.getTimings().stream()
+                .collect(Collectors.toMap(StartupTimingReport.BeanTiming::getBeanName, Function.identity()));
+    }
+
+
+    // ------------------------------------------------- INNER CLASSES -------------------------------------------------
+
+    /**
+     * An application with nothing in it, so that only the start-up itself is timed.
+     */
+    @Configuration
+    static class EmptyConfiguration {
+    }
+
+}
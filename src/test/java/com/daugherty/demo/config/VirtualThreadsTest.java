@@ -0,0 +1,62 @@
+package com.daugherty.demo.config;
+
+import com.daugherty.demo.BaseTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: What this test can check depends on the JVM that runs it. On JDK 21 or newer, virtual threads must
+ * work. On anything older, VirtualThreads must say so and refuse, instead of failing in some stranger way.
+ */
+class VirtualThreadsTest extends BaseTest {
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN the Java version of the running JVM
+     * WHEN VirtualThreads is asked whether it is supported
+     * THEN it should be supported on JDK 21 or newer only.
+     */
+    @Test
+    void isSupported() {
+        assertEquals(javaFeatureVersion() >= 21, VirtualThreads.isSupported());
+    }
+
+    /**
+     * GIVEN a JVM with or without virtual threads
+     * WHEN a virtual thread executor is created and given work
+     * THEN the work should run on a thread with the given name prefix (JDK 21+)
+     * OR an UnsupportedOperationException should be thrown (older JDKs).
+     */
+    @Test
+    void newThreadPerTaskExecutor() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+            return;
+        }
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            String threadName = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            assertTrue(threadName.startsWith("test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * The "feature" version of the running JVM: 8 for "1.8", 11 for "11", 21 for "21", and so on.
+     */
+    private static int javaFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+}
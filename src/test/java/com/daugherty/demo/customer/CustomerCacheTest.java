@@ -0,0 +1,173 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: No Mockito or Spring here at all. The cache is tested for real, with a fake clock (Ticker) so that
+ * expiration can be tested without sleeping.
+ */
+class CustomerCacheTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * Fake time, in nanoseconds
+     */
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    /**
+     * Class under test
+     */
+    private CustomerCache customerCache;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+
+        AppConfiguration.CustomerCacheProperties properties = new AppConfiguration.CustomerCacheProperties();
+        properties.setMaximumSize(100);
+        properties.setTimeToLive(Duration.ofMinutes(5));
+        properties.setNotFoundTimeToLive(Duration.ofSeconds(30));
+        Ticker ticker = nanoTime::get;
+        customerCache = new CustomerCache(properties, ticker);
+    }
+
+    /**
+     * GIVEN an empty cache
+     * WHEN a customer is looked up
+     * THEN null should be returned (nothing is known about the customer)
+     * AND a miss should be counted.
+     */
+    @Test
+    void lookup_miss() {
+
+        // WHEN a customer is looked up
+        CustomerCache.CachedCustomer actual = customerCache.lookup(1);
+
+        // THEN null should be returned (nothing is known about the customer)
+        assertNull(actual);
+
+        // AND a miss should be counted.
+        assertEquals(1, customerCache.stats().missCount());
+    }
+
+    /**
+     * GIVEN a found customer and a not-found customer have been cached
+     * WHEN they are looked up
+     * THEN the found customer and a "not found" answer should be returned
+     * AND hits should be counted.
+     */
+    @Test
+    void lookup_hit() {
+
+        // GIVEN a found customer and a not-found customer have been cached
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        customerCache.put(1, customer, customerCache.invalidationStamp(1));
+        customerCache.put(2, null, customerCache.invalidationStamp(2));
+
+        // WHEN they are looked up
+        // THEN the found customer and a "not found" answer should be returned
+        assertEquals(customer, customerCache.lookup(1).getCustomer());
+        assertFalse(customerCache.lookup(2).isFound());
+
+        // AND hits should be counted.
+        assertEquals(2, customerCache.stats().hitCount());
+    }
+
+    /**
+     * GIVEN a found customer and a not-found customer have been cached
+     * WHEN more time than the not-found time-to-live passes
+     * THEN the not-found answer should expire
+     * AND the found customer should still be cached until its own time-to-live passes.
+     */
+    @Test
+    void lookup_expires() {
+
+        // GIVEN a found customer and a not-found customer have been cached
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        customerCache.put(1, customer, customerCache.invalidationStamp(1));
+        customerCache.put(2, null, customerCache.invalidationStamp(2));
+
+        // WHEN more time than the not-found time-to-live passes
+        nanoTime.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        // THEN the not-found answer should expire
+        assertNull(customerCache.lookup(2));
+
+        // AND the found customer should still be cached until its own time-to-live passes.
+        assertEquals(customer, customerCache.lookup(1).getCustomer());
+        nanoTime.addAndGet(Duration.ofMinutes(5).toNanos());
+        assertNull(customerCache.lookup(1));
+    }
+
+    /**
+     * GIVEN a customer has been cached
+     * WHEN the customer is evicted
+     * THEN nothing should be cached for that customer anymore.
+     */
+    @Test
+    void evict() {
+
+        // GIVEN a customer has been cached
+        customerCache.put(1, podamFactory.manufacturePojo(Customer.class), customerCache.invalidationStamp(1));
+
+        // WHEN the customer is evicted
+        customerCache.evict(1);
+
+        // THEN nothing should be cached for that customer anymore.
+        assertNull(customerCache.lookup(1));
+    }
+
+    /**
+     * GIVEN a reader has taken the invalidation stamp, and read the old version of a customer from the database
+     * WHEN a change to the customer commits and evicts it, and only then the reader caches what it read
+     * THEN the old version should not be cached
+     * AND the next reader should be able to cache the new version.
+     */
+    @Test
+    void put_evictedWhileLoading() {
+
+        // GIVEN a reader has taken the invalidation stamp, and read the old version of a customer from the database
+        long invalidationStamp = customerCache.invalidationStamp(1);
+        Customer oldCustomer = podamFactory.manufacturePojo(Customer.class);
+
+        // WHEN a change to the customer commits and evicts it, and only then the reader caches what it read
+        customerCache.evict(1);
+        customerCache.put(1, oldCustomer, invalidationStamp);
+
+        // THEN the old version should not be cached
+        assertNull(customerCache.lookup(1));
+
+        // AND the next reader should be able to cache the new version.
+        Customer newCustomer = podamFactory.manufacturePojo(Customer.class);
+        customerCache.put(1, newCustomer, customerCache.invalidationStamp(1));
+        assertEquals(newCustomer, customerCache.lookup(1).getCustomer());
+    }
+
+    /**
+     * GIVEN a reader has taken the invalidation stamp of one customer
+     * WHEN a different customer is evicted, and then the reader caches what it read
+     * THEN the answer should be cached.
+     */
+    @Test
+    void put_otherCustomerEvicted() {
+        long invalidationStamp = customerCache.invalidationStamp(1);
+        customerCache.evict(2);
+        customerCache.put(1, null, invalidationStamp);
+        assertFalse(customerCache.lookup(1).isFound());
+    }
+
+}
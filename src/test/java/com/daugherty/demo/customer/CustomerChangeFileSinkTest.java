@@ -0,0 +1,64 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerChangeFileSinkTest extends BaseTest {
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN a file sink whose file (and directory) doesn't exist yet
+     * WHEN two batches of changes are published to it
+     * THEN the file should have one JSON line per change, in order, with the second batch appended to the first.
+     */
+    @Test
+    void publish_appendsNdjson(@TempDir Path tempDir) throws IOException {
+
+        // GIVEN a file sink whose file (and directory) doesn't exist yet
+        Path file = tempDir.resolve("changes").resolve("customer-changes.ndjson");
+        CustomerChangeFileSink sink = new CustomerChangeFileSink(objectMapper, file);
+        CustomerChangeDTO first = newChange(1L, "CREATED", "Ann");
+        CustomerChangeDTO second = newChange(2L, "UPDATED", "Anne");
+        CustomerChangeDTO third = newChange(3L, "DELETED", null);
+
+        // WHEN two batches of changes are published to it
+        sink.publish(Arrays.asList(first, second));
+        sink.publish(Collections.singletonList(third));
+
+        // THEN the file should have one JSON line per change, in order, with the second batch appended to the first.
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(first, objectMapper.readValue(lines.get(0), CustomerChangeDTO.class));
+        assertEquals(second, objectMapper.readValue(lines.get(1), CustomerChangeDTO.class));
+        assertEquals(third, objectMapper.readValue(lines.get(2), CustomerChangeDTO.class));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static CustomerChangeDTO newChange(Long sequence, String changeType, String fullName) {
+        return CustomerChangeDTO.builder()
+                .sequence(sequence)
+                .customerId(7)
+                .changeType(changeType)
+                .version(sequence)
+                .fullName(fullName)
+                .changedAt(Instant.parse("2020-03-01T12:00:00.123Z"))
+                .build();
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * DEVELOPER NOTE: The publisher is tested for real, on top of a mocked repository and mocked sinks. Nothing is
+ * published in the background; the tests call publishPending() and purge() themselves. The TransactionTemplate mock
+ * runs what it is given, so a test sees what one transaction would do, but nothing is rolled back.
+ */
+@ExtendWith(MockitoExtension.class)
+class CustomerChangePublisherTest extends BaseTest {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    @Mock
+    private CustomerChangeRepository customerChangeRepositoryMock;
+
+    @Mock
+    private CustomerChangeSink firstSinkMock;
+
+    @Mock
+    private CustomerChangeSink secondSinkMock;
+
+    @Mock
+    private TransactionTemplate transactionTemplateMock;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * Class under test
+     */
+    private CustomerChangePublisher customerChangePublisher;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+
+        AppConfiguration.CustomerChangesProperties properties = new AppConfiguration.CustomerChangesProperties();
+        properties.setBatchSize(2);
+        customerChangePublisher = new CustomerChangePublisher(customerChangeRepositoryMock, new CustomerTranslator(),
+                Arrays.asList(firstSinkMock, secondSinkMock), transactionTemplateMock, properties);
+    }
+
+    /**
+     * GIVEN three unpublished changes, more than fit in one batch, and change 10 was the last one published
+     * WHEN the pending changes are published
+     * THEN they should get sequence numbers 11, 12 and 13, in the order that they were written
+     * AND every sink should be handed the same two batches, in order, each in a transaction of its own.
+     */
+    @Test
+    void publishPending() throws IOException {
+
+        // GIVEN three unpublished changes, more than fit in one batch, and change 10 was the last one published
+        CustomerChange first = newChange(1);
+        CustomerChange second = newChange(2);
+        CustomerChange third = newChange(3);
+        mockTransactions();
+        doReturn(Arrays.asList(first, second), Collections.singletonList(third))
+                .when(customerChangeRepositoryMock).findUnpublished(PageRequest.of(0, 2));
+        doReturn(Optional.of(10L), Optional.of(12L)).when(customerChangeRepositoryMock).findLastSequence();
+
+        // WHEN the pending changes are published
+        int published = customerChangePublisher.publishPending();
+
+        // THEN they should get sequence numbers 11, 12 and 13, in the order that they were written
+        assertEquals(3, published);
+        assertEquals(Long.valueOf(11L), first.getSequence());
+        assertEquals(Long.valueOf(12L), second.getSequence());
+        assertEquals(Long.valueOf(13L), third.getSequence());
+
+        // AND every sink should be handed the same two batches, in order, each in a transaction of its own.
+        for (CustomerChangeSink sink : Arrays.asList(firstSinkMock, secondSinkMock)) {
+            verify(sink).publish(argThat(changes -> sequencesOf(changes).equals(Arrays.asList(11L, 12L))));
+            verify(sink).publish(argThat(changes -> sequencesOf(changes).equals(Collections.singletonList(13L))));
+        }
+        verify(transactionTemplateMock, times(2)).execute(any());
+    }
+
+    /**
+     * GIVEN an unpublished change, and a sink that fails
+     * WHEN the pending changes are published
+     * THEN the failure should be thrown, so that the transaction is rolled back
+     * AND the sinks after the failed one should not be handed the batch.
+     */
+    @Test
+    void publishPending_sinkFails() throws IOException {
+
+        // GIVEN an unpublished change, and a sink that fails
+        mockTransactions();
+        doReturn(Collections.singletonList(newChange(1))).when(customerChangeRepositoryMock)
+                .findUnpublished(PageRequest.of(0, 2));
+        doReturn(Optional.empty()).when(customerChangeRepositoryMock).findLastSequence();
+        doThrow(new IOException("Disk full")).when(firstSinkMock).publish(anyList());
+
+        // WHEN the pending changes are published
+        // THEN the failure should be thrown, so that the transaction is rolled back
+        assertThrows(UncheckedIOException.class, () -> customerChangePublisher.publishPending());
+
+        // AND the sinks after the failed one should not be handed the batch.
+        verifyNoInteractions(secondSinkMock);
+    }
+
+    /**
+     * GIVEN changes up to sequence 50 have been published
+     * WHEN old changes are purged
+     * THEN the ones older than the retention should be deleted, except for change 50.
+     */
+    @Test
+    void purge() {
+
+        // GIVEN changes up to sequence 50 have been published
+        doReturn(Optional.of(50L)).when(customerChangeRepositoryMock).findLastSequence();
+        doReturn(7).when(customerChangeRepositoryMock).deletePublishedBefore(eq(50L), any(Instant.class));
+
+        // WHEN old changes are purged
+        // THEN the ones older than the retention should be deleted, except for change 50.
+        assertEquals(7, customerChangePublisher.purge());
+    }
+
+    /**
+     * GIVEN nothing has been published yet
+     * WHEN old changes are purged
+     * THEN nothing should be deleted.
+     */
+    @Test
+    void purge_nothingPublished() {
+        doReturn(Optional.empty()).when(customerChangeRepositoryMock).findLastSequence();
+        assertEquals(0, customerChangePublisher.purge());
+        verify(customerChangeRepositoryMock, never()).deletePublishedBefore(anyLong(), any());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private void mockTransactions() {
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplateMock).execute(any());
+    }
+
+    private static CustomerChange newChange(Integer customerId) {
+        CustomerChange change = new CustomerChange();
+        change.setCustomerId(customerId);
+        change.setChangeType(CustomerChange.ChangeType.CREATED);
+        change.setVersion(0L);
+        change.setFullName("Customer " + customerId);
+        change.setChangedAt(Instant.now());
+        return change;
+    }
+
+    private static List<Long> sequencesOf(List<CustomerChangeDTO> changes) {
+        return changes.stream().map(CustomerChangeDTO::getSequence).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: See CustomerRepositoryTest for how @DataJpaTest works.
+ */
+@DataJpaTest
+class CustomerChangeRepositoryTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /**
+     * Class under test
+     */
+    @Autowired
+    private CustomerChangeRepository customerChangeRepository;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN changes 1 to 3 have been published, and two more changes haven't been yet
+     * WHEN the unpublished changes, and the published ones after sequence 1, are read
+     * THEN only the unpublished ones, in the order that they were written, and only changes 2 and 3, should be returned
+     * AND the first and last sequence numbers should be 1 and 3.
+     */
+    @Test
+    void findUnpublishedAndPublishedAfter() {
+
+        // GIVEN changes 1 to 3 have been published, and two more changes haven't been yet
+        Instant now = Instant.now();
+        persistChange(1L, 11, now);
+        persistChange(3L, 13, now);
+        persistChange(2L, 12, now);
+        CustomerChange first = persistChange(null, 14, now);
+        CustomerChange second = persistChange(null, 15, now);
+        entityManager.flush();
+
+        // WHEN the unpublished changes, and the published ones after sequence 1, are read
+        List<CustomerChange> unpublished = customerChangeRepository.findUnpublished(PageRequest.of(0, 10));
+        List<CustomerChange> published = customerChangeRepository.findPublishedAfter(1L, PageRequest.of(0, 10));
+
+        // THEN only the unpublished ones, in the order that they were written, and only changes 2 and 3, should be
+        // returned
+        assertEquals(Arrays.asList(first, second), unpublished);
+        assertEquals(Arrays.asList(2L, 3L),
+                published.stream().map(CustomerChange::getSequence).collect(Collectors.toList()));
+
+        // AND the first and last sequence numbers should be 1 and 3.
+        assertEquals(Optional.of(1L), customerChangeRepository.findFirstSequence());
+        assertEquals(Optional.of(3L), customerChangeRepository.findLastSequence());
+    }
+
+    /**
+     * GIVEN nothing has been published yet
+     * WHEN the first and last sequence numbers are read
+     * THEN there should be none.
+     */
+    @Test
+    void findFirstAndLastSequence_nothingPublished() {
+        persistChange(null, 11, Instant.now());
+        entityManager.flush();
+        assertEquals(Optional.empty(), customerChangeRepository.findFirstSequence());
+        assertEquals(Optional.empty(), customerChangeRepository.findLastSequence());
+    }
+
+    /**
+     * GIVEN old changes 1 to 3 have been published, and an old change hasn't been published yet
+     * WHEN published changes before a newer time are deleted, keeping those from sequence 3 on
+     * THEN only changes 1 and 2 should be deleted.
+     */
+    @Test
+    void deletePublishedBefore() {
+
+        // GIVEN old changes 1 to 3 have been published, and an old change hasn't been published yet
+        Instant old = Instant.now().minus(30, ChronoUnit.DAYS);
+        persistChange(1L, 11, old);
+        persistChange(2L, 12, old);
+        persistChange(3L, 13, old);
+        persistChange(null, 14, old);
+        entityManager.flush();
+
+        // WHEN published changes before a newer time are deleted, keeping those from sequence 3 on
+        int deleted = customerChangeRepository.deletePublishedBefore(3L, Instant.now());
+
+        // THEN only changes 1 and 2 should be deleted.
+        assertEquals(2, deleted);
+        assertEquals(Optional.of(3L), customerChangeRepository.findFirstSequence());
+        assertEquals(1, customerChangeRepository.findUnpublished(PageRequest.of(0, 10)).size());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private CustomerChange persistChange(Long sequence, Integer customerId, Instant changedAt) {
+        CustomerChange change = new CustomerChange();
+        change.setSequence(sequence);
+        change.setCustomerId(customerId);
+        change.setChangeType(CustomerChange.ChangeType.UPDATED);
+        change.setVersion(1L);
+        change.setFullName("Customer " + customerId);
+        change.setChangedAt(changedAt);
+        return entityManager.persist(change);
+    }
+
+}
@@ -3,26 +3,71 @@ package com.daugherty.demo.customer;
 import com.daugherty.demo.Application;
 import com.daugherty.demo.BaseTest;
 import com.daugherty.demo.RestExceptionHandler;
+import com.daugherty.demo.contract.ErrorDTO;
+import com.daugherty.demo.customer.contract.CustomerBatchRequestDTO;
+import com.daugherty.demo.customer.contract.CustomerBatchResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerBulkResponseDTO;
+import com.daugherty.demo.customer.contract.CustomerChangeDTO;
+import com.daugherty.demo.customer.contract.CustomerChangePageDTO;
 import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.contract.CustomerLookupDTO;
+import com.daugherty.demo.customer.contract.CustomerMatchDTO;
+import com.daugherty.demo.customer.contract.CustomerPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSearchPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSummaryDTO;
+import com.daugherty.demo.customer.contract.OrderPageDTO;
+import com.daugherty.demo.customer.contract.OrderSummaryDTO;
 import com.daugherty.demo.customer.entity.Customer;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.ChangesExpiredException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import com.daugherty.demo.exception.PreconditionRequiredException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -48,6 +93,16 @@ class CustomerControllerTest extends BaseTest {
     @Mock
     private CustomerTranslator customerTranslator_mock;
 
+    @Mock
+    private CustomerJsonCache customerJsonCache_mock;
+
+    /**
+     * DEVELOPER NOTE: The controller writes the export itself, so it needs a real ObjectMapper. A @Spy wraps a real
+     * object, and @InjectMocks hands spies to the constructor the same way that it hands over mocks.
+     */
+    @Spy
+    private ObjectMapper objectMapperSpy = new ObjectMapper().findAndRegisterModules();
+
 
     // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
 
@@ -56,6 +111,42 @@ class CustomerControllerTest extends BaseTest {
      */
     private static final String V1_GET_CUSTOMER_URI = "/v1/customers/%s";
 
+    /**
+     * The URI for looking up a batch of customers
+     */
+    private static final String V1_BATCH_GET_CUSTOMERS_URI = "/v1/customers:batchGet";
+
+    /**
+     * The URI for exporting all customers
+     */
+    private static final String V1_EXPORT_CUSTOMERS_URI = "/v1/customers/export";
+
+    /**
+     * The URI for listing customers
+     */
+    private static final String V1_LIST_CUSTOMERS_URI = "/v1/customers";
+    private static final String V1_SEARCH_CUSTOMERS_URI = "/v1/customers/search";
+
+    /**
+     * The URI for listing a customer's orders
+     */
+    private static final String V1_LIST_ORDERS_URI = "/v1/customers/%s/orders";
+
+    /**
+     * The URI for catching up with the changes to customers
+     */
+    private static final String V1_CUSTOMER_CHANGES_URI = "/v1/customers/changes";
+
+    /**
+     * The URI for creating customers in bulk
+     */
+    private static final String V1_BULK_CUSTOMERS_URI = "/v1/customers:bulk";
+
+    /**
+     * The URI for retrieving a customer asynchronously
+     */
+    private static final String V1_ASYNC_GET_CUSTOMER_URI = "/v1/async/customers/%s";
+
     /**
      * Create a "mock" client that can call the SpringExtend-ed instance of SpringBoot.
      * DEVELOPER NOTE: We could have used the annotation @AutoConfigureMockMvc on this class and used @Autowired on this
@@ -97,8 +188,10 @@ class CustomerControllerTest extends BaseTest {
 
         // Dependency Mocks (note that is mock only exists in the spied controller that was initialized with MockMvc)
         Customer customer = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers = expectedCustomerDto.getOrderNumbers();
         doReturn(customer).when(customerService_mock).getCustomer(customerId);
-        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(customer);
+        doReturn(orderNumbers).when(customerService_mock).getOrderNumbers(customerId);
+        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(customer, orderNumbers);
 
         // WHEN the customer API endpoint is called (this is both a GET call and an assertion that OK is returned)
         String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
@@ -111,10 +204,120 @@ class CustomerControllerTest extends BaseTest {
         assertEquals(expectedCustomerDto.getId(), actualCustomerDto.getId());
         assertEquals(expectedCustomerDto.getFullName(), actualCustomerDto.getFullName());
         assertTrue(expectedCustomerDto.getLastReadTimestamp().isEqual(actualCustomerDto.getLastReadTimestamp()));
+        assertEquals(expectedCustomerDto.getOrderNumbers(), actualCustomerDto.getOrderNumbers());
 
-        // Verify dependency mocks
+        // AND the ETag should be made from the Customer's version
+        assertEquals(CustomerController.eTag(customer.getVersion()), result.getResponse().getHeader(HttpHeaders.ETAG));
+
+        // Verify dependency mocks (without an If-None-Match header, the version isn't looked up separately)
         verify(customerService_mock).getCustomer(customerId);
-        verify(customerTranslator_mock).toContract(customer);
+        verify(customerService_mock).getOrderNumbers(customerId);
+        verify(customerTranslator_mock).toContract(customer, orderNumbers);
+        verify(customerService_mock, never()).getCustomerVersion(any());
+
+        // AND the JSON should be cached for the next request.
+        verify(customerJsonCache_mock).put(customer, result.getResponse().getContentAsByteArray());
+    }
+
+    /**
+     * GIVEN a customer whose JSON is already cached
+     * WHEN the GET customer API endpoint is called
+     * THEN the cached JSON should be returned as it is, with the ETag
+     * AND the order numbers should not be read, and the Customer should not be translated or serialized.
+     */
+    @Test
+    void getCustomer_jsonCacheHit() throws Exception {
+
+        // GIVEN a customer whose JSON is already cached
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = customer.getCustomerId();
+        byte[] cachedJson = "{\"id\":42,\"fullName\":\"Arthur Dent\"}".getBytes(StandardCharsets.UTF_8);
+
+        // Dependency Mocks
+        doReturn(customer).when(customerService_mock).getCustomer(customerId);
+        doReturn(cachedJson).when(customerJsonCache_mock).lookup(customer);
+
+        // WHEN the GET customer API endpoint is called
+        MvcResult result = mockMvc.perform(get(String.format(V1_GET_CUSTOMER_URI, customerId)))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN the cached JSON should be returned as it is, with the ETag
+        assertArrayEquals(cachedJson, result.getResponse().getContentAsByteArray());
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(
+                MediaType.parseMediaType(result.getResponse().getContentType())));
+        assertEquals(CustomerController.eTag(customer.getVersion()), result.getResponse().getHeader(HttpHeaders.ETAG));
+
+        // AND the order numbers should not be read, and the Customer should not be translated or serialized.
+        verify(customerService_mock, never()).getOrderNumbers(any(Integer.class));
+        verifyNoInteractions(customerTranslator_mock);
+        verify(objectMapperSpy, never()).writeValueAsBytes(any());
+        verify(customerJsonCache_mock, never()).put(any(), any());
+    }
+
+    /**
+     * GIVEN a customer is in the system and the client already has its current version
+     * WHEN the GET customer API endpoint is called with that version's ETag in an If-None-Match header
+     * THEN a NOT MODIFIED status should be returned, with the ETag and "Vary: Accept", and without a body
+     * AND the Customer should never be loaded or translated.
+     */
+    @Test
+    void getCustomer_notModified() throws Exception {
+
+        // GIVEN a customer is in the system and the client already has its current version
+        Integer customerId = RandomUtils.nextInt(1, 1000);
+        Long version = RandomUtils.nextLong(0, 1000);
+        String eTag = CustomerController.eTag(version);
+
+        // Dependency Mocks
+        doReturn(version).when(customerService_mock).getCustomerVersion(customerId);
+
+        // WHEN the GET customer API endpoint is called with that version's ETag in an If-None-Match header
+        String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
+        MvcResult result = mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // THEN a NOT MODIFIED status should be returned, with the ETag and "Vary: Accept", and without a body
+        assertEquals(eTag, result.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT, result.getResponse().getHeader(HttpHeaders.VARY));
+        assertEquals(0, result.getResponse().getContentLength());
+
+        // AND the Customer should never be loaded or translated.
+        verify(customerService_mock).getCustomerVersion(customerId);
+        verify(customerService_mock, never()).getCustomer(any());
+        verify(customerService_mock, never()).getOrderNumbers(any(Integer.class));
+        verifyNoInteractions(customerTranslator_mock);
+    }
+
+    /**
+     * GIVEN a customer is in the system and has changed since the client last read it
+     * WHEN the GET customer API endpoint is called with the old ETag in an If-None-Match header
+     * THEN the Customer should be returned, with the new ETag.
+     */
+    @Test
+    void getCustomer_modified() throws Exception {
+
+        // GIVEN a customer is in the system and has changed since the client last read it
+        CustomerDTO expectedCustomerDto = podamFactory.manufacturePojo(CustomerDTO.class);
+        Integer customerId = expectedCustomerDto.getId();
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        customer.setVersion(2L);
+        List<String> orderNumbers = expectedCustomerDto.getOrderNumbers();
+
+        // Dependency Mocks
+        doReturn(customer.getVersion()).when(customerService_mock).getCustomerVersion(customerId);
+        doReturn(customer).when(customerService_mock).getCustomer(customerId);
+        doReturn(orderNumbers).when(customerService_mock).getOrderNumbers(customerId);
+        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(customer, orderNumbers);
+
+        // WHEN the GET customer API endpoint is called with the old ETag in an If-None-Match header
+        String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
+        MvcResult result = mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, CustomerController.eTag(1L)))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN the Customer should be returned, with the new ETag.
+        CustomerDTO actualCustomerDto = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerDTO.class);
+        assertEquals(expectedCustomerDto.getId(), actualCustomerDto.getId());
+        assertEquals(CustomerController.eTag(2L), result.getResponse().getHeader(HttpHeaders.ETAG));
     }
 
     /**
@@ -135,13 +338,14 @@ class CustomerControllerTest extends BaseTest {
         // WHEN the customer API endpoint is called
         String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
         MvcResult result = mockMvc.perform(get(uri)).andExpect(status().isBadRequest()).andReturn();
-        Error error = objectMapper.readValue(result.getResponse().getContentAsByteArray(), Error.class);
+        ErrorDTO error = objectMapper.readValue(result.getResponse().getContentAsByteArray(), ErrorDTO.class);
 
         // THEN a BAD REQUEST should be returned containing an error message.
         assertEquals(message, error.getMessage());
+        assertEquals(400, error.getStatus());
 
         // Verify dependency mocks
-        verify(customerControllerSpy).getCustomer(customerId);
+        verify(customerControllerSpy).getCustomer(eq(customerId), any());
     }
 
     /**
@@ -163,7 +367,7 @@ class CustomerControllerTest extends BaseTest {
         // WHEN the customer API endpoint is called
         String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
         MvcResult result = mockMvc.perform(get(uri)).andExpect(status().isInternalServerError()).andReturn();
-        Error error = objectMapper.readValue(result.getResponse().getContentAsByteArray(), Error.class);
+        ErrorDTO error = objectMapper.readValue(result.getResponse().getContentAsByteArray(), ErrorDTO.class);
 
         // THEN a INTERNAL SERVER ERROR should be returned containing an error message.
         assertEquals(expectedException.getMessage(), error.getMessage());
@@ -197,5 +401,769 @@ class CustomerControllerTest extends BaseTest {
         verify(customerService_mock).getCustomer(customerId);
     }
 
+    /**
+     * GIVEN a customer is in the system
+     * WHEN the GET customer API endpoint is called by a client that asks for CBOR
+     * THEN the Customer should be returned as CBOR, with its CBOR ETag and "Vary: Accept"
+     * AND the JSON cache should not be used.
+     */
+    @Test
+    void getCustomer_cbor() throws Exception {
+
+        // GIVEN a customer is in the system
+        CustomerDTO expectedCustomerDto = podamFactory.manufacturePojo(CustomerDTO.class);
+        Integer customerId = expectedCustomerDto.getId();
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers = expectedCustomerDto.getOrderNumbers();
+        doReturn(customer).when(customerService_mock).getCustomer(customerId);
+        doReturn(orderNumbers).when(customerService_mock).getOrderNumbers(customerId);
+        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(customer, orderNumbers);
+
+        // WHEN the GET customer API endpoint is called by a client that asks for CBOR
+        MvcResult result = mockMvc.perform(get(String.format(V1_GET_CUSTOMER_URI, customerId))
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN the Customer should be returned as CBOR, with its CBOR ETag and "Vary: Accept"
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType());
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+        CustomerDTO actualCustomerDto = cborMapper.readValue(result.getResponse().getContentAsByteArray(),
+                CustomerDTO.class);
+        assertEquals(expectedCustomerDto.getId(), actualCustomerDto.getId());
+        assertEquals(expectedCustomerDto.getFullName(), actualCustomerDto.getFullName());
+        assertTrue(expectedCustomerDto.getLastReadTimestamp().isEqual(actualCustomerDto.getLastReadTimestamp()));
+        assertEquals(expectedCustomerDto.getOrderNumbers(), actualCustomerDto.getOrderNumbers());
+        assertEquals(CustomerController.eTag(customer.getVersion(), MediaType.APPLICATION_CBOR),
+                result.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT, result.getResponse().getHeader(HttpHeaders.VARY));
+
+        // AND the JSON cache should not be used.
+        verifyNoInteractions(customerJsonCache_mock);
+    }
+
+    /**
+     * GIVEN a customer is in the system and a client already has its current version as JSON
+     * WHEN the GET customer API endpoint is called by a client that asks for CBOR, with the JSON ETag, and then with
+     * the CBOR ETag, in an If-None-Match header
+     * THEN the Customer should be returned as CBOR the first time, since the client doesn't have those bytes yet
+     * AND a NOT MODIFIED status should be returned the second time.
+     */
+    @Test
+    void getCustomer_notModifiedPerFormat() throws Exception {
+
+        // GIVEN a customer is in the system and a client already has its current version as JSON
+        CustomerDTO customerDto = podamFactory.manufacturePojo(CustomerDTO.class);
+        Integer customerId = customerDto.getId();
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers = customerDto.getOrderNumbers();
+        doReturn(customer.getVersion()).when(customerService_mock).getCustomerVersion(customerId);
+        doReturn(customer).when(customerService_mock).getCustomer(customerId);
+        doReturn(orderNumbers).when(customerService_mock).getOrderNumbers(customerId);
+        doReturn(customerDto).when(customerTranslator_mock).toContract(customer, orderNumbers);
+        String cborETag = CustomerController.eTag(customer.getVersion(), MediaType.APPLICATION_CBOR);
+
+        // WHEN the GET customer API endpoint is called by a client that asks for CBOR, with the JSON ETag, and then
+        // with the CBOR ETag, in an If-None-Match header
+        String uri = String.format(V1_GET_CUSTOMER_URI, customerId);
+        MvcResult first = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, CustomerController.eTag(customer.getVersion())))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult second = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, cborETag))
+                .andExpect(status().isNotModified()).andReturn();
+
+        // THEN the Customer should be returned as CBOR the first time, since the client doesn't have those bytes yet
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, first.getResponse().getContentType());
+        assertEquals(cborETag, first.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(Collections.singletonList(HttpHeaders.ACCEPT), first.getResponse().getHeaders(HttpHeaders.VARY));
+
+        // AND a NOT MODIFIED status should be returned the second time.
+        assertEquals(cborETag, second.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT, second.getResponse().getHeader(HttpHeaders.VARY));
+    }
+
+    /**
+     * GIVEN a customer version
+     * WHEN its ETag is made for each format
+     * THEN every format should have a different ETag.
+     */
+    @Test
+    void eTag_perFormat() {
+        assertEquals("\"5\"", CustomerController.eTag(5L));
+        assertEquals("\"5\"", CustomerController.eTag(5L, MediaType.APPLICATION_JSON));
+        assertEquals("\"5+smile\"",
+                CustomerController.eTag(5L, MediaType.valueOf(CustomerController.APPLICATION_SMILE_VALUE)));
+        assertEquals("\"5+cbor\"", CustomerController.eTag(5L, MediaType.APPLICATION_CBOR));
+    }
+
+    /**
+     * GIVEN an Accept header
+     * WHEN the format it prefers is chosen
+     * THEN Smile or CBOR should only be chosen when the client likes them better than JSON.
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "'application/cbor', 'application/cbor'",
+            "'application/x-jackson-smile', 'application/x-jackson-smile'",
+            "'application/x-jackson-smile, application/json;q=0.5', 'application/x-jackson-smile'",
+            "'application/json, application/cbor', 'application/json'",
+            "'application/json;q=0.5, application/cbor;q=0.9', 'application/cbor'",
+            "'application/json;q=0, application/cbor', 'application/cbor'",
+            "'*/*', 'application/json'",
+            "'text/plain', 'application/json'",
+    })
+    void preferredFormat(String accept, String expected) {
+        assertEquals(MediaType.valueOf(expected), CustomerController.preferredFormat(accept));
+    }
+
+    /**
+     * GIVEN a valid customer ID and a customer with that ID is in the system
+     * WHEN the async GET customer API endpoint is called
+     * THEN the request should be handled asynchronously
+     * AND the Customer with the given ID should be returned.
+     * <p>
+     * DEVELOPER NOTE: MockMvc doesn't wait for asynchronous results by itself. The first perform() only starts the
+     * request. asyncDispatch() then waits for the future and "re-dispatches" the request to write the response, just
+     * like Spring MVC does inside of Tomcat.
+     */
+    @Test
+    void getCustomerAsync_success() throws Exception {
+
+        // GIVEN a valid customer ID and a customer with that ID is in the system
+        CustomerDTO expectedCustomerDto = podamFactory.manufacturePojo(CustomerDTO.class);
+        Integer customerId = expectedCustomerDto.getId();
+
+        // Dependency Mocks
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers = expectedCustomerDto.getOrderNumbers();
+        doReturn(CompletableFuture.completedFuture(CustomerLookup.found(customer, orderNumbers)))
+                .when(customerService_mock).getCustomerAsync(customerId);
+        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(customer, orderNumbers);
+
+        // WHEN the async GET customer API endpoint is called
+        String uri = String.format(V1_ASYNC_GET_CUSTOMER_URI, customerId);
+        MvcResult asyncResult = mockMvc.perform(get(uri)).andExpect(request().asyncStarted()).andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk()).andReturn();
+
+        // THEN the Customer with the given ID should be returned.
+        CustomerDTO actualCustomerDto = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerDTO.class);
+        assertEquals(expectedCustomerDto.getId(), actualCustomerDto.getId());
+        assertEquals(expectedCustomerDto.getOrderNumbers(), actualCustomerDto.getOrderNumbers());
+    }
+
+    /**
+     * GIVEN a valid customer ID and a customer with that ID is not in the system
+     * WHEN the async GET customer API endpoint is called
+     * THEN a NOT FOUND status should be returned.
+     */
+    @Test
+    void getCustomerAsync_notFound() throws Exception {
+
+        // GIVEN a valid customer ID and a customer with that ID is not in the system
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+
+        // Dependency Mocks
+        doReturn(CompletableFuture.completedFuture(CustomerLookup.notFound(customerId)))
+                .when(customerService_mock).getCustomerAsync(customerId);
+
+        // WHEN the async GET customer API endpoint is called
+        String uri = String.format(V1_ASYNC_GET_CUSTOMER_URI, customerId);
+        MvcResult asyncResult = mockMvc.perform(get(uri)).andExpect(request().asyncStarted()).andReturn();
+
+        // THEN a NOT FOUND status should be returned.
+        mockMvc.perform(asyncDispatch(asyncResult)).andExpect(status().isNotFound());
+        verifyNoInteractions(customerTranslator_mock);
+    }
+
+    /**
+     * GIVEN the customer lookup thread pool is full
+     * WHEN the async GET customer API endpoint is called
+     * THEN a SERVICE UNAVAILABLE status should be returned, telling the client when to retry.
+     */
+    @Test
+    void getCustomerAsync_rejected() throws Exception {
+
+        // GIVEN the customer lookup thread pool is full
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+        doThrow(new RejectedExecutionException("full")).when(customerService_mock).getCustomerAsync(customerId);
+
+        // WHEN the async GET customer API endpoint is called
+        // THEN a SERVICE UNAVAILABLE status should be returned, telling the client when to retry.
+        String uri = String.format(V1_ASYNC_GET_CUSTOMER_URI, customerId);
+        mockMvc.perform(get(uri)).andExpect(status().isServiceUnavailable()).andExpect(header().exists("Retry-After"));
+    }
+
+    /**
+     * GIVEN a list of customer IDs
+     * WHEN the batch GET customers API endpoint is called
+     * THEN the lookup results for all of the IDs should be returned.
+     */
+    @Test
+    void getCustomers_success() throws Exception {
+
+        // GIVEN a list of customer IDs
+        List<Integer> customerIds = Arrays.asList(1, 2);
+        CustomerBatchRequestDTO request = CustomerBatchRequestDTO.builder().ids(customerIds).build();
+
+        // Dependency Mocks
+        List<CustomerLookup> lookups = Arrays.asList(CustomerLookup.notFound(1), CustomerLookup.notFound(2));
+        CustomerBatchResponseDTO expectedResponse = CustomerBatchResponseDTO.builder()
+                .results(Collections.singletonList(CustomerLookupDTO.builder().id(1).status("NOT_FOUND").build()))
+                .build();
+        doReturn(lookups).when(customerService_mock).getCustomers(customerIds);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(lookups);
+
+        // WHEN the batch GET customers API endpoint is called
+        MvcResult result = mockMvc.perform(post(V1_BATCH_GET_CUSTOMERS_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk()).andReturn();
+        CustomerBatchResponseDTO actualResponse = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerBatchResponseDTO.class);
+
+        // THEN the lookup results for all of the IDs should be returned.
+        assertEquals(expectedResponse, actualResponse);
+
+        // Verify dependency mocks
+        verify(customerService_mock).getCustomers(customerIds);
+        verify(customerTranslator_mock).toContract(lookups);
+    }
+
+    /**
+     * GIVEN a list of customer IDs
+     * WHEN the batch GET customers API endpoint is called by a client that asks for Smile
+     * THEN the lookup results should be returned as Smile.
+     */
+    @Test
+    void getCustomers_smile() throws Exception {
+
+        // GIVEN a list of customer IDs
+        List<Integer> customerIds = Arrays.asList(1, 2);
+        CustomerBatchRequestDTO request = CustomerBatchRequestDTO.builder().ids(customerIds).build();
+        List<CustomerLookup> lookups = Arrays.asList(CustomerLookup.notFound(1), CustomerLookup.notFound(2));
+        CustomerBatchResponseDTO expectedResponse = CustomerBatchResponseDTO.builder()
+                .results(Arrays.asList(CustomerLookupDTO.builder().id(1).status("NOT_FOUND").build(),
+                        CustomerLookupDTO.builder().id(2).status("NOT_FOUND").build()))
+                .build();
+        doReturn(lookups).when(customerService_mock).getCustomers(customerIds);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(lookups);
+
+        // WHEN the batch GET customers API endpoint is called by a client that asks for Smile
+        MvcResult result = mockMvc.perform(post(V1_BATCH_GET_CUSTOMERS_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(CustomerController.APPLICATION_SMILE_VALUE)
+                .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN the lookup results should be returned as Smile.
+        assertEquals(CustomerController.APPLICATION_SMILE_VALUE, result.getResponse().getContentType());
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+        assertEquals(expectedResponse, smileMapper.readValue(result.getResponse().getContentAsByteArray(),
+                CustomerBatchResponseDTO.class));
+    }
+
+    /**
+     * GIVEN too many customer IDs
+     * WHEN the batch GET customers API endpoint is called and a business exception is thrown
+     * THEN a BAD REQUEST should be returned.
+     */
+    @Test
+    void getCustomers_businessException() throws Exception {
+
+        // GIVEN too many customer IDs
+        List<Integer> customerIds = Collections.nCopies(CustomerService.MAX_BATCH_SIZE + 1, 1);
+        CustomerBatchRequestDTO request = CustomerBatchRequestDTO.builder().ids(customerIds).build();
+
+        // Dependency Mocks
+        doThrow(new BusinessException("too many")).when(customerService_mock).getCustomers(customerIds);
+
+        // WHEN the batch GET customers API endpoint is called and a business exception is thrown
+        // THEN a BAD REQUEST should be returned.
+        mockMvc.perform(post(V1_BATCH_GET_CUSTOMERS_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * GIVEN the customers after a given ID fill more than one page
+     * WHEN the list customers API endpoint is called with "after" and "limit"
+     * THEN the page should be returned with its continuation token.
+     */
+    @Test
+    void listCustomers_success() throws Exception {
+
+        // GIVEN the customers after a given ID fill more than one page
+        CustomerPage page = new CustomerPage(Collections.emptyList(), 60);
+        CustomerPageDTO expectedResponse = CustomerPageDTO.builder()
+                .customers(Collections.singletonList(CustomerSummaryDTO.builder().id(60).fullName("Ford").build()))
+                .next(60)
+                .build();
+
+        // Dependency Mocks
+        doReturn(page).when(customerService_mock).listCustomers(50, 10);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(page);
+
+        // WHEN the list customers API endpoint is called with "after" and "limit"
+        MvcResult result = mockMvc.perform(get(V1_LIST_CUSTOMERS_URI).param("after", "50").param("limit", "10"))
+                .andExpect(status().isOk()).andReturn();
+        CustomerPageDTO actualResponse = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerPageDTO.class);
+
+        // THEN the page should be returned with its continuation token.
+        assertEquals(expectedResponse, actualResponse);
+    }
+
+    /**
+     * GIVEN a page size that is too big
+     * WHEN the list customers API endpoint is called and a business exception is thrown
+     * THEN a BAD REQUEST should be returned.
+     */
+    @Test
+    void listCustomers_businessException() throws Exception {
+
+        // Dependency Mocks
+        doThrow(new BusinessException("too big")).when(customerService_mock).listCustomers(null, 100_000);
+
+        // WHEN the list customers API endpoint is called and a business exception is thrown
+        // THEN a BAD REQUEST should be returned.
+        mockMvc.perform(get(V1_LIST_CUSTOMERS_URI).param("limit", "100000")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * GIVEN a customer's orders fill more than one page
+     * WHEN the list orders API endpoint is called with "after" and "limit"
+     * THEN the page should be returned with its continuation token.
+     */
+    @Test
+    void listOrders_success() throws Exception {
+
+        // GIVEN a customer's orders fill more than one page
+        OrderPage page = new OrderPage(Collections.singletonList("A-2"), "A-2");
+        OrderPageDTO expectedResponse = OrderPageDTO.builder()
+                .orders(Collections.singletonList(OrderSummaryDTO.builder().orderNumber("A-2").build()))
+                .next("A-2")
+                .build();
+
+        // Dependency Mocks
+        doReturn(page).when(customerService_mock).listOrders(7, "A-1", 1);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(page);
+
+        // WHEN the list orders API endpoint is called with "after" and "limit"
+        MvcResult result = mockMvc.perform(get(String.format(V1_LIST_ORDERS_URI, 7))
+                .param("after", "A-1").param("limit", "1"))
+                .andExpect(status().isOk()).andReturn();
+        OrderPageDTO actualResponse = objectMapper.readValue(result.getResponse().getContentAsByteArray(), OrderPageDTO.class);
+
+        // THEN the page should be returned with its continuation token.
+        assertEquals(expectedResponse, actualResponse);
+    }
+
+    /**
+     * GIVEN a customer ID that doesn't exist
+     * WHEN the list orders API endpoint is called
+     * THEN a NOT FOUND should be returned.
+     */
+    @Test
+    void listOrders_notFound() throws Exception {
+
+        // Dependency Mocks
+        doReturn(null).when(customerService_mock).listOrders(7, null, null);
+
+        // WHEN the list orders API endpoint is called
+        // THEN a NOT FOUND should be returned.
+        mockMvc.perform(get(String.format(V1_LIST_ORDERS_URI, 7))).andExpect(status().isNotFound());
+        verifyNoInteractions(customerTranslator_mock);
+    }
+
+    /**
+     * GIVEN changes to customers have been published after sequence 41
+     * WHEN the customer changes API endpoint is called with "since" and "limit"
+     * THEN the page of changes should be returned with the sequence to continue from.
+     */
+    @Test
+    void getChanges_success() throws Exception {
+
+        // GIVEN changes to customers have been published after sequence 41
+        CustomerChangePage page = new CustomerChangePage(Collections.emptyList(), 42L);
+        CustomerChangePageDTO expectedResponse = CustomerChangePageDTO.builder()
+                .changes(Collections.singletonList(CustomerChangeDTO.builder()
+                        .sequence(42L).customerId(7).changeType("UPDATED").version(3L).fullName("Anne").build()))
+                .next(42L)
+                .build();
+
+        // Dependency Mocks
+        doReturn(page).when(customerService_mock).getChanges(41L, 10);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(page);
+
+        // WHEN the customer changes API endpoint is called with "since" and "limit"
+        MvcResult result = mockMvc.perform(get(V1_CUSTOMER_CHANGES_URI).param("since", "41").param("limit", "10"))
+                .andExpect(status().isOk()).andReturn();
+        CustomerChangePageDTO actualResponse = objectMapper.readValue(result.getResponse().getContentAsByteArray(),
+                CustomerChangePageDTO.class);
+
+        // THEN the page of changes should be returned with the sequence to continue from.
+        assertEquals(expectedResponse, actualResponse);
+    }
+
+    /**
+     * GIVEN the changes after a given sequence are no longer kept
+     * WHEN the customer changes API endpoint is called with that sequence
+     * THEN a GONE should be returned.
+     */
+    @Test
+    void getChanges_expired() throws Exception {
+
+        // Dependency Mocks
+        doThrow(new ChangesExpiredException("gone")).when(customerService_mock).getChanges(3L, null);
+
+        // WHEN the customer changes API endpoint is called with that sequence
+        // THEN a GONE should be returned.
+        mockMvc.perform(get(V1_CUSTOMER_CHANGES_URI).param("since", "3")).andExpect(status().isGone());
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 3
+     * WHEN the PUT customer API endpoint is called with that version's ETag in an If-Match header
+     * THEN the replacement should be handed to the service with the version
+     * AND the changed Customer should be returned with its new ETag.
+     */
+    @Test
+    void replaceCustomer_success() throws Exception {
+
+        // GIVEN a customer is in the system at version 3
+        CustomerDTO requestDto = CustomerDTO.builder().fullName("Anne").build();
+        Customer replacement = podamFactory.manufacturePojo(Customer.class);
+        Customer changed = podamFactory.manufacturePojo(Customer.class);
+        changed.setVersion(4L);
+        CustomerDTO expectedCustomerDto = podamFactory.manufacturePojo(CustomerDTO.class);
+        List<String> orderNumbers = expectedCustomerDto.getOrderNumbers();
+
+        // Dependency Mocks
+        doReturn(replacement).when(customerTranslator_mock).toEntity(requestDto);
+        doReturn(changed).when(customerService_mock).replaceCustomer(7, 3L, replacement);
+        doReturn(orderNumbers).when(customerService_mock).getOrderNumbers(changed.getCustomerId());
+        doReturn(expectedCustomerDto).when(customerTranslator_mock).toContract(changed, orderNumbers);
+
+        // WHEN the PUT customer API endpoint is called with that version's ETag in an If-Match header
+        MvcResult result = mockMvc.perform(put(String.format(V1_GET_CUSTOMER_URI, 7))
+                .header(HttpHeaders.IF_MATCH, CustomerController.eTag(3L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(requestDto)))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN the replacement should be handed to the service with the version
+        verify(customerService_mock).replaceCustomer(7, 3L, replacement);
+
+        // AND the changed Customer should be returned with its new ETag.
+        CustomerDTO actualCustomerDto = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerDTO.class);
+        assertEquals(expectedCustomerDto.getId(), actualCustomerDto.getId());
+        assertEquals(CustomerController.eTag(4L), result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    /**
+     * GIVEN the service says that a change needs an If-Match header, or that the customer has changed since
+     * WHEN the PATCH customer API endpoint is called
+     * THEN a PRECONDITION REQUIRED, or a PRECONDITION FAILED, should be returned.
+     */
+    @Test
+    void patchCustomer_preconditions() throws Exception {
+
+        // Dependency Mocks
+        doReturn(new Customer()).when(customerTranslator_mock).toEntity(any());
+        doThrow(new PreconditionRequiredException(CustomerService.PRECONDITION_REQUIRED))
+                .when(customerService_mock).patchCustomer(eq(7), eq(null), any());
+        doThrow(new PreconditionFailedException(CustomerService.PRECONDITION_FAILED))
+                .when(customerService_mock).patchCustomer(eq(7), eq(3L), any());
+
+        // WHEN the PATCH customer API endpoint is called
+        // THEN a PRECONDITION REQUIRED, or a PRECONDITION FAILED, should be returned.
+        mockMvc.perform(patch(String.format(V1_GET_CUSTOMER_URI, 7))
+                .contentType(CustomerController.APPLICATION_MERGE_PATCH_JSON_VALUE)
+                .content("{\"fullName\":\"Anne\"}"))
+                .andExpect(status().isPreconditionRequired());
+        mockMvc.perform(patch(String.format(V1_GET_CUSTOMER_URI, 7))
+                .header(HttpHeaders.IF_MATCH, CustomerController.eTag(3L))
+                .contentType(CustomerController.APPLICATION_MERGE_PATCH_JSON_VALUE)
+                .content("{\"fullName\":\"Anne\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * GIVEN an If-Match header that this API could never have sent (a weak ETag, a wildcard, or not a version)
+     * WHEN the DELETE customer API endpoint is called with it
+     * THEN a PRECONDITION FAILED should be returned, without calling the service.
+     */
+    @Test
+    void deleteCustomer_unknownETag() throws Exception {
+        for (String ifMatch : Arrays.asList("W/\"3\"", "*", "\"abc\"", "\"1\", \"2\"", "\"3+xml\"", "\"+smile\"")) {
+            mockMvc.perform(delete(String.format(V1_GET_CUSTOMER_URI, 7)).header(HttpHeaders.IF_MATCH, ifMatch))
+                    .andExpect(status().isPreconditionFailed());
+        }
+        verifyNoInteractions(customerService_mock);
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 3, and another is not
+     * WHEN the DELETE customer API endpoint is called for each, with an If-Match header
+     * THEN a NO CONTENT, and a NOT FOUND, should be returned.
+     */
+    @Test
+    void deleteCustomer() throws Exception {
+
+        // Dependency Mocks
+        doReturn(true).when(customerService_mock).deleteCustomer(7, 3L);
+        doReturn(false).when(customerService_mock).deleteCustomer(8, 3L);
+
+        // WHEN the DELETE customer API endpoint is called for each, with an If-Match header
+        // THEN a NO CONTENT, and a NOT FOUND, should be returned.
+        mockMvc.perform(delete(String.format(V1_GET_CUSTOMER_URI, 7)).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(String.format(V1_GET_CUSTOMER_URI, 8)).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 3, and a client read it as Smile or CBOR
+     * WHEN the DELETE customer API endpoint is called with that format's ETag in an If-Match header
+     * THEN a NO CONTENT should be returned, since the ETag stands for version 3 just like the JSON one.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"\"3+smile\"", "\"3+cbor\""})
+    void deleteCustomer_binaryFormatETag(String ifMatch) throws Exception {
+        doReturn(true).when(customerService_mock).deleteCustomer(7, 3L);
+        mockMvc.perform(delete(String.format(V1_GET_CUSTOMER_URI, 7)).header(HttpHeaders.IF_MATCH, ifMatch))
+                .andExpect(status().isNoContent());
+    }
+
+    /**
+     * GIVEN customers whose street address starts with a given prefix
+     * WHEN the search customers API endpoint is called with that prefix and a cursor
+     * THEN the search parameters should be handed to the service as-is
+     * AND the page should be returned with its cursor.
+     */
+    @Test
+    void searchCustomers_success() throws Exception {
+
+        // GIVEN customers whose street address starts with a given prefix
+        CustomerSearchPage page = new CustomerSearchPage(Collections.emptyList(), "cursor-2");
+        CustomerSearchPageDTO expectedResponse = CustomerSearchPageDTO.builder()
+                .customers(Collections.singletonList(CustomerMatchDTO.builder()
+                        .id(42).fullName("Arthur Dent").streetAddress("155 Country Lane").build()))
+                .next("cursor-2")
+                .build();
+
+        // Dependency Mocks
+        doReturn(page).when(customerService_mock).searchCustomers(null, "155 Country", "prefix", "cursor-1", 10);
+        doReturn(expectedResponse).when(customerTranslator_mock).toContract(page);
+
+        // WHEN the search customers API endpoint is called with that prefix and a cursor
+        MvcResult result = mockMvc.perform(get(V1_SEARCH_CUSTOMERS_URI)
+                .param("streetAddress", "155 Country")
+                .param("match", "prefix")
+                .param("after", "cursor-1")
+                .param("limit", "10"))
+                .andExpect(status().isOk()).andReturn();
+        CustomerSearchPageDTO actualResponse = objectMapper.readValue(result.getResponse().getContentAsByteArray(),
+                CustomerSearchPageDTO.class);
+
+        // THEN the search parameters should be handed to the service as-is
+        verify(customerService_mock).searchCustomers(null, "155 Country", "prefix", "cursor-1", 10);
+
+        // AND the page should be returned with its cursor.
+        assertEquals(expectedResponse, actualResponse);
+    }
+
+    /**
+     * GIVEN a search without a name or street address
+     * WHEN the search customers API endpoint is called and a business exception is thrown
+     * THEN a BAD REQUEST should be returned.
+     */
+    @Test
+    void searchCustomers_businessException() throws Exception {
+
+        // Dependency Mocks
+        doThrow(new BusinessException("nothing to search for")).when(customerService_mock)
+                .searchCustomers(null, null, null, null, null);
+
+        // WHEN the search customers API endpoint is called and a business exception is thrown
+        // THEN a BAD REQUEST should be returned.
+        mockMvc.perform(get(V1_SEARCH_CUSTOMERS_URI)).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * GIVEN three customer records as newline-delimited JSON
+     * WHEN the bulk ingest API endpoint is called
+     * THEN every record should be translated and handed to the service, in order
+     * AND the service's report should be returned.
+     */
+    @Test
+    void ingestCustomers_ndjson() throws Exception {
+
+        // GIVEN three customer records as newline-delimited JSON
+        List<CustomerDTO> customerDtos = Arrays.asList(
+                podamFactory.manufacturePojo(CustomerDTO.class),
+                podamFactory.manufacturePojo(CustomerDTO.class),
+                podamFactory.manufacturePojo(CustomerDTO.class));
+        StringBuilder body = new StringBuilder();
+        for (CustomerDTO customerDto : customerDtos) {
+            body.append(objectMapper.writeValueAsString(customerDto)).append('\n');
+        }
+
+        // Dependency Mocks
+        List<Integer> ingestedIds = mockIngest();
+
+        // WHEN the bulk ingest API endpoint is called
+        MvcResult result = mockMvc.perform(post(V1_BULK_CUSTOMERS_URI)
+                .contentType(CustomerController.APPLICATION_NDJSON_VALUE)
+                .content(body.toString()))
+                .andExpect(status().isOk()).andReturn();
+        CustomerBulkResponseDTO response = objectMapper.readValue(result.getResponse().getContentAsByteArray(), CustomerBulkResponseDTO.class);
+
+        // THEN every record should be translated and handed to the service, in order
+        assertEquals(Arrays.asList(customerDtos.get(0).getId(), customerDtos.get(1).getId(), customerDtos.get(2).getId()),
+                ingestedIds);
+
+        // AND the service's report should be returned.
+        assertEquals(3L, response.getReceived());
+    }
+
+    /**
+     * GIVEN two customer records as a JSON array
+     * WHEN the bulk ingest API endpoint is called
+     * THEN every record should be handed to the service.
+     */
+    @Test
+    void ingestCustomers_jsonArray() throws Exception {
+
+        // GIVEN two customer records as a JSON array
+        List<CustomerDTO> customerDtos = Arrays.asList(
+                podamFactory.manufacturePojo(CustomerDTO.class),
+                podamFactory.manufacturePojo(CustomerDTO.class));
+
+        // Dependency Mocks
+        List<Integer> ingestedIds = mockIngest();
+
+        // WHEN the bulk ingest API endpoint is called
+        mockMvc.perform(post(V1_BULK_CUSTOMERS_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(customerDtos)))
+                .andExpect(status().isOk());
+
+        // THEN every record should be handed to the service.
+        assertEquals(Arrays.asList(customerDtos.get(0).getId(), customerDtos.get(1).getId()), ingestedIds);
+    }
+
+    /**
+     * GIVEN a valid customer record followed by one that doesn't fit the contract
+     * WHEN the bulk ingest API endpoint is called
+     * THEN a BAD REQUEST should be returned that says which record could not be read.
+     */
+    @Test
+    void ingestCustomers_unreadableRecord() throws Exception {
+
+        // GIVEN a valid customer record followed by one that doesn't fit the contract
+        String body = objectMapper.writeValueAsString(podamFactory.manufacturePojo(CustomerDTO.class))
+                + "\n{\"id\":\"not a number\"}\n";
+
+        // Dependency Mocks
+        mockIngest();
+
+        // WHEN the bulk ingest API endpoint is called
+        MvcResult result = mockMvc.perform(post(V1_BULK_CUSTOMERS_URI)
+                .contentType(CustomerController.APPLICATION_NDJSON_VALUE)
+                .content(body))
+                .andExpect(status().isBadRequest()).andReturn();
+        ErrorDTO error = objectMapper.readValue(result.getResponse().getContentAsByteArray(), ErrorDTO.class);
+
+        // THEN a BAD REQUEST should be returned that says which record could not be read.
+        assertTrue(error.getMessage().startsWith(CustomerController.UNREADABLE_BULK_RECORD));
+        assertTrue(error.getMessage().contains("line: 2"));
+    }
+
+    /**
+     * GIVEN two customers are in the system
+     * WHEN the export customers API endpoint is called
+     * THEN both customers should be returned as newline-delimited JSON, one customer per line.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportCustomers_success() throws Exception {
+
+        // GIVEN two customers are in the system
+        Customer customer1 = podamFactory.manufacturePojo(Customer.class);
+        Customer customer2 = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers1 = Collections.singletonList("A-1");
+        List<String> orderNumbers2 = Collections.emptyList();
+        CustomerDTO customerDto1 = podamFactory.manufacturePojo(CustomerDTO.class);
+        CustomerDTO customerDto2 = podamFactory.manufacturePojo(CustomerDTO.class);
+
+        // Dependency Mocks
+        doAnswer(invocation -> {
+            BiConsumer<Customer, List<String>> consumer = invocation.getArgument(0);
+            consumer.accept(customer1, orderNumbers1);
+            consumer.accept(customer2, orderNumbers2);
+            return null;
+        }).when(customerService_mock).exportCustomers(any(BiConsumer.class));
+        doReturn(customerDto1).when(customerTranslator_mock).toContract(customer1, orderNumbers1);
+        doReturn(customerDto2).when(customerTranslator_mock).toContract(customer2, orderNumbers2);
+
+        // WHEN the export customers API endpoint is called
+        MvcResult result = mockMvc.perform(get(V1_EXPORT_CUSTOMERS_URI)).andExpect(status().isOk()).andReturn();
+
+        // THEN both customers should be returned as newline-delimited JSON, one customer per line.
+        assertNotNull(result.getResponse().getContentType());
+        assertTrue(result.getResponse().getContentType().startsWith(CustomerController.APPLICATION_NDJSON_VALUE));
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(customerDto1.getId(), objectMapper.readValue(lines[0], CustomerDTO.class).getId());
+        assertEquals(customerDto2.getId(), objectMapper.readValue(lines[1], CustomerDTO.class).getId());
+        assertTrue(result.getResponse().getContentAsString().endsWith("}\n"));
+    }
+
+    /**
+     * GIVEN there are no customers in the system
+     * WHEN the export customers API endpoint is called
+     * THEN the body should be empty, not a lone newline.
+     */
+    @Test
+    void exportCustomers_empty() throws Exception {
+
+        // GIVEN there are no customers in the system
+        doNothing().when(customerService_mock).exportCustomers(any(BiConsumer.class));
+
+        // WHEN the export customers API endpoint is called
+        MvcResult result = mockMvc.perform(get(V1_EXPORT_CUSTOMERS_URI)).andExpect(status().isOk()).andReturn();
+
+        // THEN the body should be empty, not a lone newline.
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+
+    /**
+     * Make the mocked translator and service behave like the real ones would for a bulk ingest: every CustomerDTO is
+     * translated to a Customer with the same ID, and the service reads the whole iterator (which is what makes the
+     * controller read the request body). Returns the list that the IDs of the ingested Customers are added to.
+     */
+    private List<Integer> mockIngest() throws Exception {
+        doAnswer(invocation -> {
+            Customer customer = new Customer();
+            customer.setCustomerId(invocation.<CustomerDTO>getArgument(0).getId());
+            return customer;
+        }).when(customerTranslator_mock).toEntity(any(CustomerDTO.class));
+
+        List<Integer> ingestedIds = new ArrayList<>();
+        CustomerIngestResult ingestResult = new CustomerIngestResult(0, 0, 0, Collections.emptyList());
+        doAnswer(invocation -> {
+            invocation.<Iterator<Customer>>getArgument(0).forEachRemaining(customer -> ingestedIds.add(customer.getCustomerId()));
+            return ingestResult;
+        }).when(customerService_mock).ingestCustomers(any());
+        doAnswer(invocation -> CustomerBulkResponseDTO.builder().received((long) ingestedIds.size()).build())
+                .when(customerTranslator_mock).toContract(ingestResult);
+        return ingestedIds;
+    }
+
 }
@@ -0,0 +1,118 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: No Mockito or Spring here at all, like CustomerCacheTest.
+ */
+class CustomerJsonCacheTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private static final byte[] JSON = "{\"id\":1}".getBytes();
+
+    /**
+     * Class under test
+     */
+    private CustomerJsonCache customerJsonCache;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+
+        AppConfiguration.CustomerJsonCacheProperties properties = new AppConfiguration.CustomerJsonCacheProperties();
+        properties.setMaximumSize(DataSize.ofKilobytes(10));
+        customerJsonCache = new CustomerJsonCache(properties);
+    }
+
+    /**
+     * GIVEN the JSON of a customer has been cached
+     * WHEN the same version of the customer is looked up
+     * THEN the cached JSON should be returned.
+     */
+    @Test
+    void lookup_hit() {
+
+        // GIVEN the JSON of a customer has been cached
+        customerJsonCache.put(customer(1, 3L, null), JSON);
+
+        // WHEN the same version of the customer is looked up
+        byte[] actual = customerJsonCache.lookup(customer(1, 3L, null));
+
+        // THEN the cached JSON should be returned.
+        assertSame(JSON, actual);
+        assertEquals(1, customerJsonCache.stats().hitCount());
+    }
+
+    /**
+     * GIVEN the JSON of a customer has been cached
+     * WHEN a different version of the customer, or the same version with a different lastReadTimestamp, is looked up
+     * THEN no JSON should be returned.
+     */
+    @Test
+    void lookup_changed() {
+
+        // GIVEN the JSON of a customer has been cached
+        customerJsonCache.put(customer(1, 3L, null), JSON);
+
+        // WHEN a different version of the customer, or the same version with a different lastReadTimestamp, is looked up
+        // THEN no JSON should be returned.
+        assertNull(customerJsonCache.lookup(customer(1, 4L, null)));
+        assertNull(customerJsonCache.lookup(customer(1, 3L, ZonedDateTime.now())));
+    }
+
+    /**
+     * GIVEN a customer that was never saved (it has no version)
+     * WHEN its JSON is cached
+     * THEN it should not be cached at all.
+     */
+    @Test
+    void put_noVersion() {
+        customerJsonCache.put(customer(1, null, null), JSON);
+        assertNull(customerJsonCache.lookup(customer(1, null, null)));
+        assertEquals(0, customerJsonCache.weight());
+    }
+
+    /**
+     * GIVEN a cache that may hold 10 KB
+     * WHEN far more than 10 KB of JSON is cached
+     * THEN the cache should evict entries until it holds no more than 10 KB.
+     */
+    @Test
+    void put_boundedByBytes() {
+
+        // WHEN far more than 10 KB of JSON is cached
+        byte[] json = new byte[1000];
+        for (int customerId = 1; customerId <= 100; customerId++) {
+            customerJsonCache.put(customer(customerId, 0L, null), json);
+        }
+
+        // THEN the cache should evict entries until it holds no more than 10 KB.
+        assertTrue(customerJsonCache.weight() <= DataSize.ofKilobytes(10).toBytes());
+        assertTrue(customerJsonCache.stats().evictionCount() > 0);
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static Customer customer(Integer customerId, Long version, ZonedDateTime lastReadTimestamp) {
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        customer.setVersion(version);
+        customer.setLastReadTimestamp(lastReadTimestamp);
+        return customer;
+    }
+
+}
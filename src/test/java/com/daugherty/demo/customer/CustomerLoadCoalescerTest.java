@@ -0,0 +1,192 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.customer.entity.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: Like CustomerLookupExecutorTest, this uses latches rather than sleeps. The first load is held inside
+ * its loader until every other caller has counted itself as waiting (the coalesced counter), so the test knows for sure
+ * that they all arrived while the load was in flight.
+ */
+class CustomerLoadCoalescerTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    private static final int CALLERS = 8;
+
+    /**
+     * Released when the first loader may finish (and at the end of each test, so that nothing is left blocked)
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    /**
+     * Class under test
+     */
+    private CustomerLoadCoalescer customerLoadCoalescer;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+        Metrics.addRegistry(meterRegistry);
+        customerLoadCoalescer = new CustomerLoadCoalescer();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        release.countDown();
+        callers.shutdownNow();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    /**
+     * GIVEN a load of a customer is in flight
+     * WHEN more callers load the same customer
+     * THEN the loader should only be called once, and every caller should get the same Customer.
+     */
+    @Test
+    void load_concurrentCallersShareOneLoad() throws Exception {
+
+        // GIVEN a load of a customer is in flight
+        Customer expected = podamFactory.manufacturePojo(Customer.class);
+        AtomicInteger loaderCalls = new AtomicInteger();
+        double coalesced = CustomerLoadCoalescer.COALESCED_COUNTER.count();
+
+        // WHEN more callers load the same customer
+        List<Future<Customer>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> customerLoadCoalescer.load(1, () -> {
+                loaderCalls.incrementAndGet();
+                awaitRelease();
+                return expected;
+            })));
+        }
+        awaitCoalesced(coalesced + CALLERS - 1);
+        release.countDown();
+
+        // THEN the loader should only be called once, and every caller should get the same Customer.
+        for (Future<Customer> result : results) {
+            assertSame(expected, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loaderCalls.get());
+        assertEquals(0, customerLoadCoalescer.inFlightCount());
+    }
+
+    /**
+     * GIVEN a load of a customer is in flight
+     * WHEN more callers load the same customer, and the load fails
+     * THEN every caller should get the loader's exception.
+     */
+    @Test
+    void load_concurrentCallersShareFailure() throws Exception {
+
+        // GIVEN a load of a customer is in flight
+        IllegalStateException expected = new IllegalStateException("database is down");
+        double coalesced = CustomerLoadCoalescer.COALESCED_COUNTER.count();
+
+        // WHEN more callers load the same customer, and the load fails
+        List<Future<Customer>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> customerLoadCoalescer.load(1, () -> {
+                awaitRelease();
+                throw expected;
+            })));
+        }
+        awaitCoalesced(coalesced + CALLERS - 1);
+        release.countDown();
+
+        // THEN every caller should get the loader's exception.
+        for (Future<Customer> result : results) {
+            ExecutionException actual = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(expected, actual.getCause());
+        }
+        assertEquals(0, customerLoadCoalescer.inFlightCount());
+    }
+
+    /**
+     * GIVEN no load is in flight
+     * WHEN the same customer is loaded twice, one after the other
+     * THEN the loader should be called both times (only loads that are in flight are shared).
+     */
+    @Test
+    void load_sequentialCallersLoadAgain() {
+        AtomicInteger loaderCalls = new AtomicInteger();
+        customerLoadCoalescer.load(1, () -> {
+            loaderCalls.incrementAndGet();
+            return null;
+        });
+        customerLoadCoalescer.load(1, () -> {
+            loaderCalls.incrementAndGet();
+            return null;
+        });
+        assertEquals(2, loaderCalls.get());
+    }
+
+    /**
+     * GIVEN a load of a customer is in flight
+     * WHEN the customer is forgotten (it changed), and then loaded again
+     * THEN the new caller should run its own load instead of sharing the old one.
+     */
+    @Test
+    void forget_newCallersLoadAgain() throws Exception {
+
+        // GIVEN a load of a customer is in flight
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Customer> oldLoad = callers.submit(() -> customerLoadCoalescer.load(1, () -> {
+            started.countDown();
+            awaitRelease();
+            return null;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // WHEN the customer is forgotten (it changed), and then loaded again
+        customerLoadCoalescer.forget(1);
+        Customer expected = podamFactory.manufacturePojo(Customer.class);
+        Customer actual = customerLoadCoalescer.load(1, () -> expected);
+
+        // THEN the new caller should run its own load instead of sharing the old one.
+        assertSame(expected, actual);
+        release.countDown();
+        assertNull(oldLoad.get(5, TimeUnit.SECONDS));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private void awaitRelease() {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitCoalesced(double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((CustomerLoadCoalescer.COALESCED_COUNTER.count() < count) && (System.nanoTime() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, CustomerLoadCoalescer.COALESCED_COUNTER.count());
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: Like CustomerCacheTest, this tests the real thing without Mockito or Spring. Latches are used to hold
+ * the pool's single thread busy for exactly as long as each test needs it to be, instead of sleeping and hoping.
+ */
+class CustomerLookupExecutorTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * Released at the end of each test, so that no work is left blocking the pool
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Class under test
+     */
+    private CustomerLookupExecutor customerLookupExecutor;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+
+        AppConfiguration.CustomerLookupExecutorProperties properties = new AppConfiguration.CustomerLookupExecutorProperties();
+        properties.setThreads(1);
+        properties.setQueueCapacity(1);
+        properties.setTimeout(Duration.ofMillis(200));
+        customerLookupExecutor = new CustomerLookupExecutor(properties);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        release.countDown();
+        customerLookupExecutor.shutdown();
+    }
+
+    /**
+     * GIVEN an idle pool
+     * WHEN work is submitted
+     * THEN the future should complete with the work's result, on a pool thread.
+     */
+    @Test
+    void submit_success() throws Exception {
+
+        // WHEN work is submitted
+        CompletableFuture<String> future = customerLookupExecutor.submit(() -> Thread.currentThread().getName());
+
+        // THEN the future should complete with the work's result, on a pool thread.
+        assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("customer-lookup-"));
+    }
+
+    /**
+     * GIVEN an idle pool
+     * WHEN work is submitted that throws an exception
+     * THEN the future should fail with that exception.
+     */
+    @Test
+    void submit_failure() {
+
+        // WHEN work is submitted that throws an exception
+        IllegalStateException expected = new IllegalStateException("boom");
+        CompletableFuture<String> future = customerLookupExecutor.submit(() -> {
+            throw expected;
+        });
+
+        // THEN the future should fail with that exception.
+        ExecutionException actual = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertSame(expected, actual.getCause());
+    }
+
+    /**
+     * GIVEN the pool's only thread is busy and its queue is full
+     * WHEN more work is submitted
+     * THEN it should be rejected right away.
+     */
+    @Test
+    void submit_rejected() throws Exception {
+
+        // GIVEN the pool's only thread is busy and its queue is full
+        CountDownLatch started = new CountDownLatch(1);
+        customerLookupExecutor.submit(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        customerLookupExecutor.submit(() -> "queued");
+
+        // WHEN more work is submitted
+        // THEN it should be rejected right away.
+        assertThrows(RejectedExecutionException.class, () -> customerLookupExecutor.submit(() -> "rejected"));
+    }
+
+    /**
+     * GIVEN the pool's only thread is busy for longer than the timeout
+     * WHEN more work is submitted
+     * THEN the future should fail with a TimeoutException
+     * AND the work should never run.
+     */
+    @Test
+    void submit_timeout() throws Exception {
+
+        // GIVEN the pool's only thread is busy for longer than the timeout... and stays busy when its own timeout
+        // interrupts it, so that it can't pick up the next work just before that work times out too
+        customerLookupExecutor.submit(() -> awaitUninterruptibly(release));
+
+        // WHEN more work is submitted
+        CountDownLatch ran = new CountDownLatch(1);
+        CompletableFuture<String> future = customerLookupExecutor.submit(() -> {
+            ran.countDown();
+            return "too late";
+        });
+
+        // THEN the future should fail with a TimeoutException
+        ExecutionException actual = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(actual.getCause() instanceof TimeoutException);
+
+        // AND the work should never run.
+        release.countDown();
+        assertFalse(ran.await(200, TimeUnit.MILLISECONDS));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static boolean awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.config.EntityCacheConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.Order;
+import com.daugherty.demo.exception.BusinessException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DEVELOPER NOTE: This test counts the SQL statements that the customer read paths send to the database. Tests like
+ * this catch "N+1 selects" regressions, where someone touches a lazy collection in a loop and every customer quietly
+ * costs an extra query. Hibernate keeps statistics about what it has done, but only when it is asked to via the
+ * hibernate.generate_statistics property below.
+ * <p>
+ * Like CustomerRepositoryTest, this uses @DataJpaTest for a real (in-memory H2) database. The @Import adds the real
+ * CustomerService and its dependencies to the test's Spring context, since @DataJpaTest only creates JPA components.
+ * EntityCacheConfiguration turns on the second-level cache, as it is in the real application.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({CustomerService.class, CustomerCache.class, CustomerLookupExecutor.class, CustomerSnapshot.class,
+        CustomerLoadCoalescer.class, EntityCacheConfiguration.class, AppConfiguration.class})
+class CustomerQueryCountTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /**
+     * Class under test
+     */
+    @Autowired
+    private CustomerService customerService;
+
+    private Statistics statistics;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    /**
+     * GIVEN a Customer with several Orders is in the database
+     * WHEN the Customer and its order numbers are requested (as the GET customer endpoint does)
+     * THEN exactly two SQL statements should be run: one for the Customer and one for all of its order numbers.
+     */
+    @Test
+    void singleLookup_twoStatements() throws BusinessException {
+
+        // GIVEN a Customer with several Orders is in the database
+        Integer customerId = persistCustomerWithOrders(3);
+
+        // WHEN the Customer and its order numbers are requested (as the GET customer endpoint does)
+        statistics.clear();
+        Customer customer = customerService.getCustomer(customerId);
+        List<String> orderNumbers = customerService.getOrderNumbers(customerId);
+
+        // THEN exactly two SQL statements should be run
+        assertEquals(customerId, customer.getCustomerId());
+        assertEquals(3, orderNumbers.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * GIVEN several Customers with several Orders each are in the database
+     * WHEN the Customers are requested as a batch
+     * THEN exactly two SQL statements should be run, no matter how many Customers or Orders there are.
+     */
+    @Test
+    void batchLookup_twoStatements() throws BusinessException {
+
+        // GIVEN several Customers with several Orders each are in the database
+        List<Integer> customerIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            customerIds.add(persistCustomerWithOrders(4));
+        }
+
+        // WHEN the Customers are requested as a batch
+        statistics.clear();
+        List<CustomerLookup> lookups = customerService.getCustomers(customerIds);
+
+        // THEN exactly two SQL statements should be run
+        for (CustomerLookup lookup : lookups) {
+            assertEquals(CustomerLookup.Status.FOUND, lookup.getStatus());
+            assertEquals(4, lookup.getOrderNumbers().size());
+        }
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * GIVEN a Customer with Orders has already been read once
+     * WHEN the Customer and its order numbers are requested again
+     * THEN only the order numbers statement should be run, since the Customer comes from the cache.
+     */
+    @Test
+    void cachedLookup_oneStatement() throws BusinessException {
+
+        // GIVEN a Customer with Orders has already been read once
+        Integer customerId = persistCustomerWithOrders(2);
+        customerService.getCustomer(customerId);
+
+        // WHEN the Customer and its order numbers are requested again
+        statistics.clear();
+        customerService.getCustomer(customerId);
+        customerService.getOrderNumbers(customerId);
+
+        // THEN only the order numbers statement should be run
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * GIVEN a Customer with Orders is in the database, but not in the cache
+     * WHEN only the Customer's version is requested (as a conditional GET does)
+     * THEN exactly one SQL statement should be run, and no Customer should be loaded.
+     */
+    @Test
+    void versionLookup_oneStatement() throws BusinessException {
+
+        // GIVEN a Customer with Orders is in the database, but not in the cache
+        Integer customerId = persistCustomerWithOrders(3);
+
+        // WHEN only the Customer's version is requested (as a conditional GET does)
+        statistics.clear();
+        Long version = customerService.getCustomerVersion(customerId);
+
+        // THEN exactly one SQL statement should be run, and no Customer should be loaded.
+        assertEquals(0L, version);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * GIVEN a few hundred new Customers
+     * WHEN they are ingested
+     * THEN one INSERT statement should be prepared and re-used for every JDBC batch, instead of one per Customer.
+     */
+    @Test
+    void ingest_batchedInserts() {
+
+        // GIVEN a few hundred new Customers
+        List<Customer> customers = new ArrayList<>();
+        for (int customerId = 1; customerId <= 250; customerId++) {
+            Customer customer = new Customer();
+            customer.setCustomerId(customerId);
+            customer.setFullName("Customer " + customerId);
+            customers.add(customer);
+        }
+
+        // WHEN they are ingested
+        statistics.clear();
+        CustomerIngestResult result = customerService.ingestCustomers(customers.iterator());
+
+        // THEN one INSERT statement should be prepared and re-used for every JDBC batch, instead of one per Customer.
+        assertEquals(250, result.getCreated());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * GIVEN a Customer with many Orders is in the database
+     * WHEN a page of its orders is requested
+     * THEN exactly one SQL statement should be run, and no entity (not even the Customer) should be loaded.
+     */
+    @Test
+    void orderPage_oneStatement() throws BusinessException {
+
+        // GIVEN a Customer with many Orders is in the database
+        Integer customerId = persistCustomerWithOrders(25);
+
+        // WHEN a page of its orders is requested
+        statistics.clear();
+        OrderPage page = customerService.listOrders(customerId, null, 10);
+
+        // THEN exactly one SQL statement should be run, and no entity (not even the Customer) should be loaded.
+        assertEquals(10, page.getOrderNumbers().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * GIVEN a Customer with Orders has been committed, and loaded by ID once, with its orders collection
+     * WHEN it is loaded by ID again in a new transaction, and its orders are walked again
+     * THEN no SQL statements should be run at all, since everything comes from the second-level cache.
+     * <p>
+     * DEVELOPER NOTE: A new transaction starts with an empty persistence context (the first-level cache). Only the
+     * second-level cache survives from one transaction to the next. TestTransaction ends the test's transaction and
+     * starts a new one, which this test needs to do twice. Hibernate doesn't put rows that a transaction inserted into
+     * the second-level cache until it commits (and a test's transaction is normally rolled back), so the Customer is
+     * committed, and deleted again at the end. And with READ_WRITE, an entry is only read by transactions that started
+     * after it was put, so the second read has to be in a transaction of its own.
+     */
+    @Test
+    void secondLevelCache_noStatements() {
+
+        // GIVEN a Customer with Orders has been committed, and loaded by ID once, with its orders collection
+        Integer customerId = persistCustomerWithOrders(3);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        try {
+            assertEquals(3, entityManager.find(Customer.class, customerId).getOrders().size());
+            TestTransaction.end();
+            TestTransaction.start();
+
+            // WHEN it is loaded by ID again in a new transaction, and its orders are walked again
+            statistics.clear();
+            Customer customer = entityManager.find(Customer.class, customerId);
+            Set<String> orderNumbers = new HashSet<>();
+            for (Order order : customer.getOrders()) {
+                orderNumbers.add(order.getOrderNumber());
+            }
+
+            // THEN no SQL statements should be run at all
+            assertEquals(3, orderNumbers.size());
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+            assertEquals(0, statistics.getSecondLevelCacheMissCount());
+        } finally {
+            entityManager.remove(entityManager.find(Customer.class, customerId)); // Its Orders go with it
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+        }
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    /**
+     * Persist a new Customer with the given number of Orders, then clear the persistence context so that later reads
+     * really have to go to the database. Returns the new Customer's ID.
+     */
+    private Integer persistCustomerWithOrders(int orderCount) {
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        customer.setOrders(new HashSet<>());
+        customer.setVersion(null);
+        Integer customerId = (Integer) entityManager.persistAndGetId(customer);
+        for (int i = 0; i < orderCount; i++) {
+            Order order = new Order();
+            order.setOrderNumber(UUID.randomUUID().toString());
+            order.setCustomer(customer);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return customerId;
+    }
+
+}
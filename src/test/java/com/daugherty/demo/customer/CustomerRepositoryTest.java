@@ -6,8 +6,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * DEVELOPER NOTES: This test class uses the @DataJpaTest annotation to test the JPA-based CustomerRepository. Unlike
@@ -57,4 +70,262 @@ class CustomerRepositoryTest extends BaseTest {
         assertEquals(expectedCustomer, actualCustomer);
     }
 
+    /**
+     * GIVEN two Customers are in the database
+     * WHEN the Customers are read by a list of IDs that also contains an unknown ID
+     * THEN only the two Customers should be returned.
+     */
+    @Test
+    void findByCustomerIdIn() {
+
+        // GIVEN two Customers are in the database
+        Customer first = manufactureCustomer();
+        Customer second = manufactureCustomer();
+        Integer firstId = (Integer) entityManager.persistAndGetId(first);
+        Integer secondId = (Integer) entityManager.persistAndGetId(second);
+        Integer unknownId = Math.max(firstId, secondId) + 1;
+
+        // WHEN the Customers are read by a list of IDs that also contains an unknown ID
+        List<Customer> customers = customerRepository.findByCustomerIdIn(Arrays.asList(firstId, secondId, unknownId));
+
+        // THEN only the two Customers should be returned.
+        assertEquals(2, customers.size());
+        assertTrue(customers.contains(first));
+        assertTrue(customers.contains(second));
+    }
+
+
+    /**
+     * GIVEN two Customers are in the database
+     * WHEN all Customers are streamed and the persistence context is cleared
+     * THEN both Customers should be returned in customer ID order
+     * AND they should no longer be managed by the persistence context.
+     * <p>
+     * DEVELOPER NOTE: @DataJpaTest runs every test in a transaction, which is what a Stream query needs.
+     */
+    @Test
+    void streamAll() {
+
+        // GIVEN two Customers are in the database
+        Integer firstId = (Integer) entityManager.persistAndGetId(manufactureCustomer());
+        Integer secondId = (Integer) entityManager.persistAndGetId(manufactureCustomer());
+
+        // WHEN all Customers are streamed and the persistence context is cleared
+        List<Customer> customers;
+        try (Stream<Customer> stream = customerRepository.streamAll()) {
+            customers = stream.collect(Collectors.toList());
+        }
+        customerRepository.clearPersistenceContext();
+
+        // THEN both Customers should be returned in customer ID order
+        assertEquals(Arrays.asList(Math.min(firstId, secondId), Math.max(firstId, secondId)),
+                customers.stream().map(Customer::getCustomerId).collect(Collectors.toList()));
+
+        // AND they should no longer be managed by the persistence context.
+        assertFalse(entityManager.getEntityManager().contains(customers.get(0)));
+    }
+
+
+    /**
+     * GIVEN a new Customer is saved, and then changed
+     * WHEN the Customer's version is read after each save
+     * THEN the version should start at zero and go up by one with the change
+     * AND an unknown ID should have no version at all.
+     */
+    @Test
+    void findVersionByCustomerId() {
+
+        // GIVEN a new Customer is saved
+        Customer customer = manufactureCustomer();
+        customer.setVersion(null); // A new entity has no version yet; Hibernate gives it the first one
+        Integer customerId = (Integer) entityManager.persistAndGetId(customer);
+        entityManager.flush();
+
+        // WHEN the Customer's version is read
+        // THEN the version should start at zero
+        assertEquals(Optional.of(0L), customerRepository.findVersionByCustomerId(customerId));
+
+        // GIVEN the Customer is changed
+        customer.setFullName(customer.getFullName() + " Jr.");
+        entityManager.flush();
+
+        // THEN the version should go up by one with the change
+        assertEquals(Optional.of(1L), customerRepository.findVersionByCustomerId(customerId));
+
+        // AND an unknown ID should have no version at all.
+        assertEquals(Optional.empty(), customerRepository.findVersionByCustomerId(customerId + 1));
+    }
+
+    /**
+     * GIVEN two new Customers
+     * WHEN they are inserted together
+     * THEN both should be in the database
+     * AND they should no longer be managed by the persistence context.
+     */
+    @Test
+    void insertAll() {
+
+        // GIVEN two new Customers
+        Customer first = manufactureCustomer();
+        Customer second = manufactureCustomer();
+        first.setVersion(null);
+        second.setVersion(null);
+
+        // WHEN they are inserted together
+        customerRepository.insertAll(Arrays.asList(first, second));
+
+        // THEN both should be in the database
+        assertEquals(2, customerRepository.findByCustomerIdIn(
+                Arrays.asList(first.getCustomerId(), second.getCustomerId())).size());
+
+        // AND they should no longer be managed by the persistence context.
+        assertFalse(entityManager.getEntityManager().contains(first));
+    }
+
+    /**
+     * GIVEN a Customer is in the database
+     * WHEN a new Customer with the same ID is inserted
+     * THEN a DataIntegrityViolationException should be thrown.
+     */
+    @Test
+    void insertAll_duplicate() {
+
+        // GIVEN a Customer is in the database
+        Customer existing = manufactureCustomer();
+        existing.setVersion(null);
+        entityManager.persistAndFlush(existing);
+        entityManager.clear();
+
+        // WHEN a new Customer with the same ID is inserted
+        Customer duplicate = manufactureCustomer();
+        duplicate.setCustomerId(existing.getCustomerId());
+        duplicate.setVersion(null);
+
+        // THEN a DataIntegrityViolationException should be thrown.
+        assertThrows(DataIntegrityViolationException.class,
+                () -> customerRepository.insertAll(Collections.singletonList(duplicate)));
+    }
+
+    /**
+     * GIVEN three Customers are in the database
+     * WHEN the summaries after the first Customer are read, one at a time
+     * THEN only the second Customer should be returned, with its ID and name.
+     */
+    @Test
+    void findSummariesAfter() {
+
+        // GIVEN three Customers are in the database
+        List<Customer> customers = Arrays.asList(manufactureCustomer(), manufactureCustomer(), manufactureCustomer());
+        for (int i = 0; i < customers.size(); i++) {
+            customers.get(i).setCustomerId(i + 1);
+            entityManager.persist(customers.get(i));
+        }
+        entityManager.flush();
+
+        // WHEN the summaries after the first Customer are read, one at a time
+        List<CustomerSummary> summaries = customerRepository.findSummariesAfter(1, PageRequest.of(0, 1));
+
+        // THEN only the second Customer should be returned, with its ID and name.
+        assertEquals(1, summaries.size());
+        assertEquals(2, summaries.get(0).getCustomerId());
+        assertEquals(customers.get(1).getFullName(), summaries.get(0).getFullName());
+    }
+
+    /**
+     * GIVEN two Customers with the same name in different case, and one with another name
+     * WHEN the Customers with that name are searched for, after the first one
+     * THEN the search columns should have been filled in when the Customers were saved
+     * AND only the second Customer with that name should be returned.
+     */
+    @Test
+    void findMatchesByFullName() {
+
+        // GIVEN two Customers with the same name in different case, and one with another name
+        persistCustomer(1, "Arthur Dent", "155 Country Lane");
+        persistCustomer(2, " ARTHUR DENT", "Heart of Gold");
+        persistCustomer(3, "Ford Prefect", "Guildford");
+        entityManager.flush();
+
+        // WHEN the Customers with that name are searched for, after the first one
+        List<CustomerMatch> matches = customerRepository.findMatchesByFullName("arthur dent", 1, PageRequest.of(0, 10));
+
+        // THEN the search columns should have been filled in when the Customers were saved
+        // AND only the second Customer with that name should be returned.
+        assertEquals(Collections.singletonList(new CustomerMatch(2, " ARTHUR DENT", "Heart of Gold")), matches);
+    }
+
+    /**
+     * GIVEN three Customers whose names start with the same text, and one whose name doesn't
+     * WHEN the Customers whose name starts with that text are searched for, after the first of them
+     * THEN the other two should be returned, in lower-case name order.
+     */
+    @Test
+    void findMatchesByFullNameLike() {
+
+        // GIVEN three Customers whose names start with the same text, and one whose name doesn't
+        persistCustomer(1, "Smith B", "1 Main Street");
+        persistCustomer(2, "smith a", "2 Main Street");
+        persistCustomer(3, "Smithers", "3 Main Street");
+        persistCustomer(4, "Jones", "4 Main Street");
+        entityManager.flush();
+
+        // WHEN the Customers whose name starts with that text are searched for, after the first of them
+        List<CustomerMatch> matches = customerRepository.findMatchesByFullNameLike("smith%", "smith a", 2,
+                PageRequest.of(0, 10));
+
+        // THEN the other two should be returned, in lower-case name order.
+        assertEquals(Arrays.asList(1, 3), matches.stream().map(CustomerMatch::getCustomerId).collect(Collectors.toList()));
+    }
+
+    /**
+     * GIVEN Customers whose street addresses start with "12_" and with "123"
+     * WHEN the Customers whose street address starts with an escaped "12_" are searched for
+     * THEN only the Customer whose street address really starts with "12_" should be returned
+     * AND the Customers with an exact street address should be found as well.
+     */
+    @Test
+    void findMatchesByStreetAddress() {
+
+        // GIVEN Customers whose street addresses start with "12_" and with "123"
+        persistCustomer(1, "Arthur Dent", "12_ Elm Street");
+        persistCustomer(2, "Ford Prefect", "123 Elm Street");
+        entityManager.flush();
+
+        // WHEN the Customers whose street address starts with an escaped "12_" are searched for
+        List<CustomerMatch> matches = customerRepository.findMatchesByStreetAddressLike("12!_%", "",
+                Integer.MIN_VALUE, PageRequest.of(0, 10));
+
+        // THEN only the Customer whose street address really starts with "12_" should be returned
+        assertEquals(Collections.singletonList(1),
+                matches.stream().map(CustomerMatch::getCustomerId).collect(Collectors.toList()));
+
+        // AND the Customers with an exact street address should be found as well.
+        assertEquals(Collections.singletonList(2), customerRepository.findMatchesByStreetAddress("123 elm street",
+                Integer.MIN_VALUE, PageRequest.of(0, 10)).stream().map(CustomerMatch::getCustomerId)
+                .collect(Collectors.toList()));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private void persistCustomer(Integer customerId, String fullName, String streetAddress) {
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        customer.setFullName(fullName);
+        customer.setStreetAddress(streetAddress);
+        entityManager.persist(customer);
+    }
+
+    /**
+     * Manufacture a random Customer without any Orders.
+     * <p>
+     * DEVELOPER NOTE: Podam fills the orders collection with Orders that point at *other* random Customers. That's
+     * fine for getOne(), but any query makes JPA flush first, and flushing would fail on those unsaved Customers.
+     */
+    private Customer manufactureCustomer() {
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        customer.setOrders(new HashSet<>());
+        return customer;
+    }
+
 }
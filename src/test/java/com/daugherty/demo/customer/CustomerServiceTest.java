@@ -2,23 +2,46 @@ package com.daugherty.demo.customer;
 
 import com.daugherty.demo.BaseTest;
 import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import com.daugherty.demo.exception.ChangesExpiredException;
 import com.daugherty.demo.exception.BusinessException;
+import com.daugherty.demo.exception.PreconditionFailedException;
+import com.daugherty.demo.exception.PreconditionRequiredException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.verify;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 
 /**
@@ -35,6 +58,38 @@ class CustomerServiceTest extends BaseTest { // <-- (2) JUnit instantiates a new
     @Mock // <-- (3) Mockito sees this annotation and will create a Mock instance of this class
     private CustomerRepository customerRepositoryMock;
 
+    @Mock
+    private OrderRepository orderRepositoryMock;
+
+    @Mock
+    private CustomerCache customerCacheMock;
+
+    @Mock
+    private CustomerLookupExecutor customerLookupExecutorMock;
+
+    /**
+     * DEVELOPER NOTE: A mock returns 0 and empty lists rather than null, which would look like a snapshot that has
+     * every customer. beforeEach() makes it a snapshot without any customers (as it is when it isn't enabled), and the
+     * snapshot tests stub the customers that they want it to have.
+     */
+    @Mock
+    private CustomerSnapshot customerSnapshotMock;
+
+    /**
+     * DEVELOPER NOTE: A real coalescer, so that a cache miss really calls the repository mock.
+     */
+    @Spy
+    private CustomerLoadCoalescer customerLoadCoalescerSpy = new CustomerLoadCoalescer();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisherMock;
+
+    @Mock
+    private CustomerChangeRepository customerChangeRepositoryMock;
+
+    @Mock
+    private TransactionTemplate transactionTemplateMock;
+
 
     // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
 
@@ -45,12 +100,29 @@ class CustomerServiceTest extends BaseTest { // <-- (2) JUnit instantiates a new
     @InjectMocks // <-- (4) Mockito will inject any mocks into this class's constructor when it is created.
     private CustomerService customerServiceSpy;
 
+    /**
+     * DEVELOPER NOTE: Metrics go to Micrometer's global registry, which doesn't keep anything until a real registry is
+     * added to it. This one lets the tests read the counters.
+     */
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
 
     // ------------------------------------------------- TEST METHODS --------------------------------------------------
 
     @BeforeEach // (6) <-- JUnit calls the @BeforeEach method
     public void beforeEach() {
         super.setup();
+        Metrics.addRegistry(meterRegistry);
+
+        // Nothing is in the snapshot (lenient, since most tests never get as far as asking it)
+        lenient().doReturn(null).when(customerSnapshotMock).getCustomer(anyInt());
+        lenient().doReturn(null).when(customerSnapshotMock).getVersion(anyInt());
+        lenient().doReturn(null).when(customerSnapshotMock).getOrderNumbers(anyInt());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        Metrics.removeRegistry(meterRegistry);
     }
 
     /**
@@ -75,17 +147,50 @@ class CustomerServiceTest extends BaseTest { // <-- (2) JUnit instantiates a new
 
         // Verify dependency mocks
         verify(customerRepositoryMock).findById(customerId);
+        verify(customerCacheMock).put(customerId, expectedCustomer, 0L);
+    }
+
+    /**
+     * GIVEN a customer that isn't cached
+     * WHEN it is requested, and a change to it commits (and evicts it) while it is being read from the database
+     * THEN what was read should be cached with the invalidation stamp taken before the database was read, so that
+     * the cache can drop it.
+     */
+    @Test
+    void getCustomer_evictedWhileLoading() throws BusinessException {
+
+        // GIVEN a customer that isn't cached
+        Customer oldCustomer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = oldCustomer.getCustomerId();
+        doReturn(7L).when(customerCacheMock).invalidationStamp(customerId);
+
+        // WHEN it is requested, and a change to it commits (and evicts it) while it is being read from the database
+        doAnswer(invocation -> {
+            customerServiceSpy.onCustomerChanged(new CustomerChangedEvent(customerId,
+                    CustomerChange.ChangeType.UPDATED, oldCustomer.getVersion() + 1, oldCustomer.getFullName()));
+            return Optional.of(oldCustomer);
+        }).when(customerRepositoryMock).findById(customerId);
+        customerServiceSpy.getCustomer(customerId);
+
+        // THEN what was read should be cached with the invalidation stamp taken before the database was read, so that
+        // the cache can drop it.
+        InOrder inOrder = inOrder(customerCacheMock, customerRepositoryMock);
+        inOrder.verify(customerCacheMock).invalidationStamp(customerId);
+        inOrder.verify(customerRepositoryMock).findById(customerId);
+        inOrder.verify(customerCacheMock).evict(customerId);
+        inOrder.verify(customerCacheMock).put(customerId, oldCustomer, 7L);
     }
 
     /**
      * GIVEN a customer ID WHEN the customer is requested, but the customer is NOT in the system THEN null should be
-     * returned.
+     * returned AND the not-found counter should be incremented.
      */
     @Test
     void getCustomer_notFound() throws BusinessException {
 
         // GIVEN a customer ID
         Integer customerId = podamFactory.manufacturePojo(Integer.class);
+        double notFoundCount = CustomerService.NOT_FOUND_COUNTER.count();
 
         // Mock dependencies
         doReturn(Optional.empty()).when(customerRepositoryMock).findById(customerId);
@@ -96,8 +201,281 @@ class CustomerServiceTest extends BaseTest { // <-- (2) JUnit instantiates a new
         // THEN null should be returned.
         assertNull(actualCustomer);
 
+        // AND the not-found counter should be incremented.
+        assertEquals(notFoundCount + 1, CustomerService.NOT_FOUND_COUNTER.count());
+
         // Verify dependency mocks
         verify(customerRepositoryMock).findById(customerId);
+        verify(customerCacheMock).put(customerId, null, 0L);
+    }
+
+    /**
+     * GIVEN a customer that is already in the cache
+     * WHEN the customer is requested
+     * THEN the cached Customer should be returned
+     * AND the database should not be read.
+     */
+    @Test
+    void getCustomer_cacheHit() throws BusinessException {
+
+        // GIVEN a customer that is already in the cache
+        Customer expectedCustomer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = expectedCustomer.getCustomerId();
+
+        // Mock dependencies
+        doReturn(new CustomerCache.CachedCustomer(expectedCustomer)).when(customerCacheMock).lookup(customerId);
+
+        // WHEN the customer is requested
+        Customer actualCustomer = customerServiceSpy.getCustomer(customerId);
+
+        // THEN the cached Customer should be returned
+        assertEquals(expectedCustomer, actualCustomer);
+
+        // AND the database should not be read.
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer that is in the snapshot
+     * WHEN the customer and its order numbers are requested
+     * THEN the snapshot's copies should be returned
+     * AND neither the cache nor the database should be read.
+     */
+    @Test
+    void getCustomer_snapshotHit() throws BusinessException {
+
+        // GIVEN a customer that is in the snapshot
+        Customer expectedCustomer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = expectedCustomer.getCustomerId();
+        List<String> expectedOrderNumbers = Arrays.asList("A-1", "A-2");
+
+        // Mock dependencies
+        doReturn(expectedCustomer).when(customerSnapshotMock).getCustomer(customerId);
+        doReturn(expectedOrderNumbers).when(customerSnapshotMock).getOrderNumbers(customerId);
+
+        // WHEN the customer and its order numbers are requested
+        Customer actualCustomer = customerServiceSpy.getCustomer(customerId);
+        List<String> actualOrderNumbers = customerServiceSpy.getOrderNumbers(customerId);
+
+        // THEN the snapshot's copies should be returned
+        assertEquals(expectedCustomer, actualCustomer);
+        assertEquals(expectedOrderNumbers, actualOrderNumbers);
+
+        // AND neither the cache nor the database should be read.
+        verifyNoInteractions(customerCacheMock, customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer ID that is cached as "not found"
+     * WHEN the customer is requested
+     * THEN null should be returned
+     * AND the database should not be read.
+     */
+    @Test
+    void getCustomer_cachedNotFound() throws BusinessException {
+
+        // GIVEN a customer ID that is cached as "not found"
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+
+        // Mock dependencies
+        doReturn(CustomerCache.CachedCustomer.NOT_FOUND).when(customerCacheMock).lookup(customerId);
+
+        // WHEN the customer is requested
+        Customer actualCustomer = customerServiceSpy.getCustomer(customerId);
+
+        // THEN null should be returned
+        assertNull(actualCustomer);
+
+        // AND the database should not be read.
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN an invalid customer ID
+     * WHEN the customer is requested
+     * THEN a BusinessException without a stack trace should be thrown
+     * AND neither the cache nor the database should be read.
+     */
+    @Test
+    void getCustomer_invalid() {
+
+        // GIVEN an invalid customer ID
+        Integer customerId = -1;
+
+        // WHEN the customer is requested
+        BusinessException ex = assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomer(customerId));
+
+        // THEN a BusinessException without a stack trace should be thrown
+        assertEquals(String.format(CustomerService.INVALID_CUSTOMER_ID, customerId), ex.getMessage());
+        assertEquals("Invalid customer ID [-1]", ex.getMessage());
+        assertEquals(0, ex.getStackTrace().length);
+
+        // AND neither the cache nor the database should be read.
+        verifyNoInteractions(customerCacheMock, customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer that is already in the cache
+     * WHEN the customer's version is requested
+     * THEN the cached Customer's version should be returned
+     * AND the database should not be read.
+     */
+    @Test
+    void getCustomerVersion_cacheHit() throws BusinessException {
+
+        // GIVEN a customer that is already in the cache
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = customer.getCustomerId();
+
+        // Mock dependencies
+        doReturn(new CustomerCache.CachedCustomer(customer)).when(customerCacheMock).lookup(customerId);
+
+        // WHEN the customer's version is requested
+        Long actualVersion = customerServiceSpy.getCustomerVersion(customerId);
+
+        // THEN the cached Customer's version should be returned
+        assertEquals(customer.getVersion(), actualVersion);
+
+        // AND the database should not be read.
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer that is in the system, but not in the cache
+     * WHEN the customer's version is requested
+     * THEN only the version should be read from the database
+     * AND nothing should be cached.
+     */
+    @Test
+    void getCustomerVersion_cacheMiss() throws BusinessException {
+
+        // GIVEN a customer that is in the system, but not in the cache
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+        Long expectedVersion = podamFactory.manufacturePojo(Long.class);
+
+        // Mock dependencies
+        doReturn(Optional.of(expectedVersion)).when(customerRepositoryMock).findVersionByCustomerId(customerId);
+
+        // WHEN the customer's version is requested
+        Long actualVersion = customerServiceSpy.getCustomerVersion(customerId);
+
+        // THEN only the version should be read from the database
+        assertEquals(expectedVersion, actualVersion);
+        verify(customerRepositoryMock).findVersionByCustomerId(customerId);
+        verifyNoMoreInteractions(customerRepositoryMock);
+
+        // AND nothing should be cached.
+        verify(customerCacheMock, never()).put(any(), any(), anyLong());
+    }
+
+    /**
+     * GIVEN a customer ID that is cached as "not found"
+     * WHEN the customer's version is requested
+     * THEN null should be returned
+     * AND the database should not be read.
+     */
+    @Test
+    void getCustomerVersion_cachedNotFound() throws BusinessException {
+
+        // GIVEN a customer ID that is cached as "not found"
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+
+        // Mock dependencies
+        doReturn(CustomerCache.CachedCustomer.NOT_FOUND).when(customerCacheMock).lookup(customerId);
+
+        // WHEN the customer's version is requested
+        // THEN null should be returned
+        assertNull(customerServiceSpy.getCustomerVersion(customerId));
+
+        // AND the database should not be read.
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN an invalid customer ID
+     * WHEN the customer's version is requested
+     * THEN a BusinessException should be thrown.
+     */
+    @Test
+    void getCustomerVersion_invalid() {
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomerVersion(0));
+        verifyNoInteractions(customerCacheMock, customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer with an order is in the system, but not in the cache
+     * WHEN the customer is requested asynchronously
+     * THEN the lookup should run on the CustomerLookupExecutor
+     * AND the future should hold the Customer and its order numbers.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void getCustomerAsync_found() throws Exception {
+
+        // GIVEN a customer with an order is in the system, but not in the cache
+        Customer expectedCustomer = podamFactory.manufacturePojo(Customer.class);
+        Integer customerId = expectedCustomer.getCustomerId();
+
+        // Mock dependencies (the "executor" runs the work right away, on this thread)
+        doAnswer(invocation -> CompletableFuture.completedFuture(((Callable<Object>) invocation.getArgument(0)).call()))
+                .when(customerLookupExecutorMock).submit(any());
+        doReturn(Optional.of(expectedCustomer)).when(customerRepositoryMock).findById(customerId);
+        doReturn(Collections.singletonList(orderNumber(customerId, "A-1")))
+                .when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(any());
+
+        // WHEN the customer is requested asynchronously
+        CustomerLookup lookup = customerServiceSpy.getCustomerAsync(customerId).get();
+
+        // THEN the lookup should run on the CustomerLookupExecutor
+        verify(customerLookupExecutorMock).submit(any());
+
+        // AND the future should hold the Customer and its order numbers.
+        assertEquals(CustomerLookup.Status.FOUND, lookup.getStatus());
+        assertEquals(expectedCustomer, lookup.getCustomer());
+        assertEquals(Collections.singletonList("A-1"), lookup.getOrderNumbers());
+    }
+
+    /**
+     * GIVEN a customer ID that is cached as "not found"
+     * WHEN the customer is requested asynchronously
+     * THEN an already completed NOT_FOUND lookup should be returned
+     * AND neither the CustomerLookupExecutor nor the database should be used.
+     */
+    @Test
+    void getCustomerAsync_cachedNotFound() throws Exception {
+
+        // GIVEN a customer ID that is cached as "not found"
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+
+        // Mock dependencies
+        doReturn(CustomerCache.CachedCustomer.NOT_FOUND).when(customerCacheMock).lookup(customerId);
+
+        // WHEN the customer is requested asynchronously
+        CompletableFuture<CustomerLookup> future = customerServiceSpy.getCustomerAsync(customerId);
+
+        // THEN an already completed NOT_FOUND lookup should be returned
+        assertTrue(future.isDone());
+        assertEquals(CustomerLookup.Status.NOT_FOUND, future.get().getStatus());
+
+        // AND neither the CustomerLookupExecutor nor the database should be used.
+        verifyNoInteractions(customerLookupExecutorMock, customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN an invalid customer ID
+     * WHEN the customer is requested asynchronously
+     * THEN a BusinessException should be thrown right away
+     * AND the CustomerLookupExecutor should not be used.
+     */
+    @Test
+    void getCustomerAsync_invalid() {
+
+        // WHEN the customer is requested asynchronously
+        // THEN a BusinessException should be thrown right away
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomerAsync(0));
+
+        // AND the CustomerLookupExecutor should not be used.
+        verifyNoInteractions(customerLookupExecutorMock);
     }
 
     /**
@@ -114,4 +492,858 @@ class CustomerServiceTest extends BaseTest { // <-- (2) JUnit instantiates a new
         assertEquals(expected, customerServiceSpy.isValidCustomerId(customerId));
     }
 
-}
\ No newline at end of file
+    /**
+     * GIVEN a list of customer IDs containing a found ID, a missing ID, an invalid ID and a duplicate
+     * WHEN the customers are requested
+     * THEN there should be one result per requested ID, in request order, with the correct status
+     * AND the database should be queried once, with each valid ID only once.
+     */
+    @Test
+    void getCustomers_mixedResults() throws BusinessException {
+
+        // GIVEN a list of customer IDs containing a found ID, a missing ID, an invalid ID and a duplicate
+        Customer foundCustomer = podamFactory.manufacturePojo(Customer.class);
+        foundCustomer.setCustomerId(10);
+        List<Integer> customerIds = Arrays.asList(10, 20, -5, 10);
+
+        // Mock dependencies
+        doReturn(Collections.singletonList(foundCustomer)).when(customerRepositoryMock).findByCustomerIdIn(any());
+
+        // WHEN the customers are requested
+        List<CustomerLookup> lookups = customerServiceSpy.getCustomers(customerIds);
+
+        // THEN there should be one result per requested ID, in request order, with the correct status
+        assertEquals(4, lookups.size());
+        assertEquals(CustomerLookup.found(foundCustomer, Collections.emptyList()), lookups.get(0));
+        assertEquals(CustomerLookup.notFound(20), lookups.get(1));
+        assertEquals(CustomerLookup.invalid(-5), lookups.get(2));
+        assertEquals(CustomerLookup.found(foundCustomer, Collections.emptyList()), lookups.get(3));
+
+        // AND the database should be queried once, with each valid ID only once.
+        verify(customerRepositoryMock).findByCustomerIdIn(Arrays.asList(10, 20));
+
+        // AND both answers should be cached.
+        verify(customerCacheMock).put(10, foundCustomer, 0L);
+        verify(customerCacheMock).put(20, null, 0L);
+    }
+
+    /**
+     * GIVEN a list of customer IDs where one of the customers is already in the cache
+     * WHEN the customers are requested
+     * THEN the cached customer should be returned
+     * AND only the uncached IDs should be read from the database.
+     */
+    @Test
+    void getCustomers_partiallyCached() throws BusinessException {
+
+        // GIVEN a list of customer IDs where one of the customers is already in the cache
+        Customer cachedCustomer = podamFactory.manufacturePojo(Customer.class);
+        cachedCustomer.setCustomerId(10);
+        List<Integer> customerIds = Arrays.asList(10, 20);
+
+        // Mock dependencies
+        doReturn(new CustomerCache.CachedCustomer(cachedCustomer)).when(customerCacheMock).lookup(10);
+        doReturn(Collections.emptyList()).when(customerRepositoryMock).findByCustomerIdIn(any());
+
+        // WHEN the customers are requested
+        List<CustomerLookup> lookups = customerServiceSpy.getCustomers(customerIds);
+
+        // THEN the cached customer should be returned
+        assertEquals(CustomerLookup.found(cachedCustomer, Collections.emptyList()), lookups.get(0));
+        assertEquals(CustomerLookup.notFound(20), lookups.get(1));
+
+        // AND only the uncached IDs should be read from the database.
+        verify(customerRepositoryMock).findByCustomerIdIn(Collections.singletonList(20));
+    }
+
+    /**
+     * GIVEN more valid customer IDs than fit in a single database query
+     * WHEN the customers are requested
+     * THEN the database should be queried once per chunk of IDs.
+     */
+    @Test
+    void getCustomers_chunked() throws BusinessException {
+
+        // GIVEN more valid customer IDs than fit in a single database query
+        List<Integer> customerIds = new ArrayList<>();
+        for (int customerId = 1; customerId <= (CustomerService.BATCH_CHUNK_SIZE * 2) + 1; customerId++) {
+            customerIds.add(customerId);
+        }
+
+        // Mock dependencies
+        doReturn(Collections.emptyList()).when(customerRepositoryMock).findByCustomerIdIn(any());
+
+        // WHEN the customers are requested
+        List<CustomerLookup> lookups = customerServiceSpy.getCustomers(customerIds);
+
+        // THEN the database should be queried once per chunk of IDs.
+        assertEquals(customerIds.size(), lookups.size());
+        verify(customerRepositoryMock, times(3)).findByCustomerIdIn(any());
+    }
+
+    /**
+     * GIVEN an empty or oversized list of customer IDs
+     * WHEN the customers are requested
+     * THEN a BusinessException should be thrown
+     * AND the database should not be queried.
+     */
+    @Test
+    void getCustomers_invalidBatchSize() {
+
+        // GIVEN an empty or oversized list of customer IDs
+        List<Integer> tooMany = Collections.nCopies(CustomerService.MAX_BATCH_SIZE + 1, 1);
+
+        // WHEN the customers are requested
+        // THEN a BusinessException should be thrown
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomers(Collections.emptyList()));
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomers(null));
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getCustomers(tooMany));
+
+        // AND the database should not be queried.
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer with two orders and a customer with one order
+     * WHEN the order numbers of both customers are requested
+     * THEN the order numbers should be grouped by customer ID
+     * AND the database should be queried once.
+     */
+    @Test
+    void getOrderNumbers() {
+
+        // GIVEN a customer with two orders and a customer with one order
+        List<CustomerOrderNumber> rows = Arrays.asList(orderNumber(1, "A-1"), orderNumber(2, "B-1"),
+                orderNumber(1, "A-2"));
+
+        // Mock dependencies
+        doReturn(rows).when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(any());
+
+        // WHEN the order numbers of both customers are requested
+        Map<Integer, List<String>> orderNumbers = customerServiceSpy.getOrderNumbers(Arrays.asList(1, 2));
+
+        // THEN the order numbers should be grouped by customer ID
+        assertEquals(Arrays.asList("A-1", "A-2"), orderNumbers.get(1));
+        assertEquals(Collections.singletonList("B-1"), orderNumbers.get(2));
+
+        // AND the database should be queried once.
+        verify(customerRepositoryMock).findOrderNumbersByCustomerIdIn(Arrays.asList(1, 2));
+    }
+
+    /**
+     * GIVEN a customer without any orders
+     * WHEN the order numbers of the customer are requested
+     * THEN an empty list should be returned.
+     */
+    @Test
+    void getOrderNumbers_none() {
+
+        // GIVEN a customer without any orders
+        Integer customerId = podamFactory.manufacturePojo(Integer.class);
+
+        // WHEN the order numbers of the customer are requested
+        List<String> orderNumbers = customerServiceSpy.getOrderNumbers(customerId);
+
+        // THEN an empty list should be returned.
+        assertTrue(orderNumbers.isEmpty());
+    }
+
+
+    /**
+     * GIVEN more customers are in the system than are read from the database at a time
+     * WHEN all customers are exported
+     * THEN every customer should be handed to the consumer, in order
+     * AND the order numbers should be read once per chunk
+     * AND the persistence context should be cleared after every chunk.
+     */
+    @Test
+    void exportCustomers() {
+
+        // GIVEN more customers are in the system than are read from the database at a time
+        List<Customer> customers = new ArrayList<>();
+        for (int customerId = 1; customerId <= CustomerRepository.STREAM_FETCH_SIZE + 1; customerId++) {
+            Customer customer = new Customer();
+            customer.setCustomerId(customerId);
+            customers.add(customer);
+        }
+
+        // Mock dependencies
+        doReturn(customers.stream()).when(customerRepositoryMock).streamAll();
+        doReturn(Collections.singletonList(orderNumber(1, "A-1")))
+                .doReturn(Collections.emptyList())
+                .when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(any());
+
+        // WHEN all customers are exported
+        List<Customer> exported = new ArrayList<>();
+        List<List<String>> exportedOrderNumbers = new ArrayList<>();
+        customerServiceSpy.exportCustomers((customer, orderNumbers) -> {
+            exported.add(customer);
+            exportedOrderNumbers.add(orderNumbers);
+        });
+
+        // THEN every customer should be handed to the consumer, in order
+        assertEquals(customers, exported);
+        assertEquals(Collections.singletonList("A-1"), exportedOrderNumbers.get(0));
+        assertTrue(exportedOrderNumbers.get(customers.size() - 1).isEmpty());
+
+        // AND the order numbers should be read once per chunk
+        verify(customerRepositoryMock, times(2)).findOrderNumbersByCustomerIdIn(any());
+
+        // AND the persistence context should be cleared after every chunk.
+        verify(customerRepositoryMock, times(2)).clearPersistenceContext();
+    }
+
+    /**
+     * GIVEN customer records where some have an invalid ID or no name
+     * WHEN the customers are ingested
+     * THEN only the good customers should be inserted, in one chunk
+     * AND every bad record should be reported with its index and the reason
+     * AND a CREATED event should be published for each inserted customer.
+     */
+    @Test
+    void ingestCustomers_validation() {
+
+        // GIVEN customer records where some have an invalid ID or no name
+        List<Customer> customers = Arrays.asList(
+                newCustomer(1, "Ann"), newCustomer(-1, "Bad"), newCustomer(2, null), newCustomer(3, "Cy"));
+
+        // Mock dependencies
+        List<List<Integer>> insertedChunks = mockInsertAll(null);
+
+        // WHEN the customers are ingested
+        CustomerIngestResult result = customerServiceSpy.ingestCustomers(customers.iterator());
+
+        // THEN only the good customers should be inserted, in one chunk
+        assertEquals(Collections.singletonList(Arrays.asList(1, 3)), insertedChunks);
+        assertEquals(4, result.getReceived());
+        assertEquals(2, result.getCreated());
+
+        // AND every bad record should be reported with its index and the reason
+        assertEquals(2, result.getFailed());
+        assertEquals(Arrays.asList(
+                new CustomerIngestResult.Failure(1, -1, CustomerService.invalidCustomerIdMessage(-1)),
+                new CustomerIngestResult.Failure(2, 2, CustomerService.MISSING_FULL_NAME)),
+                result.getFailures());
+
+        // AND a CREATED event should be published for each inserted customer.
+        verify(eventPublisherMock).publishEvent(
+                new CustomerChangedEvent(1, CustomerChange.ChangeType.CREATED, null, "Ann"));
+        verify(eventPublisherMock).publishEvent(
+                new CustomerChangedEvent(3, CustomerChange.ChangeType.CREATED, null, "Cy"));
+        verifyNoMoreInteractions(eventPublisherMock);
+    }
+
+    /**
+     * GIVEN more customer records than fit in one chunk
+     * WHEN the customers are ingested
+     * THEN they should be inserted one chunk at a time.
+     */
+    @Test
+    void ingestCustomers_chunked() {
+
+        // GIVEN more customer records than fit in one chunk
+        List<Customer> customers = new ArrayList<>();
+        for (int customerId = 1; customerId <= CustomerService.INGEST_CHUNK_SIZE + 1; customerId++) {
+            customers.add(newCustomer(customerId, "Customer " + customerId));
+        }
+
+        // Mock dependencies
+        List<List<Integer>> insertedChunks = mockInsertAll(null);
+
+        // WHEN the customers are ingested
+        CustomerIngestResult result = customerServiceSpy.ingestCustomers(customers.iterator());
+
+        // THEN they should be inserted one chunk at a time.
+        assertEquals(2, insertedChunks.size());
+        assertEquals(CustomerService.INGEST_CHUNK_SIZE, insertedChunks.get(0).size());
+        assertEquals(1, insertedChunks.get(1).size());
+        assertEquals(customers.size(), result.getCreated());
+    }
+
+    /**
+     * GIVEN a chunk of customer records where one ID is already taken
+     * WHEN the customers are ingested
+     * THEN the chunk should be retried one customer at a time
+     * AND only the customer with the taken ID should be reported.
+     */
+    @Test
+    void ingestCustomers_duplicate() {
+
+        // GIVEN a chunk of customer records where one ID is already taken
+        List<Customer> customers = Arrays.asList(newCustomer(1, "Ann"), newCustomer(2, "Bo"), newCustomer(3, "Cy"));
+
+        // Mock dependencies
+        List<List<Integer>> insertedChunks = mockInsertAll(2);
+
+        // WHEN the customers are ingested
+        CustomerIngestResult result = customerServiceSpy.ingestCustomers(customers.iterator());
+
+        // THEN the chunk should be retried one customer at a time
+        assertEquals(Arrays.asList(Collections.singletonList(1), Collections.singletonList(3)), insertedChunks);
+        verify(customerRepositoryMock, times(4)).insertAll(any());
+
+        // AND only the customer with the taken ID should be reported.
+        assertEquals(2, result.getCreated());
+        assertEquals(Collections.singletonList(new CustomerIngestResult.Failure(1, 2, CustomerService.CUSTOMER_NOT_CREATED)),
+                result.getFailures());
+    }
+
+    /**
+     * GIVEN more bad customer records than are reported one by one
+     * WHEN the customers are ingested
+     * THEN all of them should be counted, but only the first ones listed.
+     */
+    @Test
+    void ingestCustomers_failureLimit() {
+
+        // GIVEN more bad customer records than are reported one by one
+        List<Customer> customers = Collections.nCopies(CustomerService.MAX_REPORTED_FAILURES + 1, newCustomer(0, "Zero"));
+
+        // WHEN the customers are ingested
+        CustomerIngestResult result = customerServiceSpy.ingestCustomers(customers.iterator());
+
+        // THEN all of them should be counted, but only the first ones listed.
+        assertEquals(CustomerService.MAX_REPORTED_FAILURES + 1, result.getFailed());
+        assertEquals(CustomerService.MAX_REPORTED_FAILURES, result.getFailures().size());
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN there are more customers after the requested ID than fit on a page
+     * WHEN a page of customers is requested
+     * THEN one customer more than the page size should be read
+     * AND the page should be full, with the last customer's ID as the continuation token.
+     */
+    @Test
+    void listCustomers_morePages() throws BusinessException {
+
+        // GIVEN there are more customers after the requested ID than fit on a page
+        List<CustomerSummary> summaries = Arrays.asList(summary(11), summary(12), summary(13));
+
+        // Mock dependencies
+        doReturn(summaries).when(customerRepositoryMock).findSummariesAfter(10, PageRequest.of(0, 3));
+
+        // WHEN a page of customers is requested
+        CustomerPage page = customerServiceSpy.listCustomers(10, 2);
+
+        // THEN one customer more than the page size should be read
+        verify(customerRepositoryMock).findSummariesAfter(10, PageRequest.of(0, 3));
+
+        // AND the page should be full, with the last customer's ID as the continuation token.
+        assertEquals(summaries.subList(0, 2), page.getCustomers());
+        assertEquals(12, page.getNext());
+    }
+
+    /**
+     * GIVEN no "after" or "limit", and fewer customers than fit on a page
+     * WHEN a page of customers is requested
+     * THEN the listing should start at the beginning with the default page size
+     * AND there should be no continuation token.
+     */
+    @Test
+    void listCustomers_lastPage() throws BusinessException {
+
+        // GIVEN no "after" or "limit", and fewer customers than fit on a page
+        List<CustomerSummary> summaries = Arrays.asList(summary(1), summary(2));
+
+        // Mock dependencies
+        doReturn(summaries).when(customerRepositoryMock)
+                .findSummariesAfter(0, PageRequest.of(0, CustomerService.DEFAULT_PAGE_SIZE + 1));
+
+        // WHEN a page of customers is requested
+        CustomerPage page = customerServiceSpy.listCustomers(null, null);
+
+        // THEN the listing should start at the beginning with the default page size
+        assertEquals(summaries, page.getCustomers());
+
+        // AND there should be no continuation token.
+        assertNull(page.getNext());
+    }
+
+    /**
+     * GIVEN a negative "after", or a "limit" outside of the allowed range
+     * WHEN a page of customers is requested
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @ParameterizedTest
+    @CsvSource({"-1, 10", "0, 0", "0, 1001"})
+    void listCustomers_invalid(Integer after, Integer limit) {
+        assertThrows(BusinessException.class, () -> customerServiceSpy.listCustomers(after, limit));
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer has more orders after the requested order number than fit on a page
+     * WHEN a page of the customer's orders is requested
+     * THEN one order more than the page size should be read
+     * AND the page should be full, with the last order number as the continuation token.
+     */
+    @Test
+    void listOrders_morePages() throws BusinessException {
+
+        // GIVEN a customer has more orders after the requested order number than fit on a page
+        List<String> orderNumbers = Arrays.asList("A-2", "A-3", "A-4");
+
+        // Mock dependencies
+        doReturn(orderNumbers).when(orderRepositoryMock).findOrderNumbersAfter(7, "A-1", PageRequest.of(0, 3));
+
+        // WHEN a page of the customer's orders is requested
+        OrderPage page = customerServiceSpy.listOrders(7, "A-1", 2);
+
+        // THEN one order more than the page size should be read
+        // AND the page should be full, with the last order number as the continuation token.
+        assertEquals(Arrays.asList("A-2", "A-3"), page.getOrderNumbers());
+        assertEquals("A-3", page.getNext());
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer ID that has no orders
+     * WHEN the first page of its orders is requested
+     * THEN an empty last page should be returned if the customer exists
+     * OR null if it doesn't
+     * AND whether it exists should have been read from the database, since it isn't in the snapshot or the cache.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void listOrders_noOrders(boolean customerExists) throws BusinessException {
+
+        // Mock dependencies
+        doReturn(Collections.emptyList()).when(orderRepositoryMock)
+                .findOrderNumbersAfter(7, "", PageRequest.of(0, CustomerService.DEFAULT_PAGE_SIZE + 1));
+        doReturn(customerExists ? Optional.of(0L) : Optional.empty()).when(customerRepositoryMock)
+                .findVersionByCustomerId(7);
+
+        // WHEN the first page of its orders is requested
+        OrderPage page = customerServiceSpy.listOrders(7, null, null);
+
+        // THEN an empty last page should be returned if the customer exists, or null if it doesn't.
+        if (customerExists) {
+            assertEquals(new OrderPage(Collections.emptyList(), null), page);
+        } else {
+            assertNull(page);
+        }
+
+        // AND whether it exists should have been read from the database, since it isn't in the snapshot or the cache.
+        verify(customerSnapshotMock).getVersion(7);
+        verify(customerCacheMock).lookup(7);
+        verify(customerRepositoryMock).findVersionByCustomerId(7);
+    }
+
+    /**
+     * GIVEN an invalid customer ID, or a "limit" outside of the allowed range
+     * WHEN a page of orders is requested
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @ParameterizedTest
+    @CsvSource({"0, 10", "7, 0", "7, 1001"})
+    void listOrders_invalid(Integer customerId, Integer limit) {
+        assertThrows(BusinessException.class, () -> customerServiceSpy.listOrders(customerId, null, limit));
+        verifyNoInteractions(orderRepositoryMock);
+    }
+
+    /**
+     * GIVEN three customers with a given name, in any case
+     * WHEN an exact search for that name is made, two at a time, and then the next page is requested with the cursor
+     * THEN the name should be searched for in lower case, without surrounding spaces
+     * AND the second page should start after the last customer of the first page.
+     */
+    @Test
+    void searchCustomers_exactFullName() throws BusinessException {
+
+        // GIVEN three customers with a given name, in any case
+        List<CustomerMatch> firstRead = Arrays.asList(match(4, "Arthur Dent"), match(8, "ARTHUR DENT"),
+                match(15, "arthur dent"));
+        List<CustomerMatch> secondRead = Collections.singletonList(match(15, "arthur dent"));
+
+        // Mock dependencies
+        doReturn(firstRead).when(customerRepositoryMock)
+                .findMatchesByFullName("arthur dent", Integer.MIN_VALUE, PageRequest.of(0, 3));
+        doReturn(secondRead).when(customerRepositoryMock)
+                .findMatchesByFullName("arthur dent", 8, PageRequest.of(0, 3));
+
+        // WHEN an exact search for that name is made, two at a time, and then the next page is requested with the cursor
+        CustomerSearchPage firstPage = customerServiceSpy.searchCustomers(" Arthur DENT ", null, null, null, 2);
+        CustomerSearchPage secondPage = customerServiceSpy.searchCustomers(" Arthur DENT ", null, "exact",
+                firstPage.getNext(), 2);
+
+        // THEN the name should be searched for in lower case, without surrounding spaces
+        assertEquals(firstRead.subList(0, 2), firstPage.getCustomers());
+        assertNotNull(firstPage.getNext());
+
+        // AND the second page should start after the last customer of the first page.
+        assertEquals(secondRead, secondPage.getCustomers());
+        assertNull(secondPage.getNext());
+    }
+
+    /**
+     * GIVEN two customers whose street address starts with a prefix that contains a LIKE wildcard
+     * WHEN a prefix search for their street address is made, one at a time, and then the next page is requested
+     * THEN the wildcard should be escaped so that it only matches itself
+     * AND the second page should start after the lower-case street address and ID of the first page's customer.
+     */
+    @Test
+    void searchCustomers_streetAddressPrefix() throws BusinessException {
+
+        // GIVEN two customers whose street address starts with a prefix that contains a LIKE wildcard
+        List<CustomerMatch> firstRead = Arrays.asList(new CustomerMatch(5, "Ford Prefect", "12_ Elm St"),
+                new CustomerMatch(3, "Zaphod Beeblebrox", "12_ Elm Street"));
+
+        // Mock dependencies
+        doReturn(firstRead).when(customerRepositoryMock)
+                .findMatchesByStreetAddressLike("12!_ elm%", "", Integer.MIN_VALUE, PageRequest.of(0, 2));
+        doReturn(firstRead.subList(1, 2)).when(customerRepositoryMock)
+                .findMatchesByStreetAddressLike("12!_ elm%", "12_ elm st", 5, PageRequest.of(0, 2));
+
+        // WHEN a prefix search for their street address is made, one at a time, and then the next page is requested
+        CustomerSearchPage firstPage = customerServiceSpy.searchCustomers(null, "12_ Elm", "prefix", null, 1);
+        CustomerSearchPage secondPage = customerServiceSpy.searchCustomers(null, "12_ Elm", "prefix",
+                firstPage.getNext(), 1);
+
+        // THEN the wildcard should be escaped so that it only matches itself
+        assertEquals(firstRead.subList(0, 1), firstPage.getCustomers());
+
+        // AND the second page should start after the lower-case street address and ID of the first page's customer.
+        assertEquals(firstRead.subList(1, 2), secondPage.getCustomers());
+        assertNull(secondPage.getNext());
+    }
+
+    /**
+     * GIVEN no name or street address, both, a blank one, an unknown kind of match, or a "limit" out of range
+     * WHEN a customer search is made
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @ParameterizedTest
+    @CsvSource({",,,", "Arthur, Main Street,,", "'  ',,,", "Arthur,, fuzzy,", "Arthur,,, 0", "Arthur,,, 1001"})
+    void searchCustomers_invalid(String fullName, String streetAddress, String match, Integer limit) {
+        assertThrows(BusinessException.class,
+                () -> customerServiceSpy.searchCustomers(fullName, streetAddress, match, null, limit));
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN an "after" cursor that no search returned: not Base64, no separator, or no customer ID
+     * WHEN a customer search is made with it
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"not a cursor", "YWJj", "eDp5"})
+    void searchCustomers_invalidCursor(String after) {
+        assertThrows(BusinessException.class,
+                () -> customerServiceSpy.searchCustomers("Arthur", null, null, after, null));
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 3
+     * WHEN it is replaced, based on version 3
+     * THEN its full name should be changed and sent to the database right away
+     * AND an UPDATED event should be published.
+     */
+    @Test
+    void replaceCustomer_success() throws BusinessException {
+
+        // GIVEN a customer is in the system at version 3
+        Customer customer = newCustomer(1, "Ann");
+        customer.setVersion(3L);
+        doReturn(Optional.of(customer)).when(customerRepositoryMock).findById(1);
+
+        // WHEN it is replaced, based on version 3
+        Customer actual = customerServiceSpy.replaceCustomer(1, 3L, newCustomer(null, "Anne"));
+
+        // THEN its full name should be changed and sent to the database right away
+        assertEquals("Anne", actual.getFullName());
+        verify(customerRepositoryMock).flush();
+
+        // AND an UPDATED event should be published.
+        verify(eventPublisherMock).publishEvent(
+                new CustomerChangedEvent(1, CustomerChange.ChangeType.UPDATED, 3L, "Anne"));
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 4
+     * WHEN it is replaced, based on version 3
+     * THEN a PreconditionFailedException should be thrown, and nothing should be changed or published.
+     */
+    @Test
+    void replaceCustomer_staleVersion() {
+
+        // GIVEN a customer is in the system at version 4
+        Customer customer = newCustomer(1, "Ann");
+        customer.setVersion(4L);
+        doReturn(Optional.of(customer)).when(customerRepositoryMock).findById(1);
+
+        // WHEN it is replaced, based on version 3
+        // THEN a PreconditionFailedException should be thrown, and nothing should be changed or published.
+        assertThrows(PreconditionFailedException.class,
+                () -> customerServiceSpy.replaceCustomer(1, 3L, newCustomer(1, "Anne")));
+        assertEquals("Ann", customer.getFullName());
+        verify(customerRepositoryMock, never()).flush();
+        verifyNoInteractions(eventPublisherMock);
+    }
+
+    /**
+     * GIVEN a change that doesn't say which version it is based on
+     * WHEN the customer is replaced, patched or deleted
+     * THEN a PreconditionRequiredException should be thrown, without reading the database.
+     */
+    @Test
+    void changeCustomer_noExpectedVersion() {
+        assertThrows(PreconditionRequiredException.class,
+                () -> customerServiceSpy.replaceCustomer(1, null, newCustomer(1, "Anne")));
+        assertThrows(PreconditionRequiredException.class,
+                () -> customerServiceSpy.patchCustomer(1, null, newCustomer(1, "Anne")));
+        assertThrows(PreconditionRequiredException.class, () -> customerServiceSpy.deleteCustomer(1, null));
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a replacement without a full name, or with a different customer ID than the one being replaced
+     * WHEN the customer is replaced
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @Test
+    void replaceCustomer_invalid() {
+        assertThrows(BusinessException.class, () -> customerServiceSpy.replaceCustomer(1, 0L, newCustomer(1, null)));
+        assertThrows(BusinessException.class, () -> customerServiceSpy.replaceCustomer(1, 0L, newCustomer(2, "Bo")));
+        verifyNoInteractions(customerRepositoryMock);
+    }
+
+    /**
+     * GIVEN a customer is in the system
+     * WHEN it is patched without a new full name
+     * THEN it should be returned as it is, and nothing should be sent to the database or published.
+     */
+    @Test
+    void patchCustomer_nothingToChange() throws BusinessException {
+
+        // GIVEN a customer is in the system
+        Customer customer = newCustomer(1, "Ann");
+        customer.setVersion(0L);
+        doReturn(Optional.of(customer)).when(customerRepositoryMock).findById(1);
+
+        // WHEN it is patched without a new full name
+        Customer actual = customerServiceSpy.patchCustomer(1, 0L, newCustomer(null, null));
+
+        // THEN it should be returned as it is, and nothing should be sent to the database or published.
+        assertSame(customer, actual);
+        verify(customerRepositoryMock, never()).flush();
+        verifyNoInteractions(eventPublisherMock);
+    }
+
+    /**
+     * GIVEN no customer with a given ID is in the system
+     * WHEN it is patched or deleted
+     * THEN null (or false) should be returned.
+     */
+    @Test
+    void changeCustomer_notFound() throws BusinessException {
+        doReturn(Optional.empty()).when(customerRepositoryMock).findById(1);
+        assertNull(customerServiceSpy.patchCustomer(1, 0L, newCustomer(1, "Anne")));
+        assertFalse(customerServiceSpy.deleteCustomer(1, 0L));
+        verifyNoInteractions(eventPublisherMock);
+    }
+
+    /**
+     * GIVEN a customer is in the system at version 2
+     * WHEN it is deleted, based on version 2
+     * THEN it should be deleted right away
+     * AND a DELETED event should be published.
+     */
+    @Test
+    void deleteCustomer_success() throws BusinessException {
+
+        // GIVEN a customer is in the system at version 2
+        Customer customer = newCustomer(1, "Ann");
+        customer.setVersion(2L);
+        doReturn(Optional.of(customer)).when(customerRepositoryMock).findById(1);
+
+        // WHEN it is deleted, based on version 2
+        assertTrue(customerServiceSpy.deleteCustomer(1, 2L));
+
+        // THEN it should be deleted right away
+        verify(customerRepositoryMock).delete(customer);
+        verify(customerRepositoryMock).flush();
+
+        // AND a DELETED event should be published.
+        verify(eventPublisherMock).publishEvent(
+                new CustomerChangedEvent(1, CustomerChange.ChangeType.DELETED, 2L, null));
+    }
+
+    /**
+     * GIVEN a customer was changed
+     * WHEN the change event is heard
+     * THEN everything cached for that customer, and only that customer, should be forgotten.
+     */
+    @Test
+    void onCustomerChanged() {
+        customerServiceSpy.onCustomerChanged(
+                new CustomerChangedEvent(7, CustomerChange.ChangeType.UPDATED, 1L, "Ann"));
+        verify(customerSnapshotMock).evict(7);
+        verify(customerLoadCoalescerSpy).forget(7);
+        verify(customerCacheMock).evict(7);
+        verify(customerCacheMock, never()).evictAll();
+    }
+
+    /**
+     * GIVEN a customer was changed in a transaction
+     * WHEN the change event is heard, just before the transaction commits
+     * THEN the change should be written to the outbox, without a sequence number.
+     */
+    @Test
+    void recordCustomerChange() {
+
+        // WHEN the change event is heard, just before the transaction commits
+        customerServiceSpy.recordCustomerChange(
+                new CustomerChangedEvent(7, CustomerChange.ChangeType.UPDATED, 2L, "Ann"));
+
+        // THEN the change should be written to the outbox, without a sequence number.
+        ArgumentCaptor<CustomerChange> changeCaptor = ArgumentCaptor.forClass(CustomerChange.class);
+        verify(customerChangeRepositoryMock).save(changeCaptor.capture());
+        CustomerChange change = changeCaptor.getValue();
+        assertEquals(Integer.valueOf(7), change.getCustomerId());
+        assertEquals(CustomerChange.ChangeType.UPDATED, change.getChangeType());
+        assertEquals(Long.valueOf(2L), change.getVersion());
+        assertEquals("Ann", change.getFullName());
+        assertNotNull(change.getChangedAt());
+        assertNull(change.getSequence());
+    }
+
+    /**
+     * GIVEN changes 42 and 43 have been published
+     * WHEN the changes since 41 are requested
+     * THEN both should be returned, and "next" should be the sequence of the last one
+     * AND no check for purged changes should be made, because the page starts right after 41.
+     */
+    @Test
+    void getChanges() throws BusinessException {
+
+        // GIVEN changes 42 and 43 have been published
+        List<CustomerChange> changes = Arrays.asList(newChange(42L), newChange(43L));
+        doReturn(changes).when(customerChangeRepositoryMock).findPublishedAfter(41L, PageRequest.of(0, 2));
+
+        // WHEN the changes since 41 are requested
+        CustomerChangePage page = customerServiceSpy.getChanges(41L, 2);
+
+        // THEN both should be returned, and "next" should be the sequence of the last one
+        assertEquals(changes, page.getChanges());
+        assertEquals(43L, page.getNext());
+
+        // AND no check for purged changes should be made, because the page starts right after 41.
+        verify(customerChangeRepositoryMock, never()).findFirstSequence();
+    }
+
+    /**
+     * GIVEN the changes up to 99 have been purged, and change 100 is the only one left
+     * WHEN the changes since 43, and since 100, are requested
+     * THEN the first request should be told that the changes it needs are gone
+     * AND the second should get an empty page, with "next" still at 100.
+     */
+    @Test
+    void getChanges_purged() throws BusinessException {
+
+        // GIVEN the changes up to 99 have been purged, and change 100 is the only one left
+        doReturn(Collections.singletonList(newChange(100L))).when(customerChangeRepositoryMock)
+                .findPublishedAfter(43L, PageRequest.of(0, CustomerService.DEFAULT_PAGE_SIZE));
+        doReturn(Collections.emptyList()).when(customerChangeRepositoryMock)
+                .findPublishedAfter(100L, PageRequest.of(0, CustomerService.DEFAULT_PAGE_SIZE));
+        doReturn(Optional.of(100L)).when(customerChangeRepositoryMock).findFirstSequence();
+
+        // WHEN the changes since 43, and since 100, are requested
+        // THEN the first request should be told that the changes it needs are gone
+        assertThrows(ChangesExpiredException.class, () -> customerServiceSpy.getChanges(43L, null));
+
+        // AND the second should get an empty page, with "next" still at 100.
+        CustomerChangePage page = customerServiceSpy.getChanges(100L, null);
+        assertTrue(page.getChanges().isEmpty());
+        assertEquals(100L, page.getNext());
+    }
+
+    /**
+     * GIVEN a negative "since", or a "limit" that is out of range
+     * WHEN changes are requested
+     * THEN a BusinessException should be thrown, without reading the database.
+     */
+    @ParameterizedTest
+    @CsvSource({"-1, 10", "0, 0", "0, 1001"})
+    void getChanges_invalid(Long since, Integer limit) {
+        assertThrows(BusinessException.class, () -> customerServiceSpy.getChanges(since, limit));
+        verifyNoInteractions(customerChangeRepositoryMock);
+    }
+
+    /**
+     * GIVEN text containing the LIKE wildcards and the escape character
+     * WHEN it is escaped for a LIKE pattern
+     * THEN each of them should be preceded by the escape character.
+     */
+    @Test
+    void escapeLikePattern() {
+        assertEquals("100!% !_!!a", CustomerService.escapeLikePattern("100% _!a"));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static CustomerMatch match(Integer customerId, String fullName) {
+        return new CustomerMatch(customerId, fullName, customerId + " Main Street");
+    }
+
+    private static CustomerSummary summary(Integer customerId) {
+        return new CustomerSummary(customerId, "Customer " + customerId);
+    }
+
+    private static Customer newCustomer(Integer customerId, String fullName) {
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        customer.setFullName(fullName);
+        return customer;
+    }
+
+    /**
+     * Make CustomerRepository.insertAll() remember the IDs of every chunk that it inserts. A chunk that contains the
+     * given "taken" customer ID fails like a duplicate key would, and isn't remembered. Returns the remembered chunks.
+     * <p>
+     * DEVELOPER NOTE: The service re-uses its chunk collection, so a Mockito ArgumentCaptor would only see it empty.
+     * Each chunk is inserted in a transaction of its own, so the TransactionTemplate mock runs what it is given.
+     */
+    private List<List<Integer>> mockInsertAll(Integer takenCustomerId) {
+        List<List<Integer>> insertedChunks = new ArrayList<>();
+        doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplateMock).execute(any());
+        doAnswer(invocation -> {
+            List<Integer> customerIds = new ArrayList<>();
+            for (Customer customer : invocation.<Collection<Customer>>getArgument(0)) {
+                customerIds.add(customer.getCustomerId());
+            }
+            if (customerIds.contains(takenCustomerId)) {
+                throw new DataIntegrityViolationException("Unique index or primary key violation");
+            }
+            insertedChunks.add(customerIds);
+            return null;
+        }).when(customerRepositoryMock).insertAll(any());
+        return insertedChunks;
+    }
+
+    private static CustomerChange newChange(Long sequence) {
+        CustomerChange change = new CustomerChange();
+        change.setSequence(sequence);
+        change.setCustomerId(sequence.intValue());
+        change.setChangeType(CustomerChange.ChangeType.UPDATED);
+        return change;
+    }
+
+    private static CustomerOrderNumber orderNumber(Integer customerId, String orderNumber) {
+        return new CustomerOrderNumber() {
+            @Override
+            public Integer getCustomerId() {
+                return customerId;
+            }
+
+            @Override
+            public String getOrderNumber() {
+                return orderNumber;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DEVELOPER NOTE: The snapshot is tested for real, on top of a mocked repository. Nothing is loaded in the background;
+ * the tests call refresh() themselves.
+ */
+@ExtendWith(MockitoExtension.class)
+class CustomerSnapshotTest extends BaseTest {
+
+    // ------------------------------------------------- DEPENDENCIES --------------------------------------------------
+
+    @Mock
+    private CustomerRepository customerRepositoryMock;
+
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    /**
+     * Class under test
+     */
+    private CustomerSnapshot customerSnapshot;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    @BeforeEach
+    public void beforeEach() {
+        super.setup();
+
+        AppConfiguration.CustomerSnapshotProperties properties = new AppConfiguration.CustomerSnapshotProperties();
+        properties.setEnabled(true);
+        customerSnapshot = new CustomerSnapshot(customerRepositoryMock, properties);
+    }
+
+    /**
+     * GIVEN a snapshot that hasn't been loaded yet
+     * WHEN a customer is read from it
+     * THEN nothing should be known about the customer.
+     */
+    @Test
+    void getCustomer_notLoaded() {
+        assertNull(customerSnapshot.getCustomer(1));
+        assertNull(customerSnapshot.getVersion(1));
+        assertNull(customerSnapshot.getOrderNumbers(1));
+        assertEquals(0, customerSnapshot.size());
+    }
+
+    /**
+     * GIVEN two customers in the database, one with orders and a name that isn't plain ASCII, and one with no street
+     * address and no orders
+     * WHEN the snapshot is loaded and the customers are read from it
+     * THEN every property should be read back as it was loaded
+     * AND a customer that isn't in the database should not be in the snapshot either.
+     */
+    @Test
+    void refresh_loadsEveryCustomer() {
+
+        // GIVEN two customers in the database, one with orders and a name that isn't plain ASCII, and one with no
+        // street address and no orders
+        doReturn(Arrays.asList(new CustomerSnapshotRow(3, "Zoë Ångström", "1 Main Street", 7L),
+                new CustomerSnapshotRow(8, "Arthur Dent", null, 0L)))
+                .when(customerRepositoryMock).findSnapshotRowsAfter(0, PageRequest.of(0, CustomerSnapshot.LOAD_PAGE_SIZE));
+        doReturn(Arrays.asList(orderNumber(3, "A-1"), orderNumber(3, "A-2")))
+                .when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(Arrays.asList(3, 8));
+
+        // WHEN the snapshot is loaded and the customers are read from it
+        customerSnapshot.refresh();
+        Customer first = customerSnapshot.getCustomer(3);
+        Customer second = customerSnapshot.getCustomer(8);
+
+        // THEN every property should be read back as it was loaded
+        assertEquals(2, customerSnapshot.size());
+        assertEquals(3, first.getCustomerId());
+        assertEquals("Zoë Ångström", first.getFullName());
+        assertEquals("1 Main Street", first.getStreetAddress());
+        assertEquals(7L, first.getVersion());
+        assertEquals(7L, customerSnapshot.getVersion(3));
+        assertEquals(Arrays.asList("A-1", "A-2"), customerSnapshot.getOrderNumbers(3));
+        assertEquals("Arthur Dent", second.getFullName());
+        assertNull(second.getStreetAddress());
+        assertEquals(Collections.emptyList(), customerSnapshot.getOrderNumbers(8));
+
+        // AND a customer that isn't in the database should not be in the snapshot either.
+        assertNull(customerSnapshot.getCustomer(5));
+    }
+
+    /**
+     * GIVEN more customers than are read per page
+     * WHEN the snapshot is loaded
+     * THEN the database should be read a page at a time, each page starting after the last one
+     * AND every customer should be in the snapshot.
+     */
+    @Test
+    void refresh_readsPages() {
+
+        // GIVEN more customers than are read per page
+        int pageSize = CustomerSnapshot.LOAD_PAGE_SIZE;
+        List<CustomerSnapshotRow> firstPage = new ArrayList<>(pageSize);
+        for (int customerId = 1; customerId <= pageSize; customerId++) {
+            firstPage.add(new CustomerSnapshotRow(customerId, "Customer " + customerId, "Street", 0L));
+        }
+        doReturn(firstPage).when(customerRepositoryMock).findSnapshotRowsAfter(0, PageRequest.of(0, pageSize));
+        doReturn(Collections.singletonList(new CustomerSnapshotRow(pageSize + 1, "Last", "Street", 0L)))
+                .when(customerRepositoryMock).findSnapshotRowsAfter(pageSize, PageRequest.of(0, pageSize));
+        doReturn(Collections.emptyList()).when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(anyCollection());
+
+        // WHEN the snapshot is loaded
+        customerSnapshot.refresh();
+
+        // THEN the database should be read a page at a time, each page starting after the last one
+        verify(customerRepositoryMock, times(2)).findSnapshotRowsAfter(anyInt(), any());
+
+        // AND every customer should be in the snapshot.
+        assertEquals(pageSize + 1, customerSnapshot.size());
+        assertEquals("Customer 1", customerSnapshot.getCustomer(1).getFullName());
+        assertEquals("Last", customerSnapshot.getCustomer(pageSize + 1).getFullName());
+    }
+
+    /**
+     * GIVEN a loaded snapshot
+     * WHEN a customer is evicted
+     * THEN the snapshot should not have that customer anymore
+     * AND should have it again once it has been reloaded.
+     */
+    @Test
+    void evict() {
+
+        // GIVEN a loaded snapshot
+        doReturn(Collections.singletonList(new CustomerSnapshotRow(3, "Arthur Dent", "Street", 0L)))
+                .when(customerRepositoryMock).findSnapshotRowsAfter(0, PageRequest.of(0, CustomerSnapshot.LOAD_PAGE_SIZE));
+        doReturn(Collections.emptyList()).when(customerRepositoryMock).findOrderNumbersByCustomerIdIn(anyCollection());
+        customerSnapshot.refresh();
+
+        // WHEN a customer is evicted
+        customerSnapshot.evict(3);
+
+        // THEN the snapshot should not have that customer anymore
+        assertNull(customerSnapshot.getCustomer(3));
+        assertNull(customerSnapshot.getVersion(3));
+
+        // AND should have it again once it has been reloaded.
+        customerSnapshot.refresh();
+        assertNotNull(customerSnapshot.getCustomer(3));
+    }
+
+    /**
+     * GIVEN a snapshot that isn't enabled
+     * WHEN customers are evicted
+     * THEN nothing should be remembered, since no reload will ever forget it.
+     */
+    @Test
+    void evict_disabled() {
+        AppConfiguration.CustomerSnapshotProperties properties = new AppConfiguration.CustomerSnapshotProperties();
+        customerSnapshot = new CustomerSnapshot(customerRepositoryMock, properties);
+        for (int customerId = 1; customerId <= 3; customerId++) {
+            customerSnapshot.evict(customerId);
+        }
+        assertEquals(0, customerSnapshot.pendingEvictions());
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private static CustomerOrderNumber orderNumber(Integer customerId, String orderNumber) {
+        return new CustomerOrderNumber() {
+            @Override
+            public Integer getCustomerId() {
+                return customerId;
+            }
+
+            @Override
+            public String getOrderNumber() {
+                return orderNumber;
+            }
+        };
+    }
+
+}
@@ -1,7 +1,14 @@
 package com.daugherty.demo.customer;
 
 import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.customer.contract.CustomerBulkFailureDTO;
+import com.daugherty.demo.customer.contract.CustomerBulkResponseDTO;
 import com.daugherty.demo.customer.contract.CustomerDTO;
+import com.daugherty.demo.customer.contract.CustomerLookupDTO;
+import com.daugherty.demo.customer.contract.CustomerMatchDTO;
+import com.daugherty.demo.customer.contract.CustomerPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSearchPageDTO;
+import com.daugherty.demo.customer.contract.CustomerSummaryDTO;
 import com.daugherty.demo.customer.entity.Customer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,6 +16,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -102,7 +113,7 @@ public class CustomerTranslatorTest extends BaseTest {
         Customer customer = new Customer();
 
         // WHEN the Customer is translated to a CustomerDTO contract
-        CustomerDTO customerDto = customerTranslatorSpy.toContract(customer);
+        CustomerDTO customerDto = customerTranslatorSpy.toContract(customer, Collections.emptyList());
 
         // THEN a CustomerDTO contract should be returned
         assertNotNull(customerDto);
@@ -111,6 +122,7 @@ public class CustomerTranslatorTest extends BaseTest {
         assertNull(customerDto.getFullName());
         assertNull(customerDto.getId());
         assertNull(customerDto.getLastReadTimestamp());
+        assertTrue(customerDto.getOrderNumbers().isEmpty());
     }
 
     /**
@@ -126,9 +138,10 @@ public class CustomerTranslatorTest extends BaseTest {
 
         // GIVEN a fully populated Customer
         Customer customer = podamFactory.manufacturePojo(Customer.class);
+        List<String> orderNumbers = Arrays.asList("A-1", "A-2");
 
         // WHEN the Customer is translated to a CustomerDTO contract
-        CustomerDTO customerDto = customerTranslatorSpy.toContract(customer);
+        CustomerDTO customerDto = customerTranslatorSpy.toContract(customer, orderNumbers);
 
         // THEN a CustomerDTO contract should be returned
         assertNotNull(customerDto);
@@ -137,6 +150,102 @@ public class CustomerTranslatorTest extends BaseTest {
         assertEquals(customer.getFullName(), customerDto.getFullName());
         assertEquals(customer.getCustomerId(), customerDto.getId());
         assertEquals(customer.getLastReadTimestamp(), customerDto.getLastReadTimestamp());
+        assertEquals(orderNumbers, customerDto.getOrderNumbers());
+    }
+
+    /**
+     * GIVEN a found CustomerLookup and a not-found CustomerLookup
+     * WHEN the CustomerLookups are translated to CustomerLookupDTO contracts
+     * THEN the ID and status should be mapped
+     * AND the customer should only be present for the found lookup.
+     */
+    @Test
+    void toContract_lookupTranslation() {
+
+        // GIVEN a found CustomerLookup and a not-found CustomerLookup
+        Customer customer = podamFactory.manufacturePojo(Customer.class);
+        CustomerLookup found = CustomerLookup.found(customer, Collections.singletonList("A-1"));
+        CustomerLookup notFound = CustomerLookup.notFound(customer.getCustomerId());
+
+        // WHEN the CustomerLookups are translated to CustomerLookupDTO contracts
+        CustomerLookupDTO foundDto = customerTranslatorSpy.toContract(found);
+        CustomerLookupDTO notFoundDto = customerTranslatorSpy.toContract(notFound);
+
+        // THEN the ID and status should be mapped
+        assertEquals(customer.getCustomerId(), foundDto.getId());
+        assertEquals("FOUND", foundDto.getStatus());
+        assertEquals(customer.getCustomerId(), notFoundDto.getId());
+        assertEquals("NOT_FOUND", notFoundDto.getStatus());
+
+        // AND the customer should only be present for the found lookup.
+        assertEquals(customer.getFullName(), foundDto.getCustomer().getFullName());
+        assertEquals(Collections.singletonList("A-1"), foundDto.getCustomer().getOrderNumbers());
+        assertNull(notFoundDto.getCustomer());
+    }
+
+    /**
+     * GIVEN the result of a bulk ingest with a failure
+     * WHEN the result is translated to a CustomerBulkResponseDTO contract
+     * THEN the counts and the failure should be mapped.
+     */
+    @Test
+    void toContract_ingestResultTranslation() {
+
+        // GIVEN the result of a bulk ingest with a failure
+        CustomerIngestResult.Failure failure = new CustomerIngestResult.Failure(7, -1, "Invalid customer ID [-1]");
+        CustomerIngestResult ingestResult = new CustomerIngestResult(10, 9, 1, Collections.singletonList(failure));
+
+        // WHEN the result is translated to a CustomerBulkResponseDTO contract
+        CustomerBulkResponseDTO response = customerTranslatorSpy.toContract(ingestResult);
+
+        // THEN the counts and the failure should be mapped.
+        assertEquals(10L, response.getReceived());
+        assertEquals(9L, response.getCreated());
+        assertEquals(1L, response.getFailed());
+        assertEquals(Collections.singletonList(CustomerBulkFailureDTO.builder()
+                .index(7L).id(-1).message("Invalid customer ID [-1]").build()), response.getFailures());
+    }
+
+    /**
+     * GIVEN a page of customer summaries with a continuation token
+     * WHEN the page is translated to a CustomerPageDTO contract
+     * THEN every summary and the continuation token should be mapped.
+     */
+    @Test
+    void toContract_pageTranslation() {
+
+        // GIVEN a page of customer summaries with a continuation token
+        CustomerPage page = new CustomerPage(Collections.singletonList(new CustomerSummary(42, "Arthur Dent")), 42);
+
+        // WHEN the page is translated to a CustomerPageDTO contract
+        CustomerPageDTO pageDto = customerTranslatorSpy.toContract(page);
+
+        // THEN every summary and the continuation token should be mapped.
+        assertEquals(Collections.singletonList(CustomerSummaryDTO.builder().id(42).fullName("Arthur Dent").build()),
+                pageDto.getCustomers());
+        assertEquals(42, pageDto.getNext());
+    }
+
+    /**
+     * GIVEN a page of customer search results with a cursor
+     * WHEN the page is translated to a CustomerSearchPageDTO contract
+     * THEN every match and the cursor should be mapped.
+     */
+    @Test
+    void toContract_searchPageTranslation() {
+
+        // GIVEN a page of customer search results with a cursor
+        CustomerSearchPage page = new CustomerSearchPage(
+                Collections.singletonList(new CustomerMatch(42, "Arthur Dent", "155 Country Lane")), "NDI6YXJ0aHVy");
+
+        // WHEN the page is translated to a CustomerSearchPageDTO contract
+        CustomerSearchPageDTO pageDto = customerTranslatorSpy.toContract(page);
+
+        // THEN every match and the cursor should be mapped.
+        assertEquals(Collections.singletonList(CustomerMatchDTO.builder()
+                        .id(42).fullName("Arthur Dent").streetAddress("155 Country Lane").build()),
+                pageDto.getCustomers());
+        assertEquals("NDI6YXJ0aHVy", pageDto.getNext());
     }
 
 }
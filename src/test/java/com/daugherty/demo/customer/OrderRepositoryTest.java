@@ -0,0 +1,179 @@
+package com.daugherty.demo.customer;
+
+import com.daugherty.demo.BaseTest;
+import com.daugherty.demo.config.AppConfiguration;
+import com.daugherty.demo.customer.entity.Customer;
+import com.daugherty.demo.customer.entity.CustomerChange;
+import com.daugherty.demo.customer.entity.Order;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DEVELOPER NOTE: See CustomerRepositoryTest for how @DataJpaTest works. Like CustomerQueryCountTest, the @Import adds
+ * the real CustomerService (and its dependencies) to the test's Spring context, so that the CustomerChangedEvents that
+ * insertAll() publishes are written to the outbox.
+ */
+@DataJpaTest
+@Import({CustomerService.class, CustomerCache.class, CustomerLookupExecutor.class, CustomerSnapshot.class,
+        CustomerLoadCoalescer.class, AppConfiguration.class})
+class OrderRepositoryTest extends BaseTest {
+
+    // ----------------------------------------------- MEMBER VARIABLES ------------------------------------------------
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerChangeRepository customerChangeRepository;
+
+    /**
+     * Class under test
+     */
+    @Autowired
+    private OrderRepository orderRepository;
+
+
+    // ------------------------------------------------- TEST METHODS --------------------------------------------------
+
+    /**
+     * GIVEN two Customers with Orders are in the database
+     * WHEN the first Customer's order numbers after a given one are read, two at a time
+     * THEN only that Customer's next two order numbers should be returned, in order.
+     */
+    @Test
+    void findOrderNumbersAfter() {
+
+        // GIVEN two Customers with Orders are in the database
+        Customer first = persistCustomer(1);
+        Customer second = persistCustomer(2);
+        for (String orderNumber : Arrays.asList("A-4", "A-1", "A-3", "A-2")) {
+            persistOrder(orderNumber, first);
+        }
+        persistOrder("A-0", second);
+        persistOrder("A-5", second);
+        entityManager.flush();
+
+        // WHEN the first Customer's order numbers after a given one are read, two at a time
+        // THEN only that Customer's next two order numbers should be returned, in order.
+        PageRequest twoAtATime = PageRequest.of(0, 2);
+        assertEquals(Arrays.asList("A-2", "A-3"), orderRepository.findOrderNumbersAfter(1, "A-1", twoAtATime));
+        assertEquals(Arrays.asList("A-1", "A-2"), orderRepository.findOrderNumbersAfter(1, "", twoAtATime));
+        assertEquals(Collections.emptyList(), orderRepository.findOrderNumbersAfter(1, "A-4", twoAtATime));
+    }
+
+    /**
+     * GIVEN a Customer is in the database
+     * WHEN new Orders for it are inserted, with a Customer that only has its ID set
+     * THEN the Orders should be in the database
+     * AND the Customer's version should have been incremented, once.
+     */
+    @Test
+    void insertAll() {
+
+        // GIVEN a Customer is in the database
+        persistCustomer(1);
+        entityManager.flush();
+        entityManager.clear();
+
+        // WHEN new Orders for it are inserted, with a Customer that only has its ID set
+        orderRepository.insertAll(Arrays.asList(newOrder("B-1", 1), newOrder("B-2", 1)));
+
+        // THEN the Orders should be in the database
+        assertEquals(Arrays.asList("B-1", "B-2"), orderRepository.findOrderNumbersAfter(1, "", PageRequest.of(0, 10)));
+
+        // AND the Customer's version should have been incremented, once.
+        assertEquals(Optional.of(1L), customerRepository.findVersionByCustomerId(1));
+    }
+
+    /**
+     * GIVEN a Customer is in the database
+     * WHEN new Orders for it are inserted, and the transaction commits
+     * THEN one UPDATED change, with the Customer's new version, should have been written to the outbox.
+     * <p>
+     * DEVELOPER NOTE: Every other test here runs in a transaction that is rolled back at the end, so nothing is ever
+     * committed, and the outbox is written just before a commit. This test doesn't run in a transaction, so each
+     * repository call commits its own, and it has to delete what it wrote afterwards.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void insertAll_recordsCustomerChange() {
+        try {
+
+            // GIVEN a Customer is in the database
+            Customer customer = new Customer();
+            customer.setCustomerId(1);
+            customer.setFullName("Customer 1");
+            customerRepository.save(customer);
+
+            // WHEN new Orders for it are inserted, and the transaction commits
+            orderRepository.insertAll(Arrays.asList(newOrder("B-1", 1), newOrder("B-2", 1)));
+
+            // THEN one UPDATED change, with the Customer's new version, should have been written to the outbox.
+            List<CustomerChange> changes = customerChangeRepository.findUnpublished(PageRequest.of(0, 10));
+            assertEquals(1, changes.size());
+            assertEquals(1, changes.get(0).getCustomerId());
+            assertEquals(CustomerChange.ChangeType.UPDATED, changes.get(0).getChangeType());
+            assertEquals(1L, changes.get(0).getVersion());
+            assertEquals("Customer 1", changes.get(0).getFullName());
+        } finally {
+            customerChangeRepository.deleteAll();
+            orderRepository.deleteAll();
+            customerRepository.deleteAll();
+        }
+    }
+
+    /**
+     * GIVEN no Customer with a given ID is in the database
+     * WHEN an Order for that Customer is inserted
+     * THEN a DataIntegrityViolationException should be thrown.
+     */
+    @Test
+    void insertAll_unknownCustomer() {
+        assertThrows(DataIntegrityViolationException.class,
+                () -> orderRepository.insertAll(Collections.singletonList(newOrder("B-1", 99))));
+    }
+
+
+    // ------------------------------------------------ PRIVATE METHODS ------------------------------------------------
+
+    private Customer persistCustomer(Integer customerId) {
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        customer.setFullName("Customer " + customerId);
+        return entityManager.persist(customer);
+    }
+
+    private void persistOrder(String orderNumber, Customer customer) {
+        Order order = new Order();
+        order.setOrderNumber(orderNumber);
+        order.setCustomer(customer);
+        entityManager.persist(order);
+    }
+
+    private static Order newOrder(String orderNumber, Integer customerId) {
+        Customer customer = new Customer();
+        customer.setCustomerId(customerId);
+        Order order = new Order();
+        order.setOrderNumber(orderNumber);
+        order.setCustomer(customer);
+        return order;
+    }
+
+}